@@ -25,11 +25,24 @@
 package com.github.pepewuzzhere.pythia;
 
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * User context - storage of individual user data.
  *
- * Every user thread has own context.
+ * Every user thread has own context. Context belongs to one database -
+ * keyspaces are looked up in it.
+ *
+ * Context keeps also cursors of paged scans, so next page continues where
+ * previous one ended (see {@link #openCursor(String, String, Iterator)}).
+ * Cursor continues only scan of the same column family. Cursors belong to
+ * context of one connection - their tokens don't survive reconnects. Cursor
+ * not used for {@link #CURSOR_TIMEOUT} is closed and all cursors are closed
+ * when session ends (see {@link #closeCursors()}).
  *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
@@ -37,8 +50,83 @@ import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
  */
 public class Context {
 
+    /**
+     * Maximal number of open cursors - the oldest cursor is closed when next
+     * one is opened.
+     */
+    public static final int MAX_CURSORS = 16;
+
+    /**
+     * Default number of milliseconds after which unused cursor is closed.
+     */
+    public static final long CURSOR_TIMEOUT = 5 * 60 * 1000;
+
+    private final DB db;
+    private final long cursorTimeout;
     private IKeySpace actualKeySpace = null;
 
+    /*
+     * Open cursors in order of opening - the eldest ones expire first.
+     */
+    private final Map<String, Cursor> cursors =
+        new LinkedHashMap<String, Cursor>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Cursor> eldest)
+            {
+                return size() > MAX_CURSORS;
+            }
+        };
+    private long lastCursor;
+
+    /**
+     * Creates context of default database {@link DB#INSTANCE}.
+     */
+    public Context() {
+        this(DB.INSTANCE);
+    }
+
+    /**
+     * Creates context of database.
+     *
+     * @param db database used by user
+     * @throws IllegalArgumentException if database is null
+     */
+    public Context(final DB db) {
+        this(db, CURSOR_TIMEOUT);
+    }
+
+    /**
+     * Creates context of database with timeout of cursors.
+     *
+     * @param db database used by user
+     * @param cursorTimeout number of milliseconds after which unused cursor
+     *                      is closed
+     * @throws IllegalArgumentException if database is null or timeout is not
+     *                                  positive
+     */
+    public Context(final DB db, final long cursorTimeout) {
+        if (db == null) {
+            throw new IllegalArgumentException("Database is required");
+        }
+        if (cursorTimeout <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.db = db;
+        this.cursorTimeout = cursorTimeout;
+    }
+
+    /**
+     * Gets database of this context.
+     *
+     * @return database used by user
+     */
+    public DB getDB() {
+        return db;
+    }
+
     /**
      * Sets actual keyspace whitch is used by other commands.
      *
@@ -54,7 +142,7 @@ public class Context {
             throw new IllegalArgumentException("Keyspace name is required");
         }
         final IKeySpace keySpace;
-        keySpace = DB.INSTANCE.getKeySpace(name);
+        keySpace = db.getKeySpace(name);
         if (keySpace != null) {
             actualKeySpace = keySpace;
             return keySpace;
@@ -71,4 +159,94 @@ public class Context {
     public IKeySpace getActualKeySpace() {
         return actualKeySpace;
     }
-}
\ No newline at end of file
+
+    /**
+     * Keeps iterator of scanned rows until next page is requested or cursor
+     * expires - expired cursors are closed first.
+     *
+     * @param keySpace name of keyspace of scanned column family
+     * @param columnFamily name of scanned column family
+     * @param rows iterator positioned at first row of next page
+     * @return token of cursor
+     * @throws IllegalArgumentException if iterator is null
+     */
+    public String openCursor(
+        final String keySpace, final String columnFamily,
+        final Iterator<IRow> rows
+    ) {
+        if (rows == null) {
+            throw new IllegalArgumentException("Iterator is required");
+        }
+        final long now = System.currentTimeMillis();
+        for (Iterator<Cursor> it = cursors.values().iterator();
+                it.hasNext() && it.next().deadline <= now;
+        ) {
+            it.remove();
+        }
+        final String token = Long.toString(++lastCursor, Character.MAX_RADIX);
+        cursors.put(token, new Cursor(
+                keySpace, columnFamily, rows, now + cursorTimeout));
+        return token;
+    }
+
+    /**
+     * Takes iterator of scanned rows - cursor is closed.
+     *
+     * Cursor of other column family stays open.
+     *
+     * @param token token of cursor
+     * @param keySpace name of keyspace of scanned column family
+     * @param columnFamily name of scanned column family
+     * @return iterator positioned at first row of next page or null if
+     *         cursor is closed, expired or doesn't exist
+     * @throws PythiaException if cursor belongs to scan of other column
+     *                         family
+     */
+    public Iterator<IRow> takeCursor(
+        final String token, final String keySpace, final String columnFamily
+    ) throws PythiaException {
+        Cursor cursor = cursors.get(token);
+        if (cursor != null && !cursor.isOf(keySpace, columnFamily)) {
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+        cursor = cursors.remove(token);
+        return cursor != null
+                && cursor.deadline > System.currentTimeMillis()
+                ? cursor.rows
+                : null;
+    }
+
+    /**
+     * Closes all cursors - called when session of user ends, so scanned
+     * rows are not kept.
+     */
+    public void closeCursors() {
+        cursors.clear();
+    }
+
+    /*
+     * Iterator of scan kept until its deadline.
+     */
+    private static final class Cursor {
+
+        private final String keySpace;
+        private final String columnFamily;
+        private final Iterator<IRow> rows;
+        private final long deadline;
+
+        Cursor(
+            final String keySpace, final String columnFamily,
+            final Iterator<IRow> rows, final long deadline
+        ) {
+            this.keySpace = keySpace;
+            this.columnFamily = columnFamily;
+            this.rows = rows;
+            this.deadline = deadline;
+        }
+
+        boolean isOf(final String keySpace, final String columnFamily) {
+            return Objects.equals(this.keySpace, keySpace)
+                    && Objects.equals(this.columnFamily, columnFamily);
+        }
+    }
+}
@@ -25,29 +25,74 @@
 package com.github.pepewuzzhere.pythia;
 
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Singleton represents Pythia database instance.
+ * Pythia database instance.
  *
- * Consists of keyspaces map and it is root of data model tree.
+ * Consists of keyspaces map and it is root of data model tree. Database
+ * budget counts bytes of all keyspaces.
+ *
+ * Databases are independent - every one has own keyspaces and memory budget,
+ * so several engines could run in one JVM. {@link #INSTANCE} is default
+ * database, its limit could be set by <code>pythia.memory.limit</code>
+ * system property (in bytes).
+ *
+ * Keyspaces are kept in immutable map which is replaced on every change
+ * (copy on write) - keyspaces are looked up by every command and changed
+ * rarely. Lookups don't lock nor wait for writers and
+ * {@link #getKeySpaces()} returns current map without copying.
  *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
  */
-public enum DB {
+public final class DB {
 
     /**
-     * Instance of pythia database - entry to root of pythia data model.
+     * Default instance of pythia database - entry to root of pythia data
+     * model.
+     */
+    public static final DB INSTANCE =
+            new DB(Long.getLong("pythia.memory.limit", 0));
+
+    /*
+     * Keyspaces list - immutable snapshot replaced by compare and set
      */
-    INSTANCE;
+    private final AtomicReference<Map<String, IKeySpace>> keySpaces =
+            new AtomicReference<>(Collections.<String, IKeySpace>emptyMap());
 
     /*
-     * Keyspaces list
+     * Budget of all keyspaces
      */
-    private final Map<String, IKeySpace> keySpaces = new HashMap<>();
+    private final MemoryBudget memory;
+
+    /*
+     * How long writers wait for memory in milliseconds
+     */
+    private volatile long memoryTimeout = 30000;
+
+    /**
+     * Creates empty database without memory limit.
+     */
+    public DB() {
+        this(MemoryBudget.UNLIMITED);
+    }
+
+    /**
+     * Creates empty database with limit of memory.
+     *
+     * @param memoryLimit maximal number of bytes of all keyspaces or
+     *                    {@link MemoryBudget#UNLIMITED}
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public DB(final long memoryLimit) {
+        memory = new MemoryBudget(memoryLimit);
+    }
 
     /**
      * Adds new keyspace with unique name or throws exception.
@@ -62,10 +107,25 @@ public enum DB {
         if (keySpace == null) {
             throw new IllegalArgumentException("KeySpace object is required");
         }
-        if (keySpaces.containsKey(keySpace.getName())) {
+        if (keySpaces.get().containsKey(keySpace.getName())) {
             throw new PythiaException(PythiaError.KEY_ALREADY_EXISTS);
-        } else {
-            keySpaces.put(keySpace.getName(), keySpace);
+        }
+        // budget is attached before keyspace is visible - drop of keyspace
+        // always finds it attached
+        keySpace.getMemory().attach(memory);
+        while (true) {
+            final Map<String, IKeySpace> current = keySpaces.get();
+            if (current.containsKey(keySpace.getName())) {
+                keySpace.getMemory().detach();
+                throw new PythiaException(PythiaError.KEY_ALREADY_EXISTS);
+            }
+            final Map<String, IKeySpace> next = new HashMap<>(current);
+            next.put(keySpace.getName(), keySpace);
+            if (keySpaces.compareAndSet(
+                    current, Collections.unmodifiableMap(next))
+            ) {
+                return;
+            }
         }
     }
 
@@ -76,7 +136,7 @@ public enum DB {
      * @return keyspace with provided name or null
      */
     public IKeySpace getKeySpace(final String name) {
-        return keySpaces.get(name);
+        return keySpaces.get().get(name);
     }
 
     /**
@@ -86,27 +146,87 @@ public enum DB {
      * @throws PythiaException if keyspace doesn't exists.
      */
     public void dropKeySpace(final String name) throws PythiaException {
-        if (keySpaces.containsKey(name)) {
-            keySpaces.remove(name);
-        } else {
-            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        while (true) {
+            final Map<String, IKeySpace> current = keySpaces.get();
+            final IKeySpace keySpace = current.get(name);
+            if (keySpace == null) {
+                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+            }
+            final Map<String, IKeySpace> next = new HashMap<>(current);
+            next.remove(name);
+            if (keySpaces.compareAndSet(
+                    current, Collections.unmodifiableMap(next))
+            ) {
+                keySpace.getMemory().detach();
+                return;
+            }
         }
     }
 
     /**
      * Returns list of actual keyspaces.
      *
+     * Returned map is immutable snapshot - it is not changed by later
+     * changes of database and costs nothing to get.
+     *
      * @return list of actual keyspaces.
      */
     public Map<String, IKeySpace> getKeySpaces() {
-        return new HashMap<>(keySpaces);
+        return keySpaces.get();
+    }
+
+    /**
+     * Gets budget which counts bytes of all keyspaces.
+     *
+     * @return memory budget of database
+     */
+    public MemoryBudget getMemory() {
+        return memory;
+    }
+
+    /**
+     * Sets how long writers wait for memory if budget is exceeded.
+     *
+     * @param timeout time in milliseconds
+     * @throws IllegalArgumentException if timeout is negative
+     */
+    public void setMemoryTimeout(final long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        memoryTimeout = timeout;
+    }
+
+    /**
+     * Blocks writer until budget of column family, its keyspace and database
+     * are within limits - backpressure for writes.
+     *
+     * @param budget budget of changed column family
+     * @throws PythiaException if memory wasn't released in time
+     */
+    public void awaitMemory(final MemoryBudget budget) throws PythiaException {
+        try {
+            if (!budget.awaitSpace(memoryTimeout)) {
+                throw new PythiaException(PythiaError.MEMORY_LIMIT_EXCEEDED);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final PythiaException ex =
+                    new PythiaException(PythiaError.MEMORY_LIMIT_EXCEEDED);
+            ex.initCause(e);
+            throw ex;
+        }
     }
 
     /**
      * Clears all cached data - use only for testing purposes!
      */
     public void dropDB() {
-        keySpaces.clear();
+        final Map<String, IKeySpace> dropped = keySpaces.getAndSet(
+                Collections.<String, IKeySpace>emptyMap());
+        for (IKeySpace keySpace : dropped.values()) {
+            keySpace.getMemory().detach();
+        }
     }
 
 }
\ No newline at end of file
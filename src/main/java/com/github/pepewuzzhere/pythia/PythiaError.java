@@ -107,6 +107,28 @@ public enum PythiaError {
         public String toString() {
             return "Data for given key was not found.";
         }
+    },
+
+    /**
+     * Error - memory budget stays exceeded, write was not applied
+     */
+    MEMORY_LIMIT_EXCEEDED {
+
+        @Override
+        public String toString() {
+            return "Memory limit exceeded, try again later.";
+        }
+    },
+
+    /**
+     * Error - write was applied but couldn't be logged, it could be lost
+     */
+    COMMIT_FAILED {
+
+        @Override
+        public String toString() {
+            return "Write could not be logged, it could be lost on restart.";
+        }
     };
 
 }
\ No newline at end of file
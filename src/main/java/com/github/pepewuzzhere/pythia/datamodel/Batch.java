@@ -0,0 +1,416 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mutations of many rows applied to {@link IColumnFamily} in one pass.
+ *
+ * Mutations are grouped by row - column family finds every row once, writes
+ * all its columns together and sets it as dirty once. Mutations of one row
+ * are applied in fixed order: row is deleted, created, its columns are
+ * deleted and put, counters are incremented, then deadlines are set. Later
+ * mutation of the same column replaces earlier one (increments of counter
+ * are summed), deleting row discards its earlier mutations.
+ *
+ * Batch is not thread safe and should not be changed while it is applied.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class Batch {
+
+    private final Map<ByteBuffer, RowMutation> rows = new LinkedHashMap<>();
+
+    /**
+     * Creates row if doesn't exist.
+     *
+     * @param key key of row
+     * @return this batch
+     * @throws IllegalArgumentException if key is empty
+     */
+    public Batch create(final ByteBuffer key) {
+        row(key).created = true;
+        return this;
+    }
+
+    /**
+     * Sets value of column, row and column are created if don't exist.
+     *
+     * @param key key of row
+     * @param columnKey key of column
+     * @param value new value of column
+     * @return this batch
+     * @throws IllegalArgumentException if key or column key is empty
+     */
+    public Batch put(
+        final ByteBuffer key, final ByteBuffer columnKey,
+        final ByteBuffer value
+    ) {
+        final RowMutation row = row(key);
+        row.created = true;
+        row.put(columnKey, value);
+        return this;
+    }
+
+    /**
+     * Sets value of column in existing row, column is created if doesn't
+     * exist.
+     *
+     * @param key key of row
+     * @param columnKey key of column
+     * @param value new value of column
+     * @return this batch
+     * @throws IllegalArgumentException if key or column key is empty
+     */
+    public Batch update(
+        final ByteBuffer key, final ByteBuffer columnKey,
+        final ByteBuffer value
+    ) {
+        row(key).put(columnKey, value);
+        return this;
+    }
+
+    /**
+     * Adds delta to counter column of existing row, column is created with
+     * value 0 if doesn't exist.
+     *
+     * Value of counter is {@code long} encoded by {@link Counters}.
+     *
+     * @param key key of row
+     * @param columnKey key of counter column
+     * @param delta added value, may be negative
+     * @return this batch
+     * @throws IllegalArgumentException if key or column key is empty
+     */
+    public Batch increment(
+        final ByteBuffer key, final ByteBuffer columnKey, final long delta
+    ) {
+        row(key).increment(columnKey, delta);
+        return this;
+    }
+
+    /**
+     * Deletes row, nothing is done if row doesn't exist.
+     *
+     * @param key key of row
+     * @return this batch
+     * @throws IllegalArgumentException if key is empty
+     */
+    public Batch delete(final ByteBuffer key) {
+        final RowMutation row = row(key);
+        row.created = false;
+        row.deleted = true;
+        row.columns.clear();
+        row.removedColumns.clear();
+        row.increments.clear();
+        row.deadlines.clear();
+        return this;
+    }
+
+    /**
+     * Deletes column of existing row, nothing is done if column doesn't exist.
+     *
+     * @param key key of row
+     * @param columnKey key of column
+     * @return this batch
+     * @throws IllegalArgumentException if key or column key is empty
+     */
+    public Batch delete(final ByteBuffer key, final ByteBuffer columnKey) {
+        final RowMutation row = row(key);
+        checkKey(columnKey);
+        row.columns.remove(columnKey);
+        row.increments.remove(columnKey);
+        row.removedColumns.add(columnKey);
+        return this;
+    }
+
+    /**
+     * Sets time to live of existing row or one of its columns.
+     *
+     * @param key key of row
+     * @param columnKey key of column or null to set time to live of whole row
+     * @param ttl time to live in milliseconds, 0 removes deadline
+     * @return this batch
+     * @throws IllegalArgumentException if key is empty or ttl is negative
+     * @see IColumnFamily#expire(ByteBuffer, ByteBuffer, long)
+     */
+    public Batch expire(
+        final ByteBuffer key, final ByteBuffer columnKey, final long ttl
+    ) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException(
+                    "Time to live must not be negative");
+        }
+        final RowMutation row = row(key);
+        if (columnKey != null) {
+            checkKey(columnKey);
+        }
+        row.deadlines.put(columnKey, ttl);
+        return this;
+    }
+
+    /**
+     * Converts values of typed columns from text literals to stored form of
+     * their {@link ColumnType} - values written by PQL commands are text.
+     *
+     * Values should be converted once, before batch is applied.
+     *
+     * @param options options of column family with types of columns
+     * @return this batch
+     * @throws PythiaException if value is not valid literal of column type
+     *                         or incremented column is not integral
+     */
+    public Batch parseValues(final ColumnFamilyOptions options)
+            throws PythiaException
+    {
+        if (options.getColumnTypes().isEmpty()) {
+            return this;
+        }
+        for (RowMutation row : rows.values()) {
+            for (Map.Entry<ByteBuffer, ByteBuffer> c : row.columns.entrySet()) {
+                final ColumnType type = options.getColumnType(c.getKey());
+                if (type != null) {
+                    c.setValue(type.parse(c.getValue()));
+                }
+            }
+            for (ByteBuffer name : row.increments.keySet()) {
+                final ColumnType type = options.getColumnType(name);
+                // counters are stored in 8 bytes
+                if (type != null && type != ColumnType.LONG
+                    && type != ColumnType.TIMESTAMP
+                ) {
+                    throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Gets mutations grouped by row, in order of first mutation of row.
+     *
+     * @return mutations of rows
+     */
+    public Collection<RowMutation> getRows() {
+        return Collections.unmodifiableCollection(rows.values());
+    }
+
+    /**
+     * Gets number of mutated rows.
+     *
+     * @return number of rows
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Checks if batch has no mutations.
+     *
+     * @return true if no row is mutated
+     */
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    private RowMutation row(final ByteBuffer key) {
+        checkKey(key);
+        RowMutation row = rows.get(key);
+        if (row == null) {
+            row = new RowMutation(key);
+            rows.put(key, row);
+        }
+        return row;
+    }
+
+    private static void checkKey(final ByteBuffer key) {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+    }
+
+    /**
+     * Mutations of one row.
+     */
+    public static final class RowMutation {
+
+        private final ByteBuffer key;
+        private boolean created;
+        private boolean deleted;
+        private final Map<ByteBuffer, ByteBuffer> columns =
+                new LinkedHashMap<>();
+        private final Set<ByteBuffer> removedColumns = new LinkedHashSet<>();
+        private final Map<ByteBuffer, Long> increments = new LinkedHashMap<>();
+        private final Map<ByteBuffer, Long> deadlines = new LinkedHashMap<>();
+
+        private RowMutation(final ByteBuffer key) {
+            this.key = key;
+        }
+
+        /**
+         * Gets key of mutated row.
+         *
+         * @return key of row
+         */
+        public ByteBuffer getKey() {
+            return key;
+        }
+
+        /**
+         * Checks if row should be created if doesn't exist.
+         *
+         * @return true if column was put to row
+         */
+        public boolean isCreated() {
+            return created;
+        }
+
+        /**
+         * Checks if existing row should be deleted before other mutations.
+         *
+         * @return true if row is deleted
+         */
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Checks if row has mutations other than deletion - such row must
+         * exist or be created.
+         *
+         * @return true if columns or deadlines of row are changed
+         */
+        public boolean isModified() {
+            return created || !columns.isEmpty() || !removedColumns.isEmpty()
+                || !increments.isEmpty() || !deadlines.isEmpty();
+        }
+
+        /**
+         * Gets columns set in row.
+         *
+         * @return map of column keys and new values (null values allowed)
+         */
+        public Map<ByteBuffer, ByteBuffer> getColumns() {
+            return Collections.unmodifiableMap(columns);
+        }
+
+        /**
+         * Gets keys of columns deleted from row.
+         *
+         * @return keys of deleted columns
+         */
+        public Set<ByteBuffer> getRemovedColumns() {
+            return Collections.unmodifiableSet(removedColumns);
+        }
+
+        /**
+         * Gets deltas added to counter columns after columns are put.
+         *
+         * @return map of column keys and summed deltas
+         */
+        public Map<ByteBuffer, Long> getIncrements() {
+            return Collections.unmodifiableMap(increments);
+        }
+
+        /**
+         * Gets time to live set for row and its columns.
+         *
+         * @return map of column keys (null for whole row) and time to live
+         *         in milliseconds
+         */
+        public Map<ByteBuffer, Long> getDeadlines() {
+            return Collections.unmodifiableMap(deadlines);
+        }
+
+        /**
+         * Increments counters of row one by one, reading and writing whole
+         * value of column.
+         *
+         * Used by column families which can't increment counters in place,
+         * increments are not atomic.
+         *
+         * @param row mutated row
+         * @throws PythiaException if value of column is not counter
+         */
+        public void incrementIn(final IRow row) throws PythiaException {
+            for (Map.Entry<ByteBuffer, Long> i : increments.entrySet()) {
+                final IColumn column = row.getColumn(i.getKey());
+                final ByteBuffer v = column != null ? column.getValue() : null;
+                final long value =
+                        Counters.decode(v != null ? v.array() : null);
+                row.putColumn(i.getKey(),
+                        ByteBuffer.wrap(Counters.encode(value + i.getValue())));
+            }
+        }
+
+        /**
+         * Deletes and puts columns of row one by one.
+         *
+         * Used by column families which can't write all columns together,
+         * e.g. for rows of other data models.
+         *
+         * @param row mutated row
+         */
+        public void applyTo(final IRow row) {
+            for (ByteBuffer column : removedColumns) {
+                if (row.getColumn(column) != null) {
+                    try {
+                        row.deleteColumn(column);
+                    } catch (PythiaException e) {
+                        // column was deleted meanwhile
+                    }
+                }
+            }
+            for (Map.Entry<ByteBuffer, ByteBuffer> c : columns.entrySet()) {
+                row.putColumn(c.getKey(), c.getValue());
+            }
+        }
+
+        private void put(final ByteBuffer columnKey, final ByteBuffer value) {
+            checkKey(columnKey);
+            removedColumns.remove(columnKey);
+            increments.remove(columnKey);
+            columns.put(columnKey, value);
+        }
+
+        private void increment(final ByteBuffer columnKey, final long delta) {
+            checkKey(columnKey);
+            final Long previous = increments.get(columnKey);
+            increments.put(
+                columnKey, previous != null ? previous + delta : delta);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.util.Arrays;
+
+/**
+ * Fast compression of values in blocks of LZ77 sequences.
+ *
+ * Block starts with length of original data (varint) followed by sequences:
+ * <pre>
+ * token (literals length in high, match length - 4 in low 4 bits),
+ * extension of literals length, literals,
+ * match offset (2 bytes, little-endian), extension of match length
+ * </pre>
+ * Length 15 in token is extended by next bytes, every 255 byte adds 255 and
+ * first lower byte ends length. Last sequence has only literals. Matches are
+ * found by hash table of 4 byte prefixes - one pass over data, no entropy
+ * coding, so codec is fast enough to compress every written value.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xffff;
+    private static final int HASH_BITS = 12;
+
+    private BlockCodec() {
+    }
+
+    /**
+     * Compresses data.
+     *
+     * Incompressible data grows by few bytes, caller should keep original
+     * if block isn't smaller.
+     *
+     * @param data data to compress
+     * @return compressed block
+     */
+    public static byte[] compress(final byte[] data) {
+        final int length = data.length;
+        final byte[] out = new byte[length + length / 255 + 16];
+        int op = writeVarInt(out, 0, length);
+
+        // positions of 4 byte prefixes (+1, 0 means empty)
+        final int[] table = new int[1 << HASH_BITS];
+        int anchor = 0;
+        int i = 0;
+        while (i + MIN_MATCH <= length) {
+            final int prefix = readInt(data, i);
+            final int h = (prefix * 0x9e3779b1) >>> (32 - HASH_BITS);
+            final int candidate = table[h] - 1;
+            table[h] = i + 1;
+            if (candidate >= 0 && i - candidate <= MAX_OFFSET
+                && readInt(data, candidate) == prefix
+            ) {
+                int match = MIN_MATCH;
+                while (i + match < length
+                    && data[candidate + match] == data[i + match]
+                ) {
+                    match++;
+                }
+                op = writeLiterals(out, op, data, anchor, i - anchor,
+                        Math.min(match - MIN_MATCH, 15));
+                out[op++] = (byte)(i - candidate);
+                out[op++] = (byte)((i - candidate) >>> 8);
+                if (match - MIN_MATCH >= 15) {
+                    op = writeLength(out, op, match - MIN_MATCH - 15);
+                }
+                i += match;
+                anchor = i;
+            } else {
+                // skip faster through data without matches
+                i += 1 + ((i - anchor) >>> 5);
+            }
+        }
+        op = writeLiterals(out, op, data, anchor, length - anchor, 0);
+        return Arrays.copyOf(out, op);
+    }
+
+    /**
+     * Decompresses block.
+     *
+     * @param block block created by {@link #compress(byte[])}
+     * @return original data
+     * @throws IllegalArgumentException if block is corrupted
+     */
+    public static byte[] decompress(final byte[] block) {
+        final int[] position = new int[1];
+        final int length = readVarInt(block, position);
+        final byte[] out = new byte[length];
+        int ip = position[0];
+        int op = 0;
+        while (true) {
+            check(ip < block.length);
+            final int token = block[ip++] & 0xff;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                position[0] = ip;
+                literals += readLength(block, position);
+                ip = position[0];
+            }
+            check(literals <= block.length - ip && literals <= length - op);
+            System.arraycopy(block, ip, out, op, literals);
+            ip += literals;
+            op += literals;
+            if (ip == block.length) {
+                break;
+            }
+            check(ip + 2 <= block.length);
+            final int offset = (block[ip] & 0xff) | (block[ip + 1] & 0xff) << 8;
+            ip += 2;
+            int match = (token & 15) + MIN_MATCH;
+            if ((token & 15) == 15) {
+                position[0] = ip;
+                match += readLength(block, position);
+                ip = position[0];
+            }
+            check(offset > 0 && offset <= op && match <= length - op);
+            // byte by byte - match may overlap copied bytes
+            for (int k = 0; k < match; ++k) {
+                out[op] = out[op - offset];
+                op++;
+            }
+        }
+        check(op == length);
+        return out;
+    }
+
+    private static int writeLiterals(
+        final byte[] out, int op, final byte[] data, final int from,
+        final int count, final int matchToken
+    ) {
+        out[op++] = (byte)(Math.min(count, 15) << 4 | matchToken);
+        if (count >= 15) {
+            op = writeLength(out, op, count - 15);
+        }
+        System.arraycopy(data, from, out, op, count);
+        return op + count;
+    }
+
+    private static int writeLength(final byte[] out, int op, int length) {
+        while (length >= 255) {
+            out[op++] = (byte)255;
+            length -= 255;
+        }
+        out[op++] = (byte)length;
+        return op;
+    }
+
+    private static int readLength(final byte[] block, final int[] position) {
+        int length = 0;
+        int b;
+        do {
+            check(position[0] < block.length);
+            b = block[position[0]++] & 0xff;
+            length += b;
+            check(length >= 0);
+        } while (b == 255);
+        return length;
+    }
+
+    private static int writeVarInt(final byte[] out, int op, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[op++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[op++] = (byte)value;
+        return op;
+    }
+
+    private static int readVarInt(final byte[] block, final int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            check(position[0] < block.length);
+            final int b = block[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                check(value >= 0);
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupted block");
+    }
+
+    private static int readInt(final byte[] data, final int i) {
+        return (data[i] & 0xff) << 24 | (data[i + 1] & 0xff) << 16
+             | (data[i + 2] & 0xff) << 8 | (data[i + 3] & 0xff);
+    }
+
+    private static void check(final boolean condition) {
+        if (!condition) {
+            throw new IllegalArgumentException("Corrupted block");
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Options of created {@link IColumnFamily}.
+ *
+ * Options are set by <code>CREATE COLUMNFAMILY name WITH option=value</code>
+ * and are stored with column family. Data model which doesn't support some
+ * option ignores it.
+ *
+ * Types of columns are declared by
+ * <code>CREATE COLUMNFAMILY name (column type, ...)</code>, values of
+ * typed columns are stored in form of their {@link ColumnType}.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class ColumnFamilyOptions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of option which keeps rows sorted by key.
+     */
+    public static final String ORDERED = "ordered";
+
+    /**
+     * Name of option which keeps columns of row in one byte array.
+     */
+    public static final String PACKED = "packed";
+
+    /**
+     * Name of option which moves rows not used recently to disk.
+     */
+    public static final String TIERED = "tiered";
+
+    /**
+     * Name of option which sets maximal number of rows kept in memory by
+     * tiered column family.
+     */
+    public static final String HOT_ROWS = "hotrows";
+
+    /**
+     * Default maximal number of rows kept in memory by tiered column family.
+     */
+    public static final int DEFAULT_HOT_ROWS = 100000;
+
+    /**
+     * Name of option which splits rows into independent partitions by hash
+     * of key.
+     */
+    public static final String PARTITIONED = "partitioned";
+
+    /**
+     * Name of option which sets number of partitions of partitioned column
+     * family.
+     */
+    public static final String PARTITIONS = "partitions";
+
+    /**
+     * Default number of partitions - number of processors.
+     */
+    public static final int DEFAULT_PARTITIONS =
+            Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Name of option which compresses values of columns.
+     */
+    public static final String COMPRESSED = "compressed";
+
+    /**
+     * Name of option which sets size of value (in bytes) above which value
+     * is compressed.
+     */
+    public static final String COMPRESSION_THRESHOLD = "compressthreshold";
+
+    /**
+     * Default size of value above which value is compressed.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+
+    private boolean ordered;
+    private boolean packed;
+    private boolean tiered;
+    private int hotRows = DEFAULT_HOT_ROWS;
+    private boolean partitioned;
+    private int partitions = DEFAULT_PARTITIONS;
+    private boolean compressed;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    /*
+     * Types of columns by name - null in options saved before types were
+     * introduced.
+     */
+    private LinkedHashMap<String, ColumnType> columnTypes;
+
+    /**
+     * Creates default options - unordered column family of hashed rows.
+     */
+    public ColumnFamilyOptions() {
+    }
+
+    /**
+     * Creates options from map of names and values.
+     *
+     * @param options names and values of options
+     * @return parsed options
+     * @throws IllegalArgumentException if option is unknown or has invalid
+     *                                  value
+     */
+    public static ColumnFamilyOptions parse(final Map<String, String> options) {
+        final ColumnFamilyOptions parsed = new ColumnFamilyOptions();
+        for (Map.Entry<String, String> o : options.entrySet()) {
+            parsed.set(o.getKey(), o.getValue());
+        }
+        return parsed;
+    }
+
+    /**
+     * Sets option by its name.
+     *
+     * @param name name of option, case insensitive
+     * @param value value of option
+     * @throws IllegalArgumentException if option is unknown or has invalid
+     *                                  value
+     */
+    public void set(final String name, final String value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("Option and value are required");
+        }
+        switch (name.toLowerCase(Locale.ENGLISH)) {
+            case ORDERED:
+                ordered = toBoolean(value);
+                break;
+            case PACKED:
+                packed = toBoolean(value);
+                break;
+            case TIERED:
+                tiered = toBoolean(value);
+                break;
+            case HOT_ROWS:
+                setHotRows(toInt(value));
+                break;
+            case PARTITIONED:
+                partitioned = toBoolean(value);
+                break;
+            case PARTITIONS:
+                setPartitions(toInt(value));
+                break;
+            case COMPRESSED:
+                compressed = toBoolean(value);
+                break;
+            case COMPRESSION_THRESHOLD:
+                setCompressionThreshold(toInt(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + name);
+        }
+    }
+
+    /**
+     * Checks if rows are kept sorted by key.
+     *
+     * @return true if column family is ordered
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Sets if rows are kept sorted by key.
+     *
+     * @param ordered should column family be ordered
+     * @return this options
+     */
+    public ColumnFamilyOptions setOrdered(final boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Checks if rows created by column family keep columns in one byte
+     * array instead of map.
+     *
+     * @return true if rows are packed
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Sets if rows created by column family are packed.
+     *
+     * @param packed should rows be packed
+     * @return this options
+     */
+    public ColumnFamilyOptions setPacked(final boolean packed) {
+        this.packed = packed;
+        return this;
+    }
+
+    /**
+     * Checks if column family keeps only recently used rows in memory and
+     * moves other rows to disk.
+     *
+     * @return true if column family is tiered
+     */
+    public boolean isTiered() {
+        return tiered;
+    }
+
+    /**
+     * Sets if column family moves rows not used recently to disk.
+     *
+     * @param tiered should column family be tiered
+     * @return this options
+     */
+    public ColumnFamilyOptions setTiered(final boolean tiered) {
+        this.tiered = tiered;
+        return this;
+    }
+
+    /**
+     * Gets maximal number of rows kept in memory by tiered column family.
+     *
+     * @return number of rows
+     */
+    public int getHotRows() {
+        return hotRows > 0 ? hotRows : DEFAULT_HOT_ROWS;
+    }
+
+    /**
+     * Sets maximal number of rows kept in memory by tiered column family.
+     *
+     * @param hotRows number of rows
+     * @return this options
+     * @throws IllegalArgumentException if number is not positive
+     */
+    public ColumnFamilyOptions setHotRows(final int hotRows) {
+        if (hotRows <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of hot rows must be positive");
+        }
+        this.hotRows = hotRows;
+        return this;
+    }
+
+    /**
+     * Checks if rows are split into partitions by hash of key - every
+     * partition has own map of rows, changes and memory budget.
+     *
+     * @return true if column family is partitioned
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Sets if rows are split into partitions by hash of key.
+     *
+     * @param partitioned should column family be partitioned
+     * @return this options
+     */
+    public ColumnFamilyOptions setPartitioned(final boolean partitioned) {
+        this.partitioned = partitioned;
+        return this;
+    }
+
+    /**
+     * Gets number of partitions of partitioned column family.
+     *
+     * @return number of partitions
+     */
+    public int getPartitions() {
+        return partitions > 0 ? partitions : DEFAULT_PARTITIONS;
+    }
+
+    /**
+     * Sets number of partitions of partitioned column family.
+     *
+     * @param partitions number of partitions
+     * @return this options
+     * @throws IllegalArgumentException if number is not positive
+     */
+    public ColumnFamilyOptions setPartitions(final int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of partitions must be positive");
+        }
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * Checks if values bigger than compression threshold are kept
+     * compressed and decompressed when they are read.
+     *
+     * @return true if values are compressed
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Sets if values bigger than compression threshold are compressed.
+     *
+     * @param compressed should values be compressed
+     * @return this options
+     */
+    public ColumnFamilyOptions setCompressed(final boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    /**
+     * Gets size of value (in bytes) above which value is compressed.
+     *
+     * @return size of value
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold > 0
+                ? compressionThreshold
+                : DEFAULT_COMPRESSION_THRESHOLD;
+    }
+
+    /**
+     * Sets size of value (in bytes) above which value is compressed.
+     *
+     * @param compressionThreshold size of value
+     * @return this options
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public ColumnFamilyOptions setCompressionThreshold(
+            final int compressionThreshold)
+    {
+        if (compressionThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "Compression threshold must be positive");
+        }
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /**
+     * Declares type of column.
+     *
+     * @param column name of column
+     * @param type type of column values
+     * @return this options
+     * @throws IllegalArgumentException if name or type is missing
+     */
+    public ColumnFamilyOptions setColumnType(
+            final String column, final ColumnType type)
+    {
+        if (column == null || column.isEmpty() || type == null) {
+            throw new IllegalArgumentException("Column and type are required");
+        }
+        if (columnTypes == null) {
+            columnTypes = new LinkedHashMap<>();
+        }
+        columnTypes.put(column, type);
+        return this;
+    }
+
+    /**
+     * Gets declared type of column.
+     *
+     * @param column key of column
+     * @return type of column or null if column is not typed
+     */
+    public ColumnType getColumnType(final ByteBuffer column) {
+        if (columnTypes == null || column == null) {
+            return null;
+        }
+        return columnTypes.get(new String(
+            column.array(), column.arrayOffset() + column.position(),
+            column.remaining()
+        ));
+    }
+
+    /**
+     * Gets declared types of columns.
+     *
+     * @return types by names of columns in order of declaration
+     */
+    public Map<String, ColumnType> getColumnTypes() {
+        return columnTypes != null
+                ? Collections.unmodifiableMap(columnTypes)
+                : Collections.<String, ColumnType>emptyMap();
+    }
+
+    private static int toInt(final String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Integer value required: " + value, e);
+        }
+    }
+
+    private static boolean toBoolean(final String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        } else if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Boolean value required: " + value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ColumnFamilyOptions) {
+            final ColumnFamilyOptions o = (ColumnFamilyOptions)obj;
+
+            return ordered == o.ordered && packed == o.packed
+                && tiered == o.tiered && getHotRows() == o.getHotRows()
+                && partitioned == o.partitioned
+                && getPartitions() == o.getPartitions()
+                && compressed == o.compressed
+                && getCompressionThreshold() == o.getCompressionThreshold()
+                && getColumnTypes().equals(o.getColumnTypes());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 37 * hash + (ordered ? 1 : 0);
+        hash = 37 * hash + (packed ? 1 : 0);
+        hash = 37 * hash + (tiered ? 1 : 0);
+        hash = 37 * hash + getHotRows();
+        hash = 37 * hash + (partitioned ? 1 : 0);
+        hash = 37 * hash + getPartitions();
+        hash = 37 * hash + (compressed ? 1 : 0);
+        hash = 37 * hash + getCompressionThreshold();
+        hash = 37 * hash + getColumnTypes().hashCode();
+        return hash;
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Type of column declared in {@link ColumnFamilyOptions}.
+ *
+ * Values of numeric columns are stored in fixed-width primitive form:
+ * {@code int} in 4 bytes, {@code long}, {@code double} and timestamp
+ * (milliseconds since epoch) in 8 bytes, all in big-endian order - the same
+ * form as {@link Counters}, so long column could be incremented. Text and
+ * blob values are stored as given.
+ *
+ * Text literals are parsed from their bytes and values are formatted into
+ * <code>StringBuilder</code>, without intermediate <code>String</code>s.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public enum ColumnType {
+
+    /** 32-bit signed integer. */
+    INT(4),
+    /** 64-bit signed integer. */
+    LONG(8),
+    /** 64-bit floating point number. */
+    DOUBLE(8),
+    /** Milliseconds since epoch as 64-bit integer. */
+    TIMESTAMP(8),
+    /** Bytes stored as given. */
+    BLOB(-1),
+    /** Text stored as given. */
+    TEXT(-1);
+
+    /*
+     * Powers of ten exactly represented by double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int width;
+
+    private ColumnType(final int width) {
+        this.width = width;
+    }
+
+    /**
+     * Gets type by its name.
+     *
+     * @param name name of type, case insensitive
+     * @return type of column
+     * @throws IllegalArgumentException if type is unknown
+     */
+    public static ColumnType of(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Type is required");
+        }
+        try {
+            return valueOf(name.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown type: " + name, e);
+        }
+    }
+
+    /**
+     * Gets size of stored value.
+     *
+     * @return number of bytes, -1 if values have variable size
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Checks if values are numbers.
+     *
+     * @return true if type has fixed-width primitive form
+     */
+    public boolean isNumeric() {
+        return width > 0;
+    }
+
+    /**
+     * Converts text literal to stored form of value.
+     *
+     * @param text bytes of literal, null if value is missing
+     * @return stored value or null
+     * @throws PythiaException if literal is not valid value of this type
+     */
+    public ByteBuffer parse(final ByteBuffer text) throws PythiaException {
+        if (text == null || !isNumeric()) {
+            return text;
+        }
+        final byte[] b = text.array();
+        final int from = text.arrayOffset() + text.position();
+        final int to = from + text.remaining();
+        switch (this) {
+            case INT:
+                return encode(parseLong(b, from, to));
+            case DOUBLE:
+                return encode(parseDouble(b, from, to));
+            default:
+                return encode(parseLong(b, from, to));
+        }
+    }
+
+    /**
+     * Encodes integral value.
+     *
+     * @param value value of column
+     * @return stored value
+     * @throws PythiaException if type is not integral or value is out of
+     *                         range of type
+     */
+    public ByteBuffer encode(final long value) throws PythiaException {
+        switch (this) {
+            case INT:
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+                }
+                return ByteBuffer.allocate(4).putInt(0, (int)value);
+            case LONG:
+            case TIMESTAMP:
+                return ByteBuffer.allocate(8).putLong(0, value);
+            case DOUBLE:
+                return encode((double)value);
+            default:
+                throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+    }
+
+    /**
+     * Encodes floating point value.
+     *
+     * @param value value of column
+     * @return stored value
+     * @throws PythiaException if type is not {@link #DOUBLE}
+     */
+    public ByteBuffer encode(final double value) throws PythiaException {
+        if (this != DOUBLE) {
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+        return ByteBuffer.allocate(8).putDouble(0, value);
+    }
+
+    /**
+     * Decodes value of integral column.
+     *
+     * @param value stored value
+     * @return value as number
+     * @throws PythiaException if type is not integral or value has invalid
+     *                         size
+     */
+    public long toLong(final ByteBuffer value) throws PythiaException {
+        check(value);
+        switch (this) {
+            case INT:
+                return value.getInt(value.position());
+            case LONG:
+            case TIMESTAMP:
+                return value.getLong(value.position());
+            default:
+                throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+    }
+
+    /**
+     * Decodes value of numeric column.
+     *
+     * @param value stored value
+     * @return value as floating point number
+     * @throws PythiaException if type is not numeric or value has invalid
+     *                         size
+     */
+    public double toDouble(final ByteBuffer value) throws PythiaException {
+        check(value);
+        return this == DOUBLE
+                ? value.getDouble(value.position())
+                : toLong(value);
+    }
+
+    /**
+     * Compares stored values - numbers by value, text and blobs by unsigned
+     * bytes.
+     *
+     * @param a first value
+     * @param b second value
+     * @return negative, zero or positive number like
+     *         {@link Comparable#compareTo(Object)}
+     * @throws PythiaException if numeric value has invalid size
+     */
+    public int compare(final ByteBuffer a, final ByteBuffer b)
+            throws PythiaException
+    {
+        if (this == DOUBLE) {
+            return Double.compare(toDouble(a), toDouble(b));
+        } else if (isNumeric()) {
+            return Long.compare(toLong(a), toLong(b));
+        }
+        final int length = Math.min(a.remaining(), b.remaining());
+        for (int i = 0; i < length; ++i) {
+            final int c = (a.get(a.position() + i) & 0xff)
+                        - (b.get(b.position() + i) & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return a.remaining() - b.remaining();
+    }
+
+    /**
+     * Appends text form of stored value. Value with size not matching type
+     * is appended as text.
+     *
+     * @param value stored value
+     * @param out builder of text
+     * @return builder of text
+     */
+    public StringBuilder format(final ByteBuffer value, final StringBuilder out) {
+        if (value == null) {
+            return out;
+        }
+        if (width != value.remaining()) {
+            return out.append(new String(
+                value.array(), value.arrayOffset() + value.position(),
+                value.remaining()
+            ));
+        }
+        switch (this) {
+            case INT:
+                return out.append(value.getInt(value.position()));
+            case DOUBLE:
+                return out.append(value.getDouble(value.position()));
+            default:
+                return out.append(value.getLong(value.position()));
+        }
+    }
+
+    private void check(final ByteBuffer value) throws PythiaException {
+        if (value == null || width <= 0 || value.remaining() != width) {
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+    }
+
+    /*
+     * Parses decimal integer like Long#parseLong - accumulates negative
+     * value, so Long.MIN_VALUE is parsed too.
+     */
+    private static long parseLong(final byte[] b, final int from, final int to)
+            throws PythiaException
+    {
+        int i = from;
+        final boolean negative = i < to && b[i] == '-';
+        if (i < to && (b[i] == '-' || b[i] == '+')) {
+            i++;
+        }
+        if (i == to) {
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < to; ++i) {
+            final int digit = b[i] - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /*
+     * Parses decimal number - values with at most 15 significant digits and
+     * small exponent are exact products of two doubles, other are parsed by
+     * Double#parseDouble.
+     */
+    private static double parseDouble(
+            final byte[] b, final int from, final int to)
+            throws PythiaException
+    {
+        int i = from;
+        final boolean negative = i < to && b[i] == '-';
+        if (i < to && (b[i] == '-' || b[i] == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        boolean exact = true;
+        boolean fraction = false;
+        for (; i < to; ++i) {
+            if (b[i] == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            final int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            any = true;
+            if (digits < 15) {
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (fraction) {
+                    exponent--;
+                }
+            } else {
+                exact &= digit == 0;
+                if (!fraction) {
+                    exponent++;
+                }
+            }
+        }
+        if (!any) {
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+        if (i < to && (b[i] == 'e' || b[i] == 'E')) {
+            final long e = parseLong(b, i + 1, to);
+            if (e < -1000 || e > 1000) {
+                exact = false;
+            } else {
+                exponent += (int)e;
+            }
+            i = to;
+        }
+        if (i != to) {
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+        if (exact && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            final double value = exponent >= 0
+                    ? mantissa * POWERS_OF_TEN[exponent]
+                    : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(
+                new String(b, from, to - from, StandardCharsets.US_ASCII));
+    }
+}
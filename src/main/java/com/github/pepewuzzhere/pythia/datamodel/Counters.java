@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding of counter columns.
+ *
+ * Value of counter is {@code long} stored as 8 bytes in big-endian order, so
+ * counters are persisted like any other column. Missing value (null) is
+ * counted as 0.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class Counters {
+
+    /**
+     * Size of counter value in bytes.
+     */
+    public static final int SIZE = 8;
+
+    private Counters() {
+    }
+
+    /**
+     * Encodes counter value.
+     *
+     * @param value value of counter
+     * @return 8 bytes of value
+     */
+    public static byte[] encode(final long value) {
+        return ByteBuffer.allocate(SIZE).putLong(0, value).array();
+    }
+
+    /**
+     * Decodes counter value.
+     *
+     * @param value bytes of column value or null
+     * @return value of counter, 0 if value is null
+     * @throws PythiaException if value is not a counter
+     */
+    public static long decode(final byte[] value) throws PythiaException {
+        if (value == null) {
+            return 0;
+        }
+        if (value.length != SIZE) {
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+        return ByteBuffer.wrap(value).getLong(0);
+    }
+
+}
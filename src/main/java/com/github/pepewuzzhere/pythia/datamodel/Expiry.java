@@ -0,0 +1,463 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deadlines of rows and columns of column family with time to live.
+ *
+ * Deadlines are kept in table by row key and scheduled in
+ * {@link TimerWheel}. Column family calls {@link #advance(long, Reclaimer)}
+ * during its operations - timers which passed are checked against table and
+ * expired data are removed by {@link Reclaimer}, without scanning all rows.
+ * Reads don't wait for wheel: {@link #purge(ByteBuffer, long, Reclaimer)}
+ * removes expired data of row before it is returned.
+ *
+ * Rows without deadlines cost one lookup in concurrent map, lock is taken
+ * only when deadlines change or expire.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class Expiry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Deadline of data which never expire.
+     */
+    public static final long NEVER = 0;
+
+    /*
+     * Length of wheel tick - 2^7 = 128 milliseconds.
+     */
+    private static final int TICK_BITS = 7;
+
+    /*
+     * Key of row deadline in map of row - columns never have empty names.
+     */
+    private static final ByteBuffer ROW = ByteBuffer.allocate(0);
+
+    /**
+     * Removes expired data from column family.
+     */
+    public interface Reclaimer {
+
+        /**
+         * Removes expired row or column, data could be already deleted.
+         *
+         * @param key key of row
+         * @param columnKey key of column or null if whole row expired
+         */
+        void expired(ByteBuffer key, ByteBuffer columnKey);
+    }
+
+    private transient ConcurrentMap<ByteBuffer, Map<ByteBuffer, Long>>
+            deadlines;
+    private transient TimerWheel<Timer> wheel;
+    private transient ReentrantLock lock;
+    private transient volatile long nextTick;
+
+    /**
+     * Creates empty table of deadlines.
+     */
+    public Expiry() {
+        init();
+    }
+
+    private void init() {
+        deadlines = new ConcurrentHashMap<>();
+        wheel = new TimerWheel<>(TICK_BITS, System.currentTimeMillis());
+        lock = new ReentrantLock();
+        nextTick = wheel.nextTick();
+    }
+
+    /**
+     * Serializes this Expiry instance.
+     *
+     * @serialData Number of rows ({@code int}), followed by rows: size of key
+     *             ({@code int}), key bytes, number of deadlines ({@code int})
+     *             and deadlines: size of column key ({@code int}, -1 for row
+     *             deadline), column key bytes, deadline ({@code long})
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        lock.lock();
+        try {
+            s.writeInt(deadlines.size());
+            for (Map.Entry<ByteBuffer, Map<ByteBuffer, Long>> r
+                    : deadlines.entrySet()
+            ) {
+                writeBytes(s, r.getKey());
+                writeRow(s, r.getValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeRow(
+            final ObjectOutputStream s, final Map<ByteBuffer, Long> row)
+        throws IOException
+    {
+        s.writeInt(row.size());
+        for (Map.Entry<ByteBuffer, Long> d : row.entrySet()) {
+            writeBytes(s, d.getKey() != ROW ? d.getKey() : null);
+            s.writeLong(d.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        init();
+        for (int rows = s.readInt(); rows > 0; --rows) {
+            final ByteBuffer key = readBytes(s);
+            for (int count = s.readInt(); count > 0; --count) {
+                setDeadline(key, readBytes(s), s.readLong());
+            }
+        }
+    }
+
+    /**
+     * Sets deadline of row or column.
+     *
+     * @param key key of row
+     * @param columnKey key of column or null for deadline of whole row
+     * @param deadline time of expiration in milliseconds or {@link #NEVER}
+     * @throws IllegalArgumentException if key is empty or deadline negative
+     */
+    public void setDeadline(
+        final ByteBuffer key, final ByteBuffer columnKey, final long deadline
+    ) {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        if (deadline < 0) {
+            throw new IllegalArgumentException(
+                    "Deadline must not be negative");
+        }
+        if (deadline == NEVER && !deadlines.containsKey(key)) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (deadline == NEVER) {
+                final Map<ByteBuffer, Long> row = deadlines.get(key);
+                if (row != null) {
+                    row.remove(columnKey != null ? columnKey : ROW);
+                    if (row.isEmpty()) {
+                        deadlines.remove(key);
+                    }
+                }
+                return;
+            }
+            final ByteBuffer k = copy(key);
+            Map<ByteBuffer, Long> row = deadlines.get(k);
+            if (row == null) {
+                row = new HashMap<>();
+                deadlines.put(k, row);
+            }
+            final ByteBuffer c = columnKey != null ? copy(columnKey) : ROW;
+            row.put(c, deadline);
+            wheel.schedule(new Timer(k, c, deadline), deadline);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets deadline of row or column.
+     *
+     * @param key key of row
+     * @param columnKey key of column or null for deadline of whole row
+     * @return time of expiration in milliseconds or {@link #NEVER}
+     */
+    public long getDeadline(final ByteBuffer key, final ByteBuffer columnKey) {
+        if (key == null || !deadlines.containsKey(key)) {
+            return NEVER;
+        }
+        lock.lock();
+        try {
+            final Map<ByteBuffer, Long> row = deadlines.get(key);
+            final Long deadline = row != null
+                    ? row.get(columnKey != null ? columnKey : ROW)
+                    : null;
+            return deadline != null ? deadline : NEVER;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes deadlines of one row - used to save changed row.
+     *
+     * Deadlines are written like in serialized form of whole table.
+     *
+     * @param key key of row
+     * @param s output stream
+     * @throws IOException if deadlines couldn't be written
+     */
+    public void writeDeadlines(final ByteBuffer key, final ObjectOutputStream s)
+        throws IOException
+    {
+        if (key == null || !deadlines.containsKey(key)) {
+            s.writeInt(0);
+            return;
+        }
+        lock.lock();
+        try {
+            final Map<ByteBuffer, Long> row = deadlines.get(key);
+            writeRow(s, row != null ? row : new HashMap<ByteBuffer, Long>());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces deadlines of row by deadlines written by
+     * {@link #writeDeadlines(ByteBuffer, ObjectOutputStream)}.
+     *
+     * @param key key of row
+     * @param s input stream
+     * @throws IOException if deadlines couldn't be read
+     */
+    public void readDeadlines(final ByteBuffer key, final ObjectInputStream s)
+        throws IOException
+    {
+        remove(key);
+        for (int count = s.readInt(); count > 0; --count) {
+            setDeadline(key, readBytes(s), s.readLong());
+        }
+    }
+
+    /**
+     * Forgets deadlines of deleted row.
+     *
+     * @param key key of row
+     */
+    public void remove(final ByteBuffer key) {
+        if (key == null || !deadlines.containsKey(key)) {
+            return;
+        }
+        lock.lock();
+        try {
+            deadlines.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes expired data of one row - called before row is read.
+     *
+     * @param key key of row
+     * @param now current time in milliseconds
+     * @param reclaimer remover of expired data
+     * @return true if whole row expired
+     */
+    public boolean purge(
+        final ByteBuffer key, final long now, final Reclaimer reclaimer
+    ) {
+        if (key == null || !deadlines.containsKey(key)) {
+            return false;
+        }
+        final List<Timer> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            final Map<ByteBuffer, Long> row = deadlines.get(key);
+            if (row == null) {
+                return false;
+            }
+            final Long deadline = row.get(ROW);
+            if (deadline != null && deadline <= now) {
+                deadlines.remove(key);
+                expired.add(new Timer(copy(key), ROW, deadline));
+            } else {
+                for (Iterator<Map.Entry<ByteBuffer, Long>> it =
+                        row.entrySet().iterator(); it.hasNext();
+                ) {
+                    final Map.Entry<ByteBuffer, Long> d = it.next();
+                    if (d.getValue() <= now) {
+                        it.remove();
+                        expired.add(
+                            new Timer(copy(key), d.getKey(), d.getValue()));
+                    }
+                }
+                if (row.isEmpty()) {
+                    deadlines.remove(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        reclaim(expired, reclaimer);
+        return !expired.isEmpty() && expired.get(0).column == ROW;
+    }
+
+    /**
+     * Removes data whose timers passed since last call.
+     *
+     * Returns immediately if tick of wheel didn't pass or other thread is
+     * advancing wheel.
+     *
+     * @param now current time in milliseconds
+     * @param reclaimer remover of expired data
+     */
+    public void advance(final long now, final Reclaimer reclaimer) {
+        if (now < nextTick || !lock.tryLock()) {
+            return;
+        }
+        final List<Timer> expired = new ArrayList<>();
+        try {
+            final List<Timer> due = new ArrayList<>();
+            wheel.advance(now, due);
+            nextTick = wheel.nextTick();
+            for (Timer t : due) {
+                // deadline could be changed or removed after timer was set
+                final Map<ByteBuffer, Long> row = deadlines.get(t.key);
+                if (row == null
+                    || !Long.valueOf(t.deadline).equals(row.get(t.column))
+                ) {
+                    continue;
+                }
+                if (t.column == ROW) {
+                    deadlines.remove(t.key);
+                } else {
+                    row.remove(t.column);
+                    if (row.isEmpty()) {
+                        deadlines.remove(t.key);
+                    }
+                }
+                expired.add(t);
+            }
+        } finally {
+            lock.unlock();
+        }
+        reclaim(expired, reclaimer);
+    }
+
+    /**
+     * Gets number of rows with deadlines.
+     *
+     * @return number of rows
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Gets number of scheduled timers, including timers of changed deadlines
+     * which weren't reached yet.
+     *
+     * @return number of timers
+     */
+    int getTimers() {
+        lock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Runs reclaimer without lock - it changes column family, which could
+     * call this object under own locks.
+     */
+    private static void reclaim(
+            final List<Timer> expired, final Reclaimer reclaimer)
+    {
+        for (Timer t : expired) {
+            reclaimer.expired(
+                ByteBuffer.wrap(t.key.array()),
+                t.column != ROW ? ByteBuffer.wrap(t.column.array()) : null
+            );
+        }
+    }
+
+    private static ByteBuffer copy(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void writeBytes(
+            final ObjectOutputStream s, final ByteBuffer buffer)
+        throws IOException
+    {
+        if (buffer == null) {
+            s.writeInt(-1);
+        } else {
+            s.writeInt(buffer.remaining());
+            s.write(copy(buffer).array());
+        }
+    }
+
+    private static ByteBuffer readBytes(final ObjectInputStream s)
+        throws IOException
+    {
+        final int length = s.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        s.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /*
+     * Scheduled deadline of row or column.
+     */
+    private static final class Timer {
+
+        private final ByteBuffer key;
+        private final ByteBuffer column;
+        private final long deadline;
+
+        Timer(final ByteBuffer key, final ByteBuffer column,
+              final long deadline)
+        {
+            this.key = key;
+            this.column = column;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -24,19 +24,43 @@
 
 package com.github.pepewuzzhere.pythia.datamodel;
 
+import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * <code>ColumnFamily</code> is map of {@link IRow}.
  *
  * It is similar to table in relational databases.
  *
+ * Rows of column family are iterated in no particular order. Iterator is
+ * weakly consistent - rows added or removed while iterating may or may not
+ * be seen - skips expired rows and doesn't remove rows. Rows are not copied,
+ * so whole column family is read in constant memory.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
  */
-public interface IColumnFamily {
+public interface IColumnFamily extends Iterable<IRow> {
+
+    /**
+     * Receiver of rows passed by {@link IColumnFamily#visitRows(RowVisitor)}.
+     */
+    public interface RowVisitor {
+
+        /**
+         * Receives one row.
+         *
+         * @param row row of column family
+         * @throws IOException if row couldn't be processed, visiting stops
+         */
+        void visit(final IRow row) throws IOException;
+    }
 
     /**
      * Adds new row to column family.
@@ -56,6 +80,17 @@ public interface IColumnFamily {
      */
     IRow getRow(final ByteBuffer key);
 
+    /**
+     * Gets row by key, new empty row is added if doesn't exist.
+     *
+     * Operation is atomic - concurrent calls with the same key return the
+     * same row and never fail with {@link PythiaError#KEY_ALREADY_EXISTS}.
+     *
+     * @param key key of row
+     * @return existing or added row
+     */
+    IRow getOrCreateRow(final ByteBuffer key);
+
     /**
      * Updates column value in specified row.
      *
@@ -78,6 +113,129 @@ public interface IColumnFamily {
      */
     void deleteRow(final ByteBuffer key) throws PythiaException;
 
+    /**
+     * Applies mutations of batch.
+     *
+     * Every row is found once and all its mutations are written together -
+     * concurrent batches never see half of mutations of row. Rows are
+     * applied in order of batch and applying stops at first row which fails,
+     * earlier rows stay changed. Applied rows are set as dirty.
+     *
+     * @param batch mutations of rows
+     * @throws PythiaException if row which is not created by batch doesn't
+     *                         exist
+     */
+    void apply(final Batch batch) throws PythiaException;
+
+    /**
+     * Gets rows with keys in range, sorted by key.
+     *
+     * Keys are compared as unsigned bytes (see {@link KeyComparator}). To read
+     * next page pass key of last returned row as <code>from</code> with
+     * <code>inclusive</code> set to false.
+     *
+     * Ordered column families read only requested rows, other implementations
+     * have to scan all rows.
+     *
+     * @param from lower bound of keys or null to start from first row
+     * @param inclusive should row with key equal to <code>from</code> be
+     *                  returned
+     * @param to upper bound of keys (exclusive) or null to read to last row
+     * @param limit maximal number of returned rows
+     * @return rows sorted by key
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    List<IRow> getRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    );
+
+    /**
+     * Creates index of column values, so rows could be found by value of
+     * column (see {@link #getIndexedRows(ByteBuffer, ByteBuffer)}).
+     *
+     * Existing rows are indexed at once, later changes of rows are indexed
+     * when row is set as dirty (see {@link #setDirty(ByteBuffer)}). Rows
+     * without column or with empty value are not indexed. Index is saved
+     * with column family.
+     *
+     * @param columnKey key of indexed column
+     * @throws PythiaException if column is already indexed
+     * @throws IllegalArgumentException if column key is empty
+     */
+    void createIndex(final ByteBuffer columnKey) throws PythiaException;
+
+    /**
+     * Gets rows with value of indexed column, sorted by key.
+     *
+     * @param columnKey key of indexed column
+     * @param value value of column
+     * @return rows sorted by key
+     * @throws PythiaException if column is not indexed
+     */
+    List<IRow> getIndexedRows(final ByteBuffer columnKey, final ByteBuffer value)
+            throws PythiaException;
+
+    /**
+     * Sets time to live of row or one of its columns.
+     *
+     * Expired data are absent for reads and are removed from column family
+     * by its later operations. Deadline is kept until row is deleted or time
+     * to live is set again - it is not cleared by writes of column.
+     *
+     * @param key key of row
+     * @param columnKey key of column or null to set time to live of whole row
+     * @param ttl time to live in milliseconds, 0 removes deadline
+     * @throws IllegalArgumentException if key is empty or ttl is negative
+     */
+    void expire(
+        final ByteBuffer key, final ByteBuffer columnKey, final long ttl);
+
+    /**
+     * Gets deadline of row or one of its columns.
+     *
+     * @param key key of row
+     * @param columnKey key of column or null for deadline of whole row
+     * @return time of expiration in milliseconds or {@link Expiry#NEVER}
+     */
+    long getDeadline(final ByteBuffer key, final ByteBuffer columnKey);
+
+    /**
+     * Gets keys of indexed columns.
+     *
+     * @return keys of columns in order of index creation
+     */
+    List<ByteBuffer> getIndexedColumns();
+
+    /**
+     * Passes every row to visitor, also rows whose deadline has passed.
+     *
+     * Unlike {@link #iterator()} rows are kept in place while they are
+     * visited, so no row is skipped or visited twice - it is used to write
+     * whole column family. Changes made meanwhile may be visible or not.
+     *
+     * @param visitor receiver of rows
+     * @throws IOException if visitor failed
+     */
+    void visitRows(final RowVisitor visitor) throws IOException;
+
+    /**
+     * Gets budget which counts bytes occupied by data of this column family.
+     *
+     * Budget is attached to budget of keyspace when column family is added
+     * to it.
+     *
+     * @return memory budget of column family
+     */
+    MemoryBudget getMemory();
+
+    /**
+     * Gets options of this column family.
+     *
+     * @return options used to create column family
+     */
+    ColumnFamilyOptions getOptions();
+
     /**
      * Checks if this column family should be saved in storage.
      *
@@ -91,7 +249,81 @@ public interface IColumnFamily {
     void setClean();
 
     /**
-     * Sets this column family as dirty - should be saved to disc.
+     * Sets this column family as dirty - whole column family should be saved
+     * to disc.
      */
     void setDirty();
+
+    /**
+     * Sets row as dirty - only this row should be saved to disc.
+     *
+     * Column family tracks rows changed by its own methods. Changes made
+     * through {@link IRow} taken from column family must be reported by
+     * caller - indexes of column family are updated here.
+     *
+     * @param key key of changed or deleted row
+     * @throws IllegalArgumentException if key is empty
+     */
+    void setDirty(final ByteBuffer key);
+
+    /**
+     * Writes rows changed since column family was saved.
+     *
+     * Every change is key of row followed by its current data (null if row
+     * was deleted) and deadlines of row. Written rows are set as clean - row
+     * changed meanwhile is set as dirty again.
+     *
+     * @param out stream of changes
+     * @return false if whole column family has to be saved - it is new or
+     *         {@link #setDirty()} was called, nothing is written then
+     * @throws IOException if changes couldn't be written
+     */
+    boolean writeChanges(final ObjectOutputStream out) throws IOException;
+
+    /**
+     * Applies changes written by {@link #writeChanges(ObjectOutputStream)}.
+     *
+     * Rows are replaced by their saved state, column family stays clean.
+     *
+     * @param in stream of changes
+     * @throws IOException if changes couldn't be read
+     * @throws ClassNotFoundException if class of row is unknown
+     */
+    void readChanges(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException;
+
+    /**
+     * Takes keys of rows changed since column family was saved.
+     *
+     * Taken rows are set as clean - row changed meanwhile is set as dirty
+     * again. State of every taken row is written by
+     * {@link #writeChange(ByteBuffer, ObjectOutputStream)}, so storage could
+     * write changes in own order.
+     *
+     * @return keys of changed rows or null if whole column family has to be
+     *         saved, like in {@link #writeChanges(ObjectOutputStream)}
+     */
+    List<ByteBuffer> takeChanges();
+
+    /**
+     * Writes current data of row (null if row was deleted) and its deadlines.
+     *
+     * @param key key of row
+     * @param out stream of change
+     * @throws IOException if change couldn't be written
+     */
+    void writeChange(final ByteBuffer key, final ObjectOutputStream out)
+            throws IOException;
+
+    /**
+     * Replaces row by state written by
+     * {@link #writeChange(ByteBuffer, ObjectOutputStream)}.
+     *
+     * @param key key of row
+     * @param in stream of change
+     * @throws IOException if change couldn't be read
+     * @throws ClassNotFoundException if class of row is unknown
+     */
+    void readChange(final ByteBuffer key, final ObjectInputStream in)
+            throws IOException, ClassNotFoundException;
 }
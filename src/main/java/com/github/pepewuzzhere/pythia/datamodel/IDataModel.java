@@ -50,6 +50,14 @@ public interface IDataModel {
      */
     IColumnFamily createColumnFamily();
 
+    /**
+     * Creates concrete implementation of {@link IColumnFamily} with options.
+     *
+     * @param options options of column family
+     * @return concrete implementation of <code>IColumnFamily</code>
+     */
+    IColumnFamily createColumnFamily(final ColumnFamilyOptions options);
+
     /**
      * Creates concrete implementation of {@link IColumn}
      *
@@ -66,6 +66,16 @@ public interface IKeySpace {
      */
     void dropColumnFamily(final String name) throws PythiaException;
 
+    /**
+     * Gets budget which counts bytes occupied by column families of this
+     * keyspace.
+     *
+     * Limit of budget applies to all column families of keyspace.
+     *
+     * @return memory budget of keyspace
+     */
+    MemoryBudget getMemory();
+
     /**
      * Gets name of this keyspace, should be final and unique.
      *
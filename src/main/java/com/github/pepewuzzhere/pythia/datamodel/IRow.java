@@ -34,11 +34,15 @@ import java.nio.ByteBuffer;
  * similarity to table). Row has also a key that is used to find it in column
  * family.
  *
+ * Columns of row are iterated in no particular order. Iterator is weakly
+ * consistent - columns changed while iterating may or may not be seen - and
+ * doesn't remove columns.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
  */
-public interface IRow {
+public interface IRow extends Iterable<IColumn> {
 
     /**
      * Gets a key of row.
@@ -83,5 +87,39 @@ public interface IRow {
      * @throws PythiaException if column doesn't exists
      */
     void deleteColumn(final ByteBuffer key) throws PythiaException;
-    
-}
\ No newline at end of file
+
+    /**
+     * Sets value of column, column is created if doesn't exist.
+     *
+     * Operation is atomic - concurrent calls with the same key never fail and
+     * never create two columns.
+     *
+     * @param key key of column
+     * @param value new value of column
+     * @return previous value of column or null if column was created
+     */
+    ByteBuffer putColumn(final ByteBuffer key, final ByteBuffer value);
+
+    /**
+     * Gets view of columns with keys - other columns are neither read nor
+     * copied (see {@link RowSlice}). Row which changes several columns
+     * together may copy selected columns, so slice doesn't see part of
+     * change.
+     *
+     * @param keys keys of selected columns
+     * @return read only view of selected columns
+     * @throws IllegalArgumentException if any key is null
+     */
+    IRow select(final ByteBuffer... keys);
+
+    /**
+     * Gets view of columns with keys in range (see {@link RowSlice}). Like
+     * {@link #select} row may copy columns in range.
+     *
+     * @param from first key of range or null if unbounded
+     * @param to last key of range or null if unbounded
+     * @return read only view of columns in range
+     */
+    IRow slice(final ByteBuffer from, final ByteBuffer to);
+
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Order of row keys - bytes are compared lexicographically as unsigned values.
+ *
+ * <code>ByteBuffer.compareTo</code> compares signed bytes, so it can't be used
+ * to order keys of column families.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class KeyComparator implements Comparator<ByteBuffer> {
+
+    /**
+     * Shared instance - comparator has no state.
+     */
+    public static final KeyComparator INSTANCE = new KeyComparator();
+
+    private KeyComparator() {
+    }
+
+    /**
+     * Compares remaining bytes of buffers, positions are not changed.
+     *
+     * @param a first key
+     * @param b second key
+     * @return negative, zero or positive like <code>Comparable</code>
+     */
+    @Override
+    public int compare(final ByteBuffer a, final ByteBuffer b) {
+        final int length = Math.min(a.remaining(), b.remaining());
+        for (int i = 0; i < length; ++i) {
+            final int x = a.get(a.position() + i) & 0xff;
+            final int y = b.get(b.position() + i) & 0xff;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return a.remaining() - b.remaining();
+    }
+
+    /**
+     * Compares ranges of arrays.
+     *
+     * @param a first array
+     * @param aOffset start of first key
+     * @param aLength length of first key
+     * @param b second array
+     * @param bOffset start of second key
+     * @param bLength length of second key
+     * @return negative, zero or positive like <code>Comparable</code>
+     */
+    public static int compare(
+        final byte[] a, final int aOffset, final int aLength,
+        final byte[] b, final int bOffset, final int bLength
+    ) {
+        final int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; ++i) {
+            final int x = a[aOffset + i] & 0xff;
+            final int y = b[bOffset + i] & 0xff;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Checks if key is in range.
+     *
+     * @param key checked key
+     * @param from lower bound or null if unbounded
+     * @param inclusive is lower bound part of range
+     * @param to upper bound (exclusive) or null if unbounded
+     * @return true if key is in range
+     */
+    public boolean inRange(
+        final ByteBuffer key, final ByteBuffer from, final boolean inclusive,
+        final ByteBuffer to
+    ) {
+        if (from != null) {
+            final int c = compare(key, from);
+            if (c < 0 || (c == 0 && !inclusive)) {
+                return false;
+            }
+        }
+        return to == null || compare(key, to) < 0;
+    }
+}
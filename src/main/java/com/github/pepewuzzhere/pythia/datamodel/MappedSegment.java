@@ -0,0 +1,619 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable file of rows read through memory mapping.
+ *
+ * Rows are written sorted by key, every row as key, number of columns and
+ * columns sorted by key. Key and value are written as length ({@code int},
+ * -1 for null value) and bytes. Deleted row is written as key and -1
+ * columns. Rows are followed by index - position of every row
+ * ({@code long}) in order of keys - and trailer: position of index
+ * ({@code long}), number of rows ({@code int}) and magic number.
+ *
+ * Reader maps whole file, so row is found by binary search of index without
+ * reading file. Rows and columns are read only views of mapping and values
+ * are slices of it - nothing is copied to heap, pages are loaded by
+ * operating system when values are read. Segments are used as files of
+ * rows moved to disk by tiered column families.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class MappedSegment implements Iterable<IRow> {
+
+    private static final int MAGIC = 0x4d534731;
+    private static final int TRAILER_SIZE = 16;
+    private static final int DELETED = -1;
+    private static final String TMP = ".tmp";
+
+    private static final Comparator<IRow> ROW_ORDER = new Comparator<IRow>() {
+        @Override
+        public int compare(final IRow a, final IRow b) {
+            return KeyComparator.INSTANCE.compare(a.getKey(), b.getKey());
+        }
+    };
+
+    private static final Comparator<IColumn> COLUMN_ORDER =
+        new Comparator<IColumn>() {
+            @Override
+            public int compare(final IColumn a, final IColumn b) {
+                return KeyComparator.INSTANCE.compare(a.getKey(), b.getKey());
+            }
+        };
+
+    private final ByteBuffer map;
+    private final int index;
+    private final int size;
+
+    private MappedSegment(final ByteBuffer map, final int index, final int size)
+    {
+        this.map = map;
+        this.index = index;
+        this.size = size;
+    }
+
+    /**
+     * Writer of new segment, rows must be added in order of keys.
+     *
+     * Segment is written to temporary file which replaces file of segment
+     * on {@link #commit()}, closing uncommitted writer deletes it.
+     */
+    public static final class Writer implements Closeable {
+
+        private final File file;
+        private final File tmp;
+        private final FileOutputStream stream;
+        private final DataOutputStream out;
+        private long[] positions = new long[64];
+        private int count;
+        private long position;
+        private ByteBuffer lastKey;
+        private boolean finished;
+
+        /**
+         * Starts segment.
+         *
+         * @param file file of segment
+         * @throws IOException if temporary file couldn't be created
+         * @throws IllegalArgumentException if file is null
+         */
+        public Writer(final File file) throws IOException {
+            if (file == null) {
+                throw new IllegalArgumentException("File is required");
+            }
+            this.file = file;
+            tmp = new File(file.getPath() + TMP);
+            stream = new FileOutputStream(tmp);
+            out = new DataOutputStream(new BufferedOutputStream(stream));
+        }
+
+        /**
+         * Adds row, key must be greater than key of previous row.
+         *
+         * @param row added row
+         * @throws IOException if row couldn't be written
+         * @throws IllegalArgumentException if row is null or out of order
+         */
+        public void add(final IRow row) throws IOException {
+            if (row == null) {
+                throw new IllegalArgumentException("Row is required");
+            }
+            final List<IColumn> columns = new ArrayList<>();
+            for (IColumn column : row) {
+                columns.add(column);
+            }
+            Collections.sort(columns, COLUMN_ORDER);
+            start(row.getKey(), columns.size());
+            for (IColumn column : columns) {
+                position += write(out, column.getKey());
+                position += write(out, column.getValue());
+            }
+        }
+
+        /**
+         * Adds deleted row, key must be greater than key of previous row.
+         *
+         * @param key key of deleted row
+         * @throws IOException if row couldn't be written
+         * @throws IllegalArgumentException if key is null or out of order
+         */
+        public void delete(final ByteBuffer key) throws IOException {
+            start(key, DELETED);
+        }
+
+        /**
+         * Gets number of bytes of added rows.
+         *
+         * @return size of rows
+         */
+        public long size() {
+            return position;
+        }
+
+        /**
+         * Writes index and replaces file of segment.
+         *
+         * @throws IOException if segment couldn't be written
+         */
+        public void commit() throws IOException {
+            for (int i = 0; i < count; ++i) {
+                out.writeLong(positions[i]);
+            }
+            out.writeLong(position);
+            out.writeInt(count);
+            out.writeInt(MAGIC);
+            out.flush();
+            stream.getChannel().force(true);
+            out.close();
+            finished = true;
+            Files.move(
+                tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+            );
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                finished = true;
+                out.close();
+                tmp.delete();
+            }
+        }
+
+        private void start(final ByteBuffer key, final int columns)
+                throws IOException
+        {
+            if (key == null) {
+                throw new IllegalArgumentException("Key is required");
+            }
+            if (lastKey != null
+                && KeyComparator.INSTANCE.compare(lastKey, key) >= 0
+            ) {
+                throw new IllegalArgumentException(
+                        "Rows must be added in order of keys");
+            }
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+            position += write(out, key) + 4;
+            out.writeInt(columns);
+            lastKey = key;
+        }
+    }
+
+    /**
+     * Writes rows to segment file, file is replaced when it is complete.
+     *
+     * @param file file of segment
+     * @param rows rows in any order, keys must be unique
+     * @throws IOException if segment couldn't be written
+     * @throws IllegalArgumentException if file or rows are null
+     */
+    public static void write(final File file, final Iterable<IRow> rows)
+            throws IOException
+    {
+        if (file == null || rows == null) {
+            throw new IllegalArgumentException("File and rows are required");
+        }
+        final List<IRow> sorted = new ArrayList<>();
+        for (IRow row : rows) {
+            sorted.add(row);
+        }
+        Collections.sort(sorted, ROW_ORDER);
+        try (Writer out = new Writer(file)) {
+            for (IRow row : sorted) {
+                out.add(row);
+            }
+            out.commit();
+        }
+    }
+
+    /**
+     * Maps segment file.
+     *
+     * Mapping stays valid after file is closed or deleted.
+     *
+     * @param file file of segment
+     * @return opened segment
+     * @throws IOException if file is not complete segment or is bigger than
+     *                     2 GB
+     */
+    public static MappedSegment open(final File file) throws IOException {
+        try (
+            final FileChannel channel =
+                new RandomAccessFile(file, "r").getChannel()
+        ) {
+            final long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Segment is too big to map " + file);
+            }
+            if (length < TRAILER_SIZE) {
+                throw new IOException("Incomplete segment " + file);
+            }
+            final MappedByteBuffer map =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            final long index = map.getLong((int)length - TRAILER_SIZE);
+            final int size = map.getInt((int)length - TRAILER_SIZE + 8);
+            if (map.getInt((int)length - 4) != MAGIC
+                || index < 0 || size < 0
+                || index + 8L * size != length - TRAILER_SIZE
+            ) {
+                throw new IOException("Incomplete segment " + file);
+            }
+            return new MappedSegment(map, (int)index, size);
+        }
+    }
+
+    /**
+     * Checks if row of segment was written as deleted.
+     *
+     * @param row row read from segment
+     * @return true if row is deleted row without columns
+     */
+    public static boolean isDeleted(final IRow row) {
+        return row instanceof MappedRow && ((MappedRow)row).isDeleted();
+    }
+
+    /**
+     * Gets row by binary search of index.
+     *
+     * @param key key of row
+     * @return read only view of row or null if segment has no such row,
+     *         deleted rows are returned (see {@link #isDeleted(IRow)})
+     * @throws IllegalArgumentException if key is null
+     */
+    public IRow getRow(final ByteBuffer key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        final int row = find(key);
+        return row < size && KeyComparator.INSTANCE.compare(
+                keyOf(position(row)), key) == 0
+            ? new MappedRow(position(row))
+            : null;
+    }
+
+    /**
+     * Gets number of rows.
+     *
+     * @return number of rows in segment
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates rows in order of keys.
+     *
+     * @return iterator of read only views of rows
+     */
+    @Override
+    public Iterator<IRow> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Iterates rows in order of keys starting from key.
+     *
+     * @param from first key or null to iterate from first row
+     * @param inclusive is row with key <code>from</code> returned
+     * @return iterator of read only views of rows, deleted rows are returned
+     *         (see {@link #isDeleted(IRow)})
+     */
+    public Iterator<IRow> iterator(
+            final ByteBuffer from, final boolean inclusive)
+    {
+        if (from == null) {
+            return iterator(0);
+        }
+        int first = find(from);
+        if (!inclusive && first < size && KeyComparator.INSTANCE.compare(
+                keyOf(position(first)), from) == 0
+        ) {
+            ++first;
+        }
+        return iterator(first);
+    }
+
+    private Iterator<IRow> iterator(final int first) {
+        return new Iterator<IRow>() {
+
+            private int next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public IRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new MappedRow(position(next++));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /*
+     * Finds first row with key not less than key - returns size if there is
+     * no such row.
+     */
+    private int find(final ByteBuffer key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (KeyComparator.INSTANCE.compare(
+                    keyOf(position(mid)), key) < 0
+            ) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Writes length and bytes - returns number of written bytes.
+     */
+    private static int write(final DataOutputStream out, final ByteBuffer b)
+            throws IOException
+    {
+        if (b == null) {
+            out.writeInt(-1);
+            return 4;
+        }
+        final byte[] bytes = new byte[b.remaining()];
+        b.duplicate().get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    private int position(final int row) {
+        return (int)map.getLong(index + 8 * row);
+    }
+
+    private ByteBuffer keyOf(final int position) {
+        return view(position + 4, map.getInt(position));
+    }
+
+    /*
+     * Read only view of bytes of mapping.
+     */
+    private ByteBuffer view(final int position, final int length) {
+        final ByteBuffer b = map.duplicate();
+        b.limit(position + length).position(position);
+        return b.slice().asReadOnlyBuffer();
+    }
+
+    /*
+     * Row stored at position of mapping.
+     */
+    private final class MappedRow implements IRow {
+
+        private final int position;
+
+        MappedRow(final int position) {
+            this.position = position;
+        }
+
+        @Override
+        public ByteBuffer getKey() {
+            return keyOf(position);
+        }
+
+        boolean isDeleted() {
+            return map.getInt(position + 4 + map.getInt(position)) == DELETED;
+        }
+
+        @Override
+        public IColumn getColumn(final ByteBuffer key) {
+            for (IColumn column : this) {
+                final int c =
+                    KeyComparator.INSTANCE.compare(column.getKey(), key);
+                if (c == 0) {
+                    return column;
+                }
+                if (c > 0) {
+                    break;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Not supported - segment is read only.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public void addColumn(final IColumn column) {
+            throw new UnsupportedOperationException("Segment is read only");
+        }
+
+        /**
+         * Not supported - segment is read only.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public void updateColumn(final ByteBuffer key, final ByteBuffer value)
+        {
+            throw new UnsupportedOperationException("Segment is read only");
+        }
+
+        /**
+         * Not supported - segment is read only.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public void deleteColumn(final ByteBuffer key) {
+            throw new UnsupportedOperationException("Segment is read only");
+        }
+
+        /**
+         * Not supported - segment is read only.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public ByteBuffer putColumn(
+            final ByteBuffer key, final ByteBuffer value
+        ) {
+            throw new UnsupportedOperationException("Segment is read only");
+        }
+
+        @Override
+        public IRow select(final ByteBuffer... keys) {
+            return RowSlice.of(this, keys);
+        }
+
+        @Override
+        public IRow slice(final ByteBuffer from, final ByteBuffer to) {
+            return RowSlice.range(this, from, to);
+        }
+
+        @Override
+        public Iterator<IColumn> iterator() {
+            final int keyLength = map.getInt(position);
+            final int columns =
+                Math.max(0, map.getInt(position + 4 + keyLength));
+            final int first = position + 8 + keyLength;
+            return new Iterator<IColumn>() {
+
+                private int next;
+                private int at = first;
+
+                @Override
+                public boolean hasNext() {
+                    return next < columns;
+                }
+
+                @Override
+                public IColumn next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final MappedColumn column = new MappedColumn(at);
+                    at = column.end();
+                    ++next;
+                    return column;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return RowSlice.range(this, null, null).toString();
+        }
+    }
+
+    /*
+     * Column stored at position of mapping.
+     */
+    private final class MappedColumn implements IColumn {
+
+        private final int position;
+
+        MappedColumn(final int position) {
+            this.position = position;
+        }
+
+        @Override
+        public ByteBuffer getKey() {
+            return view(position + 4, map.getInt(position));
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * Value is read only slice of mapped segment.
+         */
+        @Override
+        public ByteBuffer getValue() {
+            final int value = position + 4 + map.getInt(position);
+            final int length = map.getInt(value);
+            return length >= 0 ? view(value + 4, length) : null;
+        }
+
+        /**
+         * Not supported - segment is read only.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public ByteBuffer setValue(final ByteBuffer value) {
+            throw new UnsupportedOperationException("Segment is read only");
+        }
+
+        /*
+         * Gets position of next column.
+         */
+        int end() {
+            final int value = position + 4 + map.getInt(position);
+            return value + 4 + Math.max(0, map.getInt(value));
+        }
+    }
+
+}
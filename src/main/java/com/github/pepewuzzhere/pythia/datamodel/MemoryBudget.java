@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of bytes occupied by data with optional limit.
+ *
+ * Budgets form tree: column family budget is attached to budget of its
+ * keyspace and keyspace budget to budget of database, so bytes allocated by
+ * column family are counted on every level. Each level could have own limit.
+ *
+ * Writers call {@link #awaitSpace(long)} before changing data - it blocks
+ * while this budget or any of its parents is over limit, giving readers and
+ * deletes time to release memory. Owner which is able to free memory on its
+ * own (e.g. by moving data to disk) sets reclaimer, which is run by writer
+ * before it starts waiting.
+ *
+ * Budget should be attached before its owner is used by other threads -
+ * bytes allocated concurrently with attaching could be counted twice.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class MemoryBudget {
+
+    /**
+     * Value of limit which means no limit.
+     */
+    public static final long UNLIMITED = 0;
+
+    private final AtomicLong used = new AtomicLong();
+    private volatile long limit;
+    private volatile MemoryBudget parent;
+    private volatile Runnable reclaimer;
+
+    /**
+     * Creates budget without limit.
+     */
+    public MemoryBudget() {
+        this(UNLIMITED);
+    }
+
+    /**
+     * Creates budget with limit.
+     *
+     * @param limit maximal number of bytes or {@link #UNLIMITED}
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public MemoryBudget(final long limit) {
+        setLimit(limit);
+    }
+
+    /**
+     * Counts allocated bytes in this budget and its parents.
+     *
+     * Allocation never fails, even if limit is exceeded.
+     *
+     * @param bytes number of allocated bytes, negative value releases bytes
+     */
+    public void allocate(final long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        used.addAndGet(bytes);
+        final MemoryBudget p = parent;
+        if (p != null) {
+            p.allocate(bytes);
+        }
+        if (bytes < 0 && limit != UNLIMITED) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Counts released bytes in this budget and its parents.
+     *
+     * @param bytes number of released bytes
+     */
+    public void release(final long bytes) {
+        allocate(-bytes);
+    }
+
+    /**
+     * Gets number of bytes counted by this budget.
+     *
+     * @return number of used bytes
+     */
+    public long getUsedBytes() {
+        return used.get();
+    }
+
+    /**
+     * Gets limit of this budget.
+     *
+     * @return maximal number of bytes or {@link #UNLIMITED}
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets limit of this budget - writers waiting for space are woken up.
+     *
+     * @param limit maximal number of bytes or {@link #UNLIMITED}
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public void setLimit(final long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        this.limit = limit;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Checks if this budget or any of its parents is over limit.
+     *
+     * @return is limit exceeded?
+     */
+    public boolean isExceeded() {
+        return exceeded() != null;
+    }
+
+    /**
+     * Waits until this budget and all its parents are within limits.
+     *
+     * @param timeout maximal time of waiting in milliseconds
+     * @return true if there is space, false if time elapsed
+     * @throws InterruptedException if thread was interrupted while waiting
+     */
+    public boolean awaitSpace(final long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(timeout);
+        final Runnable r = reclaimer;
+        if (r != null && isExceeded()) {
+            r.run();
+        }
+        MemoryBudget b = exceeded();
+        while (b != null) {
+            final long left = TimeUnit.NANOSECONDS.toMillis(
+                    deadline - System.nanoTime());
+            if (left <= 0) {
+                return false;
+            }
+            synchronized (b) {
+                if (b.isOverLimit()) {
+                    b.wait(left);
+                }
+            }
+            b = exceeded();
+        }
+        return true;
+    }
+
+    /**
+     * Sets task which releases memory counted by this budget.
+     *
+     * @param reclaimer task run by writers if budget is exceeded or null
+     */
+    public void setReclaimer(final Runnable reclaimer) {
+        this.reclaimer = reclaimer;
+    }
+
+    /**
+     * Attaches this budget to parent - used bytes are added to parent.
+     *
+     * @param parent budget of owner
+     * @throws IllegalArgumentException if parent is null
+     * @throws IllegalStateException if budget is already attached
+     */
+    public synchronized void attach(final MemoryBudget parent) {
+        if (parent == null) {
+            throw new IllegalArgumentException("Parent budget is required");
+        }
+        if (this.parent != null) {
+            throw new IllegalStateException("Budget is already attached");
+        }
+        this.parent = parent;
+        parent.allocate(used.get());
+    }
+
+    /**
+     * Detaches this budget from its parent - used bytes are subtracted from
+     * parent.
+     */
+    public synchronized void detach() {
+        final MemoryBudget p = parent;
+        if (p != null) {
+            parent = null;
+            p.release(used.get());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{\"used\": " + used.get() + ", \"limit\": " + limit + "}";
+    }
+
+    private boolean isOverLimit() {
+        final long l = limit;
+        return l != UNLIMITED && used.get() > l;
+    }
+
+    /*
+     * Finds first budget over limit - this or one of parents.
+     */
+    private MemoryBudget exceeded() {
+        for (MemoryBudget b = this; b != null; b = b.parent) {
+            if (b.isOverLimit()) {
+                return b;
+            }
+        }
+        return null;
+    }
+}
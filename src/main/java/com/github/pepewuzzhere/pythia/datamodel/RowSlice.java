@@ -0,0 +1,295 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read only view of some columns of row (see {@link IRow#select} and
+ * {@link IRow#slice}).
+ *
+ * Slice doesn't copy columns - they are read from row when slice is
+ * iterated, so its cost depends on number of selected columns, not on size of
+ * row. Columns selected by keys are iterated in order of keys, columns of
+ * range in order of row. Keys of range are compared as unsigned bytes (see
+ * {@link KeyComparator}) and both bounds are part of range.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class RowSlice implements IRow {
+
+    private final IRow row;
+
+    /*
+     * Keys of selected columns, null if columns are selected by range.
+     */
+    private final ByteBuffer[] keys;
+
+    private final ByteBuffer from;
+    private final ByteBuffer to;
+
+    private RowSlice(
+        final IRow row, final ByteBuffer[] keys, final ByteBuffer from,
+        final ByteBuffer to
+    ) {
+        if (row == null) {
+            throw new IllegalArgumentException("Row is required");
+        }
+        this.row  = row;
+        this.keys = keys;
+        this.from = from;
+        this.to   = to;
+    }
+
+    /**
+     * Creates view of columns with keys.
+     *
+     * @param row sliced row
+     * @param keys keys of selected columns
+     * @return slice of row
+     * @throws IllegalArgumentException if row or any key is null
+     */
+    public static RowSlice of(final IRow row, final ByteBuffer... keys) {
+        for (ByteBuffer key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Key is required");
+            }
+        }
+        return new RowSlice(row, keys.clone(), null, null);
+    }
+
+    /**
+     * Creates view of columns with keys in range.
+     *
+     * @param row sliced row
+     * @param from first key of range or null if unbounded
+     * @param to last key of range or null if unbounded
+     * @return slice of row
+     * @throws IllegalArgumentException if row is null
+     */
+    public static RowSlice range(
+        final IRow row, final ByteBuffer from, final ByteBuffer to
+    ) {
+        return new RowSlice(row, null, from, to);
+    }
+
+    @Override
+    public ByteBuffer getKey() {
+        return row.getKey();
+    }
+
+    @Override
+    public IColumn getColumn(final ByteBuffer key) {
+        return contains(key) ? row.getColumn(key) : null;
+    }
+
+    /**
+     * Not supported - slice is read only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addColumn(final IColumn column) {
+        throw new UnsupportedOperationException("Slice of row is read only");
+    }
+
+    /**
+     * Not supported - slice is read only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void updateColumn(final ByteBuffer key, final ByteBuffer value) {
+        throw new UnsupportedOperationException("Slice of row is read only");
+    }
+
+    /**
+     * Not supported - slice is read only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void deleteColumn(final ByteBuffer key) {
+        throw new UnsupportedOperationException("Slice of row is read only");
+    }
+
+    /**
+     * Not supported - slice is read only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public ByteBuffer putColumn(final ByteBuffer key, final ByteBuffer value) {
+        throw new UnsupportedOperationException("Slice of row is read only");
+    }
+
+    @Override
+    public IRow select(final ByteBuffer... keys) {
+        return of(this, keys);
+    }
+
+    @Override
+    public IRow slice(final ByteBuffer from, final ByteBuffer to) {
+        return range(this, from, to);
+    }
+
+    @Override
+    public Iterator<IColumn> iterator() {
+        return keys != null ? new KeysIterator() : new RangeIterator();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder ret = new StringBuilder();
+        ret.append("{\"").append(text(row.getKey())).append("\":{");
+        for (Iterator<IColumn> it = iterator(); it.hasNext();) {
+            final IColumn c = it.next();
+            final ByteBuffer value = c.getValue();
+            ret.append("\"").append(text(c.getKey())).append("\":\"");
+            if (value != null) {
+                ret.append(text(value));
+            }
+            ret.append("\"");
+            if (it.hasNext()) {
+                ret.append(",");
+            }
+        }
+        return ret.append("}}").toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof RowSlice) {
+            final RowSlice s = (RowSlice)obj;
+            return row.equals(s.row)
+                && Arrays.equals(keys, s.keys)
+                && (from != null ? from.equals(s.from) : null == s.from)
+                && (to != null ? to.equals(s.to) : null == s.to);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 29 * hash + row.hashCode();
+        hash = 29 * hash + Arrays.hashCode(keys);
+        hash = 29 * hash + (from != null ? from.hashCode() : 0);
+        hash = 29 * hash + (to != null ? to.hashCode() : 0);
+        return hash;
+    }
+
+    private boolean contains(final ByteBuffer key) {
+        if (keys != null) {
+            for (ByteBuffer k : keys) {
+                if (k.equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return (from == null || KeyComparator.INSTANCE.compare(key, from) >= 0)
+            && (to == null || KeyComparator.INSTANCE.compare(key, to) <= 0);
+    }
+
+    private static String text(final ByteBuffer bytes) {
+        final byte[] b = new byte[bytes.remaining()];
+        bytes.duplicate().get(b);
+        return new String(b);
+    }
+
+    /*
+     * Finds selected columns one by one, columns missing in row are skipped.
+     */
+    private final class KeysIterator implements Iterator<IColumn> {
+
+        private int index;
+        private IColumn next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && index < keys.length) {
+                next = row.getColumn(keys[index++]);
+            }
+            return next != null;
+        }
+
+        @Override
+        public IColumn next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final IColumn column = next;
+            next = null;
+            return column;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*
+     * Skips columns of row out of range.
+     */
+    private final class RangeIterator implements Iterator<IColumn> {
+
+        private final Iterator<IColumn> columns = row.iterator();
+        private IColumn next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && columns.hasNext()) {
+                final IColumn column = columns.next();
+                if (contains(column.getKey())) {
+                    next = column;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public IColumn next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final IColumn column = next;
+            next = null;
+            return column;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
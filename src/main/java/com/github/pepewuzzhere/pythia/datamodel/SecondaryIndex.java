@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Inverted index from value of column to keys of rows.
+ *
+ * Rows are not aware of column family, so index is not updated by rows.
+ * Column family calls {@link #update(ByteBuffer, Lookup)} for every changed
+ * row - current value of column is read under lock of index, so updates of
+ * the same row made concurrently never leave stale entry in index.
+ *
+ * Only name of indexed column is serialized, entries are rebuilt by column
+ * family when its rows are read.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class SecondaryIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Reads indexed values from column family.
+     */
+    public interface Lookup {
+
+        /**
+         * Gets value of column.
+         *
+         * @param key key of row
+         * @param columnKey key of column
+         * @return value of column or null if row or column doesn't exists
+         */
+        ByteBuffer getValue(ByteBuffer key, ByteBuffer columnKey);
+    }
+
+    private final byte[] columnKey;
+
+    private transient Map<ByteBuffer, NavigableSet<ByteBuffer>> rows;
+    private transient Map<ByteBuffer, ByteBuffer> values;
+
+    /**
+     * Creates empty index of column.
+     *
+     * @param columnKey key of indexed column
+     * @throws IllegalArgumentException if column key is empty
+     */
+    public SecondaryIndex(final ByteBuffer columnKey) {
+        if (columnKey == null || !columnKey.hasRemaining()) {
+            throw new IllegalArgumentException("Column key is required");
+        }
+        this.columnKey = copy(columnKey).array();
+        init();
+    }
+
+    private void init() {
+        rows = new HashMap<>();
+        values = new HashMap<>();
+    }
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        init();
+    }
+
+    /**
+     * Gets key of indexed column.
+     *
+     * @return key of column
+     */
+    public ByteBuffer getColumnKey() {
+        return ByteBuffer.wrap(columnKey).asReadOnlyBuffer();
+    }
+
+    /**
+     * Checks if this index is index of column.
+     *
+     * @param key key of column
+     * @return true if column is indexed by this index
+     */
+    public boolean isIndexOf(final ByteBuffer key) {
+        return key != null && ByteBuffer.wrap(columnKey).equals(key);
+    }
+
+    /**
+     * Reads value of column in row and indexes row by it.
+     *
+     * @param key key of changed row
+     * @param lookup reader of current value
+     */
+    public synchronized void update(final ByteBuffer key, final Lookup lookup) {
+        put(key, lookup.getValue(key, getColumnKey()));
+    }
+
+    /**
+     * Indexes row by value, row without value or with empty value is
+     * removed from index.
+     *
+     * @param key key of row
+     * @param value value of indexed column or null
+     */
+    public synchronized void put(final ByteBuffer key, final ByteBuffer value) {
+        if (value != null && !value.hasRemaining()) {
+            put(key, null);
+            return;
+        }
+        final ByteBuffer old = values.get(key);
+        if (old != null ? old.equals(value) : value == null) {
+            return;
+        }
+        final ByteBuffer k = copy(key);
+        if (old != null) {
+            final NavigableSet<ByteBuffer> keys = rows.get(old);
+            keys.remove(k);
+            if (keys.isEmpty()) {
+                rows.remove(old);
+            }
+        }
+        if (value == null) {
+            values.remove(k);
+            return;
+        }
+        final ByteBuffer v = copy(value);
+        values.put(k, v);
+        NavigableSet<ByteBuffer> keys = rows.get(v);
+        if (keys == null) {
+            keys = new TreeSet<>(KeyComparator.INSTANCE);
+            rows.put(v, keys);
+        }
+        keys.add(k);
+    }
+
+    /**
+     * Gets keys of rows with value of column.
+     *
+     * @param value value of indexed column
+     * @return keys of rows in order of {@link KeyComparator}
+     */
+    public synchronized List<ByteBuffer> find(final ByteBuffer value) {
+        final NavigableSet<ByteBuffer> keys =
+                value != null ? rows.get(value) : null;
+        if (keys == null) {
+            return new ArrayList<>(0);
+        }
+        final List<ByteBuffer> result = new ArrayList<>(keys.size());
+        for (ByteBuffer k : keys) {
+            result.add(k.duplicate());
+        }
+        return result;
+    }
+
+    /**
+     * Gets number of indexed rows.
+     *
+     * @return number of rows with value of column
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /*
+     * Copies remaining bytes - caller could reuse buffer.
+     */
+    private static ByteBuffer copy(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel.
+ *
+ * Wheel has {@link #LEVELS} levels of {@link #BUCKETS} buckets. Bucket of
+ * level 0 spans one tick, bucket of every next level spans whole previous
+ * level. Timer is put to the lowest level whose span covers its delay, so
+ * scheduling is O(1). When time advances, buckets of passed ticks are
+ * emptied - due timers are returned and other timers cascade to lower
+ * levels. Every timer cascades at most {@link #LEVELS} times, so expiration
+ * is O(1) amortized and never scans all timers.
+ *
+ * Timers are not cancelled, owner should ignore items which are not valid
+ * any more. Wheel is not thread safe - owner is responsible for locking.
+ *
+ * @param <T> type of scheduled items
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class TimerWheel<T> {
+
+    /**
+     * Number of buckets in one level.
+     */
+    static final int BUCKETS = 64;
+
+    /**
+     * Number of levels.
+     */
+    static final int LEVELS = 5;
+
+    private static final int BUCKET_BITS = 6;
+
+    private final int tickBits;
+    private final Node<T>[][] wheel;
+
+    private long time;
+    private int size;
+
+    /**
+     * Creates empty wheel.
+     *
+     * @param tickBits length of tick - <code>2^tickBits</code> milliseconds
+     * @param now current time in milliseconds
+     * @throws IllegalArgumentException if tick is invalid
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(final int tickBits, final long now) {
+        if (tickBits < 0 || tickBits + BUCKET_BITS * LEVELS > 62) {
+            throw new IllegalArgumentException("Invalid length of tick");
+        }
+        this.tickBits = tickBits;
+        wheel = new Node[LEVELS][BUCKETS];
+        time = now;
+    }
+
+    /**
+     * Schedules item.
+     *
+     * Item is returned by first {@link #advance(long, List)} which passes
+     * tick of its deadline, at most one tick late.
+     *
+     * @param item scheduled item
+     * @param deadline time of expiration in milliseconds
+     */
+    void schedule(final T item, final long deadline) {
+        final long delay = deadline - time;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << shift(level + 1)) {
+            level++;
+        }
+        long tick = deadline >>> shift(level);
+        if (level == 0) {
+            // buckets of current tick were already emptied
+            tick = Math.max(tick, (time >>> tickBits) + 1);
+        }
+        final int bucket = (int)(tick & (BUCKETS - 1));
+        wheel[level][bucket] = new Node<>(item, deadline, wheel[level][bucket]);
+        size++;
+    }
+
+    /**
+     * Moves time of wheel forward.
+     *
+     * @param now current time in milliseconds
+     * @param expired list which receives due items
+     */
+    void advance(final long now, final List<? super T> expired) {
+        if (now <= time) {
+            return;
+        }
+        final long previous = time;
+        time = now;
+        for (int level = 0; level < LEVELS; ++level) {
+            final long from = previous >>> shift(level);
+            final long to = now >>> shift(level);
+            if (from == to) {
+                // higher levels didn't move too
+                break;
+            }
+            final long passed = Math.min(to - from, BUCKETS);
+            for (long tick = from + 1; tick <= from + passed; ++tick) {
+                final int bucket = (int)(tick & (BUCKETS - 1));
+                Node<T> node = wheel[level][bucket];
+                wheel[level][bucket] = null;
+                while (node != null) {
+                    size--;
+                    if (node.deadline <= now) {
+                        expired.add(node.item);
+                    } else {
+                        schedule(node.item, node.deadline);
+                    }
+                    node = node.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets time of last advance.
+     *
+     * @return time in milliseconds
+     */
+    long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets time when next tick begins.
+     *
+     * @return time in milliseconds
+     */
+    long nextTick() {
+        return ((time >>> tickBits) + 1) << tickBits;
+    }
+
+    /**
+     * Gets number of scheduled items.
+     *
+     * @return number of items
+     */
+    int size() {
+        return size;
+    }
+
+    private int shift(final int level) {
+        return tickBits + BUCKET_BITS * level;
+    }
+
+    private static final class Node<T> {
+
+        private final T item;
+        private final long deadline;
+        private final Node<T> next;
+
+        Node(final T item, final long deadline, final Node<T> next) {
+            this.item = item;
+            this.deadline = deadline;
+            this.next = next;
+        }
+    }
+}
@@ -24,22 +24,33 @@
 
 package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
+import com.github.pepewuzzhere.pythia.datamodel.KeyComparator;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
  * Wrapper for byte array, using to comparing in <code>HashMap</code>.
  *
+ * Wrapper could be a view of array owned by someone else (see
+ * {@link #view(ByteBuffer)}), so lookups in maps don't copy key bytes. Hash is
+ * computed once and cached. Wrappers are ordered like
+ * {@link com.github.pepewuzzhere.pythia.datamodel.KeyComparator}.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
  */
-final class ByteArrayWrapper implements Serializable {
+final class ByteArrayWrapper
+        implements Comparable<ByteArrayWrapper>, Serializable {
 
     /*
      * Byte array data of this wrapper.
      */
     private final byte[] data;
+    private final int offset;
+    private final int length;
+    private final int hash;
 
     private static final long serialVersionUID = 1L;
 
@@ -50,28 +61,104 @@ final class ByteArrayWrapper implements Serializable {
      * @throws IllegalArgumentException if byte array is empty or null
      */
     ByteArrayWrapper(final byte[] data) {
-        if (data == null || data.length == 0) {
+        this(
+            data != null ? Arrays.copyOf(data, data.length) : null,
+            0, data != null ? data.length : 0
+        );
+    }
+
+    private ByteArrayWrapper(
+        final byte[] data, final int offset, final int length
+    ) {
+        if (data == null || length == 0) {
+            throw new IllegalArgumentException(
+                    "Byte array is required and must be not empty");
+        }
+        this.data   = data;
+        this.offset = offset;
+        this.length = length;
+        int h = 1;
+        for (int i = offset; i < offset + length; ++i) {
+            h = 31 * h + data[i];
+        }
+        this.hash = h;
+    }
+
+    /**
+     * Creates wrapper sharing bytes with buffer - without copying.
+     *
+     * Buffer content must not be changed as long as wrapper is used, so it's
+     * designed for lookup keys and for keys of immutable rows and columns.
+     *
+     * @param buffer buffer to wrap, remaining bytes are used
+     * @return wrapper of buffer content
+     * @throws IllegalArgumentException if buffer is empty or null
+     */
+    static ByteArrayWrapper view(final ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException(
+                    "Byte array is required and must be not empty");
+        }
+        if (!buffer.hasArray()) {
+            final byte[] copy = new byte[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            return new ByteArrayWrapper(copy, 0, copy.length);
+        }
+        return new ByteArrayWrapper(
+            buffer.array(), buffer.arrayOffset() + buffer.position(),
+            buffer.remaining()
+        );
+    }
+
+    /**
+     * Creates wrapper of copy of buffer content - bytes are copied once.
+     *
+     * @param buffer buffer to copy, remaining bytes are used
+     * @return wrapper owning its bytes
+     * @throws IllegalArgumentException if buffer is empty or null
+     */
+    static ByteArrayWrapper copyOf(final ByteBuffer buffer) {
+        if (buffer == null) {
             throw new IllegalArgumentException(
                     "Byte array is required and must be not empty");
         }
-        this.data = Arrays.copyOf(data, data.length);
+        final byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return new ByteArrayWrapper(copy, 0, copy.length);
     }
 
     public byte[] getData() {
-        return Arrays.copyOf(data, data.length);
+        return Arrays.copyOfRange(data, offset, offset + length);
     }
 
     @Override
     public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
         if (!(other instanceof ByteArrayWrapper)) {
             return false;
         }
-        return Arrays.equals(data, ((ByteArrayWrapper)other).getData());
+        final ByteArrayWrapper o = (ByteArrayWrapper)other;
+        if (hash != o.hash || length != o.length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (data[offset + i] != o.data[o.offset + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(data);
+        return hash;
     }
-}
 
+    @Override
+    public int compareTo(final ByteArrayWrapper o) {
+        return KeyComparator.compare(
+            data, offset, length, o.data, o.offset, o.length);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Row which reports changes made through
+ * {@link com.github.pepewuzzhere.pythia.datamodel.IRow} to its column family.
+ *
+ * Column family tracks keys of changed rows and updates secondary indexes,
+ * so changes made directly on row taken from it must reach it.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+interface ChangeAware {
+
+    /**
+     * Receives keys of changed rows.
+     */
+    interface Listener {
+
+        /**
+         * Called after columns of row were changed.
+         *
+         * @param key key of changed row
+         */
+        void changed(final ByteBuffer key);
+    }
+
+    /**
+     * Sets listener of changes of this row.
+     *
+     * Changes made by column family itself (batches, increments) are not
+     * reported - column family handles them.
+     *
+     * @param listener listener of column family or null if row is detached
+     */
+    void setListener(final Listener listener);
+}
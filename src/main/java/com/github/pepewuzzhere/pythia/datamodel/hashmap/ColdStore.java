@@ -0,0 +1,447 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.KeyComparator;
+import com.github.pepewuzzhere.pythia.datamodel.MappedSegment;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Files with rows evicted from memory by tiered column family.
+ *
+ * Evicted rows are collected in memory and written together as
+ * {@link MappedSegment} when there are {@link #MAX_PENDING} of them, so
+ * only rows of last segment are kept on heap. Rows are found by binary
+ * search of segments from the newest one - nothing but list of segments is
+ * kept in memory. Removed row is written as deleted row of segment, which
+ * hides row of older segments.
+ *
+ * Segments are merged while the newest one isn't smaller than the previous
+ * one, so there are logarithmic number of segments and every row is
+ * rewritten logarithmic number of times. Replaced rows are dropped by
+ * merge, deleted rows when the oldest segment is merged.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class ColdStore {
+
+    /**
+     * Number of evicted rows written together as one segment.
+     */
+    static final int MAX_PENDING = 1024;
+
+    /*
+     * Segments are not merged above this size - mapping is limited to 2 GB.
+     */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private static final Comparator<Cursor> CURSOR_ORDER =
+        new Comparator<Cursor>() {
+            @Override
+            public int compare(final Cursor a, final Cursor b) {
+                final int c = KeyComparator.INSTANCE.compare(a.key, b.key);
+                return c != 0 ? c : Integer.compare(a.age, b.age);
+            }
+        };
+
+    /*
+     * Segment of store and its file.
+     */
+    private static final class Run {
+        final File file;
+        final MappedSegment segment;
+
+        Run(final File file, final MappedSegment segment) {
+            this.file = file;
+            this.segment = segment;
+        }
+    }
+
+    /*
+     * Position in rows of one source of merge - row is null if it was
+     * deleted. Sources with smaller age are newer.
+     */
+    private static final class Cursor {
+        final Iterator<Map.Entry<ByteBuffer, IRow>> source;
+        final int age;
+        ByteBuffer key;
+        IRow row;
+
+        Cursor(
+            final Iterator<Map.Entry<ByteBuffer, IRow>> source, final int age
+        ) {
+            this.source = source;
+            this.age = age;
+        }
+
+        boolean advance() {
+            if (!source.hasNext()) {
+                return false;
+            }
+            final Map.Entry<ByteBuffer, IRow> e = source.next();
+            key = e.getKey();
+            row = e.getValue();
+            return true;
+        }
+    }
+
+    /*
+     * Newest state of every key of sources in order of keys.
+     */
+    private static final class Merge
+            implements Iterator<Map.Entry<ByteBuffer, IRow>>
+    {
+        private final PriorityQueue<Cursor> cursors;
+
+        Merge(final List<Iterator<Map.Entry<ByteBuffer, IRow>>> sources) {
+            cursors = new PriorityQueue<>(
+                    Math.max(1, sources.size()), CURSOR_ORDER);
+            for (int i = 0; i < sources.size(); ++i) {
+                final Cursor c = new Cursor(sources.get(i), i);
+                if (c.advance()) {
+                    cursors.add(c);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursors.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<ByteBuffer, IRow> next() {
+            final Cursor newest = cursors.poll();
+            if (newest == null) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<ByteBuffer, IRow> entry =
+                    new AbstractMap.SimpleImmutableEntry<>(
+                            newest.key, newest.row);
+            // older states of key are skipped
+            while (!cursors.isEmpty() && KeyComparator.INSTANCE.compare(
+                    cursors.peek().key, newest.key) == 0
+            ) {
+                final Cursor older = cursors.poll();
+                if (older.advance()) {
+                    cursors.add(older);
+                }
+            }
+            if (newest.advance()) {
+                cursors.add(newest);
+            }
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final int maxPending;
+
+    /*
+     * Rows waiting for segment, null for deleted row.
+     */
+    private final TreeMap<ByteBuffer, IRow> pending =
+            new TreeMap<>(KeyComparator.INSTANCE);
+
+    /*
+     * Segments from the newest one.
+     */
+    private final List<Run> runs = new ArrayList<>();
+
+    /**
+     * Creates empty store, files are created in temporary directory and
+     * deleted on exit.
+     */
+    ColdStore() {
+        this(MAX_PENDING);
+    }
+
+    /**
+     * Creates empty store which writes segments of given number of rows.
+     *
+     * @param maxPending number of rows of segment
+     * @throws IllegalArgumentException if number of rows is not positive
+     */
+    ColdStore(final int maxPending) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of rows must be positive");
+        }
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Stores row.
+     *
+     * Row is written later with other rows - it must not be changed.
+     *
+     * @param key key of row
+     * @param row evicted row
+     * @throws IOException if segment couldn't be written
+     */
+    synchronized void put(final ByteBuffer key, final IRow row)
+            throws IOException
+    {
+        pending.put(copy(key), row);
+        flushIfNeeded();
+    }
+
+    /**
+     * Reads row.
+     *
+     * @param key key of row
+     * @return read only row or null if row isn't stored
+     */
+    synchronized IRow get(final ByteBuffer key) {
+        if (pending.containsKey(key)) {
+            return pending.get(key);
+        }
+        for (Run run : runs) {
+            final IRow row = run.segment.getRow(key);
+            if (row != null) {
+                return MappedSegment.isDeleted(row) ? null : row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes row.
+     *
+     * @param key key of row
+     * @return removed read only row or null if row isn't stored
+     * @throws IOException if segment couldn't be written
+     */
+    synchronized IRow remove(final ByteBuffer key) throws IOException {
+        final IRow row = get(key);
+        if (row == null) {
+            return null;
+        }
+        if (runs.isEmpty()) {
+            pending.remove(key);
+        } else {
+            // row of segment is hidden by deleted row
+            pending.put(copy(key), null);
+            flushIfNeeded();
+        }
+        return row;
+    }
+
+    /**
+     * Iterates stored rows in order of keys.
+     *
+     * Iterator reads rows stored when it was created, rows stored or
+     * removed later are not visible.
+     *
+     * @param from first key or null to iterate from first row
+     * @param inclusive is row with key <code>from</code> returned
+     * @return iterator of read only rows
+     */
+    synchronized Iterator<IRow> rows(
+            final ByteBuffer from, final boolean inclusive)
+    {
+        final List<Iterator<Map.Entry<ByteBuffer, IRow>>> sources =
+                new ArrayList<>(runs.size() + 1);
+        sources.add(new TreeMap<>(from != null
+                ? pending.tailMap(from, inclusive)
+                : pending
+        ).entrySet().iterator());
+        for (Run run : runs) {
+            sources.add(entries(run.segment.iterator(from, inclusive)));
+        }
+        final Merge merge = new Merge(sources);
+        return new Iterator<IRow>() {
+
+            private IRow next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && merge.hasNext()) {
+                    next = merge.next().getValue();
+                }
+                return next != null;
+            }
+
+            @Override
+            public IRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final IRow row = next;
+                next = null;
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Gets number of segments.
+     *
+     * @return number of segment files
+     */
+    synchronized int getSegments() {
+        return runs.size();
+    }
+
+    /**
+     * Gets size of files.
+     *
+     * @return number of bytes in files of segments
+     */
+    synchronized long getFileBytes() {
+        long bytes = 0;
+        for (Run run : runs) {
+            bytes += run.file.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Deletes files.
+     */
+    synchronized void close() {
+        pending.clear();
+        for (Run run : runs) {
+            run.file.delete();
+        }
+        runs.clear();
+    }
+
+    /*
+     * Writes pending rows as the newest segment and merges segments.
+     */
+    private void flushIfNeeded() throws IOException {
+        if (pending.size() < maxPending) {
+            return;
+        }
+        final List<Iterator<Map.Entry<ByteBuffer, IRow>>> sources =
+                new ArrayList<>(1);
+        sources.add(pending.entrySet().iterator());
+        runs.add(0, write(sources, runs.isEmpty()));
+        pending.clear();
+        while (runs.size() > 1
+            && runs.get(0).segment.size() >= runs.get(1).segment.size()
+            && runs.get(0).file.length() + runs.get(1).file.length()
+                < MAX_SEGMENT_BYTES
+        ) {
+            final Run newer = runs.get(0);
+            final Run older = runs.get(1);
+            sources.clear();
+            sources.add(entries(newer.segment.iterator()));
+            sources.add(entries(older.segment.iterator()));
+            runs.set(1, write(sources, runs.size() == 2));
+            runs.remove(0);
+            // mappings of deleted files stay valid for open iterators
+            newer.file.delete();
+            older.file.delete();
+        }
+    }
+
+    /*
+     * Writes merge of sources as new segment - deleted rows are dropped if
+     * there are no older segments.
+     */
+    private static Run write(
+        final List<Iterator<Map.Entry<ByteBuffer, IRow>>> sources,
+        final boolean oldest
+    ) throws IOException {
+        final File file = File.createTempFile("pythia", ".cold");
+        file.deleteOnExit();
+        try (MappedSegment.Writer out = new MappedSegment.Writer(file)) {
+            for (Merge rows = new Merge(sources); rows.hasNext();) {
+                final Map.Entry<ByteBuffer, IRow> row = rows.next();
+                if (row.getValue() != null) {
+                    out.add(row.getValue());
+                } else if (!oldest) {
+                    out.delete(row.getKey());
+                }
+            }
+            out.commit();
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return new Run(file, MappedSegment.open(file));
+    }
+
+    /*
+     * Rows of segment as keys and rows, null for deleted rows.
+     */
+    private static Iterator<Map.Entry<ByteBuffer, IRow>> entries(
+            final Iterator<IRow> rows)
+    {
+        return new Iterator<Map.Entry<ByteBuffer, IRow>>() {
+
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Map.Entry<ByteBuffer, IRow> next() {
+                final IRow row = rows.next();
+                return new AbstractMap.SimpleImmutableEntry<>(
+                        row.getKey(),
+                        MappedSegment.isDeleted(row) ? null : row);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /*
+     * Copies remaining bytes - caller could reuse buffer.
+     */
+    private static ByteBuffer copy(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -24,7 +24,16 @@
 
 package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.BlockCodec;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.ICompressedColumn;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -33,14 +42,59 @@ import java.util.Arrays;
  * Implements {@link IColumn} interface for adaptation to use in
  * <code>java.util.HashMap</code> collection.
  *
+ * Column incremented with {@link #add(long)} becomes counter - its value is
+ * kept in {@link StripedCounter} until it is set again, and it is serialized
+ * as 8 bytes of folded sum (see {@link Counters}).
+ *
+ * Value bigger than compression threshold (see {@link #setCompression(int)})
+ * is kept compressed by {@link BlockCodec} if it gets smaller. It is
+ * decompressed on every read and serialized in compressed form, snapshots
+ * read and set compressed block as it is.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  */
-class Column implements IColumn, Serializable {
+class Column implements ICompressedColumn, MemoryAware, Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private final byte[] key;
-    private byte[] value;
+    /*
+     * Estimated size of column object, arrays headers and map entry.
+     */
+    private static final int OVERHEAD = 120;
+
+    /**
+     * @serialField key byte[] key of column
+     * @serialField value byte[] value or its compressed block
+     * @serialField compressed boolean true if value is compressed
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("key", byte[].class),
+        new ObjectStreamField("value", byte[].class),
+        new ObjectStreamField("compressed", boolean.class)
+    };
+
+    /*
+     * Not final - set by readObject.
+     */
+    private byte[] key;
+
+    /*
+     * Value array or Compressed block - one field, so readers never see
+     * block without its flag.
+     */
+    private volatile Object value;
+
+    /*
+     * Values bigger than threshold are compressed, 0 turns compression off.
+     */
+    private volatile int compressAbove;
+
+    private transient volatile MemoryBudget memory;
+
+    /*
+     * Cells of counter column, null if column is not incremented.
+     */
+    private transient volatile StripedCounter counter;
 
     /**
      * Constructor requires key because <code>Column</code> must have one, only
@@ -66,21 +120,228 @@ class Column implements IColumn, Serializable {
 
     @Override
     public ByteBuffer getValue() {
-        if (value != null) {
-            return ByteBuffer.wrap(value);
+        final byte[] v = read();
+        if (v != null) {
+            return ByteBuffer.wrap(v);
         } else {
             return null;
         }
     }
 
     @Override
-    public ByteBuffer setValue(final ByteBuffer value) {
-        ByteBuffer oldValue = null;
-        if (this.value != null) {
-            oldValue = ByteBuffer.wrap(this.value);
+    public synchronized ByteBuffer setValue(final ByteBuffer value) {
+        final byte[] old = read();
+        final long change = replaceValue(value != null ? value.array() : null);
+        final MemoryBudget m = memory;
+        if (m != null) {
+            m.allocate(change);
+        }
+        return old != null ? ByteBuffer.wrap(old) : null;
+    }
+
+    @Override
+    public ByteBuffer getCompressedValue() {
+        final Object v = value;
+        return counter == null && v instanceof Compressed
+                ? ByteBuffer.wrap(((Compressed)v).block)
+                : null;
+    }
+
+    /**
+     * Sets compressed block as value, it is kept compressed regardless of
+     * threshold.
+     *
+     * @param block block written by {@link BlockCodec#compress(byte[])}
+     */
+    synchronized void setCompressedValue(final byte[] block) {
+        final int before = length(value);
+        value = new Compressed(block);
+        counter = null;
+        final MemoryBudget m = memory;
+        if (m != null) {
+            m.allocate(length(value) - before);
+        }
+    }
+
+    /**
+     * Sets value without counting it in memory budget - caller counts
+     * change of value size.
+     *
+     * @param value new value or null
+     * @return change of number of bytes occupied by value
+     */
+    synchronized long replaceValue(final byte[] value) {
+        final int before = length(this.value);
+        this.value = encode(value);
+        counter = null;
+        return length(this.value) - before;
+    }
+
+    /**
+     * Sets size of value (in bytes) above which value is compressed and
+     * compresses current value if it is bigger.
+     *
+     * Change of value size is not counted in memory budget, threshold
+     * should be set before column is added to row.
+     *
+     * @param threshold size of value, 0 turns compression off
+     */
+    synchronized void setCompression(final int threshold) {
+        compressAbove = threshold;
+        final Object v = value;
+        if (v instanceof byte[]) {
+            value = encode((byte[])v);
+        }
+    }
+
+    /**
+     * Checks if value is kept compressed.
+     *
+     * @return true if value is compressed
+     */
+    boolean isCompressed() {
+        return value instanceof Compressed;
+    }
+
+    /**
+     * Adds delta to value of counter column.
+     *
+     * First increment turns column into counter, next increments don't lock
+     * column. Missing value is counted as 0.
+     *
+     * @param delta added value, may be negative
+     * @throws PythiaException if value of column is not counter
+     */
+    void add(final long delta) throws PythiaException {
+        StripedCounter c = counter;
+        if (c == null) {
+            c = inflate();
+        }
+        c.add(delta);
+    }
+
+    @Override
+    public long getBytes() {
+        return OVERHEAD + key.length + length(value);
+    }
+
+    @Override
+    public void setMemory(final MemoryBudget memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Estimates number of bytes occupied by any column.
+     *
+     * @param column column of row
+     * @return number of bytes
+     */
+    static long bytesOf(final IColumn column) {
+        if (column instanceof MemoryAware) {
+            return ((MemoryAware)column).getBytes();
+        }
+        final ByteBuffer v = column.getValue();
+        return OVERHEAD + column.getKey().remaining()
+                + (v != null ? v.remaining() : 0);
+    }
+
+    /**
+     * Serializes this Column instance.
+     *
+     * @serialData Key and value arrays, value of counter is folded to
+     *             8 bytes, compressed value is written as compressed block
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        final StripedCounter c = counter;
+        final Object v = c != null ? Counters.encode(c.sum()) : value;
+        final ObjectOutputStream.PutField fields = s.putFields();
+        fields.put("key", key);
+        if (v instanceof Compressed) {
+            fields.put("value", ((Compressed)v).block);
+            fields.put("compressed", true);
+        } else {
+            fields.put("value", (byte[])v);
+            fields.put("compressed", false);
+        }
+        s.writeFields();
+    }
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        final ObjectInputStream.GetField fields = s.readFields();
+        key = (byte[])fields.get("key", null);
+        final byte[] v = (byte[])fields.get("value", null);
+        value = fields.get("compressed", false) && v != null
+                ? new Compressed(v)
+                : v;
+    }
+
+    /*
+     * Reads value or current sum of counter.
+     */
+    private byte[] read() {
+        final StripedCounter c = counter;
+        return c != null ? Counters.encode(c.sum()) : decode(value);
+    }
+
+    /*
+     * Compresses value if it is bigger than threshold and gets smaller.
+     */
+    private Object encode(final byte[] v) {
+        final int threshold = compressAbove;
+        if (v != null && threshold > 0 && v.length > threshold) {
+            final byte[] block = BlockCodec.compress(v);
+            if (block.length < v.length) {
+                return new Compressed(block);
+            }
+        }
+        return v;
+    }
+
+    private static byte[] decode(final Object v) {
+        return v instanceof Compressed
+                ? BlockCodec.decompress(((Compressed)v).block)
+                : (byte[])v;
+    }
+
+    /*
+     * Creates cells of counter - value stays in column with size of counter,
+     * so size of column doesn't change while it is incremented.
+     */
+    private synchronized StripedCounter inflate() throws PythiaException {
+        if (counter == null) {
+            final byte[] v = decode(value);
+            final long initial = Counters.decode(v);
+            if (v == null) {
+                value = Counters.encode(0);
+                final MemoryBudget m = memory;
+                if (m != null) {
+                    m.allocate(Counters.SIZE);
+                }
+            }
+            counter = new StripedCounter(initial);
+        }
+        return counter;
+    }
+
+    private static int length(final Object v) {
+        if (v instanceof Compressed) {
+            return ((Compressed)v).block.length;
+        }
+        return v != null ? ((byte[])v).length : 0;
+    }
+
+    /*
+     * Compressed block of value.
+     */
+    private static final class Compressed {
+
+        final byte[] block;
+
+        Compressed(final byte[] block) {
+            this.block = block;
         }
-        this.value = value.array();
-        return oldValue;
     }
 
     @Override
@@ -97,7 +358,7 @@ class Column implements IColumn, Serializable {
                     &&
 
                 (c.getValue() != null
-                    ? Arrays.equals(value, c.getValue().array())
+                    ? Arrays.equals(read(), c.getValue().array())
                     : null == c.getValue()
                  );
         } else {
@@ -109,7 +370,7 @@ class Column implements IColumn, Serializable {
     public int hashCode() {
         int hash = 3;
         hash = 67 * hash + Arrays.hashCode(this.key);
-        hash = 67 * hash + Arrays.hashCode(this.value);
+        hash = 67 * hash + Arrays.hashCode(read());
         return hash;
     }
 
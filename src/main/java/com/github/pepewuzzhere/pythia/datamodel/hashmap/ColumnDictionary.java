@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of column names shared by rows of one column family.
+ *
+ * Every name gets small integer id. {@link PackedRow} stores ids instead of
+ * name bytes and {@link Row} shares one array of name bytes between all its
+ * columns with the same name. Dictionary is serialized once with column
+ * family, rows serialized later in the same stream refer to it.
+ *
+ * Names are never removed - dictionary is designed for schema-like sets of
+ * column names. To keep names built from data from growing it without end,
+ * dictionary takes at most {@link #MAX_NAMES} names; later names get no id
+ * and rows keep them as raw bytes ({@link PackedRow} switches to hashed
+ * layout for them). Unused names are dropped when column family is read
+ * from snapshot, which builds new dictionary from names of stored rows.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class ColumnDictionary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Id returned for name not found in dictionary.
+     */
+    static final int NOT_FOUND = -1;
+
+    /**
+     * Default maximal number of names in dictionary.
+     */
+    static final int MAX_NAMES = 1 << 16;
+
+    private transient int maxNames;
+
+    private transient ConcurrentMap<ByteArrayWrapper, Integer> ids;
+    private transient volatile byte[][] names;
+    private transient int size;
+
+    /**
+     * Creates empty dictionary of at most {@link #MAX_NAMES} names.
+     */
+    ColumnDictionary() {
+        this(MAX_NAMES);
+    }
+
+    /**
+     * Creates empty dictionary with limit of names.
+     *
+     * @param maxNames maximal number of names
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    ColumnDictionary(final int maxNames) {
+        if (maxNames <= 0) {
+            throw new IllegalArgumentException(
+                    "Limit of names must be positive");
+        }
+        this.maxNames = maxNames;
+        init();
+    }
+
+    private void init() {
+        ids = new ConcurrentHashMap<>();
+        names = new byte[16][];
+        size = 0;
+    }
+
+    /**
+     * Serializes this ColumnDictionary instance.
+     *
+     * @serialData Number of names ({@code int}), followed by sequence of
+     *             names ordered by id: length ({@code int}) and name bytes
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        synchronized (this) {
+            s.writeInt(size);
+            for (int i = 0; i < size; ++i) {
+                s.writeInt(names[i].length);
+                s.write(names[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        maxNames = MAX_NAMES;
+        init();
+        final int count = s.readInt();
+        for (int i = 0; i < count; ++i) {
+            final byte[] name = new byte[s.readInt()];
+            s.readFully(name);
+            if (add(name, true) != i) {
+                throw new InvalidObjectException("Duplicate column name");
+            }
+        }
+    }
+
+    /**
+     * Gets id of name, name is added if it's not in dictionary yet.
+     *
+     * @param name column name
+     * @return id of name or {@link #NOT_FOUND} if dictionary is full
+     * @throws IllegalArgumentException if name is null or empty
+     */
+    int intern(final ByteBuffer name) {
+        final Integer id = ids.get(ByteArrayWrapper.view(name));
+        if (id != null) {
+            return id;
+        }
+        final byte[] copy = new byte[name.remaining()];
+        name.duplicate().get(copy);
+        return add(copy, false);
+    }
+
+    /**
+     * Gets id of name without adding it.
+     *
+     * @param name column name
+     * @return id of name or {@link #NOT_FOUND}
+     */
+    int id(final ByteBuffer name) {
+        if (name == null || !name.hasRemaining()) {
+            return NOT_FOUND;
+        }
+        final Integer id = ids.get(ByteArrayWrapper.view(name));
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * Gets name with given id.
+     *
+     * Returned array is shared - it must not be changed.
+     *
+     * @param id id of name
+     * @return name bytes
+     */
+    byte[] name(final int id) {
+        return names[id];
+    }
+
+    /**
+     * Gets canonical instance of name - buffer wrapping shared name bytes.
+     *
+     * @param name column name
+     * @return buffer with name bytes shared by all callers or name itself
+     *         if dictionary is full
+     */
+    ByteBuffer canonical(final ByteBuffer name) {
+        final int id = intern(name);
+        return id != NOT_FOUND ? ByteBuffer.wrap(names[id]) : name;
+    }
+
+    /**
+     * Gets number of names in dictionary.
+     *
+     * @return number of names
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /*
+     * Adds name - limit is not checked for names of serialized dictionary,
+     * ids of stored rows refer to them.
+     */
+    private synchronized int add(final byte[] name, final boolean stored) {
+        // name is private copy of caller, so wrapper may share it
+        final ByteArrayWrapper key =
+                ByteArrayWrapper.view(ByteBuffer.wrap(name));
+        final Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (size >= maxNames && !stored) {
+            return NOT_FOUND;
+        }
+        byte[][] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        // name is stored before its id is published
+        current[size] = name;
+        names = current;
+        ids.put(key, size);
+        return size++;
+    }
+}
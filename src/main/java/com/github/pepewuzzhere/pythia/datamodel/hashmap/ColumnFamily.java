@@ -26,24 +26,72 @@ package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
 import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.Expiry;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.KeyComparator;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import com.github.pepewuzzhere.pythia.datamodel.SecondaryIndex;
 import java.io.IOException;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Adaptation of {@link com.github.pepewuzzhere.pythia.datamodel.IColumnFamily}
  * using <code>java.util.HashMap</code>.
  *
+ * Ordered column family (see {@link ColumnFamilyOptions#isOrdered()}) keeps
+ * rows in <code>ConcurrentSkipListMap</code>, so key ranges are read without
+ * scanning whole column family. Rows created by packed column family (see
+ * {@link ColumnFamilyOptions#isPacked()}) are {@link PackedRow}s.
+ * Hashed rows of compressed column family (see
+ * {@link ColumnFamilyOptions#isCompressed()}) keep big values compressed,
+ * values of packed rows are never compressed.
+ *
+ * Tiered column family (see {@link ColumnFamilyOptions#isTiered()}) keeps in
+ * memory at most {@link ColumnFamilyOptions#getHotRows()} rows, and fewer if
+ * its memory budget is exceeded. Other rows are moved to {@link ColdStore}
+ * in order of {@link SegmentedLru} and loaded back on first use. Row is
+ * moved to disk with its lock and changes made by column family take the
+ * lock of row which is still in memory, so row moved meanwhile is loaded
+ * again and change is retried. Rows taken from tiered column family should
+ * not be kept - changes made directly through {@link IRow} after row was
+ * moved to disk are lost.
+ *
+ * Deadlines of rows and columns with time to live are kept in
+ * {@link Expiry}. Every operation on row first removes its expired data and
+ * lets timer wheel remove data of other rows which expired meanwhile.
+ *
+ * Keys of rows changed since column family was saved are tracked, so
+ * storage could write only changed rows (see
+ * {@link #writeChanges(ObjectOutputStream)}), and {@link SecondaryIndex}es
+ * are updated with them. Rows of column family report changes made through
+ * {@link IRow} (see {@link ChangeAware}) - only values set directly through
+ * {@link IColumn} of hashed row and changes of rows added from other data
+ * models have to be reported by {@link #setDirty(ByteBuffer)}.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
@@ -52,29 +100,177 @@ class ColumnFamily implements IColumnFamily, Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private transient Map<ByteArrayWrapper, IRow> rows;
-    private transient boolean isDirty;
+    static final Comparator<IRow> ROW_ORDER = new Comparator<IRow>() {
+        @Override
+        public int compare(final IRow a, final IRow b) {
+            return KeyComparator.INSTANCE.compare(a.getKey(), b.getKey());
+        }
+    };
+
+    private final ColumnFamilyOptions options;
+
+    /*
+     * Names of columns shared by rows - not final because snapshots written
+     * before dictionary was introduced do not contain it.
+     */
+    private ColumnDictionary dictionary;
+
+    /*
+     * Deadlines of rows and columns - null in snapshots written before time
+     * to live was introduced.
+     */
+    private Expiry expiry;
+
+    /*
+     * Indexes of column values - null in snapshots written before indexes
+     * were introduced. Only indexed columns are saved, entries are rebuilt
+     * while rows are read.
+     */
+    private CopyOnWriteArrayList<SecondaryIndex> indexes;
+
+    private transient ConcurrentMap<ByteArrayWrapper, IRow> rows;
+    private transient MemoryBudget memory;
+    private transient Expiry.Reclaimer reclaimer;
+    private transient SecondaryIndex.Lookup lookup;
+    private transient ChangeAware.Listener listener;
+    private transient volatile boolean isDirty;
+    private transient Set<ByteArrayWrapper> changed;
+
+    /*
+     * Tiers of rows - policy is null if column family is not tiered, store is
+     * created on first eviction. Moves between tiers are guarded by lock.
+     */
+    private transient SegmentedLru<ByteArrayWrapper> hot;
+    private transient ColdStore cold;
+    private transient Object coldLock;
+
+    /*
+     * Change of one row applied by column family.
+     */
+    private interface RowChange {
+
+        /*
+         * Changes row - called with lock of row of tiered column family.
+         */
+        void applyTo(IRow row) throws PythiaException;
+    }
 
     /**
      * Creates new column family and sets this as dirty - should be saved to
      * disc.
      */
     ColumnFamily() {
+        this(new ColumnFamilyOptions());
+    }
+
+    /**
+     * Creates new column family with options and sets this as dirty.
+     *
+     * @param options options of column family
+     * @throws IllegalArgumentException if options are null
+     */
+    ColumnFamily(final ColumnFamilyOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options are required");
+        }
+        this.options = options;
+        dictionary = new ColumnDictionary();
+        expiry = new Expiry();
+        indexes = new CopyOnWriteArrayList<>();
+        init();
         isDirty = true;
-        rows = new ConcurrentHashMap<>();
+    }
+
+    private void init() {
+        rows = createRows();
+        changed = Collections.newSetFromMap(
+                new ConcurrentHashMap<ByteArrayWrapper, Boolean>());
+        memory = new MemoryBudget();
+        reclaimer = new Expiry.Reclaimer() {
+            @Override
+            public void expired(
+                    final ByteBuffer key, final ByteBuffer columnKey)
+            {
+                removeExpired(key, columnKey);
+            }
+        };
+        lookup = new SecondaryIndex.Lookup() {
+            @Override
+            public ByteBuffer getValue(
+                    final ByteBuffer key, final ByteBuffer columnKey)
+            {
+                final IRow row = peekRow(key);
+                return row != null ? valueOf(row, columnKey) : null;
+            }
+        };
+        listener = new ChangeAware.Listener() {
+            @Override
+            public void changed(final ByteBuffer key) {
+                setDirty(key);
+            }
+        };
+        if (getOptions().isTiered()) {
+            hot = new SegmentedLru<>(getOptions().getHotRows());
+            coldLock = new Object();
+            memory.setReclaimer(new Runnable() {
+                @Override
+                public void run() {
+                    reclaimMemory();
+                }
+            });
+        }
     }
 
     /**
      * Serializes this ColumnFamily instance.
      *
-     * @serialData The size of the list ({@code int}), followed by sequence
-     *             of rows {@link Row}
+     * @serialData Dictionary of column names, the size of the list
+     *             ({@code int}), followed by sequence of rows {@link Row} -
+     *             rows from memory and rows from disk. Size of tiered
+     *             column family is -1 and its rows are followed by null.
      */
     private void writeObject(ObjectOutputStream s) throws IOException {
         s.defaultWriteObject();
-        s.writeInt(rows.size());
-        for (Map.Entry<ByteArrayWrapper, IRow> r : rows.entrySet()) {
-            s.writeObject(r.getValue());
+        if (hot == null) {
+            s.writeInt(rows.size());
+            for (Map.Entry<ByteArrayWrapper, IRow> r : rows.entrySet()) {
+                s.writeObject(r.getValue());
+            }
+            return;
+        }
+        // rows are read by keys without lock of tiers - number of rows
+        // which weren't deleted meanwhile isn't known in advance
+        s.writeInt(-1);
+        for (Iterator<ByteBuffer> keys = keys(); keys.hasNext();) {
+            final IRow row = peekRow(keys.next());
+            if (row != null) {
+                s.writeObject(row);
+            }
+        }
+        s.writeObject(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Keys of tiered column family are taken at once and rows are read one
+     * by one without blocking moves between tiers - rows on disk are read as
+     * copies, rows deleted meanwhile are skipped.
+     */
+    @Override public void visitRows(final RowVisitor visitor)
+            throws IOException
+    {
+        if (hot == null) {
+            for (IRow row : rows.values()) {
+                visitor.visit(row);
+            }
+            return;
+        }
+        for (Iterator<ByteBuffer> keys = keys(); keys.hasNext();) {
+            final IRow row = peekRow(keys.next());
+            if (row != null) {
+                visitor.visit(row);
+            }
         }
     }
 
@@ -82,15 +278,36 @@ class ColumnFamily implements IColumnFamily, Serializable {
         throws IOException, ClassNotFoundException
     {
         s.defaultReadObject();
+        if (dictionary == null) {
+            dictionary = new ColumnDictionary();
+        }
+        if (expiry == null) {
+            expiry = new Expiry();
+        }
+        if (indexes == null) {
+            indexes = new CopyOnWriteArrayList<>();
+        }
         int size = s.readInt();
 
-        rows = new ConcurrentHashMap<>();
-        for (int i = 0; i < size; i++) {
+        init();
+        for (int i = 0; size < 0 || i < size; i++) {
             final IRow row = (IRow)s.readObject();
-            if (rows.containsKey(toKey(row.getKey()))) {
+            if (row == null) {
+                // end of rows of tiered column family
+                break;
+            }
+            if (hot != null) {
+                // move rows to disk while reading - data may not fit in heap
+                synchronized (coldLock) {
+                    makeRoom(1);
+                }
+            }
+            if (rows.putIfAbsent(toKey(row.getKey()), row) != null) {
                 throw new InvalidObjectException("Duplicate key of row");
-            } else {
-                rows.put(toKey(row.getKey()), row);
+            }
+            attach(row);
+            for (SecondaryIndex index : indexes) {
+                index.put(row.getKey(), valueOf(row, index.getColumnKey()));
             }
         }
         setClean();
@@ -104,17 +321,77 @@ class ColumnFamily implements IColumnFamily, Serializable {
         if (row == null) {
             throw new IllegalArgumentException("Row is required");
         }
-        if (rows.containsKey(toKey(row.getKey()))) {
+        reclaim(row.getKey());
+        if (!putRow(row)) {
             throw new PythiaException(PythiaError.KEY_ALREADY_EXISTS);
-        } else {
-            rows.put(toKey(row.getKey()), row);
         }
-        setDirty();
+        setDirty(row.getKey());
     }
 
     @Override
     public IRow getRow(ByteBuffer key) {
-        return rows.get(toKey(key));
+        reclaim(key);
+        return findRow(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public IRow getOrCreateRow(final ByteBuffer key) {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        reclaim(key);
+        return findOrCreateRow(key);
+    }
+
+    /*
+     * Gets row or adds new one without removing expired data.
+     */
+    private IRow findOrCreateRow(final ByteBuffer key) {
+        IRow row = findRow(key);
+        if (row == null && hot != null) {
+            final IRow created = createRow(key);
+            synchronized (coldLock) {
+                row = load(key);
+                if (row != null) {
+                    return row;
+                }
+                makeRoom(1);
+                rows.put(toKey(created.getKey()), created);
+                attach(created);
+            }
+            setDirty(key);
+            return created;
+        }
+        if (row == null) {
+            final IRow created = createRow(key);
+            row = rows.putIfAbsent(toKey(created.getKey()), created);
+            if (row == null) {
+                attach(created);
+                setDirty(key);
+                return created;
+            }
+        }
+        return row;
+    }
+
+    /*
+     * Gets row without removing expired data.
+     */
+    private IRow findRow(final ByteBuffer key) {
+        final IRow row = rows.get(toKey(key));
+        if (hot == null) {
+            return row;
+        }
+        if (row != null) {
+            hot.touch(toKey(key));
+            return row;
+        }
+        synchronized (coldLock) {
+            return load(key);
+        }
     }
 
     /**
@@ -130,37 +407,412 @@ class ColumnFamily implements IColumnFamily, Serializable {
         ) {
             throw new IllegalArgumentException("Key is required");
         }
-        if (rows.containsKey(toKey(key))) {
-            final IColumn col = rows.get(toKey(key)).getColumn(columnKey);
-            if (col != null) {
+        reclaim(key);
+        final boolean found = change(key, false, new RowChange() {
+            @Override
+            public void applyTo(final IRow row) throws PythiaException {
+                final IColumn col = row.getColumn(columnKey);
+                if (col == null) {
+                    throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+                }
                 col.setValue(columnValue);
-            } else {
-                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
             }
-        } else {
+        });
+        if (!found) {
             throw new PythiaException(PythiaError.DATA_NOT_FOUND);
         }
-        setDirty();
+        setDirty(key);
     }
 
     @Override
     public void deleteRow(final ByteBuffer key) throws PythiaException {
-        if (rows.containsKey(toKey(key))) {
-            rows.remove(toKey(key));
-        } else {
+        reclaim(key);
+        if (removeRow(key) == null) {
             throw new PythiaException(PythiaError.DATA_NOT_FOUND);
         }
+        expiry.remove(key);
+        setDirty(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if batch is null
+     */
+    @Override public void apply(final Batch batch) throws PythiaException {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch is required");
+        }
+        for (Batch.RowMutation mutation : batch.getRows()) {
+            apply(mutation);
+        }
+    }
+
+    /**
+     * Applies mutations of one row.
+     *
+     * @param mutation mutations of row
+     * @throws PythiaException if row which is not created doesn't exist
+     */
+    void apply(final Batch.RowMutation mutation) throws PythiaException {
+        final ByteBuffer key = mutation.getKey();
+        reclaim(key);
+        if (mutation.isDeleted()) {
+            if (!mutation.isCreated() && mutation.isModified()) {
+                // mutations of deleted row
+                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+            }
+            if (removeRow(key) != null) {
+                expiry.remove(key);
+                setDirty(key);
+            }
+            if (!mutation.isModified()) {
+                return;
+            }
+        }
+        final RowChange change = new RowChange() {
+            @Override
+            public void applyTo(final IRow row) throws PythiaException {
+                applyMutation(row, mutation);
+            }
+        };
+        if (!change(key, mutation.isCreated(), change)) {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        if (!mutation.getDeadlines().isEmpty()) {
+            final long now = System.currentTimeMillis();
+            for (Map.Entry<ByteBuffer, Long> d
+                    : mutation.getDeadlines().entrySet()
+            ) {
+                expiry.setDeadline(
+                    key, d.getKey(),
+                    d.getValue() != 0 ? now + d.getValue() : Expiry.NEVER
+                );
+            }
+        }
+        setDirty(key);
+    }
+
+    /*
+     * Applies column mutations and increments to row.
+     */
+    private static void applyMutation(
+        final IRow row, final Batch.RowMutation mutation
+    ) throws PythiaException {
+        if (row instanceof PackedRow) {
+            ((PackedRow)row).apply(
+                mutation.getColumns(), mutation.getRemovedColumns());
+        } else if (row instanceof Row) {
+            ((Row)row).apply(
+                mutation.getColumns(), mutation.getRemovedColumns());
+        } else {
+            mutation.applyTo(row);
+        }
+        if (row instanceof PackedRow || row instanceof Row) {
+            // counters are incremented in place, without locking row
+            for (Map.Entry<ByteBuffer, Long> i
+                    : mutation.getIncrements().entrySet()
+            ) {
+                if (row instanceof PackedRow) {
+                    ((PackedRow)row).increment(i.getKey(), i.getValue());
+                } else {
+                    ((Row)row).increment(i.getKey(), i.getValue());
+                }
+            }
+        } else {
+            mutation.incrementIn(row);
+        }
+    }
+
+    /*
+     * Changes row, creating it if <code>create</code> is set - returns false
+     * if row doesn't exist. Row of tiered column family is changed with its
+     * lock only while it is in memory - row moved to disk before lock was
+     * taken is loaded again, so change isn't made to row which was written.
+     */
+    private boolean change(
+        final ByteBuffer key, final boolean create, final RowChange change
+    ) throws PythiaException {
+        while (true) {
+            final IRow row = create ? findOrCreateRow(key) : findRow(key);
+            if (row == null) {
+                return false;
+            }
+            if (hot == null) {
+                change.applyTo(row);
+                return true;
+            }
+            synchronized (row) {
+                if (rows.get(toKey(key)) == row) {
+                    change.applyTo(row);
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if column key is empty
+     */
+    @Override public void createIndex(final ByteBuffer columnKey)
+            throws PythiaException
+    {
+        final SecondaryIndex index = new SecondaryIndex(columnKey);
+        synchronized (indexes) {
+            if (findIndex(columnKey) != null) {
+                throw new PythiaException(PythiaError.KEY_ALREADY_EXISTS);
+            }
+            indexes.add(index);
+        }
+        // rows changed meanwhile are indexed by setDirty - index reads
+        // current value, so order of updates doesn't matter
+        for (Iterator<ByteBuffer> keys = keys(); keys.hasNext();) {
+            index.update(keys.next(), lookup);
+        }
         setDirty();
     }
 
+    @Override
+    public List<IRow> getIndexedRows(
+        final ByteBuffer columnKey, final ByteBuffer value
+    ) throws PythiaException {
+        final SecondaryIndex index = findIndex(columnKey);
+        if (index == null) {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        final List<ByteBuffer> keys = index.find(value);
+        final List<IRow> result = new ArrayList<>(keys.size());
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        for (ByteBuffer key : keys) {
+            if (expiry.purge(key, now, reclaimer)) {
+                continue;
+            }
+            // row could change after index was read
+            final IRow row = findRow(key);
+            if (row != null && value.equals(valueOf(row, columnKey))) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty or ttl is negative
+     */
+    @Override public void expire(
+        final ByteBuffer key, final ByteBuffer columnKey, final long ttl
+    ) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException(
+                    "Time to live must not be negative");
+        }
+        expiry.setDeadline(
+            key, columnKey,
+            ttl != 0 ? System.currentTimeMillis() + ttl : Expiry.NEVER
+        );
+        setDirty(key);
+    }
+
+    @Override
+    public long getDeadline(final ByteBuffer key, final ByteBuffer columnKey) {
+        return expiry.getDeadline(key, columnKey);
+    }
+
+    @Override
+    public List<ByteBuffer> getIndexedColumns() {
+        final List<ByteBuffer> keys = new ArrayList<>(indexes.size());
+        for (SecondaryIndex index : indexes) {
+            keys.add(index.getColumnKey());
+        }
+        return keys;
+    }
+
+    @Override
+    public MemoryBudget getMemory() {
+        return memory;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    @Override public List<IRow> getRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    ) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        final List<IRow> result = new ArrayList<>(Math.min(limit, 64));
+        ByteBuffer start = from;
+        boolean include = inclusive;
+        // rows expired by timer wheel are removed before they are found,
+        // later only rows in page are checked
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        while (true) {
+            // expired rows are removed - read more to fill the page
+            final int wanted = limit - result.size();
+            final List<IRow> found = findRows(start, include, to, wanted);
+            for (IRow row : found) {
+                if (!expiry.purge(row.getKey(), now, reclaimer)) {
+                    result.add(row);
+                }
+            }
+            if (found.size() < wanted || result.size() == limit) {
+                return result;
+            }
+            start = found.get(found.size() - 1).getKey();
+            include = false;
+        }
+    }
+
+    /*
+     * Gets rows in range without removing expired data.
+     */
+    private List<IRow> findRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    ) {
+        if (hot != null) {
+            return getTieredRows(from, inclusive, to, limit);
+        }
+        if (rows instanceof ConcurrentNavigableMap) {
+            ConcurrentNavigableMap<ByteArrayWrapper, IRow> range =
+                    (ConcurrentNavigableMap<ByteArrayWrapper, IRow>)rows;
+            if (from != null) {
+                range = range.tailMap(toKey(from), inclusive);
+            }
+            if (to != null) {
+                range = range.headMap(toKey(to), false);
+            }
+            final List<IRow> result = new ArrayList<>(Math.min(limit, 64));
+            for (IRow row : range.values()) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(row);
+            }
+            return result;
+        }
+
+        // unordered - scan all rows
+        final List<IRow> result = new ArrayList<>();
+        for (IRow row : rows.values()) {
+            if (KeyComparator.INSTANCE.inRange(
+                    row.getKey(), from, inclusive, to)
+            ) {
+                result.add(row);
+            }
+        }
+        Collections.sort(result, ROW_ORDER);
+        return result.size() > limit
+                ? new ArrayList<>(result.subList(0, limit))
+                : result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Ordered column family iterates rows in order of keys. Rows of tiered
+     * column family in memory are iterated first, rows on disk are then read
+     * one by one without loading them back to memory - rows moved between
+     * tiers while iterating may be skipped or returned twice.
+     */
+    @Override public Iterator<IRow> iterator() {
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        return new RowIterator(now);
+    }
+
+    /*
+     * Weakly consistent iterator over rows of map and then over rows of cold
+     * store, expired rows are removed and skipped.
+     */
+    private final class RowIterator implements Iterator<IRow> {
+
+        private final long now;
+        private final Iterator<IRow> hotRows = rows.values().iterator();
+        private Iterator<IRow> coldRows;
+        private IRow next;
+
+        RowIterator(final long now) {
+            this.now = now;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                IRow row = null;
+                if (hotRows.hasNext()) {
+                    row = hotRows.next();
+                } else if (hot != null) {
+                    if (coldRows == null) {
+                        synchronized (coldLock) {
+                            coldRows = coldRows(null, true);
+                        }
+                    }
+                    if (!coldRows.hasNext()) {
+                        return false;
+                    }
+                    // row could be loaded and changed meanwhile
+                    row = peekRow(coldRows.next().getKey());
+                } else {
+                    return false;
+                }
+                if (row != null
+                    && !expiry.purge(row.getKey(), now, reclaimer)
+                ) {
+                    next = row;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public IRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final IRow row = next;
+            next = null;
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Moves rows to disk while memory budget is exceeded - does nothing if
+     * column family is not tiered.
+     */
+    void reclaimMemory() {
+        if (hot != null) {
+            synchronized (coldLock) {
+                makeRoom(0);
+            }
+        }
+    }
+
+    @Override
+    public ColumnFamilyOptions getOptions() {
+        return options != null ? options : new ColumnFamilyOptions();
+    }
+
     @Override
     public boolean isDirty() {
-        return isDirty;
+        return isDirty || !changed.isEmpty();
     }
 
     @Override
     public void setClean() {
         isDirty = false;
+        changed.clear();
     }
 
     @Override
@@ -168,6 +820,95 @@ class ColumnFamily implements IColumnFamily, Serializable {
         isDirty = true;
     }
 
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public void setDirty(final ByteBuffer key) {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        // caller could reuse buffer - key is copied
+        changed.add(ByteArrayWrapper.copyOf(key));
+        for (SecondaryIndex index : indexes) {
+            index.update(key, lookup);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Rows are written as cold store records, rows of other data models as
+     * objects.
+     */
+    @Override public boolean writeChanges(final ObjectOutputStream out)
+            throws IOException
+    {
+        final List<ByteBuffer> keys = takeChanges();
+        if (keys == null) {
+            return false;
+        }
+        for (ByteBuffer key : keys) {
+            out.writeObject(key.array());
+            writeChange(key, out);
+        }
+        out.writeObject(null);
+        return true;
+    }
+
+    @Override
+    public void readChanges(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        for (byte[] key = (byte[])in.readObject(); key != null;
+                key = (byte[])in.readObject()
+        ) {
+            readChange(ByteBuffer.wrap(key), in);
+        }
+    }
+
+    @Override
+    public List<ByteBuffer> takeChanges() {
+        if (isDirty) {
+            return null;
+        }
+        final List<ByteBuffer> keys = new ArrayList<>();
+        for (Iterator<ByteArrayWrapper> it = changed.iterator();
+                it.hasNext();
+        ) {
+            // key is removed before row is read - change made meanwhile sets
+            // row as dirty again
+            keys.add(ByteBuffer.wrap(it.next().getData()));
+            it.remove();
+        }
+        return keys;
+    }
+
+    @Override
+    public void writeChange(final ByteBuffer key, final ObjectOutputStream out)
+            throws IOException
+    {
+        out.writeObject(readChange(toKey(key)));
+        expiry.writeDeadlines(key, out);
+    }
+
+    @Override
+    public void readChange(final ByteBuffer key, final ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        final Object data = in.readObject();
+        removeRow(key);
+        if (data != null) {
+            putRow(data instanceof byte[]
+                    ? fromRecord((byte[])data)
+                    : (IRow)data);
+        }
+        for (SecondaryIndex index : indexes) {
+            index.update(key, lookup);
+        }
+        expiry.readDeadlines(key, in);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof ColumnFamily) {
@@ -195,16 +936,475 @@ class ColumnFamily implements IColumnFamily, Serializable {
         return new HashMap<>(rows);
     }
 
+    /*
+     * Gets index of column or null if column is not indexed.
+     */
+    private SecondaryIndex findIndex(final ByteBuffer columnKey) {
+        for (SecondaryIndex index : indexes) {
+            if (index.isIndexOf(columnKey)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Iterates keys of rows in memory and on disk. Keys of both tiers are
+     * taken at once with lock of tiers, keys on disk are read from segments
+     * after lock is released.
+     */
+    private Iterator<ByteBuffer> keys() {
+        final List<ByteBuffer> hotKeys = new ArrayList<>(rows.size());
+        if (hot == null) {
+            for (ByteArrayWrapper k : rows.keySet()) {
+                hotKeys.add(ByteBuffer.wrap(k.getData()));
+            }
+            return hotKeys.iterator();
+        }
+        final Iterator<IRow> coldRows;
+        synchronized (coldLock) {
+            for (ByteArrayWrapper k : rows.keySet()) {
+                hotKeys.add(ByteBuffer.wrap(k.getData()));
+            }
+            coldRows = coldRows(null, true);
+        }
+        final Iterator<ByteBuffer> memoryKeys = hotKeys.iterator();
+        return new Iterator<ByteBuffer>() {
+
+            @Override
+            public boolean hasNext() {
+                return memoryKeys.hasNext() || coldRows.hasNext();
+            }
+
+            @Override
+            public ByteBuffer next() {
+                return memoryKeys.hasNext()
+                        ? memoryKeys.next()
+                        : coldRows.next().getKey();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /*
+     * Iterates rows on disk in order of keys - called with cold lock.
+     */
+    private Iterator<IRow> coldRows(
+            final ByteBuffer from, final boolean inclusive)
+    {
+        return cold != null
+                ? cold.rows(from, inclusive)
+                : Collections.<IRow>emptyIterator();
+    }
+
+    /*
+     * Gets row without moving it between tiers - row on disk is read as
+     * copy.
+     */
+    private IRow peekRow(final ByteBuffer key) {
+        final IRow row = rows.get(toKey(key));
+        if (row != null || hot == null) {
+            return row;
+        }
+        final Object data = readChange(toKey(key));
+        return data instanceof byte[]
+                ? fromRecord((byte[])data)
+                : (IRow)data;
+    }
+
+    private static ByteBuffer valueOf(
+            final IRow row, final ByteBuffer columnKey)
+    {
+        final IColumn column = row.getColumn(columnKey);
+        return column != null ? column.getValue() : null;
+    }
+
+    /*
+     * Counts bytes of row added to column family and its later changes.
+     */
+    private void attach(final IRow row) {
+        if (row instanceof MemoryAware) {
+            final MemoryAware r = (MemoryAware)row;
+            r.setMemory(memory);
+            memory.allocate(r.getBytes());
+        }
+        if (row instanceof ChangeAware) {
+            ((ChangeAware)row).setListener(listener);
+        }
+        if (hot != null) {
+            hot.add(toKey(row.getKey()));
+        }
+    }
+
+    /*
+     * Releases bytes of row removed from memory.
+     */
+    private void detach(final IRow row) {
+        if (row instanceof MemoryAware) {
+            final MemoryAware r = (MemoryAware)row;
+            r.setMemory(null);
+            memory.release(r.getBytes());
+        }
+        if (row instanceof ChangeAware) {
+            ((ChangeAware)row).setListener(null);
+        }
+        if (hot != null) {
+            hot.remove(toKey(row.getKey()));
+        }
+    }
+
+    /*
+     * Adds row to memory - returns false if row with the same key exists.
+     */
+    private boolean putRow(final IRow row) {
+        if (hot == null) {
+            if (rows.putIfAbsent(toKey(row.getKey()), row) != null) {
+                return false;
+            }
+            attach(row);
+            return true;
+        }
+        synchronized (coldLock) {
+            if (load(row.getKey()) != null) {
+                return false;
+            }
+            makeRoom(1);
+            rows.put(toKey(row.getKey()), row);
+            attach(row);
+            return true;
+        }
+    }
+
+    /*
+     * Reads saved state of changed row without moving it between tiers -
+     * record of row, row of other data model or null if row was deleted.
+     */
+    private Object readChange(final ByteArrayWrapper key) {
+        final IRow row;
+        if (hot == null) {
+            row = rows.get(key);
+        } else {
+            synchronized (coldLock) {
+                row = rows.get(key);
+                if (row == null && cold != null) {
+                    final IRow stored =
+                            cold.get(ByteBuffer.wrap(key.getData()));
+                    return stored != null ? toRecord(stored) : null;
+                }
+            }
+        }
+        if (row == null) {
+            return null;
+        }
+        return isRecord(row) ? toRecord(row) : row;
+    }
+
+    /*
+     * Removes row from memory or disk - returns removed row or null.
+     */
+    private IRow removeRow(final ByteBuffer key) {
+        final IRow removed;
+        if (hot == null) {
+            removed = rows.remove(toKey(key));
+        } else {
+            synchronized (coldLock) {
+                removed = load(key);
+                if (removed != null) {
+                    rows.remove(toKey(key));
+                }
+            }
+        }
+        if (removed != null) {
+            detach(removed);
+        }
+        return removed;
+    }
+
+    /*
+     * Removes expired data of row, timer wheel takes care of other rows.
+     * Returns true if whole row expired.
+     */
+    private boolean reclaim(final ByteBuffer key) {
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        return expiry.purge(key, now, reclaimer);
+    }
+
+    private void removeExpired(
+            final ByteBuffer key, final ByteBuffer columnKey)
+    {
+        if (columnKey == null) {
+            if (removeRow(key) != null) {
+                setDirty(key);
+            }
+            return;
+        }
+        try {
+            final boolean found = change(key, false, new RowChange() {
+                @Override
+                public void applyTo(final IRow row) throws PythiaException {
+                    row.deleteColumn(columnKey);
+                }
+            });
+            if (found) {
+                setDirty(key);
+            }
+        } catch (PythiaException e) {
+            // column was deleted before it expired
+        }
+    }
+
+    private IRow createRow(final ByteBuffer key) {
+        final ColumnFamilyOptions o = getOptions();
+        if (o.isPacked()) {
+            return new PackedRow(key, dictionary);
+        }
+        return new Row(key, dictionary,
+                o.isCompressed() ? o.getCompressionThreshold() : 0);
+    }
+
+    /*
+     * Gets row from memory or moves it from disk - called with cold lock.
+     */
+    private IRow load(final ByteBuffer key) {
+        IRow row = rows.get(toKey(key));
+        if (row != null || cold == null) {
+            return row;
+        }
+        final IRow stored;
+        try {
+            stored = cold.remove(key);
+        } catch (IOException e) {
+            throw coldFailure(e);
+        }
+        if (stored == null) {
+            return null;
+        }
+        row = copyOf(stored);
+        makeRoom(1);
+        rows.put(toKey(row.getKey()), row);
+        attach(row);
+        return row;
+    }
+
+    /*
+     * Moves rows to disk until there is place for <code>room</code> rows and
+     * memory budget is not exceeded - called with cold lock.
+     */
+    private void makeRoom(final int room) {
+        while (hot.size() > getOptions().getHotRows() - room
+               || memory.isExceeded()
+        ) {
+            final ByteArrayWrapper victim = hot.victim();
+            if (victim == null) {
+                return;
+            }
+            final IRow row = rows.get(victim);
+            if (row == null || !isRecord(row)) {
+                // rows of other data models stay in memory
+                continue;
+            }
+            // row isn't changed by column family after it is moved - rows
+            // on disk are written together later
+            synchronized (row) {
+                try {
+                    if (cold == null) {
+                        cold = new ColdStore();
+                    }
+                    cold.put(ByteBuffer.wrap(victim.getData()), row);
+                } catch (IOException e) {
+                    hot.add(victim);
+                    throw coldFailure(e);
+                }
+                rows.remove(victim);
+            }
+            detach(row);
+        }
+    }
+
+    private List<IRow> getTieredRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    ) {
+        // only first keys of range in memory are kept - heap of page is
+        // ordered from the biggest key, which is dropped when page is full
+        final PriorityQueue<ByteBuffer> page = new PriorityQueue<>(
+                Math.min(limit, 64) + 1,
+                Collections.reverseOrder(KeyComparator.INSTANCE));
+        final Iterator<IRow> coldRows;
+        synchronized (coldLock) {
+            for (ByteArrayWrapper k : rows.keySet()) {
+                final ByteBuffer key = ByteBuffer.wrap(k.getData());
+                if (KeyComparator.INSTANCE.inRange(key, from, inclusive, to)) {
+                    page.offer(key);
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                }
+            }
+            coldRows = coldRows(from, inclusive);
+        }
+        final List<ByteBuffer> hotKeys = new ArrayList<>(page);
+        Collections.sort(hotKeys, KeyComparator.INSTANCE);
+
+        // rows on disk are read in order of keys - only keys of page are
+        // merged with keys in memory
+        final List<ByteBuffer> keys = new ArrayList<>(Math.min(limit, 64));
+        int next = 0;
+        ByteBuffer coldKey = nextKey(coldRows, to);
+        while (keys.size() < limit
+               && (next < hotKeys.size() || coldKey != null)
+        ) {
+            if (coldKey == null || next < hotKeys.size()
+                && KeyComparator.INSTANCE.compare(
+                    hotKeys.get(next), coldKey) < 0
+            ) {
+                keys.add(hotKeys.get(next++));
+            } else {
+                keys.add(coldKey);
+                coldKey = nextKey(coldRows, to);
+            }
+        }
+
+        // rows read from disk enter probation segment - scan doesn't push
+        // frequently used rows out of memory
+        final List<IRow> result = new ArrayList<>(keys.size());
+        for (ByteBuffer key : keys) {
+            final IRow row = findRow(key);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Gets key of next row before <code>to</code> or null.
+     */
+    private static ByteBuffer nextKey(
+            final Iterator<IRow> rows, final ByteBuffer to)
+    {
+        if (!rows.hasNext()) {
+            return null;
+        }
+        final ByteBuffer key = rows.next().getKey();
+        return to == null || KeyComparator.INSTANCE.compare(key, to) < 0
+                ? key
+                : null;
+    }
+
+    /*
+     * Checks if row is written as record - rows of other data models are
+     * written as objects and stay in memory of tiered column family.
+     */
+    private static boolean isRecord(final IRow row) {
+        return row instanceof Row || row instanceof PackedRow;
+    }
+
+    /*
+     * Serializes row for changes: size of key ({@code int}), key bytes,
+     * number of columns ({@code int}) and columns: size of name, name bytes,
+     * size of value (-1 if null), value bytes.
+     */
+    private static byte[] toRecord(final IRow row) {
+        final Map<ByteBuffer, ByteBuffer> columns = new HashMap<>();
+        for (IColumn c : row) {
+            columns.put(c.getKey(), c.getValue());
+        }
+        final ByteBuffer key = row.getKey();
+        int size = 8 + key.remaining();
+        for (Map.Entry<ByteBuffer, ByteBuffer> c : columns.entrySet()) {
+            size += 8 + c.getKey().remaining()
+                    + (c.getValue() != null ? c.getValue().remaining() : 0);
+        }
+        final ByteBuffer out = ByteBuffer.allocate(size);
+        writeBytes(out, key);
+        out.putInt(columns.size());
+        for (Map.Entry<ByteBuffer, ByteBuffer> c : columns.entrySet()) {
+            writeBytes(out, c.getKey());
+            writeBytes(out, c.getValue());
+        }
+        return out.array();
+    }
+
+    private IRow fromRecord(final byte[] record) {
+        final ByteBuffer in = ByteBuffer.wrap(record);
+        final IRow row = createRow(readBytes(in));
+        for (int i = in.getInt(); i > 0; --i) {
+            row.putColumn(readBytes(in), readBytes(in));
+        }
+        return row;
+    }
+
+    /*
+     * Copies row read from disk to new row of column family - values are
+     * copied to heap.
+     */
+    private IRow copyOf(final IRow stored) {
+        final IRow row = createRow(copy(stored.getKey()));
+        for (IColumn c : stored) {
+            final ByteBuffer value = c.getValue();
+            row.putColumn(
+                    copy(c.getKey()), value != null ? copy(value) : null);
+        }
+        return row;
+    }
+
+    private static ByteBuffer copy(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void writeBytes(final ByteBuffer out, final ByteBuffer b) {
+        if (b == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(b.remaining());
+            out.put(b.duplicate());
+        }
+    }
+
+    private static ByteBuffer readBytes(final ByteBuffer in) {
+        final int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static IllegalStateException coldFailure(final IOException e) {
+        return new IllegalStateException("Couldn't access rows on disk", e);
+    }
+
+    /*
+     * Creates map of rows - sorted if column family is ordered. Options are
+     * null in column families serialized before options were introduced.
+     */
+    private ConcurrentMap<ByteArrayWrapper, IRow> createRows() {
+        if (options != null && options.isOrdered()) {
+            return new ConcurrentSkipListMap<>();
+        }
+        return new ConcurrentHashMap<>();
+    }
+
     /*
      * Wraps {@link ByteBuffer} in {@link ByteArrayWrapper}.
      *
-     * Used to serialize and compare {@link ByteBuffer}
+     * Bytes are not copied - keys of rows are immutable and lookup keys are
+     * used only during one map operation.
      *
      * @param buffer {@link ByteBuffer} to wrap
      * @return wrapped buffer
      */
     private ByteArrayWrapper toKey(final ByteBuffer buffer) {
-        return new ByteArrayWrapper(buffer.array());
+        return ByteArrayWrapper.view(buffer);
     }
 
 }
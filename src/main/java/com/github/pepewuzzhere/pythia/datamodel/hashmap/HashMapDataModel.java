@@ -25,6 +25,7 @@
 package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
 
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
@@ -52,6 +53,22 @@ public class HashMapDataModel implements IDataModel {
         return new ColumnFamily();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Partitioned column family (see
+     * {@link ColumnFamilyOptions#isPartitioned()}) consists of column
+     * families created with other options.
+     */
+    @Override public IColumnFamily createColumnFamily(
+            final ColumnFamilyOptions options)
+    {
+        if (options != null && options.isPartitioned()) {
+            return new PartitionedColumnFamily(options);
+        }
+        return new ColumnFamily(options);
+    }
+
     @Override
     public IColumn createColumn(final ByteBuffer key) {
         return new Column(key);
@@ -28,6 +28,7 @@ import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,6 +45,7 @@ class KeySpace implements IKeySpace {
 
     private final String name;
     private final Map<String, IColumnFamily> columns;
+    private final MemoryBudget memory = new MemoryBudget();
 
     private boolean isDirty;
 
@@ -80,6 +82,7 @@ class KeySpace implements IKeySpace {
             throw new PythiaException(PythiaError.KEY_ALREADY_EXISTS);
         } else {
             columns.put(name, columnFamily);
+            columnFamily.getMemory().attach(memory);
         }
     }
 
@@ -91,12 +94,17 @@ class KeySpace implements IKeySpace {
     @Override
     public void dropColumnFamily(final String name) throws PythiaException {
         if (columns.containsKey(name)) {
-            columns.remove(name);
+            columns.remove(name).getMemory().detach();
         } else {
             throw new PythiaException(PythiaError.DATA_NOT_FOUND);
         }
     }
 
+    @Override
+    public MemoryBudget getMemory() {
+        return memory;
+    }
+
     @Override
     public String getName() {
         return this.name;
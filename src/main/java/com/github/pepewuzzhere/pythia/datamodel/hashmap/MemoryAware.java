@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+
+/**
+ * Part of data model which counts bytes it occupies in budget of column
+ * family.
+ *
+ * Sizes are estimates - lengths of keys and values plus constant overhead of
+ * objects and map entries.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+interface MemoryAware {
+
+    /**
+     * Gets estimated number of bytes occupied by this object.
+     *
+     * @return number of bytes
+     */
+    long getBytes();
+
+    /**
+     * Sets budget which counts changes of size of this object.
+     *
+     * Object doesn't count its current size - it is done by owner which
+     * attaches it.
+     *
+     * @param memory budget of column family or null if object is detached
+     */
+    void setMemory(final MemoryBudget memory);
+}
@@ -0,0 +1,920 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import com.github.pepewuzzhere.pythia.datamodel.RowSlice;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Compact adaptation of {@link com.github.pepewuzzhere.pythia.datamodel.IRow}
+ * keeping all columns in one byte array.
+ *
+ * Layout of array:
+ * <pre>
+ * int columns count, int[count] offsets of columns,
+ * columns sorted by name id: int name id, int value length (-1 if null),
+ *                            value bytes
+ * </pre>
+ * Names are kept in {@link ColumnDictionary} shared by all rows of column
+ * family - row with name refused by full dictionary switches to hashed
+ * layout. Columns are found by binary search in offset table. Array is never changed
+ * - every mutation builds new one and publishes it with compare-and-set, so
+ * readers need no locks and concurrent writers don't lose updates.
+ *
+ * Row with more than {@link #WIDE_ROW_COLUMNS} columns switches to hashed
+ * layout ({@link Row}), where copying whole row on every change would be too
+ * expensive.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+class PackedRow implements IRow, MemoryAware, ChangeAware, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximal number of columns kept in packed layout.
+     */
+    static final int WIDE_ROW_COLUMNS = 32;
+
+    private static final byte[] EMPTY = new byte[4];
+
+    private static final int NO_COLUMN = -1;
+
+    /*
+     * Marks deleted column in changes of apply - compared by identity.
+     */
+    private static final byte[] REMOVED = new byte[0];
+
+    private static final AtomicReferenceFieldUpdater<PackedRow, Object> STATE =
+        AtomicReferenceFieldUpdater.newUpdater(
+            PackedRow.class, Object.class, "state");
+
+    /*
+     * Names of columns - serialized once for all rows of column family.
+     */
+    private final ColumnDictionary dictionary;
+
+    private transient byte[] key;
+
+    /*
+     * Packed columns (byte[]) or hashed row (Row) after switch.
+     */
+    private transient volatile Object state;
+
+    private transient volatile MemoryBudget memory;
+    private transient volatile ChangeAware.Listener listener;
+
+    /**
+     * Sets key of created row, row uses own dictionary of column names.
+     *
+     * @param key key of this row
+     * @throws IllegalArgumentException if key is null or empty
+     */
+    PackedRow(final ByteBuffer key) {
+        this(key, new ColumnDictionary());
+    }
+
+    /**
+     * Sets key of created row and dictionary of column names.
+     *
+     * @param key key of this row
+     * @param dictionary dictionary shared by rows of column family
+     * @throws IllegalArgumentException if key is null or empty
+     */
+    PackedRow(final ByteBuffer key, final ColumnDictionary dictionary) {
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Dictionary is required");
+        }
+        this.dictionary = dictionary;
+        if (key == null) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        this.key = key.array();
+        if (this.key.length == 0) {
+            throw new IllegalArgumentException("Key must not be empty");
+        }
+        state = EMPTY;
+    }
+
+    /**
+     * Serializes this PackedRow instance.
+     *
+     * @serialData Dictionary of names, size of key ({@code int}) and key
+     *             bytes, number of columns ({@code int}), followed by sequence
+     *             of columns: id of name ({@code int}), size of value
+     *             ({@code int}, -1 if null) and value bytes
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt(key.length);
+        s.write(key);
+        final Map<ByteBuffer, ByteBuffer> columns = getColumns();
+        s.writeInt(columns.size());
+        for (Map.Entry<ByteBuffer, ByteBuffer> c : columns.entrySet()) {
+            final int id = dictionary.intern(c.getKey());
+            s.writeInt(id);
+            if (id == ColumnDictionary.NOT_FOUND) {
+                writeBytes(s, c.getKey());
+            }
+            writeBytes(s, c.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        key = new byte[s.readInt()];
+        s.readFully(key);
+        state = EMPTY;
+        final int size = s.readInt();
+        for (int i = 0; i < size; i++) {
+            final int id = s.readInt();
+            if (id == ColumnDictionary.NOT_FOUND) {
+                final byte[] name = readBytes(s);
+                if (name == null || name.length == 0) {
+                    throw new InvalidObjectException("Empty column name");
+                }
+                putColumn(ByteBuffer.wrap(name), wrap(readBytes(s)));
+                continue;
+            }
+            if (id < 0 || id >= dictionary.size()) {
+                throw new InvalidObjectException("Unknown column name id");
+            }
+            put(id, readBytes(s));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if column is null
+     */
+    @Override public void addColumn(final IColumn column) {
+        if (column == null) {
+            throw new IllegalArgumentException("Column is required");
+        }
+        putColumn(column.getKey(), column.getValue());
+    }
+
+    @Override
+    public IColumn getColumn(final ByteBuffer key) {
+        final Object s = state;
+        if (s instanceof Row) {
+            return ((Row)s).getColumn(key);
+        }
+        final int id = dictionary.id(key);
+        return id != ColumnDictionary.NOT_FOUND && find((byte[])s, id) >= 0
+                ? new ColumnView(id)
+                : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public void updateColumn(
+            final ByteBuffer key, final ByteBuffer value) throws PythiaException
+    {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        final int id = dictionary.id(key);
+        final byte[] v = toBytes(value);
+        while (true) {
+            final Object s = state;
+            if (s instanceof Row) {
+                ((Row)s).updateColumn(key, value);
+                break;
+            }
+            final byte[] data = (byte[])s;
+            final int index = find(data, id);
+            if (index < 0) {
+                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+            }
+            if (replace(data, rebuild(data, index, 1, id, v))) {
+                break;
+            }
+        }
+        changed();
+    }
+
+    @Override
+    public void deleteColumn(final ByteBuffer key) throws PythiaException {
+        final int id = dictionary.id(key);
+        while (true) {
+            final Object s = state;
+            if (s instanceof Row) {
+                ((Row)s).deleteColumn(key);
+                break;
+            }
+            final byte[] data = (byte[])s;
+            final int index = find(data, id);
+            if (index < 0) {
+                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+            }
+            if (replace(
+                    data, rebuild(data, index, 1, NO_COLUMN, null))
+            ) {
+                break;
+            }
+        }
+        changed();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public ByteBuffer putColumn(
+            final ByteBuffer key, final ByteBuffer value)
+    {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        final Object s = state;
+        final ByteBuffer previous;
+        if (s instanceof Row) {
+            previous = ((Row)s).putColumn(key, value);
+        } else {
+            final int id = dictionary.intern(key);
+            previous = id != ColumnDictionary.NOT_FOUND
+                    ? wrap(put(id, toBytes(value)))
+                    : hashed().putColumn(key, value);
+        }
+        changed();
+        return previous;
+    }
+
+    @Override
+    public ByteBuffer getKey() {
+        return ByteBuffer.wrap(key);
+    }
+
+    @Override
+    public long getBytes() {
+        final Object s = state;
+        return s instanceof Row
+                ? Row.OVERHEAD + ((Row)s).getBytes()
+                : Row.OVERHEAD + key.length + ((byte[])s).length;
+    }
+
+    @Override
+    public void setMemory(final MemoryBudget memory) {
+        this.memory = memory;
+        final Object s = state;
+        if (s instanceof Row) {
+            ((Row)s).setMemory(memory);
+        }
+    }
+
+    @Override
+    public void setListener(final ChangeAware.Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder ret = new StringBuilder();
+        ret.append("{\"").append(new String(key)).append("\":{");
+
+        for (
+            Iterator<Map.Entry<ByteBuffer, ByteBuffer>> it =
+                getColumns().entrySet().iterator();
+            it.hasNext();
+        ) {
+            final Map.Entry<ByteBuffer, ByteBuffer> c = it.next();
+            ret.append("\"");
+            ret.append(new String(c.getKey().array()));
+            ret.append("\"");
+            ret.append(":");
+            ret.append("\"");
+            if (c.getValue() != null) {
+                ret.append(new String(c.getValue().array()));
+            }
+            ret.append("\"");
+            if (it.hasNext()) {
+                ret.append(",");
+            }
+        }
+        ret.append("}}");
+
+        return ret.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof PackedRow) {
+            final PackedRow r = (PackedRow)obj;
+
+            return Arrays.equals(key, r.key)
+                   && getColumns().equals(r.getColumns());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 79 * hash + Arrays.hashCode(this.key);
+        hash = 79 * hash + getColumns().hashCode();
+        return hash;
+    }
+
+    /**
+     * Checks if row uses packed layout.
+     *
+     * @return false if row switched to hashed layout
+     */
+    boolean isPacked() {
+        return state instanceof byte[];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Columns are selected from one state of row, slice doesn't see part of
+     * batch.
+     */
+    @Override public IRow select(final ByteBuffer... keys) {
+        final Object s = state;
+        if (s instanceof Row) {
+            return ((Row)s).select(keys);
+        }
+        return RowSlice.of(copyOf((byte[])s), keys);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Columns are selected from one state of row, slice doesn't see part of
+     * batch.
+     */
+    @Override public IRow slice(final ByteBuffer from, final ByteBuffer to) {
+        final Object s = state;
+        if (s instanceof Row) {
+            return ((Row)s).slice(from, to);
+        }
+        return RowSlice.range(copyOf((byte[])s), from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Columns and values are copied from array taken when iteration starts,
+     * changes of returned columns don't change this row.
+     */
+    @Override public Iterator<IColumn> iterator() {
+        final Object s = state;
+        if (s instanceof Row) {
+            return ((Row)s).iterator();
+        }
+        final byte[] data = (byte[])s;
+        final IColumn[] columns = new IColumn[count(data)];
+        for (int i = 0; i < columns.length; ++i) {
+            final Column column = new Column(
+                ByteBuffer.wrap(dictionary.name(idAt(data, i)).clone()));
+            column.setValue(wrap(valueAt(data, i)));
+            columns[i] = column;
+        }
+        return Collections.unmodifiableList(Arrays.asList(columns)).iterator();
+    }
+
+    /**
+     * Gets copy of columns in this row.
+     *
+     * @return map of column names and values sorted by name id
+     */
+    Map<ByteBuffer, ByteBuffer> getColumns() {
+        final Map<ByteBuffer, ByteBuffer> columns = new LinkedHashMap<>();
+        final Object s = state;
+        if (s instanceof Row) {
+            for (IColumn c : (Row)s) {
+                columns.put(c.getKey(), c.getValue());
+            }
+        } else {
+            final byte[] data = (byte[])s;
+            for (int i = 0; i < count(data); ++i) {
+                columns.put(
+                    ByteBuffer.wrap(dictionary.name(idAt(data, i))),
+                    wrap(valueAt(data, i))
+                );
+            }
+        }
+        return columns;
+    }
+
+    /*
+     * Sets value of column with name id - returns previous value.
+     */
+    private byte[] put(final int id, final byte[] value) {
+        while (true) {
+            final Object s = state;
+            if (s instanceof Row) {
+                return toBytes(((Row)s).putColumn(
+                    ByteBuffer.wrap(dictionary.name(id)), wrap(value)));
+            }
+            final byte[] data = (byte[])s;
+            final int index = find(data, id);
+            if (index >= 0) {
+                final byte[] old = valueAt(data, index);
+                if (replace(
+                        data, rebuild(data, index, 1, id, value))
+                ) {
+                    return old;
+                }
+            } else if (count(data) < WIDE_ROW_COLUMNS) {
+                if (replace(
+                        data, rebuild(data, -index - 1, 0, id, value))
+                ) {
+                    return null;
+                }
+            } else if (toHashed(
+                    data,
+                    Collections.singletonMap(
+                        ByteBuffer.wrap(dictionary.name(id)), wrap(value)),
+                    Collections.<ByteBuffer>emptySet()
+            )) {
+                // wide row switched to hashed layout
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Deletes and puts columns together.
+     *
+     * All changes are published as one new array, so readers see either
+     * none or all of them and change of row size is counted in memory budget
+     * once.
+     *
+     * @param puts keys and new values of columns
+     * @param removed keys of deleted columns, missing columns are skipped
+     */
+    void apply(
+        final Map<ByteBuffer, ByteBuffer> puts,
+        final Collection<ByteBuffer> removed
+    ) {
+        // changes sorted by name id like columns of packed array
+        final SortedMap<Integer, byte[]> changes = new TreeMap<>();
+        for (ByteBuffer name : removed) {
+            final int id = dictionary.id(name);
+            if (id != ColumnDictionary.NOT_FOUND) {
+                changes.put(id, REMOVED);
+            }
+        }
+        for (Map.Entry<ByteBuffer, ByteBuffer> c : puts.entrySet()) {
+            final int id = dictionary.intern(c.getKey());
+            if (id == ColumnDictionary.NOT_FOUND) {
+                hashed().apply(puts, removed);
+                return;
+            }
+            changes.put(id, toBytes(c.getValue()));
+        }
+        while (true) {
+            final Object s = state;
+            if (s instanceof Row) {
+                ((Row)s).apply(puts, removed);
+                return;
+            }
+            final byte[] data = (byte[])s;
+            final byte[] merged = merge(data, changes);
+            if (merged != null
+                    ? replace(data, merged)
+                    : toHashed(data, puts, removed)
+            ) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds delta to counter column, missing column is created with value 0.
+     *
+     * Packed row publishes every increment as new array. Increment which
+     * loses compare-and-set switches row to hashed layout, where hot
+     * counters are striped (see {@link Row#increment(ByteBuffer, long)}).
+     *
+     * @param key key of column
+     * @param delta added value, may be negative
+     * @throws PythiaException if value of column is not counter
+     */
+    void increment(final ByteBuffer key, final long delta)
+            throws PythiaException
+    {
+        final int id = dictionary.intern(key);
+        if (id == ColumnDictionary.NOT_FOUND) {
+            hashed().increment(key, delta);
+            return;
+        }
+        boolean contended = false;
+        while (true) {
+            final Object s = state;
+            if (s instanceof Row) {
+                ((Row)s).increment(key, delta);
+                return;
+            }
+            final byte[] data = (byte[])s;
+            final int index = find(data, id);
+            final byte[] value = Counters.encode(Counters.decode(
+                    index >= 0 ? valueAt(data, index) : null) + delta);
+            final byte[] updated;
+            if (index >= 0) {
+                updated = rebuild(data, index, 1, id, value);
+            } else if (count(data) < WIDE_ROW_COLUMNS) {
+                updated = rebuild(data, -index - 1, 0, id, value);
+            } else {
+                updated = null;
+            }
+            if (updated != null && !contended) {
+                if (replace(data, updated)) {
+                    return;
+                }
+                contended = true;
+            } else if (toHashed(
+                    data,
+                    Collections.singletonMap(
+                        ByteBuffer.wrap(dictionary.name(id)), wrap(value)),
+                    Collections.<ByteBuffer>emptySet()
+            )) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Gets hashed layout, packed row is switched to it first.
+     */
+    private Row hashed() {
+        while (true) {
+            final Object s = state;
+            if (s instanceof Row) {
+                return (Row)s;
+            }
+            toHashed(
+                (byte[])s, Collections.<ByteBuffer, ByteBuffer>emptyMap(),
+                Collections.<ByteBuffer>emptySet()
+            );
+        }
+    }
+
+    /*
+     * Switches wide row to hashed layout with changes applied - returns false
+     * if row was changed meanwhile.
+     */
+    private boolean toHashed(
+        final byte[] data, final Map<ByteBuffer, ByteBuffer> puts,
+        final Collection<ByteBuffer> removed
+    ) {
+        final Row hashed = new Row(ByteBuffer.wrap(this.key), dictionary);
+        for (int i = 0; i < count(data); ++i) {
+            hashed.putColumn(
+                ByteBuffer.wrap(dictionary.name(idAt(data, i))),
+                wrap(valueAt(data, i))
+            );
+        }
+        hashed.apply(puts, removed);
+        final long bytes = hashed.getBytes() - key.length - data.length;
+        final MemoryBudget m = memory;
+        hashed.setMemory(m);
+        if (!STATE.compareAndSet(this, data, hashed)) {
+            return false;
+        }
+        if (m != null) {
+            m.allocate(bytes);
+        }
+        return true;
+    }
+
+    /*
+     * Replaces packed columns and counts change of their size.
+     */
+    private boolean replace(final byte[] data, final byte[] updated) {
+        if (!STATE.compareAndSet(this, data, updated)) {
+            return false;
+        }
+        final MemoryBudget m = memory;
+        if (m != null) {
+            m.allocate(updated.length - data.length);
+        }
+        return true;
+    }
+
+    /*
+     * Copies packed columns to row which is not part of column family.
+     */
+    private Row copyOf(final byte[] data) {
+        final Row copy = new Row(ByteBuffer.wrap(key));
+        for (int i = 0; i < count(data); ++i) {
+            copy.putColumn(
+                ByteBuffer.wrap(dictionary.name(idAt(data, i)).clone()),
+                wrap(valueAt(data, i))
+            );
+        }
+        return copy;
+    }
+
+    /*
+     * Reports change made through IRow to column family.
+     */
+    private void changed() {
+        final ChangeAware.Listener l = listener;
+        if (l != null) {
+            l.changed(ByteBuffer.wrap(key));
+        }
+    }
+
+    /*
+     * Reads value of column from current state.
+     */
+    private byte[] readValue(final int id) {
+        final Object s = state;
+        if (s instanceof Row) {
+            final IColumn c =
+                    ((Row)s).getColumn(ByteBuffer.wrap(dictionary.name(id)));
+            return c != null ? toBytes(c.getValue()) : null;
+        }
+        final byte[] data = (byte[])s;
+        final int index = find(data, id);
+        return index >= 0 ? valueAt(data, index) : null;
+    }
+
+    /*
+     * Column of packed row - reads and writes value in row.
+     */
+    private final class ColumnView implements IColumn {
+
+        private final int id;
+
+        ColumnView(final int id) {
+            this.id = id;
+        }
+
+        @Override
+        public ByteBuffer getKey() {
+            return ByteBuffer.wrap(dictionary.name(id).clone());
+        }
+
+        @Override
+        public ByteBuffer getValue() {
+            return wrap(readValue(id));
+        }
+
+        @Override
+        public ByteBuffer setValue(final ByteBuffer value) {
+            final ByteBuffer previous = wrap(put(id, toBytes(value)));
+            changed();
+            return previous;
+        }
+    }
+
+    /*
+     * Operations on packed array.
+     */
+
+    private static int count(final byte[] data) {
+        return ByteBuffer.wrap(data).getInt(0);
+    }
+
+    private static int offset(final byte[] data, final int index) {
+        return ByteBuffer.wrap(data).getInt(4 + 4 * index);
+    }
+
+    private static int entryLength(final byte[] data, final int index) {
+        final ByteBuffer in = ByteBuffer.wrap(data);
+        final int offset = in.getInt(4 + 4 * index);
+        return 8 + Math.max(in.getInt(offset + 4), 0);
+    }
+
+    private static int idAt(final byte[] data, final int index) {
+        final ByteBuffer in = ByteBuffer.wrap(data);
+        return in.getInt(in.getInt(4 + 4 * index));
+    }
+
+    private static byte[] valueAt(final byte[] data, final int index) {
+        final ByteBuffer in = ByteBuffer.wrap(data);
+        final int position = in.getInt(4 + 4 * index) + 4;
+        final int length = in.getInt(position);
+        return length >= 0
+                ? Arrays.copyOfRange(data, position + 4, position + 4 + length)
+                : null;
+    }
+
+    /*
+     * Binary search of column - returns index or (-(insertion point) - 1).
+     */
+    private static int find(final byte[] data, final int id) {
+        final ByteBuffer in = ByteBuffer.wrap(data);
+        int low = 0;
+        int high = in.getInt(0) - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int c = in.getInt(in.getInt(4 + 4 * mid));
+            if (c < id) {
+                low = mid + 1;
+            } else if (c > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /*
+     * Builds new array with sorted changes merged into columns - returns null
+     * if row would have more than WIDE_ROW_COLUMNS columns.
+     */
+    private static byte[] merge(
+            final byte[] data, final SortedMap<Integer, byte[]> changes)
+    {
+        final int count = count(data);
+        final int[] ids = new int[changes.size()];
+        final byte[][] values = new byte[changes.size()][];
+        int n = 0;
+        for (Map.Entry<Integer, byte[]> c : changes.entrySet()) {
+            ids[n] = c.getKey();
+            values[n++] = c.getValue();
+        }
+
+        // entries of result: index of kept column or -(index of change + 1)
+        final int[] entries = new int[count + n];
+        int size = 0;
+        int length = 0;
+        for (int i = 0, j = 0; i < count || j < n;) {
+            final int id = i < count ? idAt(data, i) : Integer.MAX_VALUE;
+            if (j < n && ids[j] <= id) {
+                if (values[j] != REMOVED) {
+                    entries[size++] = -(j + 1);
+                    length += 8 + (values[j] != null ? values[j].length : 0);
+                }
+                if (ids[j] == id) {
+                    ++i;
+                }
+                ++j;
+            } else {
+                entries[size++] = i;
+                length += entryLength(data, i);
+                ++i;
+            }
+        }
+        if (size > WIDE_ROW_COLUMNS) {
+            return null;
+        }
+
+        final byte[] result = new byte[4 + 4 * size + length];
+        final ByteBuffer out = ByteBuffer.wrap(result);
+        out.putInt(0, size);
+        int position = 4 + 4 * size;
+        for (int k = 0; k < size; ++k) {
+            out.putInt(4 + 4 * k, position);
+            if (entries[k] >= 0) {
+                final int entry = entryLength(data, entries[k]);
+                System.arraycopy(
+                    data, offset(data, entries[k]), result, position, entry);
+                position += entry;
+            } else {
+                final int j = -entries[k] - 1;
+                out.position(position);
+                out.putInt(ids[j]);
+                if (values[j] != null) {
+                    out.putInt(values[j].length);
+                    out.put(values[j]);
+                } else {
+                    out.putInt(-1);
+                }
+                position = out.position();
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Builds new array - removes <code>removed</code> (0 or 1) columns at
+     * index and inserts column there if id is not {@link #NO_COLUMN}.
+     */
+    private static byte[] rebuild(
+        final byte[] data, final int index, final int removed,
+        final int id, final byte[] value
+    ) {
+        final int count = count(data);
+        final int added = id != NO_COLUMN ? 1 : 0;
+        final int newCount = count - removed + added;
+        final int addedLength = id != NO_COLUMN
+                ? 8 + (value != null ? value.length : 0)
+                : 0;
+        final int removedLength = removed > 0 ? entryLength(data, index) : 0;
+        final byte[] result = new byte[
+            data.length + 4 * (newCount - count) + addedLength - removedLength
+        ];
+        final ByteBuffer out = ByteBuffer.wrap(result);
+        out.putInt(0, newCount);
+
+        int position = 4 + 4 * newCount;
+        int slot = 0;
+        for (int i = 0; i <= count; ++i) {
+            if (i == index && id != NO_COLUMN) {
+                out.putInt(4 + 4 * slot++, position);
+                out.position(position);
+                out.putInt(id);
+                if (value != null) {
+                    out.putInt(value.length);
+                    out.put(value);
+                } else {
+                    out.putInt(-1);
+                }
+                position = out.position();
+            }
+            if (i == count || (i == index && removed > 0)) {
+                continue;
+            }
+            final int length = entryLength(data, i);
+            System.arraycopy(data, offset(data, i), result, position, length);
+            out.putInt(4 + 4 * slot++, position);
+            position += length;
+        }
+        return result;
+    }
+
+    private static byte[] toBytes(final ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static ByteBuffer wrap(final byte[] bytes) {
+        return bytes != null ? ByteBuffer.wrap(bytes) : null;
+    }
+
+    private static void writeBytes(
+            final ObjectOutputStream s, final ByteBuffer buffer)
+        throws IOException
+    {
+        if (buffer == null) {
+            s.writeInt(-1);
+        } else {
+            final byte[] bytes = toBytes(buffer);
+            s.writeInt(bytes.length);
+            s.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(final ObjectInputStream s)
+        throws IOException
+    {
+        final int length = s.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        s.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,590 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Column family which splits rows into partitions by hash of key.
+ *
+ * Every partition is independent {@link ColumnFamily} with own map of rows,
+ * own set of changed rows and own memory budget attached to budget of this
+ * column family, so writers of different rows don't contend on one
+ * structure. Number of partitions is set by
+ * {@link ColumnFamilyOptions#getPartitions()} and saved with column family.
+ * Rows are assigned by hash which mixes all bytes of key - keys with common
+ * prefix are spread evenly.
+ *
+ * Scans of unordered partitions and writing of changes run in parallel,
+ * by workers shared by all partitioned column families. Tiered partitions
+ * keep equal part of hot rows.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class PartitionedColumnFamily implements IColumnFamily, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ColumnFamilyOptions options;
+    private final ColumnFamily[] partitions;
+
+    private transient MemoryBudget memory;
+
+    /**
+     * Creates new partitioned column family and sets this as dirty.
+     *
+     * @param options options of column family and its partitions
+     * @throws IllegalArgumentException if options are null
+     */
+    PartitionedColumnFamily(final ColumnFamilyOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options are required");
+        }
+        this.options = options;
+        partitions = new ColumnFamily[options.getPartitions()];
+        final ColumnFamilyOptions partition = new ColumnFamilyOptions()
+                .setOrdered(options.isOrdered())
+                .setPacked(options.isPacked())
+                .setTiered(options.isTiered())
+                .setCompressed(options.isCompressed())
+                .setCompressionThreshold(options.getCompressionThreshold())
+                .setHotRows(Math.max(
+                    1, options.getHotRows() / partitions.length));
+        for (int i = 0; i < partitions.length; ++i) {
+            partitions[i] = new ColumnFamily(partition);
+        }
+        init();
+    }
+
+    private void init() {
+        memory = new MemoryBudget();
+        for (ColumnFamily p : partitions) {
+            p.getMemory().attach(memory);
+        }
+        if (options.isTiered()) {
+            memory.setReclaimer(new Runnable() {
+                @Override
+                public void run() {
+                    for (ColumnFamily p : partitions) {
+                        p.reclaimMemory();
+                    }
+                }
+            });
+        }
+    }
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        init();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if row is null
+     */
+    @Override public void addRow(final IRow row) throws PythiaException {
+        if (row == null) {
+            throw new IllegalArgumentException("Row is required");
+        }
+        partition(row.getKey()).addRow(row);
+    }
+
+    @Override
+    public IRow getRow(final ByteBuffer key) {
+        return partition(key).getRow(key);
+    }
+
+    @Override
+    public IRow getOrCreateRow(final ByteBuffer key) {
+        return partition(key).getOrCreateRow(key);
+    }
+
+    @Override
+    public void updateRow(
+        final ByteBuffer key, final ByteBuffer columnKey,
+        final ByteBuffer columnValue
+    ) throws PythiaException {
+        partition(key).updateRow(key, columnKey, columnValue);
+    }
+
+    @Override
+    public void deleteRow(final ByteBuffer key) throws PythiaException {
+        partition(key).deleteRow(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    @Override public List<IRow> getRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    ) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        final List<IRow> rows = new ArrayList<>();
+        if (options.isOrdered() || partitions.length == 1) {
+            // ordered partitions read only requested rows
+            for (ColumnFamily p : partitions) {
+                rows.addAll(p.getRows(from, inclusive, to, limit));
+            }
+        } else {
+            final List<Callable<List<IRow>>> scans = new ArrayList<>();
+            for (final ColumnFamily p : partitions) {
+                scans.add(new Callable<List<IRow>>() {
+                    @Override
+                    public List<IRow> call() {
+                        return p.getRows(from, inclusive, to, limit);
+                    }
+                });
+            }
+            try {
+                for (List<IRow> found : inParallel(scans)) {
+                    rows.addAll(found);
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Scan was interrupted", e);
+            }
+        }
+        Collections.sort(rows, ColumnFamily.ROW_ORDER);
+        return rows.size() > limit
+                ? new ArrayList<>(rows.subList(0, limit))
+                : rows;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Partitions are iterated one after another, so rows of ordered column
+     * family are sorted only within partition.
+     */
+    @Override public Iterator<IRow> iterator() {
+        return new Iterator<IRow>() {
+
+            private int partition;
+            private Iterator<IRow> rows = partitions[0].iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!rows.hasNext()) {
+                    if (partition + 1 == partitions.length) {
+                        return false;
+                    }
+                    rows = partitions[++partition].iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public IRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return rows.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if batch is null
+     */
+    @Override public void apply(final Batch batch) throws PythiaException {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch is required");
+        }
+        for (Batch.RowMutation mutation : batch.getRows()) {
+            partition(mutation.getKey()).apply(mutation);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Partitions index their rows in parallel.
+     *
+     * @throws IllegalArgumentException if column key is empty
+     */
+    @Override public void createIndex(final ByteBuffer columnKey)
+            throws PythiaException
+    {
+        // first partition refuses column which is already indexed
+        partitions[0].createIndex(columnKey);
+        final List<Callable<Void>> builds = new ArrayList<>();
+        for (int i = 1; i < partitions.length; ++i) {
+            final ColumnFamily p = partitions[i];
+            builds.add(new Callable<Void>() {
+                @Override
+                public Void call() throws PythiaException {
+                    p.createIndex(columnKey);
+                    return null;
+                }
+            });
+        }
+        try {
+            inParallel(builds);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Index build was interrupted", e);
+        }
+    }
+
+    @Override
+    public List<IRow> getIndexedRows(
+        final ByteBuffer columnKey, final ByteBuffer value
+    ) throws PythiaException {
+        final List<IRow> rows = new ArrayList<>();
+        for (ColumnFamily p : partitions) {
+            rows.addAll(p.getIndexedRows(columnKey, value));
+        }
+        Collections.sort(rows, ColumnFamily.ROW_ORDER);
+        return rows;
+    }
+
+    @Override
+    public void expire(
+        final ByteBuffer key, final ByteBuffer columnKey, final long ttl
+    ) {
+        partition(key).expire(key, columnKey, ttl);
+    }
+
+    @Override
+    public long getDeadline(final ByteBuffer key, final ByteBuffer columnKey) {
+        return partition(key).getDeadline(key, columnKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every partition indexes the same columns.
+     */
+    @Override public List<ByteBuffer> getIndexedColumns() {
+        return partitions[0].getIndexedColumns();
+    }
+
+    @Override
+    public void visitRows(final RowVisitor visitor) throws IOException {
+        for (ColumnFamily p : partitions) {
+            p.visitRows(visitor);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Budget counts bytes of all partitions.
+     */
+    @Override public MemoryBudget getMemory() {
+        return memory;
+    }
+
+    @Override
+    public ColumnFamilyOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public boolean isDirty() {
+        for (ColumnFamily p : partitions) {
+            if (p.isDirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void setClean() {
+        for (ColumnFamily p : partitions) {
+            p.setClean();
+        }
+    }
+
+    @Override
+    public void setDirty() {
+        for (ColumnFamily p : partitions) {
+            p.setDirty();
+        }
+    }
+
+    @Override
+    public void setDirty(final ByteBuffer key) {
+        partition(key).setDirty(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Partitions write their changes in parallel, changes of every partition
+     * are written as its length ({@code int}) and bytes.
+     */
+    @Override public boolean writeChanges(final ObjectOutputStream out)
+            throws IOException
+    {
+        final List<Callable<byte[]>> writes = new ArrayList<>();
+        for (final ColumnFamily p : partitions) {
+            writes.add(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    final ByteArrayOutputStream bytes =
+                            new ByteArrayOutputStream();
+                    try (ObjectOutputStream changes =
+                            new ObjectOutputStream(bytes)
+                    ) {
+                        if (!p.writeChanges(changes)) {
+                            return null;
+                        }
+                    }
+                    return bytes.toByteArray();
+                }
+            });
+        }
+        final List<byte[]> changes;
+        try {
+            changes = inParallel(writes);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+        if (changes.contains(null)) {
+            // changes taken from other partitions are saved with whole
+            // column family
+            setDirty();
+            return false;
+        }
+        for (byte[] c : changes) {
+            out.writeInt(c.length);
+            out.write(c);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Keys are taken from every partition - if some partition has to be
+     * saved whole, whole column family is saved.
+     */
+    @Override public List<ByteBuffer> takeChanges() {
+        final List<ByteBuffer> keys = new ArrayList<>();
+        for (ColumnFamily p : partitions) {
+            final List<ByteBuffer> changes = p.takeChanges();
+            if (changes == null) {
+                setDirty();
+                return null;
+            }
+            keys.addAll(changes);
+        }
+        return keys;
+    }
+
+    @Override
+    public void writeChange(final ByteBuffer key, final ObjectOutputStream out)
+            throws IOException
+    {
+        partition(key).writeChange(key, out);
+    }
+
+    @Override
+    public void readChange(final ByteBuffer key, final ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        partition(key).readChange(key, in);
+    }
+
+    @Override
+    public void readChanges(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        final List<Callable<Void>> reads = new ArrayList<>();
+        for (final ColumnFamily p : partitions) {
+            final byte[] changes = new byte[in.readInt()];
+            in.readFully(changes);
+            reads.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException, ClassNotFoundException {
+                    try (ObjectInputStream c = new ObjectInputStream(
+                            new ByteArrayInputStream(changes))
+                    ) {
+                        p.readChanges(c);
+                    }
+                    return null;
+                }
+            });
+        }
+        inParallel(reads);
+    }
+
+    /**
+     * Gets number of partitions.
+     *
+     * @return number of partitions
+     */
+    int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Gets partition which keeps row.
+     *
+     * @param key key of row
+     * @return partition of row
+     * @throws IllegalArgumentException if key is null
+     */
+    ColumnFamily partition(final ByteBuffer key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        // FNV-1a with murmur finalizer - every key byte affects every bit
+        int h = 0x811c9dc5;
+        for (int i = key.position(); i < key.limit(); ++i) {
+            h ^= key.get(i);
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return partitions[(h & Integer.MAX_VALUE) % partitions.length];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof PartitionedColumnFamily) {
+            final PartitionedColumnFamily c = (PartitionedColumnFamily)obj;
+
+            return getRows().equals(c.getRows());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 79 * hash + getRows().hashCode();
+        return hash;
+    }
+
+    /*
+     * Gets rows of all partitions - used for comparing.
+     */
+    Map<ByteArrayWrapper, IRow> getRows() {
+        final Map<ByteArrayWrapper, IRow> rows = new HashMap<>();
+        for (ColumnFamily p : partitions) {
+            rows.putAll(p.getRows());
+        }
+        return rows;
+    }
+
+    /*
+     * Runs tasks in workers and waits for all results.
+     */
+    private static <T> List<T> inParallel(final List<Callable<T>> tasks)
+        throws IOException, ClassNotFoundException
+    {
+        final List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> f : Workers.POOL.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ex = new InterruptedIOException();
+            ex.initCause(e);
+            throw ex;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+    /*
+     * Workers shared by partitioned column families - daemon threads, one
+     * per processor, created on first use.
+     */
+    private static final class Workers {
+
+        static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "pythia-partition");
+                    t.setDaemon(true);
+                    return t;
+                }
+            }
+        );
+
+        private Workers() {
+        }
+    }
+}
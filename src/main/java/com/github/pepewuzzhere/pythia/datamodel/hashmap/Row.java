@@ -26,21 +26,28 @@ package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
 import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
+import com.github.pepewuzzhere.pythia.datamodel.BlockCodec;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.ICompressedColumn;
+import com.github.pepewuzzhere.pythia.datamodel.ICompressedRow;
 import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import com.github.pepewuzzhere.pythia.datamodel.RowSlice;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Adaptation of {@link com.github.pepewuzzhere.pythia.datamodel.IRow}
@@ -50,12 +57,32 @@ import java.util.concurrent.ConcurrentHashMap;
  * @version %I%, %G%
  * @since 1.0
  */
-class Row implements IRow, Serializable {
+class Row implements ICompressedRow, MemoryAware, ChangeAware, Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /*
+     * Estimated size of row object, key array, columns map and its entry in
+     * column family.
+     */
+    static final int OVERHEAD = 160;
+
+    /*
+     * Names of columns shared by rows of column family, null if row has not
+     * been created by column family.
+     */
+    private final ColumnDictionary dictionary;
+
+    /*
+     * Values of columns bigger than threshold are compressed, 0 if values
+     * are not compressed.
+     */
+    private final int compressAbove;
+
     private transient byte[] key;
-    private transient Map<ByteArrayWrapper, IColumn> columns;
+    private transient ConcurrentMap<ByteArrayWrapper, IColumn> columns;
+    private transient volatile MemoryBudget memory;
+    private transient volatile ChangeAware.Listener listener;
 
     /**
      * Sets key of created row.
@@ -64,6 +91,37 @@ class Row implements IRow, Serializable {
      * @throws IllegalArgumentException if key is null or empty
      */
     Row(final ByteBuffer key) {
+        this(key, null);
+    }
+
+    /**
+     * Sets key of created row and dictionary which provides arrays with names
+     * of new columns.
+     *
+     * @param key key of this row
+     * @param dictionary dictionary shared by rows of column family or null
+     * @throws IllegalArgumentException if key is null or empty
+     */
+    Row(final ByteBuffer key, final ColumnDictionary dictionary) {
+        this(key, dictionary, 0);
+    }
+
+    /**
+     * Sets key of created row, dictionary of column names and size of
+     * values which are compressed.
+     *
+     * @param key key of this row
+     * @param dictionary dictionary shared by rows of column family or null
+     * @param compressAbove values bigger than this number of bytes are
+     *                      compressed, 0 turns compression off
+     * @throws IllegalArgumentException if key is null or empty
+     */
+    Row(
+        final ByteBuffer key, final ColumnDictionary dictionary,
+        final int compressAbove
+    ) {
+        this.dictionary = dictionary;
+        this.compressAbove = compressAbove;
         if (key == null) {
             throw new IllegalArgumentException("Key is required");
         }
@@ -83,11 +141,13 @@ class Row implements IRow, Serializable {
      */
     private void writeObject(ObjectOutputStream s) throws IOException {
         s.defaultWriteObject();
-        s.writeInt(columns.size());
+        final Collection<IColumn> copied =
+                copy(columns.values()).columns.values();
+        s.writeInt(copied.size());
         s.writeInt(key.length);
         s.write(key);
-        for (Map.Entry<ByteArrayWrapper, IColumn> c : columns.entrySet()) {
-            s.writeObject(c.getValue());
+        for (IColumn c : copied) {
+            s.writeObject(c);
         }
     }
 
@@ -98,17 +158,11 @@ class Row implements IRow, Serializable {
         int size = s.readInt();
         int keySize = s.readInt();
         key = new byte[keySize];
-        s.read(key, 0, keySize);
+        s.readFully(key);
 
         columns = new ConcurrentHashMap<>();
         for (int i = 0; i < size; i++) {
-            final IColumn column = (IColumn)s.readObject();
-            if (columns.containsKey(toKey(column.getKey()))) {
-                // update value in exiting column
-                columns.get(toKey(column.getKey())).setValue(column.getValue());
-            } else {
-                columns.put(toKey(column.getKey()), column);
-            }
+            mergeColumn((IColumn)s.readObject());
         }
     }
 
@@ -120,12 +174,8 @@ class Row implements IRow, Serializable {
         if (column == null) {
             throw new IllegalArgumentException("Column is required");
         }
-        if (columns.containsKey(toKey(column.getKey()))) {
-            // update value in exiting column
-            columns.get(toKey(column.getKey())).setValue(column.getValue());
-        } else {
-            columns.put(toKey(column.getKey()), column);
-        }
+        mergeColumn(column);
+        changed();
     }
 
     @Override
@@ -143,8 +193,10 @@ class Row implements IRow, Serializable {
         if (key == null || key.array().length == 0) {
             throw new IllegalArgumentException("Key is required");
         }
-        if (columns.containsKey(toKey(key))) {
-            columns.get(toKey(key)).setValue(value);
+        final IColumn column = columns.get(toKey(key));
+        if (column != null) {
+            column.setValue(value);
+            changed();
         } else {
             throw new PythiaException(PythiaError.DATA_NOT_FOUND);
         }
@@ -152,11 +204,172 @@ class Row implements IRow, Serializable {
 
     @Override
     public void deleteColumn(final ByteBuffer key) throws PythiaException {
-        if (columns.containsKey(toKey(key))) {
-            columns.remove(toKey(key));
-        } else {
+        final IColumn removed = columns.remove(toKey(key));
+        if (removed == null) {
             throw new PythiaException(PythiaError.DATA_NOT_FOUND);
         }
+        detach(removed);
+        changed();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public ByteBuffer putColumn(
+            final ByteBuffer key, final ByteBuffer value)
+    {
+        if (key == null || key.array().length == 0) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        IColumn column = columns.get(toKey(key));
+        ByteBuffer previous = null;
+        if (column == null) {
+            final Column created = newColumn(key);
+            created.setValue(value);
+            final long bytes = created.getBytes();
+            final MemoryBudget m = memory;
+            created.setMemory(m);
+            column = columns.putIfAbsent(toKey(created.getKey()), created);
+            if (column == null && m != null) {
+                m.allocate(bytes);
+            }
+        }
+        if (column != null) {
+            previous = column.setValue(value);
+        }
+        changed();
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty or block is null
+     */
+    @Override public void putCompressedColumn(
+            final ByteBuffer key, final ByteBuffer block)
+    {
+        if (key == null || key.array().length == 0 || block == null) {
+            throw new IllegalArgumentException("Key and block are required");
+        }
+        IColumn column = columns.get(toKey(key));
+        if (column == null) {
+            final Column created = newColumn(key);
+            created.setCompressedValue(block.array());
+            final long bytes = created.getBytes();
+            final MemoryBudget m = memory;
+            created.setMemory(m);
+            column = columns.putIfAbsent(toKey(created.getKey()), created);
+            if (column == null && m != null) {
+                m.allocate(bytes);
+            }
+        }
+        if (column instanceof Column) {
+            ((Column)column).setCompressedValue(block.array());
+        } else if (column != null) {
+            column.setValue(
+                    ByteBuffer.wrap(BlockCodec.decompress(block.array())));
+        }
+        changed();
+    }
+
+    /**
+     * Adds delta to counter column, missing column is created with value 0.
+     *
+     * Increments don't lock row - hot counter spreads them over striped
+     * cells (see {@link Column#add(long)}).
+     *
+     * @param key key of column
+     * @param delta added value, may be negative
+     * @throws PythiaException if value of column is not counter
+     * @throws IllegalArgumentException if key is empty
+     */
+    void increment(final ByteBuffer key, final long delta)
+            throws PythiaException
+    {
+        if (key == null || key.array().length == 0) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        IColumn column = columns.get(toKey(key));
+        if (column == null) {
+            final Column created = newColumn(key);
+            created.setValue(ByteBuffer.wrap(Counters.encode(0)));
+            final long bytes = created.getBytes();
+            final MemoryBudget m = memory;
+            created.setMemory(m);
+            column = columns.putIfAbsent(toKey(created.getKey()), created);
+            if (column == null) {
+                if (m != null) {
+                    m.allocate(bytes);
+                }
+                column = created;
+            }
+        }
+        if (column instanceof Column) {
+            ((Column)column).add(delta);
+        } else {
+            synchronized (column) {
+                final ByteBuffer v = column.getValue();
+                column.setValue(ByteBuffer.wrap(Counters.encode(
+                    Counters.decode(v != null ? v.array() : null) + delta)));
+            }
+        }
+    }
+
+    /**
+     * Deletes and puts columns together.
+     *
+     * Concurrent calls on this row are serialized and change of row size is
+     * counted in memory budget once. Readers of several columns (iteration,
+     * select and slice) copy them under the same lock, so they see either
+     * whole batch or none of it - {@link #getColumn} reads single column
+     * without lock.
+     *
+     * @param puts keys and new values of columns
+     * @param removed keys of deleted columns, missing columns are skipped
+     */
+    synchronized void apply(
+        final Map<ByteBuffer, ByteBuffer> puts,
+        final Collection<ByteBuffer> removed
+    ) {
+        final MemoryBudget m = memory;
+        long bytes = 0;
+        for (ByteBuffer name : removed) {
+            final IColumn column = columns.remove(toKey(name));
+            if (column != null) {
+                bytes -= Column.bytesOf(column);
+                if (column instanceof MemoryAware) {
+                    ((MemoryAware)column).setMemory(null);
+                }
+            }
+        }
+        for (Map.Entry<ByteBuffer, ByteBuffer> c : puts.entrySet()) {
+            final IColumn column = columns.get(toKey(c.getKey()));
+            final byte[] value = c.getValue() != null
+                    ? c.getValue().array()
+                    : null;
+            if (column instanceof Column) {
+                bytes += ((Column)column).replaceValue(value);
+            } else if (column != null) {
+                column.setValue(c.getValue());
+            } else {
+                final Column created = newColumn(c.getKey());
+                created.replaceValue(value);
+                final long size = created.getBytes();
+                created.setMemory(m);
+                final IColumn existing =
+                        columns.putIfAbsent(toKey(created.getKey()), created);
+                if (existing == null) {
+                    bytes += size;
+                } else {
+                    // created meanwhile by putColumn
+                    existing.setValue(c.getValue());
+                }
+            }
+        }
+        if (m != null && bytes != 0) {
+            m.allocate(bytes);
+        }
     }
 
     @Override
@@ -164,24 +377,76 @@ class Row implements IRow, Serializable {
         return ByteBuffer.wrap(key);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Selected columns are copied together, slice doesn't see part of
+     * batch (see {@link #apply}).
+     */
+    @Override public IRow select(final ByteBuffer... keys) {
+        return RowSlice.of(copy(RowSlice.of(this, keys)), keys);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Columns in range are copied together, slice doesn't see part of
+     * batch (see {@link #apply}).
+     */
+    @Override public IRow slice(final ByteBuffer from, final ByteBuffer to) {
+        return RowSlice.range(copy(RowSlice.range(this, from, to)), from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Iterator goes over copy of columns taken together, it doesn't see part
+     * of batch (see {@link #apply}) and changes of returned columns don't
+     * change this row.
+     */
+    @Override public Iterator<IColumn> iterator() {
+        return Collections.unmodifiableCollection(
+            copy(columns.values()).columns.values()
+        ).iterator();
+    }
+
+    @Override
+    public long getBytes() {
+        long bytes = OVERHEAD + key.length;
+        for (IColumn c : columns.values()) {
+            bytes += Column.bytesOf(c);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void setMemory(final MemoryBudget memory) {
+        this.memory = memory;
+        for (IColumn c : columns.values()) {
+            if (c instanceof MemoryAware) {
+                ((MemoryAware)c).setMemory(memory);
+            }
+        }
+    }
+
+    @Override
+    public void setListener(final ChangeAware.Listener listener) {
+        this.listener = listener;
+    }
+
     @Override
     public String toString() {
         final StringBuilder ret = new StringBuilder();
         ret.append("{\"").append(new String(key)).append("\":{");
 
-        Set<Map.Entry<ByteArrayWrapper, IColumn>> cols = columns.entrySet();
-
-        for (
-            Iterator<Entry<ByteArrayWrapper, IColumn>> it = cols.iterator();
-            it.hasNext();
-        ) {
-            Entry<ByteArrayWrapper, IColumn> c = it.next();
+        for (Iterator<IColumn> it = iterator(); it.hasNext();) {
+            final IColumn c = it.next();
             ret.append("\"");
-            ret.append(new String(c.getValue().getKey().array()));
+            ret.append(new String(c.getKey().array()));
             ret.append("\"");
             ret.append(":");
             ret.append("\"");
-            ret.append(new String(c.getValue().getValue().array()));
+            ret.append(new String(c.getValue().array()));
             ret.append("\"");
             if (it.hasNext()) {
                 ret.append(",");
@@ -221,8 +486,85 @@ class Row implements IRow, Serializable {
         return new HashMap<>(columns);
     }
 
+    /*
+     * Copies columns to row which is not part of column family - under lock
+     * of batches, so copy has either whole batch or none of it.
+     */
+    private synchronized Row copy(final Iterable<IColumn> source) {
+        final Row copy = new Row(ByteBuffer.wrap(key), null, compressAbove);
+        for (IColumn c : source) {
+            final ByteBuffer block = c instanceof ICompressedColumn
+                    ? ((ICompressedColumn)c).getCompressedValue()
+                    : null;
+            if (block != null) {
+                // copied without decompressing
+                copy.putCompressedColumn(c.getKey(), block);
+            } else {
+                copy.putColumn(c.getKey(), c.getValue());
+            }
+        }
+        return copy;
+    }
+
+    /*
+     * Adds column or updates value in exiting one - single map operation.
+     */
+    private void mergeColumn(final IColumn column) {
+        if (column instanceof Column) {
+            ((Column)column).setCompression(compressAbove);
+        }
+        final long bytes = Column.bytesOf(column);
+        final MemoryBudget m = memory;
+        if (column instanceof MemoryAware) {
+            ((MemoryAware)column).setMemory(m);
+        }
+        final IColumn existing =
+                columns.putIfAbsent(toKey(column.getKey()), column);
+        if (existing != null) {
+            existing.setValue(column.getValue());
+        } else if (m != null) {
+            m.allocate(bytes);
+        }
+    }
+
+    /*
+     * Reports change made through IRow to column family.
+     */
+    private void changed() {
+        final ChangeAware.Listener l = listener;
+        if (l != null) {
+            l.changed(ByteBuffer.wrap(key));
+        }
+    }
+
+    /*
+     * Releases bytes of removed column.
+     */
+    private void detach(final IColumn column) {
+        final MemoryBudget m = memory;
+        if (m != null) {
+            m.release(Column.bytesOf(column));
+        }
+        if (column instanceof MemoryAware) {
+            ((MemoryAware)column).setMemory(null);
+        }
+    }
+
+    /*
+     * Creates column with name from dictionary and compression of row.
+     */
+    private Column newColumn(final ByteBuffer key) {
+        final Column created = new Column(
+                dictionary != null ? dictionary.canonical(key) : key);
+        created.setCompression(compressAbove);
+        return created;
+    }
+
+    /*
+     * Wraps key without copying - see ColumnFamily#toKey.
+     */
     private ByteArrayWrapper toKey(final ByteBuffer buffer) {
-        return new ByteArrayWrapper(buffer.array());
+        return ByteArrayWrapper.view(buffer);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Segmented LRU order of rows kept in memory by tiered column family.
+ *
+ * New keys enter probation segment, key used again is promoted to protected
+ * segment. Keys are evicted from probation first, so one pass over many rows
+ * (e.g. range read) pushes out only other rows used once and doesn't flush
+ * rows used repeatedly. Protected segment takes at most 80% of keys, its
+ * least recently used keys are moved back to probation.
+ *
+ * @param <K> type of keys
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class SegmentedLru<K> {
+
+    private final LinkedHashMap<K, K> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, K> protect =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final int protectedCapacity;
+
+    /**
+     * Creates empty order.
+     *
+     * @param capacity expected number of keys
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    SegmentedLru(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        protectedCapacity = Math.max(1, (int)(capacity * 0.8));
+    }
+
+    /**
+     * Adds new key as most recently used key of probation segment.
+     *
+     * @param key added key
+     */
+    synchronized void add(final K key) {
+        if (!protect.containsKey(key)) {
+            probation.put(key, key);
+        }
+    }
+
+    /**
+     * Marks key as used - key from probation is promoted.
+     *
+     * @param key used key, stored key is kept if keys are equal
+     */
+    synchronized void touch(final K key) {
+        if (protect.get(key) != null) {
+            return;
+        }
+        final K stored = probation.remove(key);
+        if (stored == null) {
+            return;
+        }
+        protect.put(stored, stored);
+        if (protect.size() > protectedCapacity) {
+            final Iterator<K> eldest = protect.keySet().iterator();
+            final K demoted = eldest.next();
+            eldest.remove();
+            probation.put(demoted, demoted);
+        }
+    }
+
+    /**
+     * Removes key.
+     *
+     * @param key removed key
+     */
+    synchronized void remove(final K key) {
+        if (probation.remove(key) == null) {
+            protect.remove(key);
+        }
+    }
+
+    /**
+     * Removes and returns key which should be evicted.
+     *
+     * @return least recently used key of probation segment, protected
+     *         segment if probation is empty, or null if there are no keys
+     */
+    synchronized K victim() {
+        final LinkedHashMap<K, K> segment =
+                probation.isEmpty() ? protect : probation;
+        final Iterator<K> eldest = segment.keySet().iterator();
+        if (!eldest.hasNext()) {
+            return null;
+        }
+        final K key = eldest.next();
+        eldest.remove();
+        return key;
+    }
+
+    /**
+     * Gets number of keys.
+     *
+     * @return number of keys in both segments
+     */
+    synchronized int size() {
+        return probation.size() + protect.size();
+    }
+}
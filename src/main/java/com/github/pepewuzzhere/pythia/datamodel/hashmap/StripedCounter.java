@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter which scales concurrent increments across cores.
+ *
+ * Uncontended increments change single base value. After first failed
+ * compare-and-set counter spreads increments over cells - every thread adds
+ * to cell chosen by its probe and moves to other cell when it collides with
+ * another thread. Cells are padded to separate cache lines. Value of counter
+ * is sum of base and all cells.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class StripedCounter {
+
+    /*
+     * Number of cells - power of two not lower than twice number of cores,
+     * at most 64.
+     */
+    private static final int CELLS = Math.min(
+        Integer.highestOneBit(
+            Runtime.getRuntime().availableProcessors() * 4 - 1),
+        64
+    );
+
+    /*
+     * Distance of cells in array - 8 longs fill cache line.
+     */
+    private static final int PAD = 8;
+
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+        @Override protected int[] initialValue() {
+            final int seed =
+                    (int)Thread.currentThread().getId() * 0x9e3779b9;
+            return new int[] {seed != 0 ? seed : 1};
+        }
+    };
+
+    private final AtomicLong base;
+    private volatile AtomicLongArray cells;
+
+    /**
+     * Creates counter with initial value.
+     *
+     * @param value initial value
+     */
+    StripedCounter(final long value) {
+        base = new AtomicLong(value);
+    }
+
+    /**
+     * Adds delta to counter.
+     *
+     * @param delta added value, may be negative
+     */
+    void add(final long delta) {
+        AtomicLongArray c = cells;
+        if (c == null) {
+            final long b = base.get();
+            if (base.compareAndSet(b, b + delta)) {
+                return;
+            }
+            c = inflate();
+        }
+        final int[] probe = PROBE.get();
+        while (true) {
+            final int i = (probe[0] & (CELLS - 1)) * PAD;
+            final long v = c.get(i);
+            if (c.compareAndSet(i, v, v + delta)) {
+                return;
+            }
+            // xorshift - collided thread moves to other cell
+            int h = probe[0];
+            h ^= h << 13;
+            h ^= h >>> 17;
+            h ^= h << 5;
+            probe[0] = h;
+        }
+    }
+
+    /**
+     * Gets value of counter.
+     *
+     * Sum is not atomic snapshot - increments made during summing may be
+     * missed.
+     *
+     * @return sum of all increments
+     */
+    long sum() {
+        long sum = base.get();
+        final AtomicLongArray c = cells;
+        if (c != null) {
+            for (int i = 0; i < CELLS; ++i) {
+                sum += c.get(i * PAD);
+            }
+        }
+        return sum;
+    }
+
+    private synchronized AtomicLongArray inflate() {
+        if (cells == null) {
+            cells = new AtomicLongArray(CELLS * PAD);
+        }
+        return cells;
+    }
+}
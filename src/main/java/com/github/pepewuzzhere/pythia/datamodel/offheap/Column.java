@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Adaptation of {@link com.github.pepewuzzhere.pythia.datamodel.IColumn}
+ * for columns stored in direct memory.
+ *
+ * Column keeps value on heap until its row is added to column family, after
+ * that value is read from and written to row record.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+class Column implements IColumn {
+
+    private final byte[] key;
+    private byte[] value;
+
+    /*
+     * Column family and row which stores this column.
+     */
+    private ColumnFamily owner;
+    private byte[] rowKey;
+
+    /**
+     * Constructor requires key because <code>Column</code> must have one, only
+     * value is optional.
+     *
+     * @param key key of this column
+     * @throws IllegalArgumentException if key is empty or null
+     */
+    Column(final ByteBuffer key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        this.key = Row.toBytes(key);
+        if (this.key.length == 0) {
+            throw new IllegalArgumentException("Key must not be empty");
+        }
+    }
+
+    /*
+     * Creates view of column stored in row record.
+     */
+    Column(final byte[] key, final ColumnFamily owner, final byte[] rowKey) {
+        this.key = key;
+        bind(owner, rowKey);
+    }
+
+    @Override
+    public ByteBuffer getKey() {
+        return ByteBuffer.wrap(key);
+    }
+
+    @Override
+    public ByteBuffer getValue() {
+        final byte[] v = owner != null ? owner.readValue(rowKey, key) : value;
+        if (v != null) {
+            return ByteBuffer.wrap(v);
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public ByteBuffer setValue(final ByteBuffer value) {
+        final byte[] v = Row.toBytes(value);
+        final byte[] old;
+        if (owner != null) {
+            old = owner.putValue(rowKey, key, v);
+        } else {
+            old = this.value;
+            this.value = v;
+        }
+        return old != null ? ByteBuffer.wrap(old) : null;
+    }
+
+    /*
+     * Binds column to row record.
+     */
+    void bind(final ColumnFamily owner, final byte[] rowKey) {
+        this.owner = owner;
+        this.rowKey = rowKey;
+        this.value = null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Column) {
+            final Column c = (Column)obj;
+
+            final ByteBuffer v = getValue();
+            return Arrays.equals(key, c.key)
+                && (v != null ? v.equals(c.getValue()) : null == c.getValue());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 67 * hash + Arrays.hashCode(this.key);
+        final ByteBuffer v = getValue();
+        hash = 67 * hash + (v != null ? v.hashCode() : 0);
+        return hash;
+    }
+
+}
@@ -0,0 +1,1181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
+import com.github.pepewuzzhere.pythia.datamodel.Expiry;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.KeyComparator;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import com.github.pepewuzzhere.pythia.datamodel.SecondaryIndex;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Adaptation of {@link com.github.pepewuzzhere.pythia.datamodel.IColumnFamily}
+ * storing rows in direct memory.
+ *
+ * Every row is one record in block of {@link SlabAllocator}:
+ * <pre>
+ * int record length, int key length, key bytes, int columns count,
+ * columns: int name length, name bytes, int value length (-1 if null),
+ *          value bytes
+ * </pre>
+ * Records are found by {@link OffHeapIndex}. Java heap holds only slabs and
+ * index buffers, so garbage collector doesn't see keys and values at all.
+ *
+ * Deadlines of rows and columns with time to live are kept in
+ * {@link Expiry}, expired data are removed before row is returned.
+ *
+ * Row and column views write through column family, so every changed row
+ * is tracked and storage could write only changed records (see
+ * {@link #writeChanges(ObjectOutputStream)}). {@link SecondaryIndex}es are
+ * updated after every change of row.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+class ColumnFamily implements IColumnFamily, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    private final int slabSize;
+
+    /*
+     * Options of column family - null in snapshots written before options
+     * were kept. Only column types are used by this data model.
+     */
+    private final ColumnFamilyOptions options;
+
+    /*
+     * Deadlines of rows and columns - null in snapshots written before time
+     * to live was introduced.
+     */
+    private Expiry expiry;
+
+    /*
+     * Indexes of column values - null in snapshots written before indexes
+     * were introduced. Only indexed columns are saved, entries are rebuilt
+     * while records are read.
+     */
+    private CopyOnWriteArrayList<SecondaryIndex> indexes;
+
+    private transient SlabAllocator memory;
+    private transient OffHeapIndex index;
+    private transient MemoryBudget budget;
+    private transient long accountedBytes;
+    private transient ReadWriteLock lock;
+    private transient Expiry.Reclaimer reclaimer;
+    private transient SecondaryIndex.Lookup lookup;
+    private transient volatile boolean isDirty;
+    private transient Set<ByteBuffer> changed;
+
+    /**
+     * Creates new column family and sets this as dirty - should be saved to
+     * disc.
+     *
+     * @param slabSize size of memory slabs used by this column family
+     */
+    ColumnFamily(final int slabSize) {
+        this(slabSize, new ColumnFamilyOptions());
+    }
+
+    /**
+     * Creates new column family with options and sets this as dirty.
+     *
+     * @param slabSize size of memory slabs used by this column family
+     * @param options options of column family
+     */
+    ColumnFamily(final int slabSize, final ColumnFamilyOptions options) {
+        this.slabSize = slabSize;
+        this.options = options;
+        expiry = new Expiry();
+        indexes = new CopyOnWriteArrayList<>();
+        init();
+        isDirty = true;
+    }
+
+    private void init() {
+        memory = new SlabAllocator(slabSize);
+        index = new OffHeapIndex(memory, INITIAL_INDEX_CAPACITY);
+        lock = new ReentrantReadWriteLock();
+        changed = Collections.newSetFromMap(
+                new ConcurrentHashMap<ByteBuffer, Boolean>());
+        budget = new MemoryBudget();
+        accountedBytes = 0;
+        account();
+        reclaimer = new Expiry.Reclaimer() {
+            @Override
+            public void expired(
+                    final ByteBuffer key, final ByteBuffer columnKey)
+            {
+                final byte[] k = Row.toBytes(key);
+                if (columnKey == null) {
+                    if (removeRow(k)) {
+                        changed(k);
+                    }
+                } else {
+                    removeColumn(k, Row.toBytes(columnKey));
+                }
+            }
+        };
+        lookup = new SecondaryIndex.Lookup() {
+            @Override
+            public ByteBuffer getValue(
+                    final ByteBuffer key, final ByteBuffer columnKey)
+            {
+                final byte[] value = readValue(
+                        Row.toBytes(key), Row.toBytes(columnKey));
+                return value != null ? ByteBuffer.wrap(value) : null;
+            }
+        };
+    }
+
+    /**
+     * Serializes this ColumnFamily instance.
+     *
+     * @serialData The size of the list ({@code int}), followed by sequence
+     *             of records: length ({@code int}) and record bytes
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        lock.readLock().lock();
+        try {
+            s.writeInt(index.size());
+            for (int i = 0; i < index.capacity(); ++i) {
+                final long address = index.addressAt(i);
+                if (address != OffHeapIndex.NOT_FOUND) {
+                    final byte[] record = readRecord(address);
+                    s.writeInt(record.length);
+                    s.write(record);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Index isn't changed meanwhile. Visited rows are copies of records.
+     */
+    @Override public void visitRows(final RowVisitor visitor)
+            throws IOException
+    {
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < index.capacity(); ++i) {
+                final long address = index.addressAt(i);
+                if (address != OffHeapIndex.NOT_FOUND) {
+                    final Row row = new Row(ByteBuffer.wrap(readKey(address)));
+                    for (Map.Entry<ByteBuffer, ByteBuffer> c
+                            : Row.parseColumns(readRecord(address)).entrySet()
+                    ) {
+                        row.putColumn(c.getKey(), c.getValue());
+                    }
+                    visitor.visit(row);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        if (expiry == null) {
+            expiry = new Expiry();
+        }
+        if (indexes == null) {
+            indexes = new CopyOnWriteArrayList<>();
+        }
+        init();
+        final int size = s.readInt();
+        for (int i = 0; i < size; i++) {
+            final byte[] record = new byte[s.readInt()];
+            s.readFully(record);
+            final byte[] key = new byte[ByteBuffer.wrap(record).getInt(0)];
+            System.arraycopy(record, 4, key, 0, key.length);
+            if (index.get(key) != OffHeapIndex.NOT_FOUND) {
+                throw new InvalidObjectException("Duplicate key of row");
+            }
+            index.put(key, store(record));
+            if (!indexes.isEmpty()) {
+                final Map<ByteBuffer, ByteBuffer> columns =
+                        Row.parseColumns(record);
+                for (SecondaryIndex secondary : indexes) {
+                    secondary.put(
+                        ByteBuffer.wrap(key),
+                        columns.get(secondary.getColumnKey())
+                    );
+                }
+            }
+        }
+        account();
+        setClean();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if row is null or wasn't created by
+     *                                  {@link OffHeapDataModel}
+     */
+    @Override public void addRow(final IRow row) throws PythiaException {
+        if (row == null) {
+            throw new IllegalArgumentException("Row is required");
+        }
+        if (!(row instanceof Row)) {
+            throw new IllegalArgumentException(
+                    "Row must be created by OffHeapDataModel");
+        }
+        final Row r = (Row)row;
+        final byte[] key = r.getKeyBytes();
+        reclaim(row.getKey());
+        lock.writeLock().lock();
+        try {
+            if (index.get(key) != OffHeapIndex.NOT_FOUND) {
+                throw new PythiaException(PythiaError.KEY_ALREADY_EXISTS);
+            }
+            index.put(key, store(r.toRecord()));
+            r.attach(this);
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+        changed(key);
+    }
+
+    @Override
+    public IRow getRow(final ByteBuffer key) {
+        final byte[] k = Row.toBytes(key);
+        reclaim(key);
+        lock.readLock().lock();
+        try {
+            if (index.get(k) == OffHeapIndex.NOT_FOUND) {
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Row(k, this);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public IRow getOrCreateRow(final ByteBuffer key) {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        final Row row = new Row(key);
+        final byte[] k = row.getKeyBytes();
+        reclaim(key);
+        boolean created = false;
+        lock.writeLock().lock();
+        try {
+            if (index.get(k) == OffHeapIndex.NOT_FOUND) {
+                index.put(k, store(row.toRecord()));
+                created = true;
+            }
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+        if (created) {
+            changed(k);
+        }
+        row.attach(this);
+        return row;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key or column key is empty
+     */
+    @Override public void updateRow(
+        final ByteBuffer key, final ByteBuffer columnKey,
+        final ByteBuffer columnValue
+    ) throws PythiaException {
+        if (key == null || !key.hasRemaining()
+           || columnKey == null || !columnKey.hasRemaining()
+        ) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        updateColumn(
+            Row.toBytes(key), Row.toBytes(columnKey), Row.toBytes(columnValue)
+        );
+    }
+
+    @Override
+    public void deleteRow(final ByteBuffer key) throws PythiaException {
+        final byte[] k = Row.toBytes(key);
+        reclaim(key);
+        if (!removeRow(k)) {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        expiry.remove(key);
+        changed(k);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Record of row is rebuilt once with all its mutations under write lock.
+     *
+     * @throws IllegalArgumentException if batch is null
+     */
+    @Override public void apply(final Batch batch) throws PythiaException {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch is required");
+        }
+        for (Batch.RowMutation mutation : batch.getRows()) {
+            apply(mutation);
+        }
+    }
+
+    /*
+     * Applies mutations of one row.
+     */
+    private void apply(final Batch.RowMutation mutation)
+            throws PythiaException
+    {
+        final ByteBuffer key = mutation.getKey();
+        final byte[] k = Row.toBytes(key);
+        reclaim(key);
+        if (mutation.isDeleted()
+            && !mutation.isCreated() && mutation.isModified()
+        ) {
+            // mutations of deleted row
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        boolean deleted = false;
+        lock.writeLock().lock();
+        try {
+            long address = index.get(k);
+            if (mutation.isDeleted() && address != OffHeapIndex.NOT_FOUND) {
+                index.remove(k);
+                memory.free(address);
+                address = OffHeapIndex.NOT_FOUND;
+                deleted = true;
+            }
+            if (address == OffHeapIndex.NOT_FOUND && !mutation.isCreated()
+                && mutation.isModified()
+            ) {
+                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+            }
+            if (mutation.isModified()) {
+                final Map<ByteBuffer, ByteBuffer> columns =
+                        address != OffHeapIndex.NOT_FOUND
+                            ? Row.parseColumns(readRecord(address))
+                            : new LinkedHashMap<ByteBuffer, ByteBuffer>();
+                columns.keySet().removeAll(mutation.getRemovedColumns());
+                columns.putAll(mutation.getColumns());
+                for (Map.Entry<ByteBuffer, Long> i
+                        : mutation.getIncrements().entrySet()
+                ) {
+                    final ByteBuffer v = columns.get(i.getKey());
+                    columns.put(i.getKey(), ByteBuffer.wrap(Counters.encode(
+                        Counters.decode(v != null ? Row.toBytes(v) : null)
+                            + i.getValue())));
+                }
+                final byte[] record = Row.toRecord(k, columns);
+                if (address != OffHeapIndex.NOT_FOUND) {
+                    rewrite(k, address, record);
+                } else {
+                    index.put(k, store(record));
+                }
+            }
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+        if (deleted) {
+            expiry.remove(key);
+        }
+        if (!mutation.getDeadlines().isEmpty()) {
+            final long now = System.currentTimeMillis();
+            for (Map.Entry<ByteBuffer, Long> d
+                    : mutation.getDeadlines().entrySet()
+            ) {
+                expiry.setDeadline(
+                    key, d.getKey(),
+                    d.getValue() != 0 ? now + d.getValue() : Expiry.NEVER
+                );
+            }
+        }
+        if (deleted || mutation.isModified()) {
+            changed(k);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if column key is empty
+     */
+    @Override public void createIndex(final ByteBuffer columnKey)
+            throws PythiaException
+    {
+        final SecondaryIndex created = new SecondaryIndex(columnKey);
+        synchronized (indexes) {
+            if (findIndex(columnKey) != null) {
+                throw new PythiaException(PythiaError.KEY_ALREADY_EXISTS);
+            }
+            indexes.add(created);
+        }
+        // rows changed meanwhile are indexed after their change - index
+        // reads current value, so order of updates doesn't matter
+        final List<ByteBuffer> keys;
+        lock.readLock().lock();
+        try {
+            keys = new ArrayList<>(index.size());
+            for (int i = 0; i < index.capacity(); ++i) {
+                final long address = index.addressAt(i);
+                if (address != OffHeapIndex.NOT_FOUND) {
+                    keys.add(ByteBuffer.wrap(readKey(address)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (ByteBuffer key : keys) {
+            created.update(key, lookup);
+        }
+        setDirty();
+    }
+
+    @Override
+    public List<IRow> getIndexedRows(
+        final ByteBuffer columnKey, final ByteBuffer value
+    ) throws PythiaException {
+        final SecondaryIndex found = findIndex(columnKey);
+        if (found == null) {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        final List<ByteBuffer> keys = found.find(value);
+        final List<IRow> result = new ArrayList<>(keys.size());
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        final byte[] name = Row.toBytes(columnKey);
+        for (ByteBuffer key : keys) {
+            if (expiry.purge(key, now, reclaimer)) {
+                continue;
+            }
+            // row could change after index was read
+            final byte[] k = Row.toBytes(key);
+            final byte[] v = readValue(k, name);
+            if (v != null && value.equals(ByteBuffer.wrap(v))) {
+                result.add(new Row(k, this));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty or ttl is negative
+     */
+    @Override public void expire(
+        final ByteBuffer key, final ByteBuffer columnKey, final long ttl
+    ) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException(
+                    "Time to live must not be negative");
+        }
+        expiry.setDeadline(
+            key, columnKey,
+            ttl != 0 ? System.currentTimeMillis() + ttl : Expiry.NEVER
+        );
+        setDirty(key);
+    }
+
+    @Override
+    public long getDeadline(final ByteBuffer key, final ByteBuffer columnKey) {
+        return expiry.getDeadline(key, columnKey);
+    }
+
+    @Override
+    public List<ByteBuffer> getIndexedColumns() {
+        final List<ByteBuffer> keys = new ArrayList<>(indexes.size());
+        for (SecondaryIndex index : indexes) {
+            keys.add(index.getColumnKey());
+        }
+        return keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Rows are found by walking slots of index - rows moved by growth of index
+     * while iterating may be skipped or returned twice.
+     */
+    @Override public Iterator<IRow> iterator() {
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        return new Iterator<IRow>() {
+
+            private int slot;
+            private IRow next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    final byte[] key = nextKey();
+                    if (key == null) {
+                        return false;
+                    }
+                    if (!expiry.purge(ByteBuffer.wrap(key), now, reclaimer)) {
+                        next = new Row(key, ColumnFamily.this);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public IRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final IRow row = next;
+                next = null;
+                return row;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            private byte[] nextKey() {
+                lock.readLock().lock();
+                try {
+                    while (slot < index.capacity()) {
+                        final long address = index.addressAt(slot++);
+                        if (address != OffHeapIndex.NOT_FOUND) {
+                            return readKey(address);
+                        }
+                    }
+                    return null;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    @Override public List<IRow> getRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    ) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        final List<IRow> result = new ArrayList<>(Math.min(limit, 64));
+        ByteBuffer start = from;
+        boolean include = inclusive;
+        // rows expired by timer wheel are removed before they are found,
+        // later only rows in page are checked
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        while (true) {
+            // expired rows are removed - read more to fill the page
+            final int wanted = limit - result.size();
+            final List<IRow> found = findRows(start, include, to, wanted);
+            for (IRow row : found) {
+                if (!expiry.purge(row.getKey(), now, reclaimer)) {
+                    result.add(row);
+                }
+            }
+            if (found.size() < wanted || result.size() == limit) {
+                return result;
+            }
+            start = found.get(found.size() - 1).getKey();
+            include = false;
+        }
+    }
+
+    /*
+     * Gets rows in range without removing expired data.
+     */
+    private List<IRow> findRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    ) {
+        final List<ByteBuffer> keys = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < index.capacity(); ++i) {
+                final long address = index.addressAt(i);
+                if (address != OffHeapIndex.NOT_FOUND) {
+                    final ByteBuffer key = ByteBuffer.wrap(readKey(address));
+                    if (KeyComparator.INSTANCE.inRange(
+                            key, from, inclusive, to)
+                    ) {
+                        keys.add(key);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(keys, KeyComparator.INSTANCE);
+        final List<IRow> rows = new ArrayList<>(Math.min(limit, keys.size()));
+        for (int i = 0; i < keys.size() && rows.size() < limit; ++i) {
+            rows.add(new Row(keys.get(i).array(), this));
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean isDirty() {
+        return isDirty || !changed.isEmpty();
+    }
+
+    @Override
+    public void setClean() {
+        isDirty = false;
+        changed.clear();
+    }
+
+    @Override
+    public void setDirty() {
+        isDirty = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public void setDirty(final ByteBuffer key) {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        changed(Row.toBytes(key));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Rows are written as records.
+     */
+    @Override public boolean writeChanges(final ObjectOutputStream out)
+            throws IOException
+    {
+        final List<ByteBuffer> keys = takeChanges();
+        if (keys == null) {
+            return false;
+        }
+        for (ByteBuffer key : keys) {
+            out.writeObject(key.array());
+            writeChange(key, out);
+        }
+        out.writeObject(null);
+        return true;
+    }
+
+    @Override
+    public void readChanges(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        for (byte[] key = (byte[])in.readObject(); key != null;
+                key = (byte[])in.readObject()
+        ) {
+            readChange(ByteBuffer.wrap(key), in);
+        }
+    }
+
+    @Override
+    public List<ByteBuffer> takeChanges() {
+        if (isDirty) {
+            return null;
+        }
+        final List<ByteBuffer> keys = new ArrayList<>();
+        for (Iterator<ByteBuffer> it = changed.iterator(); it.hasNext();) {
+            // key is removed before record is read - change made meanwhile
+            // sets row as dirty again
+            keys.add(it.next());
+            it.remove();
+        }
+        return keys;
+    }
+
+    @Override
+    public void writeChange(final ByteBuffer key, final ObjectOutputStream out)
+            throws IOException
+    {
+        final byte[] k = Row.toBytes(key);
+        lock.readLock().lock();
+        try {
+            final long address = index.get(k);
+            out.writeObject(address != OffHeapIndex.NOT_FOUND
+                    ? readRecord(address)
+                    : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+        expiry.writeDeadlines(ByteBuffer.wrap(k), out);
+    }
+
+    @Override
+    public void readChange(final ByteBuffer key, final ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        final byte[] k = Row.toBytes(key);
+        final byte[] record = (byte[])in.readObject();
+        lock.writeLock().lock();
+        try {
+            final long old = record != null
+                    ? index.put(k, store(record))
+                    : index.remove(k);
+            if (old != OffHeapIndex.NOT_FOUND) {
+                memory.free(old);
+            }
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+        reindex(k);
+        expiry.readDeadlines(ByteBuffer.wrap(k), in);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Budget counts blocks allocated for records and index table.
+     */
+    @Override public MemoryBudget getMemory() {
+        return budget;
+    }
+
+    @Override
+    public ColumnFamilyOptions getOptions() {
+        return options != null ? options : new ColumnFamilyOptions();
+    }
+
+    /**
+     * Gets number of direct memory bytes reserved by this column family.
+     *
+     * @return size of slabs and index
+     */
+    long getReservedBytes() {
+        lock.readLock().lock();
+        try {
+            return memory.getReservedBytes() + index.getBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ColumnFamily) {
+            final ColumnFamily c = (ColumnFamily)obj;
+
+            return getRows().equals(c.getRows());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 79 * hash + getRows().hashCode();
+        return hash;
+    }
+
+    /*
+     * Copies all rows to heap - used for comparing.
+     */
+    Map<ByteBuffer, Map<ByteBuffer, ByteBuffer>> getRows() {
+        final Map<ByteBuffer, Map<ByteBuffer, ByteBuffer>> rows =
+                new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < index.capacity(); ++i) {
+                final long address = index.addressAt(i);
+                if (address != OffHeapIndex.NOT_FOUND) {
+                    final byte[] record = readRecord(address);
+                    final byte[] key = new byte[ByteBuffer.wrap(record).getInt(0)];
+                    System.arraycopy(record, 4, key, 0, key.length);
+                    rows.put(ByteBuffer.wrap(key), Row.parseColumns(record));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rows;
+    }
+
+    /*
+     * Methods used by Row and Column views.
+     */
+
+    /**
+     * Reads all columns of row.
+     *
+     * @param rowKey key of row
+     * @return map of column names and values or null if row doesn't exists
+     */
+    Map<ByteBuffer, ByteBuffer> readColumns(final byte[] rowKey) {
+        lock.readLock().lock();
+        try {
+            final long address = index.get(rowKey);
+            if (address == OffHeapIndex.NOT_FOUND) {
+                return null;
+            }
+            return Row.parseColumns(readRecord(address));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if row contains column.
+     *
+     * @param rowKey key of row
+     * @param name name of column
+     * @return true if column exists
+     */
+    boolean containsColumn(final byte[] rowKey, final byte[] name) {
+        lock.readLock().lock();
+        try {
+            final long address = index.get(rowKey);
+            return address != OffHeapIndex.NOT_FOUND
+                    && findColumn(address, name) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads value of column.
+     *
+     * @param rowKey key of row
+     * @param name name of column
+     * @return copy of value or null if column doesn't exists or is empty
+     */
+    byte[] readValue(final byte[] rowKey, final byte[] name) {
+        lock.readLock().lock();
+        try {
+            final long address = index.get(rowKey);
+            if (address == OffHeapIndex.NOT_FOUND) {
+                return null;
+            }
+            final int position = findColumn(address, name);
+            if (position < 0) {
+                return null;
+            }
+            final ByteBuffer slab = memory.slab(address);
+            final int valuePosition = position + 4 + name.length;
+            final int length = slab.getInt(valuePosition);
+            if (length < 0) {
+                return null;
+            }
+            final byte[] value = new byte[length];
+            final ByteBuffer src = slab.duplicate();
+            src.position(valuePosition + 4);
+            src.get(value);
+            return value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets value of column, column is created if doesn't exists.
+     *
+     * @param rowKey key of row
+     * @param name name of column
+     * @param value new value or null
+     * @return old value or null, nothing is changed if row doesn't exists
+     */
+    byte[] putValue(final byte[] rowKey, final byte[] name, final byte[] value) {
+        final byte[] old;
+        lock.writeLock().lock();
+        try {
+            final long address = index.get(rowKey);
+            if (address == OffHeapIndex.NOT_FOUND) {
+                return null;
+            }
+            old = readValue(rowKey, name);
+            final byte[] record = readRecord(address);
+            final int position = findColumn(address, name);
+            if (position >= 0) {
+                rewrite(rowKey, address, Row.replaceValue(
+                    record, position - recordStart(address), name, value));
+            } else {
+                rewrite(rowKey, address, Row.appendColumn(record, name, value));
+            }
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+        changed(rowKey);
+        return old;
+    }
+
+    /**
+     * Updates value of existing column.
+     *
+     * @param rowKey key of row
+     * @param name name of column
+     * @param value new value or null
+     * @throws PythiaException if row or column doesn't exists
+     */
+    void updateColumn(
+        final byte[] rowKey, final byte[] name, final byte[] value
+    ) throws PythiaException {
+        lock.writeLock().lock();
+        try {
+            final long address = index.get(rowKey);
+            if (address == OffHeapIndex.NOT_FOUND) {
+                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+            }
+            final int position = findColumn(address, name);
+            if (position < 0) {
+                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+            }
+            final ByteBuffer slab = memory.slab(address);
+            final int valuePosition = position + 4 + name.length;
+            final int length = slab.getInt(valuePosition);
+            if (value != null && length == value.length) {
+                // same size - patch in place
+                for (int i = 0; i < value.length; ++i) {
+                    slab.put(valuePosition + 4 + i, value[i]);
+                }
+            } else {
+                rewrite(rowKey, address, Row.replaceValue(
+                    readRecord(address), position - recordStart(address),
+                    name, value
+                ));
+            }
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+        changed(rowKey);
+    }
+
+    /**
+     * Removes column from row.
+     *
+     * @param rowKey key of row
+     * @param name name of column
+     * @return true if column was removed, false if doesn't exists
+     */
+    boolean removeColumn(final byte[] rowKey, final byte[] name) {
+        lock.writeLock().lock();
+        try {
+            final long address = index.get(rowKey);
+            if (address == OffHeapIndex.NOT_FOUND) {
+                return false;
+            }
+            final int position = findColumn(address, name);
+            if (position < 0) {
+                return false;
+            }
+            rewrite(rowKey, address, Row.removeColumn(
+                readRecord(address), position - recordStart(address)));
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+        changed(rowKey);
+        return true;
+    }
+
+    /*
+     * Tracks changed row and updates its indexes.
+     */
+    private void changed(final byte[] key) {
+        changed.add(ByteBuffer.wrap(key));
+        reindex(key);
+    }
+
+    private void reindex(final byte[] key) {
+        for (SecondaryIndex secondary : indexes) {
+            secondary.update(ByteBuffer.wrap(key), lookup);
+        }
+    }
+
+    /*
+     * Gets index of column or null if column is not indexed.
+     */
+    private SecondaryIndex findIndex(final ByteBuffer columnKey) {
+        for (SecondaryIndex secondary : indexes) {
+            if (secondary.isIndexOf(columnKey)) {
+                return secondary;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Removes record of row - returns false if row doesn't exists.
+     */
+    private boolean removeRow(final byte[] key) {
+        lock.writeLock().lock();
+        try {
+            final long address = index.remove(key);
+            if (address == OffHeapIndex.NOT_FOUND) {
+                return false;
+            }
+            memory.free(address);
+            return true;
+        } finally {
+            account();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Removes expired data of row, timer wheel takes care of other rows.
+     * Returns true if whole row expired.
+     */
+    private boolean reclaim(final ByteBuffer key) {
+        final long now = System.currentTimeMillis();
+        expiry.advance(now, reclaimer);
+        return expiry.purge(key, now, reclaimer);
+    }
+
+    /*
+     * Counts change of allocated memory in budget - called under write lock.
+     */
+    private void account() {
+        final long bytes = memory.getAllocatedBytes() + index.getBytes();
+        budget.allocate(bytes - accountedBytes);
+        accountedBytes = bytes;
+    }
+
+    /*
+     * Copies record to new block.
+     */
+    private long store(final byte[] record) {
+        final long address = memory.allocate(4 + record.length);
+        write(address, record);
+        return address;
+    }
+
+    /*
+     * Writes changed record - in place if fits in block, or moves it.
+     */
+    private void rewrite(
+        final byte[] rowKey, final long address, final byte[] record
+    ) {
+        if (memory.capacity(address) >= 4 + record.length) {
+            write(address, record);
+        } else {
+            index.put(rowKey, store(record));
+            memory.free(address);
+        }
+    }
+
+    private void write(final long address, final byte[] record) {
+        final ByteBuffer dst = memory.slab(address).duplicate();
+        dst.position(SlabAllocator.payload(address));
+        dst.putInt(record.length);
+        dst.put(record);
+    }
+
+    private byte[] readRecord(final long address) {
+        final ByteBuffer src = memory.slab(address).duplicate();
+        src.position(SlabAllocator.payload(address));
+        final byte[] record = new byte[src.getInt()];
+        src.get(record);
+        return record;
+    }
+
+    private byte[] readKey(final long address) {
+        final ByteBuffer slab = memory.slab(address);
+        final int position = recordStart(address);
+        final byte[] key = new byte[slab.getInt(position)];
+        for (int i = 0; i < key.length; ++i) {
+            key[i] = slab.get(position + 4 + i);
+        }
+        return key;
+    }
+
+    private static int recordStart(final long address) {
+        return SlabAllocator.payload(address) + 4;
+    }
+
+    /*
+     * Finds column entry in record - returns its position in slab or -1.
+     */
+    private int findColumn(final long address, final byte[] name) {
+        final ByteBuffer slab = memory.slab(address);
+        int position = recordStart(address);
+        position += 4 + slab.getInt(position);
+        final int count = slab.getInt(position);
+        position += 4;
+        for (int c = 0; c < count; ++c) {
+            final int nameLength = slab.getInt(position);
+            boolean equal = nameLength == name.length;
+            for (int i = 0; equal && i < nameLength; ++i) {
+                equal = slab.get(position + 4 + i) == name[i];
+            }
+            if (equal) {
+                return position;
+            }
+            final int valueLength = slab.getInt(position + 4 + nameLength);
+            position += 8 + nameLength + Math.max(valueLength, 0);
+        }
+        return -1;
+    }
+
+}
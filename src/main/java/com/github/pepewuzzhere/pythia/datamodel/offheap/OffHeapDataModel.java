@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.nio.ByteBuffer;
+
+/**
+ * Adaptation of {@link com.github.pepewuzzhere.pythia.datamodel.IDataModel}
+ * keeping row keys, column names and values in direct memory.
+ *
+ * Every column family allocates memory in slabs and finds rows by hash index
+ * stored off heap too, so size of data doesn't influence garbage collection.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class OffHeapDataModel implements IDataModel {
+
+    /**
+     * Default size of memory slab - 1 MB.
+     */
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private final int slabSize;
+
+    /**
+     * Creates data model with default slab size.
+     */
+    public OffHeapDataModel() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Creates data model allocating memory in slabs of given size.
+     *
+     * @param slabSize size of slab, power of two not lower than 4 KB
+     * @throws IllegalArgumentException if slab size is invalid
+     */
+    public OffHeapDataModel(final int slabSize) {
+        if (slabSize < 4096 || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException(
+                    "Slab size must be power of two not lower than 4096");
+        }
+        this.slabSize = slabSize;
+    }
+
+    @Override
+    public IKeySpace createKeySpace(final String name) {
+        return new KeySpace(name);
+    }
+
+    @Override
+    public IColumnFamily createColumnFamily() {
+        return new ColumnFamily(slabSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Rows are always found by hash index, so ordered column family reads
+     * key ranges by scanning its index. Options are kept with column family,
+     * but only types of columns are used.
+     */
+    @Override
+    public IColumnFamily createColumnFamily(final ColumnFamilyOptions options) {
+        return new ColumnFamily(slabSize, options);
+    }
+
+    @Override
+    public IColumn createColumn(final ByteBuffer key) {
+        return new Column(key);
+    }
+
+    @Override
+    public IRow createRow(final ByteBuffer key) {
+        return new Row(key);
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hash index of row records kept in direct memory.
+ *
+ * Open addressing table with linear probing. Every slot takes 16 bytes:
+ * address of record ({@code long}) and hash of its key ({@code int}). Keys
+ * are not duplicated in index - they are compared with key stored in record,
+ * which layout starts with record length, key length and key bytes.
+ *
+ * Index is not thread safe - owner is responsible for locking.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class OffHeapIndex {
+
+    /**
+     * Value returned if key is not in index.
+     */
+    static final long NOT_FOUND = -1L;
+
+    private static final int SLOT_SIZE = 16;
+    private static final long USED = 1L << 63;
+
+    private final SlabAllocator memory;
+
+    private ByteBuffer table;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates index of records stored by provided allocator.
+     *
+     * @param memory allocator of indexed records
+     * @param capacity initial number of slots, power of two
+     */
+    OffHeapIndex(final SlabAllocator memory, final int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                    "Capacity must be power of two");
+        }
+        this.memory = memory;
+        table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Gets address of record with key.
+     *
+     * @param key key of record
+     * @return address of record or {@link #NOT_FOUND}
+     */
+    long get(final byte[] key) {
+        final int slot = find(key, hash(key));
+        return slot >= 0 ? addressAt(slot) : NOT_FOUND;
+    }
+
+    /**
+     * Puts record address to index.
+     *
+     * @param key key of record
+     * @param address address of record
+     * @return previous address of record with this key or {@link #NOT_FOUND}
+     */
+    long put(final byte[] key, final long address) {
+        final int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot >= 0) {
+            final long previous = addressAt(slot);
+            table.putLong(slot * SLOT_SIZE, address | USED);
+            return previous;
+        }
+        if ((size + 1) * 4 > (mask + 1) * 3) {
+            resize();
+            slot = find(key, hash);
+        }
+        slot = -slot - 1;
+        table.putLong(slot * SLOT_SIZE, address | USED);
+        table.putInt(slot * SLOT_SIZE + 8, hash);
+        size++;
+        return NOT_FOUND;
+    }
+
+    /**
+     * Removes record from index.
+     *
+     * @param key key of record
+     * @return address of removed record or {@link #NOT_FOUND}
+     */
+    long remove(final byte[] key) {
+        int slot = find(key, hash(key));
+        if (slot < 0) {
+            return NOT_FOUND;
+        }
+        final long address = addressAt(slot);
+
+        // backward shift deletion - keep probe sequences without holes
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (table.getLong(next * SLOT_SIZE) == 0) {
+                break;
+            }
+            final int home = table.getInt(next * SLOT_SIZE + 8) & mask;
+            final boolean movable = slot <= next
+                    ? (home <= slot || home > next)
+                    : (home <= slot && home > next);
+            if (movable) {
+                table.putLong(slot * SLOT_SIZE, table.getLong(next * SLOT_SIZE));
+                table.putInt(
+                    slot * SLOT_SIZE + 8, table.getInt(next * SLOT_SIZE + 8));
+                slot = next;
+            }
+        }
+        table.putLong(slot * SLOT_SIZE, 0);
+        table.putInt(slot * SLOT_SIZE + 8, 0);
+        size--;
+        return address;
+    }
+
+    /**
+     * Gets number of records in index.
+     *
+     * @return number of records
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets number of slots in index.
+     *
+     * @return number of slots
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets address stored in slot.
+     *
+     * @param slot slot number
+     * @return address of record or {@link #NOT_FOUND} if slot is empty
+     */
+    long addressAt(final int slot) {
+        final long value = table.getLong(slot * SLOT_SIZE);
+        return value == 0 ? NOT_FOUND : value & ~USED;
+    }
+
+    /**
+     * Gets number of bytes used by index table.
+     *
+     * @return size of index in bytes
+     */
+    long getBytes() {
+        return table.capacity();
+    }
+
+    /**
+     * Calculates hash of key.
+     *
+     * @param key key bytes
+     * @return hash of key
+     */
+    static int hash(final byte[] key) {
+        // FNV-1a with final avalanche
+        int h = 0x811c9dc5;
+        for (int i = 0; i < key.length; ++i) {
+            h ^= key[i];
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /*
+     * Finds slot of key - returns slot number or (-(insertion point) - 1).
+     */
+    private int find(final byte[] key, final int hash) {
+        int slot = hash & mask;
+        while (true) {
+            final long value = table.getLong(slot * SLOT_SIZE);
+            if (value == 0) {
+                return -slot - 1;
+            }
+            if (table.getInt(slot * SLOT_SIZE + 8) == hash
+                && keyEquals(value & ~USED, key)
+            ) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(final long address, final byte[] key) {
+        final ByteBuffer slab = memory.slab(address);
+        // record: int length, int key length, key bytes...
+        final int position = SlabAllocator.payload(address) + 4;
+        if (slab.getInt(position) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; ++i) {
+            if (slab.get(position + 4 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resize() {
+        final ByteBuffer old = table;
+        final int oldCapacity = mask + 1;
+        table = ByteBuffer.allocateDirect(oldCapacity * 2 * SLOT_SIZE);
+        mask = oldCapacity * 2 - 1;
+        for (int i = 0; i < oldCapacity; ++i) {
+            final long value = old.getLong(i * SLOT_SIZE);
+            if (value != 0) {
+                final int hash = old.getInt(i * SLOT_SIZE + 8);
+                int slot = hash & mask;
+                while (table.getLong(slot * SLOT_SIZE) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table.putLong(slot * SLOT_SIZE, value);
+                table.putInt(slot * SLOT_SIZE + 8, hash);
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.RowSlice;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adaptation of {@link com.github.pepewuzzhere.pythia.datamodel.IRow}
+ * for rows stored in direct memory.
+ *
+ * New row keeps its columns on heap until it's added to column family. After
+ * that row is only a view of record in {@link ColumnFamily} - every operation
+ * reads or changes record in direct memory.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+class Row implements IRow {
+
+    private final byte[] key;
+
+    /*
+     * Columns of row not added to column family yet.
+     */
+    private final Map<ByteBuffer, Column> columns;
+
+    /*
+     * Column family which stores this row.
+     */
+    private ColumnFamily owner;
+
+    /**
+     * Sets key of created row.
+     *
+     * @param key key of this row
+     * @throws IllegalArgumentException if key is null or empty
+     */
+    Row(final ByteBuffer key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        this.key = toBytes(key);
+        if (this.key.length == 0) {
+            throw new IllegalArgumentException("Key must not be empty");
+        }
+        columns = new LinkedHashMap<>();
+    }
+
+    /*
+     * Creates view of row stored in column family.
+     */
+    Row(final byte[] key, final ColumnFamily owner) {
+        this.key = key;
+        this.owner = owner;
+        columns = Collections.emptyMap();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if column is null
+     */
+    @Override public void addColumn(final IColumn column) {
+        if (column == null) {
+            throw new IllegalArgumentException("Column is required");
+        }
+        final ByteBuffer name = column.getKey();
+        if (owner != null) {
+            owner.putValue(key, toBytes(name), toBytes(column.getValue()));
+            if (column instanceof Column) {
+                ((Column)column).bind(owner, key);
+            }
+        } else if (columns.containsKey(name)) {
+            // update value in exiting column
+            columns.get(name).setValue(column.getValue());
+        } else {
+            final Column c = column instanceof Column
+                    ? (Column)column
+                    : new Column(name);
+            c.setValue(column.getValue());
+            columns.put(name, c);
+        }
+    }
+
+    @Override
+    public IColumn getColumn(final ByteBuffer key) {
+        if (owner != null) {
+            final byte[] name = toBytes(key);
+            return owner.containsColumn(this.key, name)
+                    ? new Column(name, owner, this.key)
+                    : null;
+        }
+        return columns.get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public void updateColumn(
+            final ByteBuffer key, final ByteBuffer value) throws PythiaException
+    {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        if (owner != null) {
+            owner.updateColumn(this.key, toBytes(key), toBytes(value));
+        } else if (columns.containsKey(key)) {
+            columns.get(key).setValue(value);
+        } else {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+    }
+
+    @Override
+    public void deleteColumn(final ByteBuffer key) throws PythiaException {
+        final boolean deleted = owner != null
+                ? owner.removeColumn(this.key, toBytes(key))
+                : columns.remove(key) != null;
+        if (!deleted) {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if key is empty
+     */
+    @Override public ByteBuffer putColumn(
+            final ByteBuffer key, final ByteBuffer value)
+    {
+        if (key == null || !key.hasRemaining()) {
+            throw new IllegalArgumentException("Key is required");
+        }
+        if (owner != null) {
+            final byte[] old =
+                    owner.putValue(this.key, toBytes(key), toBytes(value));
+            return old != null ? ByteBuffer.wrap(old) : null;
+        }
+        final Column column = columns.get(key);
+        if (column != null) {
+            return column.setValue(value);
+        }
+        final Column created = new Column(key);
+        created.setValue(value);
+        columns.put(created.getKey(), created);
+        return null;
+    }
+
+    @Override
+    public ByteBuffer getKey() {
+        return ByteBuffer.wrap(key);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder ret = new StringBuilder();
+        ret.append("{\"").append(new String(key)).append("\":{");
+
+        for (
+            Iterator<Map.Entry<ByteBuffer, ByteBuffer>> it =
+                getColumns().entrySet().iterator();
+            it.hasNext();
+        ) {
+            final Map.Entry<ByteBuffer, ByteBuffer> c = it.next();
+            ret.append("\"");
+            ret.append(new String(c.getKey().array()));
+            ret.append("\"");
+            ret.append(":");
+            ret.append("\"");
+            if (c.getValue() != null) {
+                ret.append(new String(c.getValue().array()));
+            }
+            ret.append("\"");
+            if (it.hasNext()) {
+                ret.append(",");
+            }
+        }
+        ret.append("}}");
+
+        return ret.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Row) {
+            Row r = (Row)obj;
+
+            return Arrays.equals(key, r.key)
+                   && getColumns().equals(r.getColumns());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 79 * hash + Arrays.hashCode(this.key);
+        hash = 79 * hash + getColumns().hashCode();
+        return hash;
+    }
+
+    @Override
+    public IRow select(final ByteBuffer... keys) {
+        return RowSlice.of(this, keys);
+    }
+
+    @Override
+    public IRow slice(final ByteBuffer from, final ByteBuffer to) {
+        return RowSlice.range(this, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Columns of row added to column family are views of columns read from
+     * record when iteration starts.
+     */
+    @Override public Iterator<IColumn> iterator() {
+        if (owner == null) {
+            return Collections.<IColumn>unmodifiableCollection(
+                    columns.values()).iterator();
+        }
+        final List<IColumn> views = new ArrayList<>();
+        for (ByteBuffer name : getColumns().keySet()) {
+            views.add(new Column(toBytes(name), owner, key));
+        }
+        return Collections.unmodifiableList(views).iterator();
+    }
+
+    /**
+     * Gets copy of columns in this row.
+     *
+     * @return map of column names and values
+     */
+    Map<ByteBuffer, ByteBuffer> getColumns() {
+        if (owner != null) {
+            final Map<ByteBuffer, ByteBuffer> stored = owner.readColumns(key);
+            return stored != null
+                    ? stored
+                    : Collections.<ByteBuffer, ByteBuffer>emptyMap();
+        }
+        final Map<ByteBuffer, ByteBuffer> copy = new LinkedHashMap<>();
+        for (Map.Entry<ByteBuffer, Column> c : columns.entrySet()) {
+            copy.put(c.getKey(), c.getValue().getValue());
+        }
+        return copy;
+    }
+
+    byte[] getKeyBytes() {
+        return key;
+    }
+
+    /*
+     * Binds this row and its columns to column family which stores it.
+     */
+    void attach(final ColumnFamily owner) {
+        this.owner = owner;
+        for (Column c : columns.values()) {
+            c.bind(owner, key);
+        }
+        columns.clear();
+    }
+
+    /*
+     * Encodes row as record.
+     */
+    byte[] toRecord() {
+        final Map<ByteBuffer, ByteBuffer> values = new LinkedHashMap<>();
+        for (Map.Entry<ByteBuffer, Column> c : columns.entrySet()) {
+            values.put(c.getKey(), c.getValue().getValue());
+        }
+        return toRecord(key, values);
+    }
+
+    /*
+     * Encodes record of row with given columns.
+     */
+    static byte[] toRecord(
+            final byte[] key, final Map<ByteBuffer, ByteBuffer> columns)
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(columns.size());
+            for (Map.Entry<ByteBuffer, ByteBuffer> c : columns.entrySet()) {
+                final byte[] name = toBytes(c.getKey());
+                final byte[] value = toBytes(c.getValue());
+                out.writeInt(name.length);
+                out.write(name);
+                if (value != null) {
+                    out.writeInt(value.length);
+                    out.write(value);
+                } else {
+                    out.writeInt(-1);
+                }
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * Decodes columns of record.
+     */
+    static Map<ByteBuffer, ByteBuffer> parseColumns(final byte[] record) {
+        final ByteBuffer in = ByteBuffer.wrap(record);
+        in.position(4 + in.getInt());
+        final int count = in.getInt();
+        final Map<ByteBuffer, ByteBuffer> columns = new LinkedHashMap<>();
+        for (int i = 0; i < count; ++i) {
+            final byte[] name = new byte[in.getInt()];
+            in.get(name);
+            final int length = in.getInt();
+            byte[] value = null;
+            if (length >= 0) {
+                value = new byte[length];
+                in.get(value);
+            }
+            columns.put(
+                ByteBuffer.wrap(name),
+                value != null ? ByteBuffer.wrap(value) : null
+            );
+        }
+        return columns;
+    }
+
+    /*
+     * Changes value of column entry starting at position.
+     */
+    static byte[] replaceValue(
+        final byte[] record, final int position, final byte[] name,
+        final byte[] value
+    ) {
+        final int valuePosition = position + 4 + name.length;
+        final int oldLength = Math.max(
+            ByteBuffer.wrap(record).getInt(valuePosition), 0);
+        final int newLength = value != null ? value.length : 0;
+        final byte[] result =
+                new byte[record.length - oldLength + newLength];
+        System.arraycopy(record, 0, result, 0, valuePosition);
+        ByteBuffer.wrap(result).putInt(
+            valuePosition, value != null ? value.length : -1);
+        if (value != null) {
+            System.arraycopy(
+                value, 0, result, valuePosition + 4, value.length);
+        }
+        System.arraycopy(
+            record, valuePosition + 4 + oldLength,
+            result, valuePosition + 4 + newLength,
+            record.length - valuePosition - 4 - oldLength
+        );
+        return result;
+    }
+
+    /*
+     * Adds new column entry at the end of record.
+     */
+    static byte[] appendColumn(
+        final byte[] record, final byte[] name, final byte[] value
+    ) {
+        final int valueLength = value != null ? value.length : 0;
+        final byte[] result =
+                new byte[record.length + 8 + name.length + valueLength];
+        System.arraycopy(record, 0, result, 0, record.length);
+        final ByteBuffer out = ByteBuffer.wrap(result);
+        final int countPosition = 4 + out.getInt(0);
+        out.putInt(countPosition, out.getInt(countPosition) + 1);
+        out.position(record.length);
+        out.putInt(name.length);
+        out.put(name);
+        if (value != null) {
+            out.putInt(value.length);
+            out.put(value);
+        } else {
+            out.putInt(-1);
+        }
+        return result;
+    }
+
+    /*
+     * Removes column entry starting at position.
+     */
+    static byte[] removeColumn(final byte[] record, final int position) {
+        final ByteBuffer in = ByteBuffer.wrap(record);
+        final int nameLength = in.getInt(position);
+        final int valueLength = Math.max(
+            in.getInt(position + 4 + nameLength), 0);
+        final int entryLength = 8 + nameLength + valueLength;
+        final byte[] result = new byte[record.length - entryLength];
+        System.arraycopy(record, 0, result, 0, position);
+        System.arraycopy(
+            record, position + entryLength, result, position,
+            record.length - position - entryLength
+        );
+        final ByteBuffer out = ByteBuffer.wrap(result);
+        final int countPosition = 4 + out.getInt(0);
+        out.putInt(countPosition, out.getInt(countPosition) - 1);
+        return result;
+    }
+
+    /*
+     * Copies remaining bytes of buffer.
+     */
+    static byte[] toBytes(final ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+}
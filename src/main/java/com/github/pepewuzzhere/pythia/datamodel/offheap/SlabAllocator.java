@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Allocator of memory blocks in direct (off-heap) slabs.
+ *
+ * Memory is reserved from the operating system in slabs of fixed size and
+ * divided into blocks. Block sizes are rounded to size classes (multiples of
+ * 16 bytes up to 1 KB, powers of two above) and freed blocks are reused by
+ * next allocations of the same class. Blocks bigger than slab get own
+ * dedicated slab which is released on free.
+ *
+ * Address of block is <code>long</code> value: index of slab in upper and
+ * offset in slab in lower 32 bits. Every block starts with <code>int</code>
+ * header holding size of block.
+ *
+ * Allocator is not thread safe - owner is responsible for locking.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class SlabAllocator {
+
+    /**
+     * Size of block header.
+     */
+    static final int HEADER_SIZE = 4;
+
+    private static final int SMALL_BLOCK_LIMIT = 1024;
+    private static final int SMALL_CLASSES = SMALL_BLOCK_LIMIT / 16;
+    private static final int MIN_SLAB_SIZE = 4096;
+
+    private final int slabSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final long[][] freeBlocks;
+    private final int[] freeCounts;
+
+    private ByteBuffer current;
+    private int currentIndex = -1;
+
+    private long reservedBytes;
+    private long allocatedBytes;
+
+    /**
+     * Creates allocator reserving memory in slabs of given size.
+     *
+     * @param slabSize size of one slab, power of two not lower than 4 KB
+     * @throws IllegalArgumentException if slab size is invalid
+     */
+    SlabAllocator(final int slabSize) {
+        if (slabSize < MIN_SLAB_SIZE || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException(
+                    "Slab size must be power of two not lower than 4096");
+        }
+        this.slabSize = slabSize;
+        final int classes = SMALL_CLASSES
+                + Integer.numberOfTrailingZeros(slabSize)
+                - Integer.numberOfTrailingZeros(SMALL_BLOCK_LIMIT);
+        freeBlocks = new long[classes][];
+        freeCounts = new int[classes];
+    }
+
+    /**
+     * Allocates block with place for at least <code>size</code> bytes.
+     *
+     * @param size requested size of block payload
+     * @return address of allocated block
+     */
+    long allocate(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+        final int blockSize = blockSize(size + HEADER_SIZE);
+        long address;
+        if (blockSize > slabSize) {
+            final ByteBuffer slab = ByteBuffer.allocateDirect(blockSize);
+            slabs.add(slab);
+            reservedBytes += blockSize;
+            address = address(slabs.size() - 1, 0);
+        } else {
+            final int sizeClass = sizeClass(blockSize);
+            if (freeCounts[sizeClass] > 0) {
+                address = freeBlocks[sizeClass][--freeCounts[sizeClass]];
+            } else {
+                if (current == null
+                    || current.capacity() - current.position() < blockSize
+                ) {
+                    current = ByteBuffer.allocateDirect(slabSize);
+                    slabs.add(current);
+                    currentIndex = slabs.size() - 1;
+                    reservedBytes += slabSize;
+                }
+                address = address(currentIndex, current.position());
+                current.position(current.position() + blockSize);
+            }
+        }
+        slab(address).putInt(offset(address), blockSize);
+        allocatedBytes += blockSize;
+        return address;
+    }
+
+    /**
+     * Releases block, it will be reused by next allocations.
+     *
+     * @param address address of block
+     */
+    void free(final long address) {
+        final int blockSize = slab(address).getInt(offset(address));
+        allocatedBytes -= blockSize;
+        if (blockSize > slabSize) {
+            // dedicated slab - give memory back
+            slabs.set((int)(address >>> 32), null);
+            reservedBytes -= blockSize;
+            return;
+        }
+        final int sizeClass = sizeClass(blockSize);
+        long[] stack = freeBlocks[sizeClass];
+        if (stack == null) {
+            stack = new long[16];
+        } else if (stack.length == freeCounts[sizeClass]) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        freeBlocks[sizeClass] = stack;
+        stack[freeCounts[sizeClass]++] = address;
+    }
+
+    /**
+     * Gets size of block payload.
+     *
+     * @param address address of block
+     * @return number of bytes which could be stored in block
+     */
+    int capacity(final long address) {
+        return slab(address).getInt(offset(address)) - HEADER_SIZE;
+    }
+
+    /**
+     * Gets slab that contains block.
+     *
+     * @param address address of block
+     * @return slab buffer, use absolute get/put methods only
+     */
+    ByteBuffer slab(final long address) {
+        return slabs.get((int)(address >>> 32));
+    }
+
+    /**
+     * Gets position of block payload in its slab.
+     *
+     * @param address address of block
+     * @return position of first payload byte
+     */
+    static int payload(final long address) {
+        return offset(address) + HEADER_SIZE;
+    }
+
+    /**
+     * Gets number of bytes reserved from operating system.
+     *
+     * @return size of all slabs
+     */
+    long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Gets number of bytes in blocks which are in use.
+     *
+     * @return size of allocated blocks
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /*
+     * Rounds size up to size of block class.
+     */
+    static int blockSize(final int size) {
+        if (size <= SMALL_BLOCK_LIMIT) {
+            return (size + 15) & ~15;
+        }
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static int sizeClass(final int blockSize) {
+        if (blockSize <= SMALL_BLOCK_LIMIT) {
+            return blockSize / 16 - 1;
+        }
+        return SMALL_CLASSES - 1
+                + Integer.numberOfTrailingZeros(blockSize)
+                - Integer.numberOfTrailingZeros(SMALL_BLOCK_LIMIT);
+    }
+
+    private static long address(final int slab, final int offset) {
+        return ((long)slab << 32) | offset;
+    }
+
+    private static int offset(final long address) {
+        return (int)address;
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Provides implementation of abstract Pythia data model. Keys and values are
+ * stored in slabs of direct memory, outside of Java heap.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
@@ -53,14 +53,71 @@ public class LL1Grammar extends IGrammar {
         STMT_USE_KEYSPACE(
             new Production(Terminal.KEY_USE, Terminal.VAR)
         ),
+        /** {@literal
+         * <columnfamily_options> ::=
+         *     <WITH><VAR>=<VAR><key_values_list'>|Epsilon
+         * }
+         */
+        COLUMNFAMILY_OPTIONS(
+            new Production(
+                Terminal.EPSILON
+            )
+        ),
+        /** {@literal
+         * <column_types'> ::= ,<VAR><VAR><column_types'>|Epsilon
+         * }
+         */
+        COLUMN_TYPES_PRIM(
+            new Production(
+                Terminal.EPSILON
+            )
+        ),
+        /** {@literal
+         * <column_types> ::= (<VAR><VAR><column_types'>)|Epsilon
+         * }
+         */
+        COLUMN_TYPES(
+            new Production(
+                Terminal.SYMBOL_LPAREN, Terminal.VAR, Terminal.VAR,
+                COLUMN_TYPES_PRIM, Terminal.SYMBOL_RPAREN
+            ),
+            new Production(
+                Terminal.EPSILON
+            )
+        ),
         /**
          * {@literal
-         * <create_columnfamily_stmt> ::= <CREATE> <COLUMNFAMILY> <VAR>
+         * <create_columnfamily_stmt> ::= <COLUMNFAMILY> <VAR> <column_types>
+         *                                <columnfamily_options>
          * }
          */
         STMT_CREATE_COLUMNFAMILY(
             new Production(
-                Terminal.KEY_CREATE, Terminal.KEY_COLUMNFAMILY, Terminal.VAR)
+                Terminal.KEY_COLUMNFAMILY, Terminal.VAR, COLUMN_TYPES,
+                COLUMNFAMILY_OPTIONS
+            )
+        ),
+        /** {@literal
+         * <create_index_stmt> ::= <INDEX> <ON> <VAR>(<VAR>)
+         * }
+         */
+        STMT_CREATE_INDEX(
+            new Production(
+                Terminal.KEY_INDEX, Terminal.KEY_ON, Terminal.VAR,
+                Terminal.SYMBOL_LPAREN, Terminal.VAR, Terminal.SYMBOL_RPAREN
+            )
+        ),
+        /** {@literal
+         * <create_stmt'> ::= <create_columnfamily_stmt> | <create_index_stmt>
+         * }
+         */
+        STMT_CREATE_PRIM(
+            new Production(STMT_CREATE_COLUMNFAMILY),
+            new Production(STMT_CREATE_INDEX)
+        ),
+        /** {@literal <create_stmt> ::= <CREATE> <create_stmt'>} */
+        STMT_CREATE(
+            new Production(Terminal.KEY_CREATE, STMT_CREATE_PRIM)
         ),
         /** {@literal
          * <drop_columnfamily_stmt> ::= <DROP> <COLUMNFAMILY> <VAR>
@@ -86,28 +143,68 @@ public class LL1Grammar extends IGrammar {
                 Terminal.VAR, KEY_VALUES_LIST_PRIM
             )
         ),
+        /** {@literal <increment> ::= +<VAR>|Epsilon} */
+        INCREMENT(
+            new Production(Terminal.SYMBOL_PLUS, Terminal.VAR),
+            new Production(Terminal.EPSILON)
+        ),
+        /** {@literal
+         * <set_list'> ::= ,<VAR>=<VAR><increment><set_list'>|Epsilon
+         * }
+         */
+        SET_LIST_PRIM(
+            new Production(
+                Terminal.EPSILON
+            )
+        ),
+        /** {@literal <set_list> ::= <KEY>=<VAR><set_list'>} */
+        SET_LIST(
+            new Production(
+                Terminal.KEY_KEY, Terminal.SYMBOL_EQUAL,
+                Terminal.VAR, SET_LIST_PRIM
+            )
+        ),
+        /** {@literal <ttl_option> ::= <USING><TTL><VAR>|Epsilon} */
+        TTL_OPTION(
+            new Production(
+                Terminal.KEY_USING, Terminal.KEY_TTL, Terminal.VAR
+            ),
+            new Production(
+                Terminal.EPSILON
+            )
+        ),
         /** {@literal
          * <insert_stmt> ::= <INSERT><INTO><VAR>(<key_values_list>)
+         *                   <ttl_option>
          * }
          */
         STMT_INSERT(
             new Production(
                 Terminal.KEY_INSERT, Terminal.KEY_INTO, Terminal.VAR,
-                Terminal.SYMBOL_LPAREN, KEY_VALUES_LIST, Terminal.SYMBOL_RPAREN
+                Terminal.SYMBOL_LPAREN, KEY_VALUES_LIST, Terminal.SYMBOL_RPAREN,
+                TTL_OPTION
             )
         ),
-        /** {@literal <where_stmt> ::= <WHERE><KEY>=<VAR>} */
+        /** {@literal <where_column> ::= <KEY>|<VAR>} */
+        WHERE_COLUMN(
+            new Production(Terminal.KEY_KEY),
+            new Production(Terminal.VAR)
+        ),
+        /** {@literal <where_stmt> ::= <WHERE><where_column>=<VAR>} */
         WHERE(
             new Production(
-                Terminal.KEY_WHERE, Terminal.KEY_KEY, Terminal.SYMBOL_EQUAL,
+                Terminal.KEY_WHERE, WHERE_COLUMN, Terminal.SYMBOL_EQUAL,
                 Terminal.VAR
             )
         ),
-        /** {@literal <update_stmt> ::= <UPDATE><VAR><SET><key_values_list>} */
+        /** {@literal
+         * <update_stmt> ::= <UPDATE><VAR><SET><set_list><ttl_option>
+         * }
+         */
         STMT_UPDATE(
             new Production(
                 Terminal.KEY_UPDATE, Terminal.VAR, Terminal.KEY_SET,
-                KEY_VALUES_LIST
+                SET_LIST, TTL_OPTION
             )
         ),
         /** {@literal <delete_stmt> ::= <DELETE><FROM><VAR><where_stmt>} */
@@ -116,30 +213,76 @@ public class LL1Grammar extends IGrammar {
                 Terminal.KEY_DELETE, Terminal.KEY_FROM, Terminal.VAR, WHERE
             )
         ),
-        /** {@literal <select_stmt> ::= <SELECT><FROM><VAR><where_stmt>} */
+        /** {@literal <column_list'> ::= ,<VAR><column_list'>|Epsilon} */
+        COLUMN_LIST_PRIM(
+            new Production(
+                Terminal.EPSILON
+            )
+        ),
+        /** {@literal
+         * <column_slice> ::= ..<VAR>|,<VAR><column_list'>|Epsilon
+         * }
+         */
+        COLUMN_SLICE(
+            new Production(Terminal.SYMBOL_RANGE, Terminal.VAR),
+            new Production(
+                Terminal.SYMBOL_COMMA, Terminal.VAR, COLUMN_LIST_PRIM
+            ),
+            new Production(Terminal.EPSILON)
+        ),
+        /** {@literal <select_columns> ::= <VAR><column_slice>|Epsilon} */
+        SELECT_COLUMNS(
+            new Production(Terminal.VAR, COLUMN_SLICE),
+            new Production(Terminal.EPSILON)
+        ),
+        /** {@literal <paging> ::= <PAGE><VAR>|Epsilon} */
+        PAGING(
+            new Production(Terminal.KEY_PAGE, Terminal.VAR),
+            new Production(Terminal.EPSILON)
+        ),
+        /** {@literal
+         * <select_condition> ::= <where_stmt>|<LIMIT><VAR><paging>|Epsilon
+         * }
+         */
+        SELECT_CONDITION(
+            new Production(WHERE),
+            new Production(Terminal.KEY_LIMIT, Terminal.VAR, PAGING),
+            new Production(Terminal.EPSILON)
+        ),
+        /** {@literal
+         * <select_stmt> ::= <SELECT><select_columns><FROM><VAR>
+         *                   <select_condition>
+         * }
+         */
         STMT_SELECT(
             new Production(
-                Terminal.KEY_SELECT, Terminal.KEY_FROM, Terminal.VAR, WHERE
+                Terminal.KEY_SELECT, SELECT_COLUMNS, Terminal.KEY_FROM,
+                Terminal.VAR, SELECT_CONDITION
             )
         ),
+        /** {@literal <show_memory_stmt> ::= <SHOW><MEMORY>} */
+        STMT_SHOW_MEMORY(
+            new Production(Terminal.KEY_SHOW, Terminal.KEY_MEMORY)
+        ),
         /**
          * {@literal
          * <start_stmt> ::= <create_keyspace_stmt> | <drop_keyspace_stmt> |
-         * <use_keyspace_stmt> | <create_columnfamily_stmt> |
+         * <use_keyspace_stmt> | <create_stmt> |
          * <drop_columnfamily_stmt> | <insert_stmt> | <update_stmt> |
-         * <delete_stmt> | <select_stmt>
+         * <delete_stmt> | <select_stmt> | <show_memory_stmt>
          * }
          */
         STMT_START(
             new Production(STMT_CREATE_KEYSPACE),
             new Production(STMT_DROP_KEYSPACE),
             new Production(STMT_USE_KEYSPACE),
-            new Production(STMT_CREATE_COLUMNFAMILY),
+            new Production(STMT_CREATE),
             new Production(STMT_DROP_COLUMNFAMILY),
             new Production(STMT_INSERT),
             new Production(STMT_UPDATE),
             new Production(STMT_SELECT),
-            new Production(STMT_DELETE)
+            new Production(STMT_DELETE),
+            new Production(STMT_SHOW_MEMORY)
         );
 
         static {
@@ -150,6 +293,31 @@ public class LL1Grammar extends IGrammar {
                     Terminal.VAR, NonTerminal.KEY_VALUES_LIST_PRIM
                 )
             );
+            SET_LIST_PRIM.addProduction(
+                new Production(
+                    Terminal.SYMBOL_COMMA, Terminal.VAR, Terminal.SYMBOL_EQUAL,
+                    Terminal.VAR, NonTerminal.INCREMENT,
+                    NonTerminal.SET_LIST_PRIM
+                )
+            );
+            COLUMN_LIST_PRIM.addProduction(
+                new Production(
+                    Terminal.SYMBOL_COMMA, Terminal.VAR,
+                    NonTerminal.COLUMN_LIST_PRIM
+                )
+            );
+            COLUMN_TYPES_PRIM.addProduction(
+                new Production(
+                    Terminal.SYMBOL_COMMA, Terminal.VAR, Terminal.VAR,
+                    NonTerminal.COLUMN_TYPES_PRIM
+                )
+            );
+            COLUMNFAMILY_OPTIONS.addProduction(
+                new Production(
+                    Terminal.KEY_WITH, Terminal.VAR, Terminal.SYMBOL_EQUAL,
+                    Terminal.VAR, NonTerminal.KEY_VALUES_LIST_PRIM
+                )
+            );
         }
 
         private final List<Production> productions;
@@ -189,15 +357,32 @@ public class LL1Grammar extends IGrammar {
         NonTerminal.STMT_CREATE_KEYSPACE,
         NonTerminal.STMT_DROP_KEYSPACE,
         NonTerminal.STMT_USE_KEYSPACE,
+        NonTerminal.COLUMNFAMILY_OPTIONS,
+        NonTerminal.COLUMN_TYPES_PRIM,
+        NonTerminal.COLUMN_TYPES,
         NonTerminal.STMT_CREATE_COLUMNFAMILY,
+        NonTerminal.STMT_CREATE_INDEX,
+        NonTerminal.STMT_CREATE_PRIM,
+        NonTerminal.STMT_CREATE,
         NonTerminal.STMT_DROP_COLUMNFAMILY,
         NonTerminal.KEY_VALUES_LIST_PRIM,
         NonTerminal.KEY_VALUES_LIST,
+        NonTerminal.INCREMENT,
+        NonTerminal.SET_LIST_PRIM,
+        NonTerminal.SET_LIST,
+        NonTerminal.TTL_OPTION,
         NonTerminal.STMT_INSERT,
+        NonTerminal.WHERE_COLUMN,
         NonTerminal.WHERE,
         NonTerminal.STMT_UPDATE,
         NonTerminal.STMT_DELETE,
+        NonTerminal.COLUMN_LIST_PRIM,
+        NonTerminal.COLUMN_SLICE,
+        NonTerminal.SELECT_COLUMNS,
+        NonTerminal.PAGING,
+        NonTerminal.SELECT_CONDITION,
         NonTerminal.STMT_SELECT,
+        NonTerminal.STMT_SHOW_MEMORY,
         NonTerminal.STMT_START
     };
 
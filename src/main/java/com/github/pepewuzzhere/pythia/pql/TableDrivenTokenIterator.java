@@ -48,6 +48,7 @@ class TableDrivenTokenIterator implements ITokenIterator {
         LS_READ_WORD,       // reading word lexeme
         LS_WORD,            // return word
         LS_SYMBOL,          // return symbol
+        LS_READ_DOT,        // reading range symbol (..)
         LS_READ_VAR,        // reading variable (beetwen "")
         LS_VARIABLE,        // return variable
         LS_ERROR;           // error
@@ -55,9 +56,11 @@ class TableDrivenTokenIterator implements ITokenIterator {
 
     private static enum InputType {
         IT_LETTER(Pattern.compile("[a-zA-Z]")), // [a-zA-Z]
+        IT_DIGIT(Pattern.compile("[0-9]")),     // [0-9]
         IT_WHITESPACE(Pattern.compile("\\s")),  // [ \t\n]+
-        IT_SYMBOL(Pattern.compile("[=(),]")),   // [()=,]
+        IT_SYMBOL(Pattern.compile("[=(),+]")),  // [()=,+]
         IT_QUOT(Pattern.compile("\"")),         // ["]
+        IT_DOT(Pattern.compile("\\.")),         // [.]
         IT_OTHER,                               // anything else
         IT_END;                                 // end of source
 
@@ -88,6 +91,8 @@ class TableDrivenTokenIterator implements ITokenIterator {
                 new EnumMap<InputType, LexemeState>(InputType.class));
         TRANSITIONS.put(LexemeState.LS_SYMBOL,
                 new EnumMap<InputType, LexemeState>(InputType.class));
+        TRANSITIONS.put(LexemeState.LS_READ_DOT,
+                new EnumMap<InputType, LexemeState>(InputType.class));
         TRANSITIONS.put(LexemeState.LS_READ_VAR,
                 new EnumMap<InputType, LexemeState>(InputType.class));
         TRANSITIONS.put(LexemeState.LS_VARIABLE,
@@ -95,12 +100,16 @@ class TableDrivenTokenIterator implements ITokenIterator {
 
         TRANSITIONS.get(LexemeState.LS_INIT).put(
                 InputType.IT_LETTER, LexemeState.LS_READ_WORD);
+        TRANSITIONS.get(LexemeState.LS_INIT).put(
+                InputType.IT_DIGIT, LexemeState.LS_READ_WORD);
         TRANSITIONS.get(LexemeState.LS_INIT).put(
                 InputType.IT_WHITESPACE, LexemeState.LS_INIT);
         TRANSITIONS.get(LexemeState.LS_INIT).put(
                 InputType.IT_SYMBOL, LexemeState.LS_SYMBOL);
         TRANSITIONS.get(LexemeState.LS_INIT).put(
                 InputType.IT_QUOT, LexemeState.LS_READ_VAR);
+        TRANSITIONS.get(LexemeState.LS_INIT).put(
+                InputType.IT_DOT, LexemeState.LS_READ_DOT);
         TRANSITIONS.get(LexemeState.LS_INIT).put(
                 InputType.IT_OTHER, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_INIT).put(
@@ -108,12 +117,16 @@ class TableDrivenTokenIterator implements ITokenIterator {
 
         TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
                 InputType.IT_LETTER, LexemeState.LS_READ_WORD);
+        TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
+                InputType.IT_DIGIT, LexemeState.LS_READ_WORD);
         TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
                 InputType.IT_WHITESPACE, LexemeState.LS_WORD);
         TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
                 InputType.IT_SYMBOL, LexemeState.LS_WORD);
         TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
                 InputType.IT_QUOT, LexemeState.LS_READ_WORD);
+        TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
+                InputType.IT_DOT, LexemeState.LS_WORD);
         TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
                 InputType.IT_OTHER, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_READ_WORD).put(
@@ -121,12 +134,16 @@ class TableDrivenTokenIterator implements ITokenIterator {
 
         TRANSITIONS.get(LexemeState.LS_WORD).put(
                 InputType.IT_LETTER, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_WORD).put(
+                InputType.IT_DIGIT, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_WORD).put(
                 InputType.IT_WHITESPACE, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_WORD).put(
                 InputType.IT_SYMBOL, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_WORD).put(
                 InputType.IT_QUOT, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_WORD).put(
+                InputType.IT_DOT, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_WORD).put(
                 InputType.IT_OTHER, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_WORD).put(
@@ -134,25 +151,50 @@ class TableDrivenTokenIterator implements ITokenIterator {
 
         TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
                 InputType.IT_LETTER, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
+                InputType.IT_DIGIT, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
                 InputType.IT_WHITESPACE, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
                 InputType.IT_SYMBOL, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
                 InputType.IT_QUOT, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
+                InputType.IT_DOT, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
                 InputType.IT_OTHER, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_SYMBOL).put(
                 InputType.IT_END, LexemeState.LS_ERROR);
 
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_LETTER, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_DIGIT, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_WHITESPACE, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_SYMBOL, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_QUOT, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_DOT, LexemeState.LS_SYMBOL);
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_OTHER, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_READ_DOT).put(
+                InputType.IT_END, LexemeState.LS_ERROR);
+
         TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
                 InputType.IT_LETTER, LexemeState.LS_READ_VAR);
+        TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
+                InputType.IT_DIGIT, LexemeState.LS_READ_VAR);
         TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
                 InputType.IT_WHITESPACE, LexemeState.LS_READ_VAR);
         TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
                 InputType.IT_SYMBOL, LexemeState.LS_READ_VAR);
         TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
                 InputType.IT_QUOT, LexemeState.LS_VARIABLE);
+        TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
+                InputType.IT_DOT, LexemeState.LS_READ_VAR);
         TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
                 InputType.IT_OTHER, LexemeState.LS_READ_VAR);
         TRANSITIONS.get(LexemeState.LS_READ_VAR).put(
@@ -160,12 +202,16 @@ class TableDrivenTokenIterator implements ITokenIterator {
 
         TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
                 InputType.IT_LETTER, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
+                InputType.IT_DIGIT, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
                 InputType.IT_WHITESPACE, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
                 InputType.IT_SYMBOL, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
                 InputType.IT_QUOT, LexemeState.LS_ERROR);
+        TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
+                InputType.IT_DOT, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
                 InputType.IT_OTHER, LexemeState.LS_ERROR);
         TRANSITIONS.get(LexemeState.LS_VARIABLE).put(
@@ -179,8 +225,9 @@ class TableDrivenTokenIterator implements ITokenIterator {
     // correct input types
     private static final Set<InputType> INPUT_TYPES =
             EnumSet.of(
-                InputType.IT_LETTER, InputType.IT_WHITESPACE,
-                InputType.IT_SYMBOL, InputType.IT_QUOT
+                InputType.IT_LETTER, InputType.IT_DIGIT,
+                InputType.IT_WHITESPACE, InputType.IT_SYMBOL,
+                InputType.IT_QUOT, InputType.IT_DOT
             );
 
     // states that are accepted as correct lexeme input
@@ -194,7 +241,8 @@ class TableDrivenTokenIterator implements ITokenIterator {
     private static final String[] KEYWORDS = {
         "CREATE", "USE", "DROP", "SELECT", "UPDATE", "INSERT", "DELETE",
         "KEYSPACE", "COLUMNFAMILY", "KEY", "FROM", "WHERE", "SET",
-        "INTO", "VALUES", "KILL"
+        "INTO", "VALUES", "KILL", "WITH", "SHOW", "MEMORY", "USING", "TTL",
+        "INDEX", "ON", "LIMIT", "PAGE"
     };
 
     @Override
@@ -242,6 +290,7 @@ class TableDrivenTokenIterator implements ITokenIterator {
                     && (
                         state == LexemeState.LS_READ_VAR ||
                         state == LexemeState.LS_READ_WORD ||
+                        state == LexemeState.LS_READ_DOT ||
                         state == LexemeState.LS_SYMBOL
                         )
                 ) {
@@ -272,6 +321,10 @@ class TableDrivenTokenIterator implements ITokenIterator {
                         return new Token(TokenType.EQUAL);
                     case ",":
                         return new Token(TokenType.COMMA);
+                    case "+":
+                        return new Token(TokenType.PLUS);
+                    case "..":
+                        return new Token(TokenType.RANGE);
                     default:
                         assert false : "Unknown symbol";
                 }
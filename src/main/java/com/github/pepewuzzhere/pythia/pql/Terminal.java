@@ -65,6 +65,24 @@ public enum Terminal implements ISymbol {
     KEY_KEY(new Token(TokenType.KEYWORD, "KEY")),
     /** SET keyword */
     KEY_SET(new Token(TokenType.KEYWORD, "SET")),
+    /** WITH keyword */
+    KEY_WITH(new Token(TokenType.KEYWORD, "WITH")),
+    /** SHOW keyword */
+    KEY_SHOW(new Token(TokenType.KEYWORD, "SHOW")),
+    /** MEMORY keyword */
+    KEY_MEMORY(new Token(TokenType.KEYWORD, "MEMORY")),
+    /** USING keyword */
+    KEY_USING(new Token(TokenType.KEYWORD, "USING")),
+    /** TTL keyword */
+    KEY_TTL(new Token(TokenType.KEYWORD, "TTL")),
+    /** INDEX keyword */
+    KEY_INDEX(new Token(TokenType.KEYWORD, "INDEX")),
+    /** ON keyword */
+    KEY_ON(new Token(TokenType.KEYWORD, "ON")),
+    /** LIMIT keyword */
+    KEY_LIMIT(new Token(TokenType.KEYWORD, "LIMIT")),
+    /** PAGE keyword */
+    KEY_PAGE(new Token(TokenType.KEYWORD, "PAGE")),
     /** ( symbol */
     SYMBOL_LPAREN(new Token(TokenType.LPAREN)),
     /** ) symbol */
@@ -73,6 +91,10 @@ public enum Terminal implements ISymbol {
     SYMBOL_EQUAL(new Token(TokenType.EQUAL)),
     /** , symbol */
     SYMBOL_COMMA(new Token(TokenType.COMMA)),
+    /** + symbol */
+    SYMBOL_PLUS(new Token(TokenType.PLUS)),
+    /** .. symbol */
+    SYMBOL_RANGE(new Token(TokenType.RANGE)),
     /** variable */
     VAR(new Token(TokenType.VARIABLE)),
     /** empty symbol */
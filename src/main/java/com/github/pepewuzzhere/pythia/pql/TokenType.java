@@ -36,6 +36,8 @@ public enum TokenType {
     EQUAL,      /** = */
     KEYWORD,    /** keyword of PQL */
     LPAREN,     /** ( */
+    PLUS,       /** + */
+    RANGE,      /** .. */
     RPAREN,     /** ) */
     VARIABLE;   /** variable value */
 }
\ No newline at end of file
@@ -271,17 +271,18 @@ class TopDownParser implements IParser {
                 // if this produciton has this symbol
                 if (productions[j].hasSymbol(symbol)) {
 
-                    // get next non-epsilon symbol
+                    // FOLLOW(symbol) includes FIRST(s) of next symbols
+                    // while they can be empty
                     ISymbol s = productions[j].nextSymbol(symbol);
-                    while ((s != null) && (s == Terminal.EPSILON)) {
+                    boolean empty = true;
+                    while ((s != null) && empty) {
+                        final List<Terminal> f =
+                                Arrays.asList(first(new ISymbol[] {s}));
+                        follow.addAll(f);
+                        empty = f.contains(Terminal.EPSILON);
                         s = productions[j].nextSymbol(s);
                     }
-                    // if s exists FOLLOW(symbol) includes FIRST(s)
-                    if (s != null) {
-                        follow.addAll(
-                            Arrays.asList(first(new ISymbol[] {s}))
-                        );
-                    } else {
+                    if (empty) {
                         // is s not exists FOLLOW(symbol) includes
                         // FOLLOW(production, that contains symbol)
                         follow.addAll(
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command applies many mutations at once - used by bulk loads.
+ *
+ * Mutations are grouped into one {@link Batch} per column family, so every
+ * changed row is found and written once. Column families are changed in order
+ * of their first mutation.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class BatchCommand implements IDBCommand {
+
+    /*
+     * Collected mutation commands
+     */
+    private final List<IMutationCommand> commands;
+
+    /**
+     * Sets mutation commands applied together.
+     *
+     * @param commands list of mutation commands
+     * @throws IllegalArgumentException if list of commands is null
+     */
+    public BatchCommand(final List<IMutationCommand> commands) {
+        if (commands == null) {
+            throw new IllegalArgumentException("Commands are required");
+        }
+        this.commands = new ArrayList<>(commands);
+    }
+
+    /**
+     * Applies mutations of all commands.
+     *
+     * All column families are checked and text values of typed columns
+     * are converted (see {@link Batch#parseValues}) before any column family
+     * is changed.
+     *
+     * @param db database on which command is executed
+     * @param model <code>IDataModel</code> implementation
+     * @throws PythiaException if keyspace, column family or updated row
+     *                         doesn't exist or value is invalid for type of
+     *                         column
+     */
+    @Override
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        final Map<List<String>, Target> targets = new LinkedHashMap<>();
+        for (IMutationCommand cmd : commands) {
+            final List<String> name =
+                    Arrays.asList(cmd.getKeySpace(), cmd.getColumnFamily());
+            Target target = targets.get(name);
+            if (target == null) {
+                target = new Target(find(db, name.get(0), name.get(1)));
+                targets.put(name, target);
+            }
+            cmd.addTo(target.batch);
+        }
+        for (Target target : targets.values()) {
+            target.batch.parseValues(target.table.getOptions());
+        }
+
+        for (Target target : targets.values()) {
+            // backpressure - wait while memory budget is exceeded
+            db.awaitMemory(target.table.getMemory());
+            target.table.apply(target.batch);
+        }
+        return null;
+    }
+
+    // test only
+    public List<IMutationCommand> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    private static IColumnFamily find(
+        final DB db, final String keySpace, final String columnFamily
+    ) throws PythiaException {
+        final IKeySpace space = db.getKeySpace(keySpace);
+        final IColumnFamily table = space != null
+                ? space.getColumnFamily(columnFamily)
+                : null;
+        if (table == null) {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        return table;
+    }
+
+    /*
+     * Column family and its mutations.
+     */
+    private static final class Target {
+
+        private final IColumnFamily table;
+        private final Batch batch = new Batch();
+
+        private Target(final IColumnFamily table) {
+            this.table = table;
+        }
+    }
+}
@@ -27,6 +27,7 @@ package com.github.pepewuzzhere.pythia.pql.command;
 import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
 
@@ -49,30 +50,54 @@ public class CreateColumnFamilyCommand implements IDBCommand {
      */
     private final String keySpace;
 
+    /*
+     * Options of this column family
+     */
+    private final ColumnFamilyOptions options;
+
     /**
-     * Sets all parameters used to creating column family.
+     * Sets all parameters used to creating column family with default
+     * options.
      *
      * @param name name of column family to create
      * @param keySpace name of used keyspace
      */
     public CreateColumnFamilyCommand(final String name, final String keySpace) {
+        this(name, keySpace, new ColumnFamilyOptions());
+    }
+
+    /**
+     * Sets all parameters used to creating column family.
+     *
+     * @param name name of column family to create
+     * @param keySpace name of used keyspace
+     * @param options options of created column family
+     */
+    public CreateColumnFamilyCommand(
+        final String name, final String keySpace,
+        final ColumnFamilyOptions options
+    ) {
         this.name = name;
         this.keySpace = keySpace;
+        this.options = options;
     }
 
     /**
      * Creates column family from this command parameters and adds it to
      * provided keyspace.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @throws PythiaException if keyspace is not found
      */
     @Override
-    public Object execute(IDataModel model) throws PythiaException {
-        final IKeySpace space = DB.INSTANCE.getKeySpace(keySpace);
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        final IKeySpace space = db.getKeySpace(keySpace);
 
         if (space != null) {
-            space.addColumnFamily(name, model.createColumnFamily());
+            space.addColumnFamily(name, model.createColumnFamily(options));
         } else {
             throw new PythiaException(PythiaError.DATA_NOT_FOUND);
         }
@@ -88,4 +113,9 @@ public class CreateColumnFamilyCommand implements IDBCommand {
     public String getKeySpace() {
         return keySpace;
     }
+
+    // test only
+    public ColumnFamilyOptions getOptions() {
+        return options;
+    }
 }
@@ -54,12 +54,15 @@ public class CreateKeySpaceCommand implements IDBCommand {
     /**
      * Creates keyspace from this command parameters.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @throws PythiaException if there is a problem with keyspace creation
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
-        DB.INSTANCE.addKeySpace(model.createKeySpace(name));
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        db.addKeySpace(model.createKeySpace(name));
         return null;
     }
 
@@ -26,6 +26,7 @@ package com.github.pepewuzzhere.pythia.pql.command;
 import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
@@ -38,7 +39,7 @@ import java.nio.ByteBuffer;
  * @version %I%, %G%
  * @since 1.0
  */
-public class DeleteCommand implements IDBCommand {
+public class DeleteCommand implements IMutationCommand {
 
     /*
      * Name of column family of deleted row
@@ -74,13 +75,16 @@ public class DeleteCommand implements IDBCommand {
     /**
      * Deletes existing row from column family.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @throws PythiaException if there is a problem with row deleting
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
 
-        final IKeySpace space = DB.INSTANCE.getKeySpace(keySpace);
+        final IKeySpace space = db.getKeySpace(keySpace);
 
         // keyspace check
         if (space != null) {
@@ -98,12 +102,22 @@ public class DeleteCommand implements IDBCommand {
         return null;
     }
 
-    // test only
+    /**
+     * Adds deletion of row to batch - in batch missing row is skipped.
+     *
+     * @param batch batch of column family
+     */
+    @Override
+    public void addTo(final Batch batch) {
+        batch.delete(rowKey);
+    }
+
+    @Override
     public String getKeySpace() {
         return keySpace;
     }
 
-    // test only
+    @Override
     public String getColumnFamily() {
         return columnFamily;
     }
@@ -63,12 +63,15 @@ public class DropColumnFamilyCommand implements IDBCommand {
     /**
      * Drops column family in provided keyspace
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @throws PythiaException if there is a problem with dropping column family
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
-        final IKeySpace space = DB.INSTANCE.getKeySpace(keySpace);
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        final IKeySpace space = db.getKeySpace(keySpace);
 
         if (space != null) {
             space.dropColumnFamily(name);
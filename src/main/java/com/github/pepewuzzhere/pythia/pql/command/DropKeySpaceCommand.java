@@ -53,12 +53,15 @@ public class DropKeySpaceCommand implements IDBCommand {
     /**
      * Drops keyspace from this command parameters.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @throws PythiaException if there is a problem with keyspace dropping
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
-        DB.INSTANCE.dropKeySpace(name);
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        db.dropKeySpace(name);
         return null;
     }
 
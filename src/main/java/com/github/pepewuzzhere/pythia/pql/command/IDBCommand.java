@@ -24,6 +24,7 @@
 
 package com.github.pepewuzzhere.pythia.pql.command;
 
+import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 
@@ -41,11 +42,14 @@ public interface IDBCommand {
     /**
      * Executes this command.
      *
-     * Is should be simple command operating on provied data model.
+     * Is should be simple command operating on provied database and data
+     * model.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation.
      * @return result of command execution or null
      * @throws PythiaException if something wrong with command execution
      */
-    Object execute(final IDataModel model) throws PythiaException;
+    Object execute(final DB db, final IDataModel model)
+            throws PythiaException;
 }
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+
+/**
+ * Command which changes rows of one column family.
+ *
+ * Mutation commands could be collected into one {@link BatchCommand}.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public interface IMutationCommand extends IDBCommand {
+
+    /**
+     * Time to live of statement without TTL clause - deadlines of changed
+     * row and columns are kept.
+     */
+    int NO_TTL = -1;
+
+    /**
+     * Gets name of keyspace of changed column family.
+     *
+     * @return name of keyspace
+     */
+    String getKeySpace();
+
+    /**
+     * Gets name of changed column family.
+     *
+     * @return name of column family
+     */
+    String getColumnFamily();
+
+    /**
+     * Adds mutations of this command to batch.
+     *
+     * @param batch batch of changed column family
+     * @throws PythiaException if arguments of command are invalid
+     */
+    void addTo(final Batch batch) throws PythiaException;
+}
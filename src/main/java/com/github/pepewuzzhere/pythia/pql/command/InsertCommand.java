@@ -26,12 +26,11 @@ package com.github.pepewuzzhere.pythia.pql.command;
 import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
-import com.github.pepewuzzhere.pythia.datamodel.IColumn;
-import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
-import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
-import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Command adds new row in column family or updates existing.
@@ -40,7 +39,7 @@ import java.nio.ByteBuffer;
  * @version %I%, %G%
  * @since 1.0
  */
-public class InsertCommand implements IDBCommand {
+public class InsertCommand implements IMutationCommand {
 
     /*
      * Name of column family where new row is inserted
@@ -67,6 +66,12 @@ public class InsertCommand implements IDBCommand {
      */
     private final ByteBuffer[] values;
 
+    /*
+     * Time to live of inserted row and columns in seconds, 0 if data don't
+     * expire, NO_TTL if their deadlines are kept
+     */
+    private final int ttl;
+
     /**
      * Sets all parameters used to insert new row to column family.
      *
@@ -80,8 +85,29 @@ public class InsertCommand implements IDBCommand {
     public InsertCommand(
         String columnFamily, String keySpace, ByteBuffer rowKey,
         ByteBuffer[] keys, ByteBuffer[] values
+    ) {
+        this(columnFamily, keySpace, rowKey, keys, values, NO_TTL);
+    }
+
+    /**
+     * Sets all parameters used to insert new row which expires after
+     * given time.
+     *
+     * @param columnFamily name of column family
+     * @param keySpace used keyspace
+     * @param rowKey key of inserted row
+     * @param keys list of inserted keys in row (must be same length as values)
+     * @param values list of inserted values in row
+     *               (must be same length as keys)
+     * @param ttl time to live of row and inserted columns in seconds, 0 if
+     *            they don't expire, {@link #NO_TTL} to keep their deadlines
+     */
+    public InsertCommand(
+        String columnFamily, String keySpace, ByteBuffer rowKey,
+        ByteBuffer[] keys, ByteBuffer[] values, int ttl
     ) {
         this.columnFamily = columnFamily;
+        this.ttl          = ttl;
         this.keySpace     = keySpace;
         this.rowKey       = rowKey;
 
@@ -95,62 +121,56 @@ public class InsertCommand implements IDBCommand {
     /**
      * Inserts row to column family or updates existing
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @throws PythiaException if there is a problem with inserting row
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        return new BatchCommand(Collections.<IMutationCommand>singletonList(
+                this)).execute(db, model);
+    }
 
+    /**
+     * Adds new row with its columns to batch, existing row is updated.
+     *
+     * @param batch batch of column family
+     * @throws PythiaException if number of keys and values differs
+     */
+    @Override
+    public void addTo(final Batch batch) throws PythiaException {
         if (keys.length != values.length) {
             throw new PythiaException(PythiaError.INVALID_ARGUMENS);
         }
 
-        final IKeySpace space = DB.INSTANCE.getKeySpace(keySpace);
-
-        // keyspace check
-        if (space != null) {
-            final IColumnFamily table = space.getColumnFamily(columnFamily);
-
-            // column family check
-            if (table != null) {
-                IRow row = table.getRow(rowKey);
-
-                // add new row if not exists
-                if (row == null) {
-                    row = model.createRow(rowKey);
-                    table.addRow(row);
-                }
-
-                // add key:values pairs as new column list
-                IColumn column;
-                for (int i = 0; i < keys.length; ++i) {
-                    column = row.getColumn(keys[i]);
-
-                    // update existing column
-                    if (column != null) {
-                        row.updateColumn(keys[i], values[i]);
-                    } else { // or add new
-                        IColumn newColumn = model.createColumn(keys[i]);
-                        newColumn.setValue(values[i]);
-                        row.addColumn(newColumn);
-                    }
-                }
-
-            } else {
-                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
-            }
-        } else {
-            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        // add new row if not exists, add key:values pairs or update existing
+        // columns
+        batch.create(rowKey);
+        for (int i = 0; i < keys.length; ++i) {
+            batch.put(rowKey, keys[i], values[i]);
+        }
+
+        // row and inserted columns expire together, insert with time to
+        // live 0 makes them persistent - deadlines are kept if statement has
+        // no TTL clause
+        if (ttl == NO_TTL) {
+            return;
+        }
+        final long ttlMillis = TimeUnit.SECONDS.toMillis(ttl);
+        batch.expire(rowKey, null, ttlMillis);
+        for (int i = 0; i < keys.length; ++i) {
+            batch.expire(rowKey, keys[i], ttlMillis);
         }
-        return null;
     }
 
-    // test only
+    @Override
     public String getKeySpace() {
         return keySpace;
     }
 
-    // test only
+    @Override
     public String getColumnFamily() {
         return columnFamily;
     }
@@ -174,4 +194,9 @@ public class InsertCommand implements IDBCommand {
         return copy;
     }
 
+    // test only
+    public int getTtl() {
+        return ttl;
+    }
+
 }
\ No newline at end of file
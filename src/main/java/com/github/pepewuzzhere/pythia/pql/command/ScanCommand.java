@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Command scans all rows of column family.
+ *
+ * Rows are read by iterator of column family (see {@link IColumnFamily}) -
+ * without limit all rows are returned at once, with limit rows are returned
+ * in pages. Iterator of unfinished scan is kept in context of user, and
+ * token returned with page continues scan where page ended. Rows are never
+ * copied, so reading next page costs only rows of this page. Token is valid
+ * only in the same connection and until its cursor expires (see
+ * {@link Context#CURSOR_TIMEOUT}) - scan has to be started again after
+ * reconnect.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class ScanCommand implements IDBCommand {
+
+    /*
+     * Name of scanned column family
+     */
+    private final String columnFamily;
+
+    /*
+     * Name of used keyspace
+     */
+    private final String keySpace;
+
+    /*
+     * Actual user context - keeps cursors of scans
+     */
+    private final Context ctx;
+
+    /*
+     * Maximal number of rows in page, 0 if not limited
+     */
+    private final int limit;
+
+    /*
+     * Token of continued scan, null if scan starts
+     */
+    private final String token;
+
+    /*
+     * Keys of selected columns or first and last key of range, null if all
+     * columns are selected
+     */
+    private final ByteBuffer[] columns;
+
+    /*
+     * Are columns selected by range
+     */
+    private final boolean range;
+
+    /**
+     * Sets all parameters used to scan column family.
+     *
+     * @param columnFamily name of column family
+     * @param keySpace used keyspace
+     * @param ctx context of execution
+     * @param limit maximal number of rows in page, 0 to read all rows
+     * @param token token of next page or null to start scan
+     * @param columns keys of selected columns, first and last key of range
+     *                or null to select all columns
+     * @param range are columns selected by range
+     * @throws IllegalArgumentException if limit is negative or range isn't
+     *                                  given by two keys
+     */
+    public ScanCommand(
+        final String columnFamily, final String keySpace, final Context ctx,
+        final int limit, final String token, final ByteBuffer[] columns,
+        final boolean range
+    ) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        if (range && (columns == null || columns.length != 2)) {
+            throw new IllegalArgumentException(
+                    "Range must have first and last key");
+        }
+        this.columnFamily = columnFamily;
+        this.keySpace     = keySpace;
+        this.ctx          = ctx;
+        this.limit        = limit;
+        this.token        = token;
+        this.columns      = columns != null ? columns.clone() : null;
+        this.range        = range;
+    }
+
+    /**
+     * Starts or continues scan of column family.
+     *
+     * @param db database on which command is executed
+     * @param model <code>IDataModel</code> implementation
+     * @return {@link ScanResult} - rows of page
+     * @throws PythiaException if column family is not found or token
+     *                         doesn't belong to open scan of column family
+     */
+    @Override
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        final IKeySpace space = db.getKeySpace(keySpace);
+        final IColumnFamily table =
+                space != null ? space.getColumnFamily(columnFamily) : null;
+        if (table == null) {
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        final Iterator<IRow> rows = token != null
+                ? ctx.takeCursor(token, keySpace, columnFamily)
+                : table.iterator();
+        if (rows == null) {
+            // cursor was closed, expired or never opened
+            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        }
+        return new ScanResult(rows, limit, ctx, keySpace, columnFamily,
+                table.getOptions(), columns, range);
+    }
+
+    // test only
+    public String getColumnFamily() {
+        return columnFamily;
+    }
+
+    // test only
+    public int getLimit() {
+        return limit;
+    }
+
+    // test only
+    public String getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Rows found by {@link ScanCommand}.
+ *
+ * Rows are not collected - they are read from column family while result is
+ * iterated, so server could send them to client in chunks. Result could be
+ * iterated once. If page ended before last row of column family, scan is
+ * kept in context of user and {@link #getToken()} returns token of next
+ * page.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class ScanResult implements Iterable<IRow> {
+
+    private final Iterator<IRow> rows;
+    private final int limit;
+    private final Context ctx;
+    private final String keySpace;
+    private final String columnFamily;
+    private final ColumnFamilyOptions options;
+    private final ByteBuffer[] columns;
+    private final boolean range;
+
+    private boolean iterated;
+    private String token;
+
+    /**
+     * Creates result reading rows from iterator.
+     *
+     * @param rows iterator of scanned rows
+     * @param limit maximal number of rows in page, 0 if not limited
+     * @param ctx context in which scan is continued
+     * @param keySpace name of keyspace of scanned column family
+     * @param columnFamily name of scanned column family
+     * @param options options of column family
+     * @param columns keys of selected columns, first and last key of range
+     *                or null to select all columns
+     * @param range are columns selected by range
+     */
+    ScanResult(
+        final Iterator<IRow> rows, final int limit, final Context ctx,
+        final String keySpace, final String columnFamily,
+        final ColumnFamilyOptions options, final ByteBuffer[] columns,
+        final boolean range
+    ) {
+        this.rows         = rows;
+        this.limit        = limit;
+        this.ctx          = ctx;
+        this.keySpace     = keySpace;
+        this.columnFamily = columnFamily;
+        this.options      = options;
+        this.columns      = columns;
+        this.range        = range;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if result was already iterated
+     */
+    @Override
+    public Iterator<IRow> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Result could be iterated once");
+        }
+        iterated = true;
+        return new Iterator<IRow>() {
+
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+                if (limit == 0 || count < limit) {
+                    return rows.hasNext();
+                }
+                if (token == null && rows.hasNext()) {
+                    token = ctx.openCursor(keySpace, columnFamily, rows);
+                }
+                return false;
+            }
+
+            @Override
+            public IRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ++count;
+                return SelectCommand.view(
+                        rows.next(), options, columns, range);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Gets token of next page (see {@link ScanCommand}).
+     *
+     * @return token of next page, null if scan ended or result was not
+     *         iterated to the end yet
+     */
+    public String getToken() {
+        return token;
+    }
+}
@@ -27,14 +27,29 @@ package com.github.pepewuzzhere.pythia.pql.command;
 import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Command selects rows from column family.
  *
+ * Row is selected by key, or rows are selected by value of indexed column
+ * (see {@link IColumnFamily#createIndex(ByteBuffer)}). Rows of column family
+ * with typed columns are formatted with values of their types.
+ *
+ * Command may select only some columns of rows - columns with given keys or
+ * with keys in range. Selected rows are then views of requested columns
+ * (see {@link IRow#select(ByteBuffer...)} and
+ * {@link IRow#slice(ByteBuffer, ByteBuffer)}), other columns are neither
+ * copied nor sent to client.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
@@ -52,10 +67,26 @@ public class SelectCommand implements IDBCommand {
     private final String keySpace;
 
     /*
-     * Value of selected row key
+     * Value of selected row key or selected column
      */
     private final ByteBuffer rowKey;
 
+    /*
+     * Key of indexed column, null if row is selected by key
+     */
+    private final ByteBuffer columnKey;
+
+    /*
+     * Keys of selected columns or first and last key of range, null if all
+     * columns are selected
+     */
+    private final ByteBuffer[] columns;
+
+    /*
+     * Are columns selected by range
+     */
+    private final boolean range;
+
     /**
      * Sets all parameters used to select rows from column family.
      *
@@ -67,22 +98,70 @@ public class SelectCommand implements IDBCommand {
         final String columnFamily, final String keySpace,
         final ByteBuffer rowKey
     ) {
+        this(columnFamily, keySpace, null, rowKey);
+    }
+
+    /**
+     * Sets all parameters used to select rows by value of indexed column.
+     *
+     * @param columnFamily name of column family
+     * @param keySpace used keyspace
+     * @param columnKey key of indexed column or null to select row by key
+     * @param value value of column or key of row
+     */
+    public SelectCommand(
+        final String columnFamily, final String keySpace,
+        final ByteBuffer columnKey, final ByteBuffer value
+    ) {
+        this(columnFamily, keySpace, columnKey, value, null, false);
+    }
+
+    /**
+     * Sets all parameters used to select some columns of rows.
+     *
+     * @param columnFamily name of column family
+     * @param keySpace used keyspace
+     * @param columnKey key of indexed column or null to select row by key
+     * @param value value of column or key of row
+     * @param columns keys of selected columns, first and last key of range
+     *                or null to select all columns
+     * @param range are columns selected by range
+     * @throws IllegalArgumentException if range isn't given by two keys
+     */
+    public SelectCommand(
+        final String columnFamily, final String keySpace,
+        final ByteBuffer columnKey, final ByteBuffer value,
+        final ByteBuffer[] columns, final boolean range
+    ) {
+        if (range && (columns == null || columns.length != 2)) {
+            throw new IllegalArgumentException(
+                    "Range must have first and last key");
+        }
         this.columnFamily = columnFamily;
         this.keySpace     = keySpace;
-        this.rowKey       = rowKey;
+        this.columnKey    = columnKey;
+        this.rowKey       = value;
+        this.columns      = columns != null ? columns.clone() : null;
+        this.range        = range;
     }
 
     /**
-     * Deletes existing row from column family.
+     * Selects rows from column family.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
-     * @return <code>IRow</code> - selected row
-     * @throws PythiaException if there is a problem with deleting row
+     * @return <code>IRow</code> - selected row, or <code>List</code> of rows
+     *         sorted by key if rows are selected by column; rows are views
+     *         of selected columns if only some columns are selected
+     * @throws PythiaException if column family is not found or selected
+     *                         column is not indexed
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
 
-        final IKeySpace space = DB.INSTANCE.getKeySpace(keySpace);
+        final IKeySpace space = db.getKeySpace(keySpace);
 
         // keyspace check
         if (space != null) {
@@ -90,7 +169,7 @@ public class SelectCommand implements IDBCommand {
 
             // column family check
             if (table != null) {
-                return table.getRow(rowKey);
+                return select(table, table.getOptions());
             } else {
                 throw new PythiaException(PythiaError.DATA_NOT_FOUND);
             }
@@ -99,6 +178,51 @@ public class SelectCommand implements IDBCommand {
         }
     }
 
+    /*
+     * Selects rows - value of indexed column is converted to its type, rows
+     * are sliced to selected columns and rows with typed columns are
+     * formatted.
+     */
+    private Object select(
+        final IColumnFamily table, final ColumnFamilyOptions options
+    ) throws PythiaException {
+        if (columnKey == null) {
+            return view(table.getRow(rowKey), options, columns, range);
+        }
+        final ColumnType type = options.getColumnType(columnKey);
+        final List<IRow> rows = table.getIndexedRows(
+                columnKey, type != null ? type.parse(rowKey) : rowKey);
+        if (columns == null && options.getColumnTypes().isEmpty()) {
+            return rows;
+        }
+        final List<IRow> views = new ArrayList<>(rows.size());
+        for (IRow row : rows) {
+            views.add(view(row, options, columns, range));
+        }
+        return views;
+    }
+
+    /*
+     * Gets view of selected columns of row, formatted with types of columns.
+     */
+    static IRow view(
+        final IRow row, final ColumnFamilyOptions options,
+        final ByteBuffer[] columns, final boolean range
+    ) {
+        if (row == null) {
+            return null;
+        }
+        IRow view = row;
+        if (columns != null) {
+            view = range
+                    ? row.slice(columns[0], columns[1])
+                    : row.select(columns);
+        }
+        return options.getColumnTypes().isEmpty()
+                ? view
+                : new TypedRow(view, options);
+    }
+
     // test only
     public String getKeySpace() {
         return keySpace;
@@ -113,4 +237,21 @@ public class SelectCommand implements IDBCommand {
     public ByteBuffer getRowKey() {
         return ByteBuffer.wrap(rowKey.array().clone());
     }
-}
\ No newline at end of file
+
+    // test only
+    public ByteBuffer getColumnKey() {
+        return columnKey != null
+                ? ByteBuffer.wrap(columnKey.array().clone())
+                : null;
+    }
+
+    // test only
+    public ByteBuffer[] getColumns() {
+        return columns != null ? columns.clone() : null;
+    }
+
+    // test only
+    public boolean isRange() {
+        return range;
+    }
+}
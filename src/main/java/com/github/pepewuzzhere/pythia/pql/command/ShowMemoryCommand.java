@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Command shows memory budgets of database, keyspaces and column families.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class ShowMemoryCommand implements IDBCommand {
+
+    /**
+     * Name of database budget in result.
+     */
+    public static final String DATABASE = "*";
+
+    /**
+     * Gets budgets of whole database.
+     *
+     * @param db database on which command is executed
+     * @param model <code>IDataModel</code> implementation
+     * @return map of budgets sorted by name: {@link #DATABASE},
+     *         <code>keyspace</code> and <code>keyspace.columnfamily</code>
+     * @throws PythiaException never
+     */
+    @Override
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        final Map<String, MemoryBudget> budgets = new TreeMap<>();
+        budgets.put(DATABASE, db.getMemory());
+        for (Map.Entry<String, IKeySpace> k :
+                db.getKeySpaces().entrySet()
+        ) {
+            budgets.put(k.getKey(), k.getValue().getMemory());
+            for (Map.Entry<String, IColumnFamily> c :
+                    k.getValue().getColumnFamilies().entrySet()
+            ) {
+                budgets.put(
+                    k.getKey() + "." + c.getKey(), c.getValue().getMemory());
+            }
+        }
+        return budgets;
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Row of column family with typed columns returned by {@link SelectCommand}.
+ *
+ * All operations are passed to selected row, only text form of row
+ * formats values of typed columns (see {@link ColumnType#format}).
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class TypedRow implements IRow {
+
+    private final IRow row;
+    private final ColumnFamilyOptions options;
+
+    /**
+     * Creates view of row.
+     *
+     * @param row selected row
+     * @param options options with types of columns
+     */
+    TypedRow(final IRow row, final ColumnFamilyOptions options) {
+        this.row = row;
+        this.options = options;
+    }
+
+    @Override
+    public ByteBuffer getKey() {
+        return row.getKey();
+    }
+
+    @Override
+    public void addColumn(final IColumn column) {
+        row.addColumn(column);
+    }
+
+    @Override
+    public IColumn getColumn(final ByteBuffer key) {
+        return row.getColumn(key);
+    }
+
+    @Override
+    public void updateColumn(final ByteBuffer key, final ByteBuffer value)
+            throws PythiaException
+    {
+        row.updateColumn(key, value);
+    }
+
+    @Override
+    public void deleteColumn(final ByteBuffer key) throws PythiaException {
+        row.deleteColumn(key);
+    }
+
+    @Override
+    public ByteBuffer putColumn(final ByteBuffer key, final ByteBuffer value) {
+        return row.putColumn(key, value);
+    }
+
+    @Override
+    public IRow select(final ByteBuffer... keys) {
+        return new TypedRow(row.select(keys), options);
+    }
+
+    @Override
+    public IRow slice(final ByteBuffer from, final ByteBuffer to) {
+        return new TypedRow(row.slice(from, to), options);
+    }
+
+    @Override
+    public Iterator<IColumn> iterator() {
+        return row.iterator();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder ret = new StringBuilder();
+        ret.append("{\"").append(text(row.getKey())).append("\":{");
+        for (Iterator<IColumn> it = row.iterator(); it.hasNext();) {
+            final IColumn c = it.next();
+            final ColumnType type = options.getColumnType(c.getKey());
+            ret.append("\"").append(text(c.getKey())).append("\":");
+            final ByteBuffer value = c.getValue();
+            if (type != null && type.isNumeric() && value != null) {
+                type.format(value, ret);
+            } else {
+                ret.append("\"");
+                if (value != null) {
+                    ret.append(text(value));
+                }
+                ret.append("\"");
+            }
+            if (it.hasNext()) {
+                ret.append(",");
+            }
+        }
+        return ret.append("}}").toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TypedRow && row.equals(((TypedRow)obj).row);
+    }
+
+    @Override
+    public int hashCode() {
+        return row.hashCode();
+    }
+
+    private static String text(final ByteBuffer bytes) {
+        return new String(
+            bytes.array(), bytes.arrayOffset() + bytes.position(),
+            bytes.remaining()
+        );
+    }
+}
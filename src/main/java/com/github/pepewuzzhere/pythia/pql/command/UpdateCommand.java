@@ -27,12 +27,11 @@ package com.github.pepewuzzhere.pythia.pql.command;
 import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
-import com.github.pepewuzzhere.pythia.datamodel.IColumn;
-import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
-import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
-import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Command updates data in row existing in column family.
@@ -41,7 +40,7 @@ import java.nio.ByteBuffer;
  * @version %I%, %G%
  * @since 1.0
  */
-public class UpdateCommand implements IDBCommand {
+public class UpdateCommand implements IMutationCommand {
 
     /*
      * Name of column family of updated row
@@ -68,6 +67,22 @@ public class UpdateCommand implements IDBCommand {
      */
     private final ByteBuffer[] values;
 
+    /*
+     * Incremented counter columns
+     */
+    private final ByteBuffer[] counters;
+
+    /*
+     * Deltas added to counters
+     */
+    private final long[] deltas;
+
+    /*
+     * Time to live of updated columns in seconds, 0 if data don't expire,
+     * NO_TTL if their deadlines are kept
+     */
+    private final int ttl;
+
     /**
      * Sets all parameters used to update existing row in column family.
      *
@@ -81,8 +96,54 @@ public class UpdateCommand implements IDBCommand {
         final String columnFamily, final String keySpace,
         final ByteBuffer rowKey, final ByteBuffer[] keys,
         final ByteBuffer[] values
+    ) {
+        this(columnFamily, keySpace, rowKey, keys, values, NO_TTL);
+    }
+
+    /**
+     * Sets all parameters used to update existing row, updated columns
+     * expire after given time.
+     *
+     * @param columnFamily name of column family
+     * @param keySpace used keyspace
+     * @param rowKey key of updated row
+     * @param keys list of keys in row to update (must be same length as values)
+     * @param values list of new values in row (must be same length as keys)
+     * @param ttl time to live of updated columns in seconds, 0 if they don't
+     *            expire, {@link #NO_TTL} to keep their deadlines
+     */
+    public UpdateCommand(
+        final String columnFamily, final String keySpace,
+        final ByteBuffer rowKey, final ByteBuffer[] keys,
+        final ByteBuffer[] values, final int ttl
+    ) {
+        this(columnFamily, keySpace, rowKey, keys, values,
+                new ByteBuffer[0], new long[0], ttl);
+    }
+
+    /**
+     * Sets all parameters used to update existing row and increment its
+     * counter columns, updated columns expire after given time.
+     *
+     * @param columnFamily name of column family
+     * @param keySpace used keyspace
+     * @param rowKey key of updated row
+     * @param keys list of keys in row to update (must be same length as values)
+     * @param values list of new values in row (must be same length as keys)
+     * @param counters list of incremented counter columns (must be same
+     *                 length as deltas)
+     * @param deltas values added to counters (must be same length as counters)
+     * @param ttl time to live of updated columns in seconds, 0 if they don't
+     *            expire, {@link #NO_TTL} to keep their deadlines
+     */
+    public UpdateCommand(
+        final String columnFamily, final String keySpace,
+        final ByteBuffer rowKey, final ByteBuffer[] keys,
+        final ByteBuffer[] values, final ByteBuffer[] counters,
+        final long[] deltas, final int ttl
     ) {
         this.columnFamily = columnFamily;
+        this.ttl          = ttl;
         this.keySpace     = keySpace;
         this.rowKey       = rowKey;
 
@@ -91,66 +152,67 @@ public class UpdateCommand implements IDBCommand {
 
         System.arraycopy(keys, 0, this.keys, 0, keys.length);
         System.arraycopy(values, 0, this.values, 0, values.length);
+        this.counters = counters.clone();
+        this.deltas = deltas.clone();
     }
 
     /**
      * Updates existing row in column family.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @throws PythiaException if there is a problem with row updating
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
+        return new BatchCommand(Collections.<IMutationCommand>singletonList(
+                this)).execute(db, model);
+    }
 
-        if (keys.length != values.length) {
+    /**
+     * Adds new values of columns to batch, updated row must exist.
+     *
+     * @param batch batch of column family
+     * @throws PythiaException if number of keys and values or counters and
+     *                         deltas differs
+     */
+    @Override
+    public void addTo(final Batch batch) throws PythiaException {
+        if (keys.length != values.length || counters.length != deltas.length) {
             throw new PythiaException(PythiaError.INVALID_ARGUMENS);
         }
 
-        final IKeySpace space = DB.INSTANCE.getKeySpace(keySpace);
-
-        // keyspace check
-        if (space != null) {
-            IColumnFamily table = space.getColumnFamily(columnFamily);
-
-            // column family check
-            if (table != null) {
-                IRow row = table.getRow(rowKey);
-
-                // row check
-                if (row == null) {
-                    throw new PythiaException(PythiaError.DATA_NOT_FOUND);
-                }
-
-                // add key:values pairs as new column list
-                IColumn column;
-                for (int i = 0; i < keys.length; ++i) {
-                    column = row.getColumn(keys[i]);
-
-                    // update existing column
-                    if (column != null) {
-                        row.updateColumn(keys[i], values[i]);
-                    } else { // or add new
-                        final IColumn newColumn = model.createColumn(keys[i]);
-                        newColumn.setValue(values[i]);
-                        row.addColumn(newColumn);
-                    }
-                }
-
-            } else {
-                throw new PythiaException(PythiaError.DATA_NOT_FOUND);
-            }
-        } else {
-            throw new PythiaException(PythiaError.DATA_NOT_FOUND);
+        // add key:values pairs as new column list
+        // update existing columns or add new
+        for (int i = 0; i < keys.length; ++i) {
+            batch.update(rowKey, keys[i], values[i]);
+        }
+        for (int i = 0; i < counters.length; ++i) {
+            batch.increment(rowKey, counters[i], deltas[i]);
+        }
+
+        // only updated columns expire, update with time to live 0 makes
+        // them persistent - deadlines are kept if statement has no TTL clause
+        if (ttl == NO_TTL) {
+            return;
+        }
+        final long ttlMillis = TimeUnit.SECONDS.toMillis(ttl);
+        for (int i = 0; i < keys.length; ++i) {
+            batch.expire(rowKey, keys[i], ttlMillis);
+        }
+        for (int i = 0; i < counters.length; ++i) {
+            batch.expire(rowKey, counters[i], ttlMillis);
         }
-        return null;
     }
 
-    // test only
+    @Override
     public String getKeySpace() {
         return keySpace;
     }
 
-    // test only
+    @Override
     public String getColumnFamily() {
         return columnFamily;
     }
@@ -174,4 +236,19 @@ public class UpdateCommand implements IDBCommand {
         return copy;
     }
 
+    // test only
+    public ByteBuffer[] getCounters() {
+        return counters.clone();
+    }
+
+    // test only
+    public long[] getDeltas() {
+        return deltas.clone();
+    }
+
+    // test only
+    public int getTtl() {
+        return ttl;
+    }
+
 }
\ No newline at end of file
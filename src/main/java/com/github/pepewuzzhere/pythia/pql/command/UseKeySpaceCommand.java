@@ -25,6 +25,7 @@
 package com.github.pepewuzzhere.pythia.pql.command;
 
 import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 
@@ -61,12 +62,15 @@ public class UseKeySpaceCommand implements IDBCommand {
     /**
      * Creates keyspace from this command parameters.
      *
+     * @param db database on which command is executed
      * @param model <code>IDataModel</code> implementation
      * @return actual keyspace object
      * @throws PythiaException if there is a problem with using new keyspace
      */
     @Override
-    public Object execute(final IDataModel model) throws PythiaException {
+    public Object execute(final DB db, final IDataModel model)
+            throws PythiaException
+    {
         ctx.setActualKeySpace(name);
         return null;
     }
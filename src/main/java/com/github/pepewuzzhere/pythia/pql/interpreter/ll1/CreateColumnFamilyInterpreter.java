@@ -25,7 +25,11 @@
 package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
 
 import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
+import com.github.pepewuzzhere.pythia.pql.LL1Grammar;
 import com.github.pepewuzzhere.pythia.pql.ParseTree;
 import com.github.pepewuzzhere.pythia.pql.Terminal;
 import com.github.pepewuzzhere.pythia.pql.command.CreateColumnFamilyCommand;
@@ -45,17 +49,48 @@ class CreateColumnFamilyInterpreter implements IInterpreter {
             final ParseTree node, final Context ctx) throws PythiaException
     {
         String value = "";
+        final ColumnFamilyOptions options = new ColumnFamilyOptions();
         for (ParseTree n : node.getChildrens()) {
             if (n.getSymbol() == Terminal.VAR) {
                 value = n.getToken().getValue();
             }
+            if (n.getSymbol() == LL1Grammar.NonTerminal.COLUMN_TYPES) {
+                final String[] list =
+                        (String[])new ColumnTypesInterpreter().interpret(n, ctx);
+                try {
+                    for (int i = 0; i < list.length; i += 2) {
+                        options.setColumnType(
+                                list[i], ColumnType.of(list[i + 1]));
+                    }
+                } catch (IllegalArgumentException ex) {
+                    PythiaException e =
+                            new PythiaException(PythiaError.INVALID_ARGUMENS);
+                    e.initCause(ex);
+                    throw e;
+                }
+            }
+            if (n.getSymbol() == LL1Grammar.NonTerminal.COLUMNFAMILY_OPTIONS) {
+                KeyValueListInterpreter intr = new KeyValueListInterpreter();
+                final String[] list = (String[])intr.interpret(n, ctx);
+                try {
+                    for (int i = 0; i < list.length; i += 2) {
+                        options.set(list[i], list[i + 1]);
+                    }
+                } catch (IllegalArgumentException ex) {
+                    PythiaException e =
+                            new PythiaException(PythiaError.INVALID_ARGUMENS);
+                    e.initCause(ex);
+                    throw e;
+                }
+            }
         }
 
         return new CreateColumnFamilyCommand(
             value,
             ctx.getActualKeySpace() != null
                 ? ctx.getActualKeySpace().getName()
-                : null
+                : null,
+            options
         );
     }
 
@@ -25,6 +25,7 @@
 package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
 
 import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.pql.LL1Grammar;
 import com.github.pepewuzzhere.pythia.pql.ParseTree;
@@ -55,6 +56,16 @@ class DeleteInterpreter implements IInterpreter {
             if (n.getSymbol() == LL1Grammar.NonTerminal.WHERE) {
                 WhereInterpreter intr = new WhereInterpreter();
                 key = (String)intr.interpret(n, ctx);
+                for (ParseTree c : n.getChildrens()) {
+                    // only rows with key could be deleted
+                    if (c.getSymbol() == LL1Grammar.NonTerminal.WHERE_COLUMN
+                        && new WhereColumnInterpreter().interpret(c, ctx)
+                            != null
+                    ) {
+                        throw new PythiaException(
+                                PythiaError.INVALID_ARGUMENS);
+                    }
+                }
             }
         }
 
@@ -50,6 +50,7 @@ class InsertInterpreter implements IInterpreter {
     {
         String columnFamily = "";
         String[] list = null;
+        int ttl = InsertCommand.NO_TTL;
         for (ParseTree n : node.getChildrens()) {
             if (n.getSymbol() == Terminal.VAR) {
                 columnFamily = n.getToken().getValue();
@@ -58,6 +59,9 @@ class InsertInterpreter implements IInterpreter {
                 KeyValueListInterpreter intr = new KeyValueListInterpreter();
                 list = (String[])intr.interpret(n, ctx);
             }
+            if (n.getSymbol() == LL1Grammar.NonTerminal.TTL_OPTION) {
+                ttl = (Integer)new TtlInterpreter().interpret(n, ctx);
+            }
         }
         final List<ByteBuffer> keys = new ArrayList<>();
         final List<ByteBuffer> values = new ArrayList<>();
@@ -73,7 +77,8 @@ class InsertInterpreter implements IInterpreter {
                 : null,
             ByteBuffer.wrap(list[1].getBytes()),
             keys.toArray(new ByteBuffer[0]),
-            values.toArray(new ByteBuffer[0])
+            values.toArray(new ByteBuffer[0]),
+            ttl
         );
     }
 
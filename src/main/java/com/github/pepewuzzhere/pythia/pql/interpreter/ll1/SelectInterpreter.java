@@ -25,10 +25,12 @@
 package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
 
 import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.pql.LL1Grammar;
 import com.github.pepewuzzhere.pythia.pql.ParseTree;
 import com.github.pepewuzzhere.pythia.pql.Terminal;
+import com.github.pepewuzzhere.pythia.pql.command.ScanCommand;
 import com.github.pepewuzzhere.pythia.pql.command.SelectCommand;
 import com.github.pepewuzzhere.pythia.pql.interpreter.IInterpreter;
 import java.nio.ByteBuffer;
@@ -36,6 +38,10 @@ import java.nio.ByteBuffer;
 /**
  * Interpreter of node with {@link LL1Grammar#STMT_SELECT} symbol.
  *
+ * Select with condition finds rows by key or indexed column
+ * ({@link SelectCommand}), select without condition scans column family
+ * ({@link ScanCommand}).
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
@@ -47,23 +53,85 @@ class SelectInterpreter implements IInterpreter {
             final ParseTree node, final Context ctx) throws PythiaException
     {
         String columnFamily = "";
+        String column = null;
         String key = "";
+        String[] columns = new String[0];
+        boolean range = false;
+        ParseTree where = null;
+        int limit = 0;
+        String token = null;
         for (ParseTree n : node.getChildrens()) {
             if (n.getSymbol() == Terminal.VAR) {
                 columnFamily = n.getToken().getValue();
             }
-            if (n.getSymbol() == LL1Grammar.NonTerminal.WHERE) {
-                WhereInterpreter intr = new WhereInterpreter();
-                key = (String)intr.interpret(n, ctx);
+            if (n.getSymbol() == LL1Grammar.NonTerminal.SELECT_COLUMNS) {
+                columns = (String[])new SelectColumnsInterpreter()
+                        .interpret(n, ctx);
+                range = SelectColumnsInterpreter.isRange(n);
+            }
+            if (n.getSymbol() == LL1Grammar.NonTerminal.SELECT_CONDITION) {
+                for (ParseTree c : n.getChildrens()) {
+                    if (c.getSymbol() == LL1Grammar.NonTerminal.WHERE) {
+                        where = c;
+                    }
+                    if (c.getSymbol() == Terminal.VAR) {
+                        limit = limit(c.getToken().getValue());
+                    }
+                    if (c.getSymbol() == LL1Grammar.NonTerminal.PAGING) {
+                        token = (String)new PagingInterpreter()
+                                .interpret(c, ctx);
+                    }
+                }
+            }
+        }
+        if (where != null) {
+            WhereInterpreter intr = new WhereInterpreter();
+            key = (String)intr.interpret(where, ctx);
+            for (ParseTree c : where.getChildrens()) {
+                if (c.getSymbol() == LL1Grammar.NonTerminal.WHERE_COLUMN) {
+                    column = (String)new WhereColumnInterpreter()
+                            .interpret(c, ctx);
+                }
             }
         }
 
-        return new SelectCommand(
-            columnFamily,
-            ctx.getActualKeySpace() != null
+        final String space = ctx.getActualKeySpace() != null
                 ? ctx.getActualKeySpace().getName()
-                : null,
-            ByteBuffer.wrap(key.getBytes())
+                : null;
+        ByteBuffer[] keys = null;
+        if (columns.length > 0) {
+            keys = new ByteBuffer[columns.length];
+            for (int i = 0; i < columns.length; ++i) {
+                keys[i] = ByteBuffer.wrap(columns[i].getBytes());
+            }
+        }
+        if (where == null) {
+            return new ScanCommand(
+                columnFamily, space, ctx, limit, token, keys, range);
+        }
+        return new SelectCommand(
+            columnFamily, space,
+            // condition on column - rows are found by index
+            column != null ? ByteBuffer.wrap(column.getBytes()) : null,
+            ByteBuffer.wrap(key.getBytes()), keys, range
         );
     }
+
+    /*
+     * Parses number of rows in page.
+     */
+    private static int limit(final String value) throws PythiaException {
+        try {
+            final int limit = Integer.parseInt(value);
+            if (limit <= 0) {
+                throw new NumberFormatException("Limit must be positive");
+            }
+            return limit;
+        } catch (NumberFormatException ex) {
+            PythiaException e =
+                    new PythiaException(PythiaError.INVALID_ARGUMENS);
+            e.initCause(ex);
+            throw e;
+        }
+    }
 }
@@ -49,6 +49,15 @@ class StartStmtInterpreter implements IInterpreter {
 
         IInterpreter intr = null;
         ISymbol code = n.getSymbol();
+        if (code == LL1Grammar.NonTerminal.STMT_CREATE) {
+            // CREATE is shared - statement is chosen by next keyword
+            for (ParseTree c : n.getChildrens()) {
+                if (c.getSymbol() == LL1Grammar.NonTerminal.STMT_CREATE_PRIM) {
+                    n = c.getChildrens().get(0);
+                    code = n.getSymbol();
+                }
+            }
+        }
         if (code == LL1Grammar.NonTerminal.STMT_INSERT) {
             intr = new InsertInterpreter();
         }
@@ -58,6 +67,9 @@ class StartStmtInterpreter implements IInterpreter {
         if (code == LL1Grammar.NonTerminal.STMT_CREATE_COLUMNFAMILY) {
             intr = new CreateColumnFamilyInterpreter();
         }
+        if (code == LL1Grammar.NonTerminal.STMT_CREATE_INDEX) {
+            intr = new CreateIndexInterpreter();
+        }
         if (code == LL1Grammar.NonTerminal.STMT_DROP_COLUMNFAMILY) {
             intr = new DropColumnFamilyInterpreter();
         }
@@ -76,6 +88,9 @@ class StartStmtInterpreter implements IInterpreter {
         if (code == LL1Grammar.NonTerminal.STMT_USE_KEYSPACE) {
             intr = new UseKeySpaceInterpreter();
         }
+        if (code == LL1Grammar.NonTerminal.STMT_SHOW_MEMORY) {
+            intr = new ShowMemoryInterpreter();
+        }
         if (intr != null) {
             return intr.interpret(n, ctx);
         } else {
@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
+
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.pql.ParseTree;
+import com.github.pepewuzzhere.pythia.pql.Terminal;
+import com.github.pepewuzzhere.pythia.pql.command.IMutationCommand;
+import com.github.pepewuzzhere.pythia.pql.interpreter.IInterpreter;
+
+/**
+ * Interpreter of node with {@link LL1Grammar#TTL_OPTION} symbol.
+ *
+ * Returns time to live in seconds ({@code Integer}),
+ * {@link IMutationCommand#NO_TTL} if option is empty.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+class TtlInterpreter implements IInterpreter {
+
+    @Override
+    public Object interpret(
+            final ParseTree node, final Context ctx) throws PythiaException
+    {
+        for (ParseTree n : node.getChildrens()) {
+            if (n.getSymbol() == Terminal.VAR) {
+                try {
+                    final int ttl = Integer.parseInt(n.getToken().getValue());
+                    if (ttl < 0) {
+                        throw new NumberFormatException(
+                                "Time to live must not be negative");
+                    }
+                    return ttl;
+                } catch (NumberFormatException ex) {
+                    PythiaException e =
+                            new PythiaException(PythiaError.INVALID_ARGUMENS);
+                    e.initCause(ex);
+                    throw e;
+                }
+            }
+        }
+
+        return IMutationCommand.NO_TTL;
+    }
+
+}
@@ -25,6 +25,7 @@
 package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
 
 import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.pql.LL1Grammar;
 import com.github.pepewuzzhere.pythia.pql.ParseTree;
@@ -33,11 +34,15 @@ import com.github.pepewuzzhere.pythia.pql.command.UpdateCommand;
 import com.github.pepewuzzhere.pythia.pql.interpreter.IInterpreter;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Interpreter of node with {@link LL1Grammar#STMT_UPDATE} symbol.
  *
+ * Counter column is incremented by assignment of its own value increased
+ * by delta - {@code hits=hits+1}, negative delta has to be quoted.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
@@ -49,21 +54,44 @@ class UpdateInterpreter implements IInterpreter {
             final ParseTree node, final Context ctx) throws PythiaException
     {
         String columnFamily = "";
-        String[] list = null;
+        String[][] list = null;
+        int ttl = UpdateCommand.NO_TTL;
         for (ParseTree n : node.getChildrens()) {
             if (n.getSymbol() == Terminal.VAR) {
                 columnFamily = n.getToken().getValue();
             }
-            if (n.getSymbol() == LL1Grammar.NonTerminal.KEY_VALUES_LIST) {
-                KeyValueListInterpreter intr = new KeyValueListInterpreter();
-                list = (String[])intr.interpret(n, ctx);
+            if (n.getSymbol() == LL1Grammar.NonTerminal.SET_LIST) {
+                SetListInterpreter intr = new SetListInterpreter();
+                list = (String[][])intr.interpret(n, ctx);
+            }
+            if (n.getSymbol() == LL1Grammar.NonTerminal.TTL_OPTION) {
+                ttl = (Integer)new TtlInterpreter().interpret(n, ctx);
             }
         }
         final List<ByteBuffer> keys = new ArrayList<>();
         final List<ByteBuffer> values = new ArrayList<>();
-        for (int i = 2; i < list.length; i += 2) {
-            keys.add(ByteBuffer.wrap(list[i].getBytes()));
-            values.add(ByteBuffer.wrap(list[i + 1].getBytes()));
+        final List<ByteBuffer> counters = new ArrayList<>();
+        final long[] deltas = new long[list.length];
+        for (int i = 1; i < list.length; ++i) {
+            final String[] assignment = list[i];
+            if (assignment.length == 2) {
+                keys.add(ByteBuffer.wrap(assignment[0].getBytes()));
+                values.add(ByteBuffer.wrap(assignment[1].getBytes()));
+                continue;
+            }
+            // counter can be increased only by its own value
+            if (!assignment[0].equals(assignment[1])) {
+                throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+            }
+            try {
+                deltas[counters.size()] = Long.parseLong(assignment[2]);
+            } catch (NumberFormatException ex) {
+                PythiaException e =
+                        new PythiaException(PythiaError.INVALID_ARGUMENS);
+                e.initCause(ex);
+                throw e;
+            }
+            counters.add(ByteBuffer.wrap(assignment[0].getBytes()));
         }
 
         return new UpdateCommand(
@@ -71,9 +99,12 @@ class UpdateInterpreter implements IInterpreter {
             ctx.getActualKeySpace() != null
                 ? ctx.getActualKeySpace().getName()
                 : null,
-            ByteBuffer.wrap(list[1].getBytes()),
+            ByteBuffer.wrap(list[0][1].getBytes()),
             keys.toArray(new ByteBuffer[0]),
-            values.toArray(new ByteBuffer[0])
+            values.toArray(new ByteBuffer[0]),
+            counters.toArray(new ByteBuffer[0]),
+            Arrays.copyOf(deltas, counters.size()),
+            ttl
         );
     }
 
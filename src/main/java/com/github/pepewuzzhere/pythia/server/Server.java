@@ -24,13 +24,25 @@
 
 package com.github.pepewuzzhere.pythia.server;
 
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.offheap.OffHeapDataModel;
+import com.github.pepewuzzhere.pythia.pql.Compiler;
+import com.github.pepewuzzhere.pythia.pql.FSALexer;
+import com.github.pepewuzzhere.pythia.pql.LL1Grammar;
+import com.github.pepewuzzhere.pythia.pql.command.BatchCommand;
+import com.github.pepewuzzhere.pythia.pql.command.IMutationCommand;
+import com.github.pepewuzzhere.pythia.storage.CommitLog;
 import com.github.pepewuzzhere.pythia.storage.IStorage;
+import com.github.pepewuzzhere.pythia.storage.LSMStorage;
 import com.github.pepewuzzhere.pythia.storage.SerializationStorage;
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -39,6 +51,14 @@ import java.util.concurrent.TimeUnit;
 /**
  * Server of Pythia DataBase.
  *
+ * Server serves one database and flushes it to own root directory, so
+ * servers of independent databases could run in one JVM.
+ *
+ * Changes acknowledged between snapshots are kept in {@link CommitLog} and
+ * replayed on start. Snapshot is written while log is locked, so commands
+ * logged in older segments are all in snapshot and commands of new segment
+ * are not - changes are never applied twice on replay.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
@@ -58,8 +78,11 @@ public class Server {
 
     private final ServerSocket server;
     private final ExecutorService service;
+    private final DB db;
+    private final String root;
     private final IDataModel model;
     private final IStorage storage;
+    private final CommitLog log;
     private final ScheduledExecutorService scheduler;
 
     private class Scheduler implements Runnable {
@@ -67,7 +90,29 @@ public class Server {
         @Override
         public void run() {
             try {
-                Server.this.storage.write(Server.ROOT);
+                if (log == null) {
+                    Server.this.storage.write(root, db);
+                    return;
+                }
+                final long segment;
+                synchronized (log) {
+                    segment = log.rotate();
+                    Server.this.storage.write(root, db);
+                }
+                log.discard(segment);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+
+    }
+
+    private class Flusher implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                log.flush();
             } catch (IOException e) {
                 System.err.println(e.getMessage());
             }
@@ -75,8 +120,41 @@ public class Server {
 
     }
 
+    private class Replay implements CommitLog.IHandler {
+
+        private final Compiler compiler;
+
+        Replay() throws PythiaException {
+            compiler = new Compiler(new FSALexer(), new LL1Grammar());
+        }
+
+        @Override
+        public void apply(final String keySpace, final String[] lines) {
+            final Context ctx = new Context(db);
+            try {
+                if (keySpace != null && db.getKeySpace(keySpace) != null) {
+                    ctx.setActualKeySpace(keySpace);
+                }
+                if (lines.length == 1) {
+                    compiler.compile(lines[0], ctx).execute(db, model);
+                    return;
+                }
+                final List<IMutationCommand> batch = new ArrayList<>();
+                for (String line : lines) {
+                    batch.add((IMutationCommand)compiler.compile(line, ctx));
+                }
+                new BatchCommand(batch).execute(db, model);
+            } catch (PythiaException e) {
+                // only successful commands are logged, so data differ from
+                // data of the log - command is skipped, next ones are applied
+                System.err.println(e.getMessage());
+            }
+        }
+
+    }
+
     /**
-     * Create server listening to chosen port.
+     * Create server of default database listening to chosen port.
      *
      * @param socket server socket
      * @param model pythia data model implementation
@@ -84,15 +162,55 @@ public class Server {
      * @throws IllegalArgumentException if socket, model or storage are null
      */
     public Server(ServerSocket socket, IDataModel model, IStorage storage) {
-        if (socket == null || model == null || storage == null) {
+        this(socket, DB.INSTANCE, ROOT, model, storage, null);
+    }
+
+    /**
+     * Create server of database listening to chosen port.
+     *
+     * @param socket server socket
+     * @param db database served by server
+     * @param root directory root for data of database
+     * @param model pythia data model implementation
+     * @param storage storage used in this instance of pythia
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public Server(
+        ServerSocket socket, DB db, String root, IDataModel model,
+        IStorage storage
+    ) {
+        this(socket, db, root, model, storage, null);
+    }
+
+    /**
+     * Create server of database which logs changes between snapshots.
+     *
+     * @param socket server socket
+     * @param db database served by server
+     * @param root directory root for data of database
+     * @param model pythia data model implementation
+     * @param storage storage used in this instance of pythia
+     * @param log commit log in root of data, null if changes are not logged
+     * @throws IllegalArgumentException if any argument except log is null
+     */
+    public Server(
+        ServerSocket socket, DB db, String root, IDataModel model,
+        IStorage storage, CommitLog log
+    ) {
+        if (socket == null || db == null || root == null || model == null
+            || storage == null
+        ) {
             throw new IllegalArgumentException(
-                    "Socket, data model and storage are required");
+                "Socket, database, root, data model and storage are required");
         }
         server = socket;
+        this.db = db;
+        this.root = root;
         service = Executors.newFixedThreadPool(Server.MAX_CONNECTIONS);
-        scheduler = Executors.newScheduledThreadPool(1);
+        scheduler = Executors.newScheduledThreadPool(2);
         this.model = model;
         this.storage = storage;
+        this.log = log;
     }
 
     /**
@@ -103,12 +221,22 @@ public class Server {
      * @throws PythiaException if something is wrong with {@link IStorage#read}
      */
     public void go() throws IOException, PythiaException {
-        storage.read(ROOT, model);
+        storage.read(root, db, model);
+        if (log != null) {
+            log.replay(new Replay());
+            if (log.getMode() == CommitLog.SyncMode.PERIODIC) {
+                scheduler.scheduleWithFixedDelay(
+                    new Flusher(), log.getWindow(), log.getWindow(),
+                    TimeUnit.MILLISECONDS
+                );
+            }
+        }
         scheduler.scheduleWithFixedDelay(
                 new Scheduler(), 0, 30, TimeUnit.SECONDS);
         try {
             do {
-                service.execute(new ServerThread(server.accept(), model));
+                service.execute(
+                    new ServerThread(server.accept(), db, model, log));
             } while (!server.isClosed());
         } catch (Exception e) {
             service.shutdownNow();
@@ -118,17 +246,54 @@ public class Server {
     }
 
     /**
-     * Entry point of server application
+     * Entry point of server application.
+     *
+     * Data model is chosen by <code>pythia.datamodel</code> system property:
+     * <code>hashmap</code> (default) or <code>offheap</code>. Storage is
+     * chosen by <code>pythia.storage</code> property:
+     * <code>serialization</code> (default) or <code>lsm</code> with
+     * compaction from <code>pythia.compaction</code> property:
+     * <code>size_tiered</code> (default) or <code>leveled</code>. Column
+     * families of serialization storage are read as chosen by
+     * <code>pythia.load</code> property: <code>parallel</code> (default) by
+     * <code>pythia.load.threads</code> threads (default number of
+     * processors) or <code>lazy</code> - on first access. Sync of
+     * commit log is chosen by <code>pythia.commitlog.sync</code> property:
+     * <code>group</code> (default), <code>per_write</code> or
+     * <code>periodic</code>, and <code>pythia.commitlog.window</code> in
+     * milliseconds (group window, default 1, or sync interval, default
+     * 1000).
      *
      * @param args command line arguments
      * @throws Exception if something is wrong with server
      */
     public static void main(String[] args) throws Exception {
         System.out.println("Pythia - Start");
+        final IDataModel model =
+            "offheap".equals(System.getProperty("pythia.datamodel"))
+                ? new OffHeapDataModel()
+                : new HashMapDataModel();
+        final IStorage storage =
+            "lsm".equals(System.getProperty("pythia.storage"))
+                ? new LSMStorage(LSMStorage.Compaction.valueOf(
+                    System.getProperty("pythia.compaction", "size_tiered")
+                        .toUpperCase()))
+                : new SerializationStorage(
+                    Integer.getInteger("pythia.load.threads",
+                        Runtime.getRuntime().availableProcessors()),
+                    "lazy".equals(System.getProperty("pythia.load")));
+        final CommitLog.SyncMode sync = CommitLog.SyncMode.valueOf(
+            System.getProperty("pythia.commitlog.sync", "group").toUpperCase());
+        final long window = Long.parseLong(System.getProperty(
+            "pythia.commitlog.window",
+            sync == CommitLog.SyncMode.PERIODIC ? "1000" : "1"));
         final Server pythia = new Server(
             new ServerSocket(4444),
-            new HashMapDataModel(),
-            new SerializationStorage()
+            DB.INSTANCE,
+            ROOT,
+            model,
+            storage,
+            new CommitLog(ROOT, sync, window)
         );
         pythia.go();
     }
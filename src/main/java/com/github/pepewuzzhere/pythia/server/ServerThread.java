@@ -25,35 +25,92 @@
 package com.github.pepewuzzhere.pythia.server;
 
 import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaError;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import com.github.pepewuzzhere.pythia.pql.Compiler;
 import com.github.pepewuzzhere.pythia.pql.FSALexer;
 import com.github.pepewuzzhere.pythia.pql.LL1Grammar;
+import com.github.pepewuzzhere.pythia.pql.command.BatchCommand;
 import com.github.pepewuzzhere.pythia.pql.command.IDBCommand;
+import com.github.pepewuzzhere.pythia.pql.command.IMutationCommand;
+import com.github.pepewuzzhere.pythia.pql.command.ScanCommand;
+import com.github.pepewuzzhere.pythia.pql.command.ScanResult;
+import com.github.pepewuzzhere.pythia.pql.command.SelectCommand;
+import com.github.pepewuzzhere.pythia.pql.command.ShowMemoryCommand;
+import com.github.pepewuzzhere.pythia.pql.command.UseKeySpaceCommand;
+import com.github.pepewuzzhere.pythia.storage.CommitLog;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Server thread to handle user of Pythia data base.
  *
+ * Lines between {@link #BEGIN_BATCH} and {@link #APPLY_BATCH} are collected
+ * and applied at once by {@link BatchCommand}.
+ *
+ * Rows of scan are sent while they are read from column family, in chunks
+ * of {@link #CHUNK_ROWS} rows - line with token of next page follows last
+ * row of page.
+ *
+ * Commands which change database are appended to commit log before "OK" is
+ * sent. Command is executed and appended while log is locked, so records
+ * are in order in which changes were applied, but client waits for sync of
+ * log after lock is released - records of concurrent clients are synced
+ * together.
+ *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
  * @since 1.0
  */
 class ServerThread implements Runnable {
 
+    /**
+     * Line which starts collecting mutations for bulk load.
+     */
+    static final String BEGIN_BATCH = "BEGIN BATCH";
+
+    /**
+     * Line which applies mutations collected since {@link #BEGIN_BATCH}.
+     */
+    static final String APPLY_BATCH = "APPLY BATCH";
+
+    /**
+     * Number of scanned rows sent to client at once.
+     */
+    static final int CHUNK_ROWS = 256;
+
+    /**
+     * Prefix of line with token of next page of scan.
+     */
+    static final String NEXT_PAGE = "PAGE ";
+
     private final Socket socket;
     private final BufferedReader in;
     private final PrintStream out;
     private final Context ctx;
+    private final DB db;
     private final IDataModel model;
+    private final CommitLog log;
+
+    /*
+     * Mutations collected since BEGIN BATCH and their lines, null if batch
+     * is not started.
+     */
+    private List<IMutationCommand> batch;
+    private List<String> batchLines;
 
     /**
-     * Creates server thread.
+     * Creates server thread of default database.
      *
      * Needs socket from server and used data model.
      *
@@ -65,15 +122,139 @@ class ServerThread implements Runnable {
     ServerThread(final Socket socket, final IDataModel model)
             throws IOException
     {
-        if (socket == null || model == null) {
+        this(socket, DB.INSTANCE, model);
+    }
+
+    /**
+     * Creates server thread.
+     *
+     * Needs socket from server, database and used data model.
+     *
+     * @param socket socket instance
+     * @param db database used by user
+     * @param model data model to use
+     * @throws IOException if something is wrong with i/o
+     * @throws IllegalArgumentException if socket, database or model are null
+     */
+    ServerThread(final Socket socket, final DB db, final IDataModel model)
+            throws IOException
+    {
+        this(socket, db, model, null);
+    }
+
+    /**
+     * Creates server thread which logs changes of database.
+     *
+     * @param socket socket instance
+     * @param db database used by user
+     * @param model data model to use
+     * @param log commit log of changes, null if changes are not logged
+     * @throws IOException if something is wrong with i/o
+     * @throws IllegalArgumentException if socket, database or model are null
+     */
+    ServerThread(
+        final Socket socket, final DB db, final IDataModel model,
+        final CommitLog log
+    ) throws IOException {
+        if (socket == null || db == null || model == null) {
             throw new IllegalArgumentException(
-                    "Socket and data model are required");
+                    "Socket, database and data model are required");
         }
         this.socket = socket;
         in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        out = new PrintStream(socket.getOutputStream());
-        ctx = new Context();
+        out = new PrintStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+        ctx = new Context(db);
+        this.db = db;
         this.model = model;
+        this.log = log;
+    }
+
+    /*
+     * Executes command or collects it to started batch - returns response.
+     */
+    private Object handle(final String command, final Compiler compiler)
+            throws PythiaException
+    {
+        final String line = command.trim();
+        if (BEGIN_BATCH.equalsIgnoreCase(line)) {
+            batch = new ArrayList<>();
+            batchLines = new ArrayList<>();
+            return null;
+        }
+        if (APPLY_BATCH.equalsIgnoreCase(line) && batch != null) {
+            final IDBCommand cmd = new BatchCommand(batch);
+            final String[] lines =
+                    batchLines.toArray(new String[batchLines.size()]);
+            batch = null;
+            batchLines = null;
+            return execute(cmd, lines);
+        }
+        final IDBCommand cmd = compiler.compile(command, ctx);
+        if (batch == null) {
+            return isLogged(cmd)
+                    ? execute(cmd, command) : cmd.execute(db, model);
+        }
+        if (!(cmd instanceof IMutationCommand)) {
+            // only INSERT, UPDATE and DELETE could be batched
+            throw new PythiaException(PythiaError.INVALID_ARGUMENS);
+        }
+        batch.add((IMutationCommand)cmd);
+        batchLines.add(command);
+        return null;
+    }
+
+    /*
+     * Executes command which changes database and logs its lines.
+     */
+    private Object execute(final IDBCommand cmd, final String... lines)
+            throws PythiaException
+    {
+        if (log == null) {
+            return cmd.execute(db, model);
+        }
+        final IKeySpace keySpace = ctx.getActualKeySpace();
+        final Object response;
+        try {
+            final long position;
+            synchronized (log) {
+                response = cmd.execute(db, model);
+                position = log.append(
+                    keySpace != null ? keySpace.getName() : null, lines);
+            }
+            log.commit(position);
+        } catch (IOException e) {
+            final PythiaException ex =
+                    new PythiaException(PythiaError.COMMIT_FAILED);
+            ex.initCause(e);
+            throw ex;
+        }
+        return response;
+    }
+
+    /*
+     * Checks if command could change database - reads are not logged.
+     */
+    private static boolean isLogged(final IDBCommand cmd) {
+        return !(cmd instanceof SelectCommand || cmd instanceof ScanCommand
+            || cmd instanceof ShowMemoryCommand
+            || cmd instanceof UseKeySpaceCommand);
+    }
+
+    /*
+     * Sends rows of scan in chunks, rows are read while they are sent.
+     */
+    private void send(final ScanResult result) {
+        int count = 0;
+        for (IRow row : result) {
+            out.println(row.toString());
+            if (++count % CHUNK_ROWS == 0) {
+                out.flush();
+            }
+        }
+        if (result.getToken() != null) {
+            out.println(NEXT_PAGE + result.getToken());
+        }
     }
 
     @Override
@@ -89,9 +270,10 @@ class ServerThread implements Runnable {
 
                     System.out.println("Command: " + command);
                     if (command != null) {
-                        final IDBCommand cmd = compiler.compile(command, ctx);
-                        Object response = cmd.execute(model);
-                        if (response != null) {
+                        Object response = handle(command, compiler);
+                        if (response instanceof ScanResult) {
+                            send((ScanResult)response);
+                        } else if (response != null) {
                             out.println(response.toString());
                         }
 
@@ -106,6 +288,7 @@ class ServerThread implements Runnable {
         } catch (IOException | PythiaException e) {
             throw new RuntimeException(e);
         } finally {
+            ctx.closeCursors();
             try {
                 in.close();
                 out.close();
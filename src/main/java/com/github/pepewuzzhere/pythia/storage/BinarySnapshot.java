@@ -0,0 +1,745 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.BlockCodec;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
+import com.github.pepewuzzhere.pythia.datamodel.Expiry;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.ICompressedColumn;
+import com.github.pepewuzzhere.pythia.datamodel.ICompressedRow;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary format of column family snapshot.
+ *
+ * File starts with magic number ({@code int}) and version ({@code int}),
+ * followed by blocks. Every block is length of payload ({@code int}), its
+ * CRC32 ({@code int}) and payload. Block of zero length ends the file.
+ *
+ * First block holds metadata: options of column family and types of columns
+ * as number of pairs ({@code int}) followed by names and values, then keys
+ * of indexed columns. Next blocks hold rows - number of rows ({@code int}),
+ * every row as key, deadline ({@code long}), number of columns
+ * ({@code int}) and columns: key, flags ({@code byte}), value and deadline.
+ * Strings, keys and values are written as length ({@code int}, -1 for null
+ * value) and bytes. Value of column with flag {@link #COMPRESSED} is block
+ * of {@link BlockCodec} - compressed value is written and read as it is
+ * stored in column family (see {@link ICompressedColumn}). Files of version
+ * 1 have no flags and are still read.
+ * Block is closed when it reaches {@link #BLOCK_SIZE}, only row bigger than
+ * that gets bigger block.
+ *
+ * Blocks are read and written through file channel, so whole block is
+ * checked before any of its rows is used and nothing of Java serialization
+ * (class descriptors, object handles) is stored. Rows are read through
+ * {@link IColumnFamily#getOrCreateRow(ByteBuffer)}, so they get layout,
+ * dictionary of column names and compression of column family. Files written by
+ * {@link java.io.ObjectOutputStream} are still read.
+ *
+ * Rows changed after snapshot was written are appended to delta file (see
+ * {@link #appendChanges(File, IColumnFamily)}). Delta starts with the same
+ * header and every append adds segment - blocks of rows in format of
+ * snapshot followed by empty block. Deleted row has -1 columns. Segment is
+ * applied only if it is complete. Delta of older version is not appended,
+ * column family is written whole instead.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public final class BinarySnapshot {
+
+    /**
+     * Version of format written by this class.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Flag of column with compressed value.
+     */
+    public static final byte COMPRESSED = 1;
+
+    /**
+     * Size of payload which closes block.
+     */
+    public static final int BLOCK_SIZE = 64 << 10;
+
+    private static final int MAGIC = 0x50595348;
+    private static final int HEADER_SIZE = 8;
+
+    /*
+     * First bytes of stream written by ObjectOutputStream.
+     */
+    private static final short STREAM_MAGIC = (short)0xaced;
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Writes column family to file.
+     *
+     * @param file destination file, existing file is overwritten
+     * @param columnFamily saved column family
+     * @throws IOException if file couldn't be written
+     * @throws IllegalArgumentException if file or column family are null
+     */
+    public static void write(final File file, final IColumnFamily columnFamily)
+            throws IOException
+    {
+        if (file == null || columnFamily == null) {
+            throw new IllegalArgumentException(
+                    "File and column family are required");
+        }
+        try (final FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)
+        ) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header);
+
+            final BlockWriter out = new BlockWriter(channel);
+            writeMetadata(out.block, columnFamily);
+            out.flush();
+
+            out.block.putInt(0);
+            columnFamily.visitRows(new IColumnFamily.RowVisitor() {
+                @Override
+                public void visit(final IRow row) throws IOException {
+                    writeRow(out, row, columnFamily);
+                    if (out.block.position() >= BLOCK_SIZE) {
+                        out.flushRows();
+                    }
+                }
+            });
+            if (out.rows > 0) {
+                out.flushRows();
+            }
+            out.block.clear();
+            out.flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Appends rows changed since column family was saved to delta file.
+     *
+     * Rows are read one by one after their keys were taken, row changed
+     * meanwhile is set as changed again.
+     *
+     * @param file delta file, it is created with header if it is empty
+     * @param columnFamily saved column family
+     * @return false if changed rows are not known or delta has older
+     *         version, column family has to be written whole (see
+     *         {@link IColumnFamily#takeChanges()})
+     * @throws IOException if delta couldn't be written
+     * @throws IllegalArgumentException if file or column family are null
+     */
+    public static boolean appendChanges(
+        final File file, final IColumnFamily columnFamily
+    ) throws IOException {
+        if (file == null || columnFamily == null) {
+            throw new IllegalArgumentException(
+                    "File and column family are required");
+        }
+        final List<ByteBuffer> keys = columnFamily.takeChanges();
+        if (keys == null) {
+            return false;
+        }
+        if (keys.isEmpty()) {
+            return true;
+        }
+        try (final FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)
+        ) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.size() == 0) {
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(channel, header);
+            } else if (channel.read(header, 0) != HEADER_SIZE
+                || header.getInt(4) != VERSION
+            ) {
+                return false;
+            }
+            channel.position(channel.size());
+            final BlockWriter out = new BlockWriter(channel);
+            out.block.putInt(0);
+            for (ByteBuffer key : keys) {
+                final IRow row = columnFamily.getRow(key);
+                if (row != null) {
+                    writeRow(out, row, columnFamily);
+                } else {
+                    writeDeleted(out, key);
+                }
+                if (out.block.position() >= BLOCK_SIZE) {
+                    out.flushRows();
+                }
+            }
+            if (out.rows > 0) {
+                out.flushRows();
+            }
+            // end of segment
+            out.block.clear();
+            out.flush();
+            channel.force(false);
+        }
+        return true;
+    }
+
+    /**
+     * Applies complete segments of delta file to column family.
+     *
+     * Rows of delta replace rows of column family, rows and columns which
+     * expired meanwhile are not loaded.
+     *
+     * @param file delta file written by {@link #appendChanges}
+     * @param columnFamily column family read from snapshot
+     * @return length of complete segments - bytes after it belong to segment
+     *         torn by crash
+     * @throws IOException if file couldn't be read or is damaged
+     * @throws PythiaException if rows couldn't be replaced
+     */
+    public static long readChanges(
+        final File file, final IColumnFamily columnFamily
+    ) throws IOException, PythiaException {
+        if (file == null || columnFamily == null) {
+            throw new IllegalArgumentException(
+                    "File and column family are required");
+        }
+        try (final FileChannel channel =
+                FileChannel.open(file.toPath(), StandardOpenOption.READ)
+        ) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(channel, header)) {
+                return 0;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a delta: " + file);
+            }
+            final int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported delta version: "
+                        + version);
+            }
+            final BlockReader in = new BlockReader(channel, file);
+            long valid = channel.position();
+            while (valid < channel.size()) {
+                final List<ByteBuffer> segment = new ArrayList<>();
+                try {
+                    for (ByteBuffer block = in.next(); block.hasRemaining();
+                            block = in.next()
+                    ) {
+                        // reader reuses buffer of block
+                        final ByteBuffer copy =
+                                ByteBuffer.allocate(block.remaining());
+                        copy.put(block).flip();
+                        segment.add(copy);
+                    }
+                } catch (EOFException e) {
+                    // segment torn by crash
+                    break;
+                }
+                final long now = System.currentTimeMillis();
+                for (ByteBuffer block : segment) {
+                    for (int rows = block.getInt(); rows > 0; --rows) {
+                        readRow(block, columnFamily, version, now, true);
+                    }
+                }
+                valid = channel.position();
+            }
+            return valid;
+        } catch (RuntimeException e) {
+            // invalid lengths of damaged block
+            final IOException ex = new IOException("Damaged delta: " + file);
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Checks if file starts with header of this format - files written by
+     * object serialization don't.
+     *
+     * @param file checked file
+     * @return true if file is snapshot or delta of this format
+     * @throws IOException if file couldn't be read
+     */
+    public static boolean isBinary(final File file) throws IOException {
+        try (final FileChannel channel =
+                FileChannel.open(file.toPath(), StandardOpenOption.READ)
+        ) {
+            final ByteBuffer header = ByteBuffer.allocate(4);
+            return channel.read(header) == 4 && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Reads column family from file written by {@link #write} or by object
+     * serialization.
+     *
+     * Rows and columns which expired meanwhile are not loaded. Column family
+     * is returned as clean.
+     *
+     * @param file file of column family
+     * @param model data model which creates column family
+     * @return read column family
+     * @throws IOException if file couldn't be read or is damaged
+     * @throws PythiaException if column family couldn't be built
+     */
+    public static IColumnFamily read(final File file, final IDataModel model)
+            throws IOException, PythiaException
+    {
+        if (file == null || model == null) {
+            throw new IllegalArgumentException("File and model are required");
+        }
+        try (final FileChannel channel =
+                FileChannel.open(file.toPath(), StandardOpenOption.READ)
+        ) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(channel, header)) {
+                throw new EOFException("Snapshot is empty: " + file);
+            }
+            header.flip();
+            if (header.getShort(0) == STREAM_MAGIC) {
+                channel.position(0);
+                return readSerialized(channel);
+            }
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            final int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version: "
+                        + version);
+            }
+            final BlockReader in = new BlockReader(channel, file);
+            final List<ByteBuffer> indexes = new ArrayList<>();
+            final IColumnFamily columnFamily = model.createColumnFamily(
+                    readMetadata(in.next(), indexes));
+            final long now = System.currentTimeMillis();
+            for (ByteBuffer block = in.next(); block.hasRemaining();
+                    block = in.next()
+            ) {
+                for (int rows = block.getInt(); rows > 0; --rows) {
+                    readRow(block, columnFamily, version, now, false);
+                }
+            }
+            for (ByteBuffer columnKey : indexes) {
+                columnFamily.createIndex(columnKey);
+            }
+            columnFamily.setClean();
+            return columnFamily;
+        } catch (RuntimeException e) {
+            // invalid lengths or options of damaged block
+            final IOException ex = new IOException("Damaged snapshot: " + file);
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    private static IColumnFamily readSerialized(final FileChannel channel)
+            throws IOException
+    {
+        try (final ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)))
+        ) {
+            return (IColumnFamily)in.readObject();
+        } catch (ClassNotFoundException e) {
+            final IOException ex = new IOException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    private static void writeMetadata(
+        final ByteBuffer block, final IColumnFamily columnFamily
+    ) {
+        final ColumnFamilyOptions options = columnFamily.getOptions();
+        final Map<String, String> values = new LinkedHashMap<>();
+        values.put(ColumnFamilyOptions.ORDERED,
+                String.valueOf(options.isOrdered()));
+        values.put(ColumnFamilyOptions.PACKED,
+                String.valueOf(options.isPacked()));
+        values.put(ColumnFamilyOptions.TIERED,
+                String.valueOf(options.isTiered()));
+        values.put(ColumnFamilyOptions.HOT_ROWS,
+                String.valueOf(options.getHotRows()));
+        values.put(ColumnFamilyOptions.PARTITIONED,
+                String.valueOf(options.isPartitioned()));
+        values.put(ColumnFamilyOptions.PARTITIONS,
+                String.valueOf(options.getPartitions()));
+        values.put(ColumnFamilyOptions.COMPRESSED,
+                String.valueOf(options.isCompressed()));
+        values.put(ColumnFamilyOptions.COMPRESSION_THRESHOLD,
+                String.valueOf(options.getCompressionThreshold()));
+        writePairs(block, values);
+
+        final Map<String, String> types = new LinkedHashMap<>();
+        for (Map.Entry<String, ColumnType> t
+                : options.getColumnTypes().entrySet()
+        ) {
+            types.put(t.getKey(), t.getValue().name());
+        }
+        writePairs(block, types);
+
+        final List<ByteBuffer> indexes = columnFamily.getIndexedColumns();
+        block.putInt(indexes.size());
+        for (ByteBuffer columnKey : indexes) {
+            putBytes(block, columnKey);
+        }
+    }
+
+    private static void writePairs(
+        final ByteBuffer block, final Map<String, String> pairs
+    ) {
+        block.putInt(pairs.size());
+        for (Map.Entry<String, String> p : pairs.entrySet()) {
+            putString(block, p.getKey());
+            putString(block, p.getValue());
+        }
+    }
+
+    private static ColumnFamilyOptions readMetadata(
+        final ByteBuffer block, final List<ByteBuffer> indexes
+    ) {
+        final ColumnFamilyOptions options = new ColumnFamilyOptions();
+        for (int i = block.getInt(); i > 0; --i) {
+            options.set(getString(block), getString(block));
+        }
+        for (int i = block.getInt(); i > 0; --i) {
+            options.setColumnType(
+                    getString(block), ColumnType.valueOf(getString(block)));
+        }
+        for (int i = block.getInt(); i > 0; --i) {
+            indexes.add(getBytes(block));
+        }
+        return options;
+    }
+
+    /*
+     * Writes row with compressed values as they are stored.
+     */
+    private static void writeRow(
+        final BlockWriter out, final IRow row, final IColumnFamily columnFamily
+    ) {
+        final ByteBuffer key = row.getKey();
+        final List<IColumn> columns = new ArrayList<>();
+        final List<ByteBuffer> values = new ArrayList<>();
+        final BitSet compressed = new BitSet();
+        int size = 16 + key.remaining();
+        for (IColumn column : row) {
+            ByteBuffer value = column instanceof ICompressedColumn
+                    ? ((ICompressedColumn)column).getCompressedValue()
+                    : null;
+            if (value != null) {
+                compressed.set(values.size());
+            } else {
+                value = column.getValue();
+            }
+            size += 17 + column.getKey().remaining()
+                    + (value != null ? value.remaining() : 0);
+            columns.add(column);
+            values.add(value);
+        }
+        final ByteBuffer block = out.reserve(size);
+        ++out.rows;
+        putBytes(block, key);
+        block.putLong(columnFamily.getDeadline(key, null));
+        block.putInt(columns.size());
+        for (int i = 0; i < columns.size(); ++i) {
+            final ByteBuffer columnKey = columns.get(i).getKey();
+            putBytes(block, columnKey);
+            block.put(compressed.get(i) ? COMPRESSED : 0);
+            putBytes(block, values.get(i));
+            block.putLong(columnFamily.getDeadline(key, columnKey));
+        }
+    }
+
+    /*
+     * Writes row of delta deleted from column family.
+     */
+    private static void writeDeleted(
+            final BlockWriter out, final ByteBuffer key)
+    {
+        final ByteBuffer block = out.reserve(16 + key.remaining());
+        ++out.rows;
+        putBytes(block, key);
+        block.putLong(Expiry.NEVER);
+        block.putInt(-1);
+    }
+
+    /*
+     * Adds row to column family - row of delta replaces existing one, row
+     * with -1 columns only deletes it. Compressed values stay compressed if
+     * rows of column family keep them so.
+     */
+    private static void readRow(
+        final ByteBuffer block, final IColumnFamily columnFamily,
+        final int version, final long now, final boolean replace
+    ) throws PythiaException {
+        final ByteBuffer key = getBytes(block);
+        final long deadline = block.getLong();
+        final int columns = block.getInt();
+        if (replace && columnFamily.getRow(key) != null) {
+            columnFamily.deleteRow(key);
+        }
+        final boolean expired = deadline != Expiry.NEVER && deadline <= now;
+        final IRow row = expired || columns < 0
+                ? null
+                : columnFamily.getOrCreateRow(key);
+        final Map<ByteBuffer, Long> deadlines = new LinkedHashMap<>();
+        for (int i = columns; i > 0; --i) {
+            final ByteBuffer columnKey = getBytes(block);
+            final byte flags = version > 1 ? block.get() : 0;
+            final ByteBuffer value = getBytes(block);
+            final long columnDeadline = block.getLong();
+            if (row == null) {
+                continue;
+            }
+            if (columnDeadline != Expiry.NEVER) {
+                if (columnDeadline <= now) {
+                    continue;
+                }
+                deadlines.put(columnKey, columnDeadline);
+            }
+            if ((flags & COMPRESSED) == 0 || value == null) {
+                row.putColumn(columnKey, value);
+            } else if (row instanceof ICompressedRow) {
+                ((ICompressedRow)row).putCompressedColumn(columnKey, value);
+            } else {
+                row.putColumn(columnKey, ByteBuffer.wrap(
+                        BlockCodec.decompress(value.array())));
+            }
+        }
+        if (row == null) {
+            return;
+        }
+        if (deadline != Expiry.NEVER) {
+            expire(columnFamily, key, null, deadline);
+        }
+        for (Map.Entry<ByteBuffer, Long> d : deadlines.entrySet()) {
+            expire(columnFamily, key, d.getKey(), d.getValue());
+        }
+    }
+
+    /*
+     * Sets deadline again - it is moved by milliseconds which pass between
+     * reading clock here and in column family.
+     */
+    private static void expire(
+        final IColumnFamily columnFamily, final ByteBuffer key,
+        final ByteBuffer columnKey, final long deadline
+    ) {
+        columnFamily.expire(key, columnKey,
+                Math.max(1, deadline - System.currentTimeMillis()));
+    }
+
+    private static void putString(final ByteBuffer block, final String s) {
+        putBytes(block, ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String getString(final ByteBuffer block) {
+        final ByteBuffer bytes = getBytes(block);
+        return new String(bytes.array(), bytes.arrayOffset(),
+                bytes.remaining(), StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(final ByteBuffer block, final ByteBuffer b) {
+        if (b == null) {
+            block.putInt(-1);
+        } else {
+            block.putInt(b.remaining());
+            block.put(b.duplicate());
+        }
+    }
+
+    /*
+     * Gets copy of bytes, column family keeps read keys and values.
+     */
+    private static ByteBuffer getBytes(final ByteBuffer block) {
+        final int length = block.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        block.get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void writeFully(
+        final FileChannel channel, final ByteBuffer... buffers
+    ) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer b : buffers) {
+            remaining += b.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /*
+     * Fills buffer, returns false if file ends before first byte.
+     */
+    private static boolean readFully(
+        final FileChannel channel, final ByteBuffer buffer
+    ) throws IOException {
+        final int expected = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.remaining() == expected) {
+                    return false;
+                }
+                throw new EOFException("Snapshot is truncated");
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Collects payload of block and writes it with its header.
+     */
+    private static final class BlockWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE + 4096);
+        private int rows;
+
+        BlockWriter(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /*
+         * Makes room for bytes in block, block grows for row bigger than
+         * free space.
+         */
+        ByteBuffer reserve(final int size) {
+            if (block.remaining() < size) {
+                final ByteBuffer bigger = ByteBuffer.allocate(Math.max(
+                        block.capacity() * 2, block.position() + size));
+                block.flip();
+                bigger.put(block);
+                block = bigger;
+            }
+            return block;
+        }
+
+        /*
+         * Writes block of rows, block starts with number of rows.
+         */
+        void flushRows() throws IOException {
+            block.putInt(0, rows);
+            flush();
+            rows = 0;
+            block.putInt(0);
+        }
+
+        void flush() throws IOException {
+            block.flip();
+            crc.reset();
+            crc.update(block.array(), 0, block.limit());
+            header.clear();
+            header.putInt(block.limit()).putInt((int)crc.getValue()).flip();
+            writeFully(channel, header, block);
+            block.clear();
+        }
+    }
+
+    /*
+     * Reads blocks and checks their checksums.
+     */
+    private static final class BlockReader {
+
+        private final FileChannel channel;
+        private final File file;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE + 4096);
+
+        BlockReader(final FileChannel channel, final File file) {
+            this.channel = channel;
+            this.file = file;
+        }
+
+        /*
+         * Reads next block, empty block marks end of file.
+         */
+        ByteBuffer next() throws IOException {
+            header.clear();
+            if (!readFully(channel, header)) {
+                throw new EOFException("Snapshot is truncated: " + file);
+            }
+            header.flip();
+            final int length = header.getInt();
+            final int checksum = header.getInt();
+            if (length < 0) {
+                throw new IOException("Damaged snapshot: " + file);
+            }
+            if (length > channel.size() - channel.position()) {
+                throw new EOFException("Snapshot is truncated: " + file);
+            }
+            if (block.capacity() < length) {
+                block = ByteBuffer.allocate(length);
+            }
+            block.clear().limit(length);
+            if (length > 0 && !readFully(channel, block)) {
+                throw new EOFException("Snapshot is truncated: " + file);
+            }
+            block.flip();
+            crc.reset();
+            crc.update(block.array(), 0, length);
+            if ((int)crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in snapshot: " + file);
+            }
+            return block;
+        }
+    }
+}
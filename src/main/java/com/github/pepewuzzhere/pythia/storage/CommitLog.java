@@ -0,0 +1,536 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Log of commands which changed database since last written snapshot.
+ *
+ * Every record holds name of keyspace used by client and PQL lines of one
+ * command (or all lines of batch). Record is written as its length
+ * ({@code int}), CRC32 of content ({@code int}) and content. Records are
+ * appended to segments <code>commit.N.log</code> in root of data - segment
+ * is changed by {@link #rotate()} and old segments are deleted by
+ * {@link #discard(long)} when snapshot is written.
+ *
+ * Appended records are kept in memory until they are synced, how it is done
+ * depends on {@link SyncMode}:
+ *  - {@link SyncMode#PER_WRITE} - every record is written and synced at once
+ *  - {@link SyncMode#GROUP} - first client waiting in {@link #commit(long)}
+ *    waits <code>window</code> milliseconds and syncs records of all
+ *    clients, others wait for it
+ *  - {@link SyncMode#PERIODIC} - {@link #commit(long)} doesn't wait, owner
+ *    calls {@link #flush()} every <code>window</code> milliseconds
+ *
+ * Segment torn by crash is cut off after last complete record on
+ * {@link #replay(IHandler)}.
+ *
+ * Log keeps its state under private lock, so owner could synchronize on log
+ * to apply commands in order of their records - group leader syncs records
+ * meanwhile. Records of failed sync are written again by next sync, but
+ * commits waiting for them fail.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class CommitLog {
+
+    /**
+     * When appended records are synced to disc.
+     */
+    public enum SyncMode {
+
+        /**
+         * Every record is synced before its command is acknowledged.
+         */
+        PER_WRITE,
+
+        /**
+         * Records of concurrent commands are synced together.
+         */
+        GROUP,
+
+        /**
+         * Records are synced in intervals, commands are not waiting.
+         */
+        PERIODIC
+    }
+
+    /**
+     * Handler of records read from log.
+     */
+    public interface IHandler {
+
+        /**
+         * Applies logged command.
+         *
+         * @param keySpace name of keyspace used by client or null
+         * @param lines PQL lines of command, more than one for batch
+         */
+        void apply(final String keySpace, final String[] lines);
+    }
+
+    private static final String PREFIX = "commit.";
+    private static final String SUFFIX = ".log";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File root;
+    private final SyncMode mode;
+    private final long window;
+
+    /*
+     * Records not written to segment yet.
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private final Object lock = new Object();
+
+    private FileChannel channel;
+    private long segment;
+
+    /*
+     * Positions in whole log: end of appended records and end of synced ones.
+     */
+    private long appended;
+    private long synced;
+    private boolean syncing;
+
+    /*
+     * Error of last failed sync and end of records which it didn't sync.
+     */
+    private IOException failure;
+    private long failed;
+
+    /**
+     * Opens log in root directory, new records are appended to new segment.
+     *
+     * @param root directory root for pythia data
+     * @param mode when records are synced
+     * @param window milliseconds to gather group or sync interval
+     * @throws IOException if segment couldn't be created
+     * @throws IllegalArgumentException if root or mode is null or window is
+     *                                  negative
+     */
+    public CommitLog(final String root, final SyncMode mode, final long window)
+            throws IOException
+    {
+        if (root == null || mode == null || window < 0) {
+            throw new IllegalArgumentException(
+                    "Root and mode are required, window must not be negative");
+        }
+        this.root = new File(root);
+        this.root.mkdirs();
+        this.mode = mode;
+        this.window = window;
+        final long[] segments = segments();
+        open(segments.length > 0 ? segments[segments.length - 1] + 1 : 0);
+    }
+
+    /**
+     * Gets when records are synced.
+     *
+     * @return sync mode
+     */
+    public SyncMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets milliseconds to gather group or sync interval.
+     *
+     * @return window of sync
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * Appends record of command.
+     *
+     * Record is not durable until {@link #commit(long)} returns, order of
+     * records is order of calls.
+     *
+     * @param keySpace name of keyspace used by client or null
+     * @param lines PQL lines of command
+     * @return position of record end, argument of {@link #commit(long)}
+     * @throws IOException if record couldn't be written in
+     *                     {@link SyncMode#PER_WRITE} mode
+     */
+    public long append(
+        final String keySpace, final String... lines
+    ) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(content);
+        out.writeUTF(keySpace != null ? keySpace : "");
+        out.writeInt(lines.length);
+        for (String line : lines) {
+            final byte[] bytes = line.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(content.toByteArray());
+
+        synchronized (lock) {
+            final DataOutputStream record = new DataOutputStream(pending);
+            record.writeInt(content.size());
+            record.writeInt((int)crc.getValue());
+            content.writeTo(record);
+            appended += 8 + content.size();
+
+            if (mode == SyncMode.PER_WRITE) {
+                write();
+                synced = appended;
+            }
+            return appended;
+        }
+    }
+
+    /**
+     * Waits until records up to position are synced.
+     *
+     * Returns at once in {@link SyncMode#PERIODIC} mode.
+     *
+     * @param position position returned by {@link #append(String, String...)}
+     * @throws IOException if records couldn't be synced - also when sync of
+     *                     group with this record failed in other thread
+     */
+    public void commit(final long position) throws IOException {
+        if (mode == SyncMode.PERIODIC) {
+            return;
+        }
+        synchronized (lock) {
+            while (synced < position) {
+                if (failure != null && position <= failed) {
+                    throw new IOException("Sync of log failed", failure);
+                }
+                if (!syncing) {
+                    syncing = true;
+                    break;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted commit", e);
+                }
+            }
+            if (synced >= position) {
+                return;
+            }
+        }
+        // leader of group - sync without holding log, others keep appending
+        try {
+            if (window > 0) {
+                Thread.sleep(window);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final byte[] group;
+        final long end;
+        final FileChannel target;
+        synchronized (lock) {
+            group = pending.toByteArray();
+            pending.reset();
+            end = appended;
+            target = channel;
+        }
+        boolean written = false;
+        try {
+            final long start = target.position();
+            try {
+                target.write(ByteBuffer.wrap(group));
+            } catch (IOException e) {
+                truncate(target, start);
+                throw e;
+            }
+            written = true;
+            target.force(false);
+        } catch (IOException e) {
+            synchronized (lock) {
+                if (!written) {
+                    // records are written again by next sync
+                    final byte[] later = pending.toByteArray();
+                    pending.reset();
+                    pending.write(group);
+                    pending.write(later);
+                }
+                failure = e;
+                failed = end;
+                syncing = false;
+                lock.notifyAll();
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            syncing = false;
+            if (end > synced) {
+                synced = end;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Writes and syncs all appended records.
+     *
+     * @throws IOException if records couldn't be written
+     */
+    public void flush() throws IOException {
+        final long position;
+        synchronized (lock) {
+            if (mode != SyncMode.PERIODIC) {
+                position = appended;
+            } else {
+                waitForSync();
+                write();
+                synced = appended;
+                return;
+            }
+        }
+        commit(position);
+    }
+
+    /**
+     * Starts new segment, records appended before are in older segments.
+     *
+     * Called before snapshot is written - segments older than returned one
+     * could be discarded after that.
+     *
+     * @return number of new segment
+     * @throws IOException if segment couldn't be changed
+     */
+    public long rotate() throws IOException {
+        synchronized (lock) {
+            waitForSync();
+            write();
+            synced = appended;
+            channel.close();
+            open(segment + 1);
+            return segment;
+        }
+    }
+
+    /**
+     * Deletes segments older than given one.
+     *
+     * @param segment number returned by {@link #rotate()}
+     * @throws IOException if segment couldn't be deleted
+     */
+    public void discard(final long segment) throws IOException {
+        for (long s : segments()) {
+            final File file = file(s);
+            if (s < segment && !file.delete() && file.exists()) {
+                throw new IOException("Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads records of segments older than current one.
+     *
+     * @param handler handler of read records
+     * @return number of read records
+     * @throws IOException if something is wrong with i/o
+     */
+    public int replay(final IHandler handler) throws IOException {
+        int count = 0;
+        for (long s : segments()) {
+            if (s < segment) {
+                count += replay(file(s), handler);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Syncs appended records and closes current segment.
+     *
+     * @throws IOException if something is wrong with i/o
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            waitForSync();
+            write();
+            synced = appended;
+            channel.close();
+        }
+    }
+
+    /*
+     * Reads records of segment, segment torn by crash is cut off.
+     */
+    private int replay(final File file, final IHandler handler)
+            throws IOException
+    {
+        int count = 0;
+        long valid = 0;
+        try (
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))
+        ) {
+            while (true) {
+                final byte[] content;
+                final int checksum;
+                try {
+                    final int length = in.readInt();
+                    if (length < 0 || length > file.length() - valid - 8) {
+                        break;
+                    }
+                    checksum = in.readInt();
+                    content = new byte[length];
+                    in.readFully(content);
+                } catch (EOFException e) {
+                    break;
+                }
+                final CRC32 crc = new CRC32();
+                crc.update(content);
+                if ((int)crc.getValue() != checksum) {
+                    break;
+                }
+                final DataInputStream record = new DataInputStream(
+                        new ByteArrayInputStream(content));
+                final String keySpace = record.readUTF();
+                final String[] lines = new String[record.readInt()];
+                for (int i = 0; i < lines.length; ++i) {
+                    final byte[] bytes = new byte[record.readInt()];
+                    record.readFully(bytes);
+                    lines[i] = new String(bytes, UTF8);
+                }
+                handler.apply(keySpace.length() > 0 ? keySpace : null, lines);
+                valid += 8 + content.length;
+                ++count;
+            }
+        }
+        if (valid < file.length()) {
+            try (
+                final FileChannel torn =
+                    new RandomAccessFile(file, "rw").getChannel()
+            ) {
+                torn.truncate(valid);
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Waits for group leader, its channel could be closed after that.
+     */
+    private void waitForSync() throws IOException {
+        while (syncing) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted sync", e);
+            }
+        }
+    }
+
+    /*
+     * Writes pending records to segment and syncs it, called with lock.
+     * Records which couldn't be written stay pending.
+     */
+    private void write() throws IOException {
+        if (pending.size() > 0) {
+            final long start = channel.position();
+            try {
+                channel.write(ByteBuffer.wrap(pending.toByteArray()));
+            } catch (IOException e) {
+                truncate(channel, start);
+                throw e;
+            }
+            pending.reset();
+        }
+        channel.force(false);
+    }
+
+    /*
+     * Cuts off part of records written by failed write - they are written
+     * again whole.
+     */
+    private static void truncate(final FileChannel target, final long end) {
+        try {
+            target.truncate(end);
+            target.position(end);
+        } catch (IOException e) {
+            // torn record is cut off on replay
+        }
+    }
+
+    private void open(final long segment) throws IOException {
+        this.segment = segment;
+        channel = new RandomAccessFile(file(segment), "rw").getChannel();
+        channel.position(channel.size());
+    }
+
+    private File file(final long segment) {
+        return new File(root, PREFIX + segment + SUFFIX);
+    }
+
+    /*
+     * Gets numbers of segments in root, sorted.
+     */
+    private long[] segments() {
+        final File[] files = root.listFiles();
+        long[] segments = new long[files != null ? files.length : 0];
+        int count = 0;
+        for (int i = 0; i < segments.length; ++i) {
+            final String name = files[i].getName();
+            if (files[i].isFile() && name.startsWith(PREFIX)
+                && name.endsWith(SUFFIX)
+            ) {
+                try {
+                    segments[count] = Long.parseLong(name.substring(
+                        PREFIX.length(), name.length() - SUFFIX.length()));
+                    ++count;
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        segments = Arrays.copyOf(segments, count);
+        Arrays.sort(segments);
+        return segments;
+    }
+
+}
@@ -24,6 +24,7 @@
 
 package com.github.pepewuzzhere.pythia.storage;
 
+import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import java.io.IOException;
@@ -43,18 +44,20 @@ public interface IStorage {
      * Read data from disc to memory.
      *
      * @param root directory root for pythia data
+     * @param db database to which keyspaces are added
      * @param model data model to read data
      * @throws IOException if something is wrong with i/o
      * @throws PythiaException if there is problem with deserialization
      */
-    void read(final String root, final IDataModel model)
+    void read(final String root, final DB db, final IDataModel model)
             throws IOException, PythiaException;
 
     /**
      * Write data from disc to memory.
      *
      * @param root directory root for pythia data.
+     * @param db database which keyspaces are written
      * @throws IOException if something is wrong with i/o
      */
-    void write(final String root) throws IOException;
+    void write(final String root, final DB db) throws IOException;
 }
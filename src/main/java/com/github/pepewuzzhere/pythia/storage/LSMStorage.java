@@ -0,0 +1,652 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.KeyComparator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Log-structured implementation of storage.
+ *
+ * Data are written using this routines:
+ *  - every keyspace has own folder, every column family has own folder in
+ *    folder of keyspace
+ *  - new column family is written to <code>base</code> file in format of
+ *    {@link BinarySnapshot}
+ *  - rows changed since last write (memtable of column family, see
+ *    {@link IColumnFamily#takeChanges()}) are sorted by key and flushed to
+ *    new immutable {@link Segment} of level 0
+ *  - segments are merged by background compaction - entry of newest
+ *    segment wins, so write cost depends on size of changes, not on size
+ *    of column family
+ *
+ * Clients write to column family while its changes are flushed - keys are
+ * taken from column family at once and rows changed meanwhile are taken by
+ * next flush.
+ *
+ * Compaction strategies:
+ *  - {@link Compaction#SIZE_TIERED} - at least {@link #MIN_THRESHOLD}
+ *    consecutive segments of similar size are merged into one
+ *  - {@link Compaction#LEVELED} - segments of level 0 are merged with
+ *    segments of level 1 when there are {@link #LEVEL0_SEGMENTS} of them,
+ *    level <code>n</code> keeps at most {@link #LEVEL_RATIO}^n segments of
+ *    {@link #SEGMENT_SIZE} bytes with disjoint keys, segment of full level
+ *    is merged with next level
+ *
+ * Base is rewritten only when whole column family has to be saved. New base
+ * is written to <code>base.tmp</code>, renamed to <code>base.new</code>, old
+ * segments are deleted and then it replaces old base - <code>base.new</code>
+ * left by crash is complete and replaces segments on read. Deleted rows are
+ * kept in segments as entries without data until base is rewritten.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class LSMStorage implements IStorage {
+
+    /**
+     * Strategy of merging segments.
+     */
+    public enum Compaction {
+
+        /**
+         * Segments of similar size are merged.
+         */
+        SIZE_TIERED,
+
+        /**
+         * Segments are merged into levels of disjoint segments.
+         */
+        LEVELED
+    }
+
+    /**
+     * Minimal number of similar segments merged by size tiered compaction.
+     */
+    public static final int MIN_THRESHOLD = 4;
+
+    /**
+     * Maximal number of segments merged by size tiered compaction at once.
+     */
+    public static final int MAX_THRESHOLD = 32;
+
+    /**
+     * Number of segments of level 0 which starts leveled compaction.
+     */
+    public static final int LEVEL0_SEGMENTS = 4;
+
+    /**
+     * Size of segments written by leveled compaction.
+     */
+    public static final long SEGMENT_SIZE = 2 << 20;
+
+    /**
+     * Growth of number of segments between levels.
+     */
+    public static final int LEVEL_RATIO = 10;
+
+    private static final String BASE = "base";
+    private static final String NEW = ".new";
+    private static final String TMP = ".tmp";
+
+    private final Compaction compaction;
+    private final long segmentSize;
+    private final ExecutorService compactor;
+    private final ConcurrentMap<File, Tree> trees = new ConcurrentHashMap<>();
+
+    /*
+     * Segments of one column family. Lists are changed with lock of tree,
+     * generation is changed when base is rewritten - merge started before
+     * is dropped.
+     */
+    private static final class Tree {
+        final File dir;
+        final List<Segment> segments = new ArrayList<>();
+        long sequence;
+        long generation;
+
+        Tree(final File dir) {
+            this.dir = dir;
+        }
+    }
+
+    /*
+     * Segments chosen for merge and level of merged segments.
+     */
+    private static final class Plan {
+        final List<Segment> inputs;
+        final int level;
+        final boolean split;
+
+        Plan(final List<Segment> inputs, final int level, final boolean split)
+        {
+            this.inputs = inputs;
+            this.level = level;
+            this.split = split;
+        }
+    }
+
+    private class Compactor implements Runnable {
+
+        private final Tree tree;
+
+        Compactor(final Tree tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (compact(tree)) {
+                    // merge while strategy finds segments
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * Creates storage with size tiered compaction.
+     */
+    public LSMStorage() {
+        this(Compaction.SIZE_TIERED);
+    }
+
+    /**
+     * Creates storage with chosen compaction strategy.
+     *
+     * @param compaction strategy of merging segments
+     * @throws IllegalArgumentException if compaction is null
+     */
+    public LSMStorage(final Compaction compaction) {
+        this(compaction, SEGMENT_SIZE);
+    }
+
+    /*
+     * Creates storage with own size of leveled segments - for tests.
+     */
+    LSMStorage(final Compaction compaction, final long segmentSize) {
+        if (compaction == null) {
+            throw new IllegalArgumentException("Compaction is required");
+        }
+        this.compaction = compaction;
+        this.segmentSize = segmentSize;
+        compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "pythia-compaction");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void read(final String root, final DB db, final IDataModel model)
+            throws IOException, PythiaException
+    {
+        final File path = new File(root);
+        if (!path.exists()) {
+            return;
+        }
+        for (File k : path.listFiles()) {
+            if (!k.isDirectory()) {
+                continue;
+            }
+            db.addKeySpace(model.createKeySpace(k.getName()));
+            for (File c : k.listFiles()) {
+                if (!c.isDirectory()) {
+                    continue;
+                }
+                final Tree tree = tree(c);
+                if (!new File(c, BASE).exists()) {
+                    continue;
+                }
+                try {
+                    db.getKeySpace(k.getName()).addColumnFamily(
+                            c.getName(), readColumnFamily(tree, model));
+                } catch (ClassNotFoundException ex) {
+                    PythiaException e = new PythiaException(ex.getMessage());
+                    e.initCause(ex);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(final String root, final DB db) throws IOException {
+        final Map<String, IKeySpace> keySpaces = db.getKeySpaces();
+
+        for (Map.Entry<String, IKeySpace> k : keySpaces.entrySet()) {
+            final IKeySpace keyspace = k.getValue();
+            final File dir = new File(root, k.getKey());
+            if (keyspace.isDirty()) {
+                dir.mkdirs();
+                keyspace.setClean();
+            }
+
+            final Map<String, IColumnFamily> columnFamilies =
+                    keyspace.getColumnFamilies();
+            for (Map.Entry<String, IColumnFamily> c :
+                    columnFamilies.entrySet()
+            ) {
+                if (c.getValue().isDirty()) {
+                    writeColumnFamily(
+                            tree(new File(dir, c.getKey())), c.getValue());
+                }
+            }
+
+            // delete column families
+            final File[] children = dir.listFiles();
+            for (File child : children != null ? children : new File[0]) {
+                if (!columnFamilies.containsKey(child.getName())) {
+                    delete(child);
+                }
+            }
+        }
+
+        // delete keyspaces
+        final File[] children = new File(root).listFiles();
+        for (File child : children != null ? children : new File[0]) {
+            if (child.isDirectory() && !keySpaces.containsKey(child.getName()))
+            {
+                delete(child);
+            }
+        }
+    }
+
+    /*
+     * Waits for compactions started before - for tests.
+     */
+    void awaitCompactions() throws InterruptedException {
+        try {
+            compactor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * Gets segments of column family folder, newest first - for tests.
+     */
+    List<Segment> segments(final File dir) throws IOException {
+        final Tree tree = tree(dir);
+        synchronized (tree) {
+            final List<Segment> segments = new ArrayList<>(tree.segments);
+            Collections.sort(segments, Segment.RECENCY);
+            return segments;
+        }
+    }
+
+    /*
+     * Reads base of column family and applies newest entries of segments.
+     */
+    private IColumnFamily readColumnFamily(
+        final Tree tree, final IDataModel model
+    ) throws IOException, PythiaException, ClassNotFoundException {
+        final IColumnFamily columnFamily =
+                BinarySnapshot.read(new File(tree.dir, BASE), model);
+        final List<Segment> segments;
+        synchronized (tree) {
+            segments = new ArrayList<>(tree.segments);
+        }
+        Collections.sort(segments, Segment.RECENCY);
+        try (final Segment.ICursor entries = Segment.merge(segments)) {
+            while (entries.next()) {
+                try (
+                    final ObjectInputStream change = new ObjectInputStream(
+                        new ByteArrayInputStream(entries.value()))
+                ) {
+                    columnFamily.readChange(
+                            ByteBuffer.wrap(entries.key()), change);
+                }
+            }
+        }
+        columnFamily.setClean();
+        return columnFamily;
+    }
+
+    /*
+     * Flushes changed rows to new segment or writes whole column family.
+     */
+    private void writeColumnFamily(
+        final Tree tree, final IColumnFamily columnFamily
+    ) throws IOException {
+        try {
+            final List<ByteBuffer> keys = new File(tree.dir, BASE).exists()
+                    ? columnFamily.takeChanges()
+                    : null;
+            if (keys == null) {
+                writeBase(tree, columnFamily);
+                return;
+            }
+            if (keys.isEmpty()) {
+                return;
+            }
+            Collections.sort(keys, KeyComparator.INSTANCE);
+            final long sequence;
+            synchronized (tree) {
+                sequence = ++tree.sequence;
+            }
+            final Segment segment;
+            try (Segment.Writer out = new Segment.Writer(tree.dir, 0, sequence))
+            {
+                for (ByteBuffer key : keys) {
+                    final ByteArrayOutputStream bytes =
+                            new ByteArrayOutputStream();
+                    try (final ObjectOutputStream change =
+                            new ObjectOutputStream(bytes)
+                    ) {
+                        columnFamily.writeChange(key, change);
+                    }
+                    out.add(key.array(), bytes.toByteArray());
+                }
+                segment = out.commit();
+            }
+            synchronized (tree) {
+                tree.segments.add(segment);
+            }
+            compactor.execute(new Compactor(tree));
+        } catch (IOException e) {
+            // changes taken from column family weren't saved
+            columnFamily.setDirty();
+            throw e;
+        }
+    }
+
+    private void writeBase(final Tree tree, final IColumnFamily columnFamily)
+            throws IOException
+    {
+        tree.dir.mkdirs();
+        final File tmp = new File(tree.dir, BASE + TMP);
+        final File fresh = new File(tree.dir, BASE + NEW);
+
+        // rows changed during writing are set as dirty again
+        columnFamily.setClean();
+        BinarySnapshot.write(tmp, columnFamily);
+        Files.move(
+            tmp.toPath(), fresh.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        synchronized (tree) {
+            for (Segment segment : tree.segments) {
+                delete(segment.getFile());
+            }
+            tree.segments.clear();
+            ++tree.generation;
+        }
+        Files.move(
+            fresh.toPath(), new File(tree.dir, BASE).toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    /*
+     * Merges segments chosen by strategy - returns false if nothing was
+     * merged.
+     */
+    private boolean compact(final Tree tree) throws IOException {
+        final Plan plan;
+        final long generation;
+        synchronized (tree) {
+            plan = compaction == Compaction.SIZE_TIERED
+                    ? sizeTiered(tree.segments)
+                    : leveled(tree.segments);
+            generation = tree.generation;
+        }
+        if (plan == null) {
+            return false;
+        }
+        Collections.sort(plan.inputs, Segment.RECENCY);
+
+        // size tiered output replaces newest input, so it stays newer than
+        // segments written before the newest input
+        final long replaced =
+                plan.split ? -1 : plan.inputs.get(0).getSequence();
+        final List<Segment.Writer> outputs = new ArrayList<>();
+        try {
+            try (final Segment.ICursor entries = Segment.merge(plan.inputs)) {
+                Segment.Writer out = null;
+                while (entries.next()) {
+                    if (out == null) {
+                        final long sequence;
+                        synchronized (tree) {
+                            sequence = plan.split
+                                    ? ++tree.sequence
+                                    : replaced;
+                        }
+                        out = new Segment.Writer(
+                                tree.dir, plan.level, sequence);
+                        outputs.add(out);
+                    }
+                    out.add(entries.key(), entries.value());
+                    if (plan.split && out.size() >= segmentSize) {
+                        out.finish();
+                        out = null;
+                    }
+                }
+                if (out != null) {
+                    out.finish();
+                }
+            }
+            synchronized (tree) {
+                if (tree.generation != generation) {
+                    // base was rewritten or column family was dropped,
+                    // inputs are deleted
+                    return false;
+                }
+                for (Segment.Writer out : outputs) {
+                    tree.segments.add(out.commit());
+                }
+                for (Segment input : plan.inputs) {
+                    tree.segments.remove(input);
+                    if (input.getSequence() != replaced) {
+                        delete(input.getFile());
+                    }
+                }
+            }
+        } finally {
+            for (Segment.Writer out : outputs) {
+                out.close();
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Finds at least MIN_THRESHOLD consecutive segments of similar size.
+     */
+    private static Plan sizeTiered(final List<Segment> segments) {
+        final List<Segment> sorted = new ArrayList<>(segments);
+        Collections.sort(sorted, Collections.reverseOrder(Segment.RECENCY));
+        for (int i = 0; i < sorted.size(); ++i) {
+            long min = sorted.get(i).getSize();
+            long max = min;
+            int j = i + 1;
+            while (j < sorted.size() && j - i < MAX_THRESHOLD) {
+                final long size = sorted.get(j).getSize();
+                if (size > 2 * min || 2 * size < max) {
+                    break;
+                }
+                min = Math.min(min, size);
+                max = Math.max(max, size);
+                ++j;
+            }
+            if (j - i >= MIN_THRESHOLD) {
+                return new Plan(
+                        new ArrayList<>(sorted.subList(i, j)), 0, false);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Finds full level and segments of next level overlapping its segment.
+     */
+    private Plan leveled(final List<Segment> segments) {
+        int levels = 0;
+        for (Segment s : segments) {
+            levels = Math.max(levels, s.getLevel() + 1);
+        }
+        for (int level = 0; level < levels; ++level) {
+            final List<Segment> inputs = new ArrayList<>();
+            long size = 0;
+            Segment oldest = null;
+            for (Segment s : segments) {
+                if (s.getLevel() == level) {
+                    inputs.add(s);
+                    size += s.getSize();
+                    if (oldest == null
+                        || s.getSequence() < oldest.getSequence()
+                    ) {
+                        oldest = s;
+                    }
+                }
+            }
+            if (level == 0) {
+                if (inputs.size() < LEVEL0_SEGMENTS) {
+                    continue;
+                }
+            } else if (
+                size <= segmentSize * (long)Math.pow(LEVEL_RATIO, level)
+            ) {
+                continue;
+            } else {
+                // one segment of full level moves down
+                inputs.clear();
+                inputs.add(oldest);
+            }
+            byte[] first = null;
+            byte[] last = null;
+            for (Segment s : inputs) {
+                if (s.getCount() == 0) {
+                    continue;
+                }
+                if (first == null
+                    || Segment.BYTES.compare(s.getFirstKey(), first) < 0
+                ) {
+                    first = s.getFirstKey();
+                }
+                if (last == null
+                    || Segment.BYTES.compare(s.getLastKey(), last) > 0
+                ) {
+                    last = s.getLastKey();
+                }
+            }
+            for (Segment s : segments) {
+                if (s.getLevel() == level + 1 && first != null
+                    && s.overlaps(first, last)
+                ) {
+                    inputs.add(s);
+                }
+            }
+            return new Plan(inputs, level + 1, true);
+        }
+        return null;
+    }
+
+    /*
+     * Gets segments of column family, folder is recovered on first use.
+     */
+    private Tree tree(final File dir) throws IOException {
+        Tree tree = trees.get(dir);
+        if (tree != null) {
+            return tree;
+        }
+        tree = new Tree(dir);
+        final File fresh = new File(dir, BASE + NEW);
+        final File[] files = dir.listFiles();
+        for (File f : files != null ? files : new File[0]) {
+            final String name = f.getName();
+            if (name.endsWith(TMP)
+                || (fresh.exists() && Segment.isSegment(name))
+            ) {
+                // incomplete file or segment older than complete new base
+                delete(f);
+            } else if (Segment.isSegment(name)) {
+                final Segment segment = Segment.open(f);
+                tree.segments.add(segment);
+                tree.sequence = Math.max(tree.sequence, segment.getSequence());
+            }
+        }
+        if (fresh.exists()) {
+            Files.move(
+                fresh.toPath(), new File(dir, BASE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        }
+        final Tree previous = trees.putIfAbsent(dir, tree);
+        return previous != null ? previous : tree;
+    }
+
+    private void delete(final File path) throws IOException {
+        if (path.isDirectory()) {
+            final Tree tree = trees.remove(path);
+            if (tree != null) {
+                // merge of dropped column family is not committed
+                synchronized (tree) {
+                    ++tree.generation;
+                }
+            }
+            for (File child : path.listFiles()) {
+                delete(child);
+            }
+        }
+        if (!path.delete() && path.exists()) {
+            throw new IOException("Could not delete " + path);
+        }
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Column family which is read from storage on first access.
+ *
+ * First thread which uses column family reads it, other threads wait for
+ * the same future - column family is read once. Failure of reading is
+ * remembered and thrown to every caller as {@link IllegalStateException}.
+ *
+ * Column family which isn't read yet has no changes, so storage doesn't
+ * read it to check whether it should be saved. Its memory budget is
+ * attached to budget of read column family.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class LazyColumnFamily implements IColumnFamily {
+
+    private final FutureTask<IColumnFamily> task;
+    private final MemoryBudget memory = new MemoryBudget();
+
+    /**
+     * Creates column family read by loader.
+     *
+     * @param loader reads column family from storage
+     */
+    LazyColumnFamily(final Callable<IColumnFamily> loader) {
+        task = new FutureTask<>(new Callable<IColumnFamily>() {
+            @Override
+            public IColumnFamily call() throws Exception {
+                final IColumnFamily columnFamily = loader.call();
+                columnFamily.getMemory().attach(memory);
+                return columnFamily;
+            }
+        });
+    }
+
+    /**
+     * Checks if column family was read.
+     *
+     * @return true if column family was read or reading failed
+     */
+    boolean isLoaded() {
+        return task.isDone();
+    }
+
+    /**
+     * Reads column family or waits until other thread reads it.
+     *
+     * @return read column family
+     * @throws IllegalStateException if column family couldn't be read
+     */
+    IColumnFamily load() {
+        task.run();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // reading can't be abandoned, other threads wait for it
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(
+                    "Column family couldn't be read", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Gets column family if it was read successfully.
+     */
+    private IColumnFamily loaded() {
+        if (!task.isDone()) {
+            return null;
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void addRow(final IRow row) throws PythiaException {
+        load().addRow(row);
+    }
+
+    @Override
+    public IRow getRow(final ByteBuffer key) {
+        return load().getRow(key);
+    }
+
+    @Override
+    public IRow getOrCreateRow(final ByteBuffer key) {
+        return load().getOrCreateRow(key);
+    }
+
+    @Override
+    public void updateRow(
+        final ByteBuffer key, final ByteBuffer columnKey,
+        final ByteBuffer columnValue
+    ) throws PythiaException {
+        load().updateRow(key, columnKey, columnValue);
+    }
+
+    @Override
+    public void deleteRow(final ByteBuffer key) throws PythiaException {
+        load().deleteRow(key);
+    }
+
+    @Override
+    public void apply(final Batch batch) throws PythiaException {
+        load().apply(batch);
+    }
+
+    @Override
+    public List<IRow> getRows(
+        final ByteBuffer from, final boolean inclusive, final ByteBuffer to,
+        final int limit
+    ) {
+        return load().getRows(from, inclusive, to, limit);
+    }
+
+    @Override
+    public void createIndex(final ByteBuffer columnKey)
+            throws PythiaException
+    {
+        load().createIndex(columnKey);
+    }
+
+    @Override
+    public List<IRow> getIndexedRows(
+        final ByteBuffer columnKey, final ByteBuffer value
+    ) throws PythiaException {
+        return load().getIndexedRows(columnKey, value);
+    }
+
+    @Override
+    public void expire(
+        final ByteBuffer key, final ByteBuffer columnKey, final long ttl
+    ) {
+        load().expire(key, columnKey, ttl);
+    }
+
+    @Override
+    public long getDeadline(final ByteBuffer key, final ByteBuffer columnKey) {
+        return load().getDeadline(key, columnKey);
+    }
+
+    @Override
+    public List<ByteBuffer> getIndexedColumns() {
+        return load().getIndexedColumns();
+    }
+
+    @Override
+    public void visitRows(final RowVisitor visitor) throws IOException {
+        load().visitRows(visitor);
+    }
+
+    @Override
+    public Iterator<IRow> iterator() {
+        return load().iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Budget is available before column family is read.
+     */
+    @Override public MemoryBudget getMemory() {
+        return memory;
+    }
+
+    @Override
+    public ColumnFamilyOptions getOptions() {
+        return load().getOptions();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Column family which isn't read or couldn't be read is clean - its
+     * file is left as it is.
+     */
+    @Override public boolean isDirty() {
+        final IColumnFamily columnFamily = loaded();
+        return columnFamily != null && columnFamily.isDirty();
+    }
+
+    @Override
+    public void setClean() {
+        final IColumnFamily columnFamily = loaded();
+        if (columnFamily != null) {
+            columnFamily.setClean();
+        }
+    }
+
+    @Override
+    public void setDirty() {
+        final IColumnFamily columnFamily = loaded();
+        if (columnFamily != null) {
+            columnFamily.setDirty();
+        }
+    }
+
+    @Override
+    public void setDirty(final ByteBuffer key) {
+        load().setDirty(key);
+    }
+
+    @Override
+    public boolean writeChanges(final ObjectOutputStream out)
+            throws IOException
+    {
+        return load().writeChanges(out);
+    }
+
+    @Override
+    public void readChanges(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        load().readChanges(in);
+    }
+
+    @Override
+    public List<ByteBuffer> takeChanges() {
+        return load().takeChanges();
+    }
+
+    @Override
+    public void writeChange(
+        final ByteBuffer key, final ObjectOutputStream out
+    ) throws IOException {
+        load().writeChange(key, out);
+    }
+
+    @Override
+    public void readChange(
+        final ByteBuffer key, final ObjectInputStream in
+    ) throws IOException, ClassNotFoundException {
+        load().readChange(key, in);
+    }
+}
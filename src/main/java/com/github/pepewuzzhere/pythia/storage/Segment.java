@@ -0,0 +1,566 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import com.github.pepewuzzhere.pythia.datamodel.KeyComparator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable file of entries sorted by key, used by {@link LSMStorage}.
+ *
+ * Entry is key of row and state of row written by column family, both as
+ * length ({@code int}) and bytes. Entries are followed by sparse index -
+ * every {@link #INDEX_INTERVAL}th key with position of its entry - and last
+ * key of segment. Segment ends with trailer: position of index
+ * ({@code long}), number of entries ({@code int}) and magic number.
+ *
+ * Index is kept in memory, so entry is found by one seek and scan of at most
+ * {@link #INDEX_INTERVAL} entries.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ * @version %I%, %G%
+ * @since 1.0
+ */
+final class Segment {
+
+    /**
+     * Number of entries between keys of sparse index.
+     */
+    static final int INDEX_INTERVAL = 64;
+
+    /**
+     * Orders segments from newest: lower level first, then later written.
+     */
+    static final Comparator<Segment> RECENCY = new Comparator<Segment>() {
+        @Override
+        public int compare(final Segment a, final Segment b) {
+            if (a.level != b.level) {
+                return a.level - b.level;
+            }
+            return Long.compare(b.sequence, a.sequence);
+        }
+    };
+
+    /**
+     * Orders keys like {@link KeyComparator}.
+     */
+    static final Comparator<byte[]> BYTES = new Comparator<byte[]>() {
+        @Override
+        public int compare(final byte[] a, final byte[] b) {
+            return KeyComparator.compare(a, 0, a.length, b, 0, b.length);
+        }
+    };
+
+    private static final String SUFFIX = ".seg";
+    private static final String TMP = ".tmp";
+    private static final int MAGIC = 0x4c534d31;
+    private static final int TRAILER_SIZE = 16;
+
+    /**
+     * Sequential reader of entries.
+     */
+    interface ICursor extends Closeable {
+
+        /**
+         * Moves to next entry.
+         *
+         * @return false if there are no more entries
+         * @throws IOException if entry couldn't be read
+         */
+        boolean next() throws IOException;
+
+        /**
+         * Gets key of current entry.
+         *
+         * @return key bytes
+         */
+        byte[] key();
+
+        /**
+         * Gets value of current entry.
+         *
+         * @return value bytes
+         */
+        byte[] value();
+    }
+
+    /**
+     * Writer of new segment, entries must be added in order of keys.
+     *
+     * Segment is written to temporary file which is renamed by
+     * {@link #commit()}.
+     */
+    static final class Writer implements Closeable {
+
+        private final File file;
+        private final File tmp;
+        private final FileOutputStream stream;
+        private final DataOutputStream out;
+        private final List<byte[]> indexKeys = new ArrayList<>();
+        private final List<Long> indexOffsets = new ArrayList<>();
+        private byte[] lastKey;
+        private long size;
+        private int count;
+        private boolean finished;
+
+        /**
+         * Starts segment of level.
+         *
+         * @param dir directory of segments
+         * @param level level of segment
+         * @param sequence number of segment
+         * @throws IOException if file couldn't be created
+         */
+        Writer(final File dir, final int level, final long sequence)
+                throws IOException
+        {
+            file = new File(dir, name(level, sequence));
+            tmp = new File(dir, file.getName() + TMP);
+            stream = new FileOutputStream(tmp);
+            out = new DataOutputStream(new BufferedOutputStream(stream));
+        }
+
+        /**
+         * Adds entry, key must be greater than key of previous entry.
+         *
+         * @param key key of entry
+         * @param value value of entry
+         * @throws IOException if entry couldn't be written
+         */
+        void add(final byte[] key, final byte[] value) throws IOException {
+            if (count % INDEX_INTERVAL == 0) {
+                indexKeys.add(key);
+                indexOffsets.add(size);
+            }
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(value.length);
+            out.write(value);
+            size += 8 + key.length + value.length;
+            lastKey = key;
+            ++count;
+        }
+
+        /**
+         * Gets number of bytes of added entries.
+         *
+         * @return size of entries
+         */
+        long size() {
+            return size;
+        }
+
+        /**
+         * Writes index and syncs temporary file.
+         *
+         * @throws IOException if segment couldn't be written
+         */
+        void finish() throws IOException {
+            out.writeInt(indexKeys.size());
+            for (int i = 0; i < indexKeys.size(); ++i) {
+                out.writeInt(indexKeys.get(i).length);
+                out.write(indexKeys.get(i));
+                out.writeLong(indexOffsets.get(i));
+            }
+            final byte[] last = lastKey != null ? lastKey : new byte[0];
+            out.writeInt(last.length);
+            out.write(last);
+            out.writeLong(size);
+            out.writeInt(count);
+            out.writeInt(MAGIC);
+            out.flush();
+            stream.getChannel().force(true);
+            out.close();
+            finished = true;
+        }
+
+        /**
+         * Renames finished segment, segment with the same name is replaced.
+         *
+         * @return written segment
+         * @throws IOException if segment couldn't be renamed
+         */
+        Segment commit() throws IOException {
+            if (!finished) {
+                finish();
+            }
+            Files.move(
+                tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+            );
+            return open(file);
+        }
+
+        /**
+         * Deletes temporary file if segment wasn't committed.
+         */
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // file is deleted anyway
+            }
+            tmp.delete();
+        }
+    }
+
+    private final File file;
+    private final int level;
+    private final long sequence;
+    private final long dataSize;
+    private final int count;
+    private final byte[][] indexKeys;
+    private final long[] indexOffsets;
+    private final byte[] lastKey;
+
+    private Segment(
+        final File file, final long dataSize, final int count,
+        final byte[][] indexKeys, final long[] indexOffsets,
+        final byte[] lastKey
+    ) {
+        this.file = file;
+        final String name = file.getName();
+        final int dash = name.indexOf('-');
+        level = Integer.parseInt(name.substring(0, dash));
+        sequence = Long.parseLong(
+                name.substring(dash + 1, name.length() - SUFFIX.length()));
+        this.dataSize = dataSize;
+        this.count = count;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.lastKey = lastKey;
+    }
+
+    /**
+     * Reads index of segment.
+     *
+     * @param file file of segment
+     * @return opened segment
+     * @throws IOException if file is not complete segment
+     */
+    static Segment open(final File file) throws IOException {
+        try (final RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() < TRAILER_SIZE) {
+                throw new IOException("Incomplete segment " + file);
+            }
+            in.seek(in.length() - TRAILER_SIZE);
+            final long dataSize = in.readLong();
+            final int count = in.readInt();
+            if (in.readInt() != MAGIC || dataSize > in.length()) {
+                throw new IOException("Incomplete segment " + file);
+            }
+            in.seek(dataSize);
+            final DataInputStream index = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(in.getFD())));
+            final int keys = index.readInt();
+            final byte[][] indexKeys = new byte[keys][];
+            final long[] indexOffsets = new long[keys];
+            for (int i = 0; i < keys; ++i) {
+                indexKeys[i] = new byte[index.readInt()];
+                index.readFully(indexKeys[i]);
+                indexOffsets[i] = index.readLong();
+            }
+            final byte[] lastKey = new byte[index.readInt()];
+            index.readFully(lastKey);
+            return new Segment(
+                    file, dataSize, count, indexKeys, indexOffsets, lastKey);
+        }
+    }
+
+    /**
+     * Gets name of segment file.
+     *
+     * @param level level of segment
+     * @param sequence number of segment
+     * @return file name
+     */
+    static String name(final int level, final long sequence) {
+        return level + "-" + sequence + SUFFIX;
+    }
+
+    /**
+     * Checks if file name is name of segment.
+     *
+     * @param name file name
+     * @return true for segment files
+     */
+    static boolean isSegment(final String name) {
+        return name.matches("[0-9]+-[0-9]+\\" + SUFFIX);
+    }
+
+    /**
+     * Gets value of key using sparse index.
+     *
+     * @param key key of entry
+     * @return value or null if segment has no entry of key
+     * @throws IOException if segment couldn't be read
+     */
+    byte[] get(final byte[] key) throws IOException {
+        int block = Arrays.binarySearch(indexKeys, key, BYTES);
+        if (block < 0) {
+            block = -block - 2;
+            if (block < 0) {
+                return null;
+            }
+        }
+        try (final RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(indexOffsets[block]);
+            final DataInputStream entries = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(in.getFD())));
+            final long end = block + 1 < indexOffsets.length
+                    ? indexOffsets[block + 1]
+                    : dataSize;
+            for (long position = indexOffsets[block]; position < end;) {
+                final byte[] k = new byte[entries.readInt()];
+                entries.readFully(k);
+                final int length = entries.readInt();
+                final int c = BYTES.compare(k, key);
+                if (c == 0) {
+                    final byte[] value = new byte[length];
+                    entries.readFully(value);
+                    return value;
+                }
+                if (c > 0) {
+                    break;
+                }
+                entries.skipBytes(length);
+                position += 8 + k.length + length;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens cursor over entries of segment.
+     *
+     * @return cursor before first entry
+     * @throws IOException if segment couldn't be read
+     */
+    ICursor cursor() throws IOException {
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        return new ICursor() {
+
+            private long position;
+            private byte[] key;
+            private byte[] value;
+
+            @Override
+            public boolean next() throws IOException {
+                if (position >= dataSize) {
+                    return false;
+                }
+                key = new byte[in.readInt()];
+                in.readFully(key);
+                value = new byte[in.readInt()];
+                in.readFully(value);
+                position += 8 + key.length + value.length;
+                return true;
+            }
+
+            @Override
+            public byte[] key() {
+                return key;
+            }
+
+            @Override
+            public byte[] value() {
+                return value;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    /**
+     * Merges segments - entry of newest segment is taken for every key.
+     *
+     * @param segments segments ordered from newest
+     * @return cursor over entries in order of keys
+     * @throws IOException if segment couldn't be read
+     */
+    static ICursor merge(final List<Segment> segments) throws IOException {
+        return new MergeCursor(segments);
+    }
+
+    /**
+     * Checks if key range of segment overlaps range.
+     *
+     * @param first first key of range
+     * @param last last key of range
+     * @return true if some key of range could be in segment
+     */
+    boolean overlaps(final byte[] first, final byte[] last) {
+        return count > 0
+            && BYTES.compare(indexKeys[0], last) <= 0
+            && BYTES.compare(lastKey, first) >= 0;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets size of segment file.
+     *
+     * @return number of bytes
+     */
+    long getSize() {
+        return file.length();
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets first key of segment.
+     *
+     * @return first key, empty for empty segment
+     */
+    byte[] getFirstKey() {
+        return count > 0 ? indexKeys[0] : lastKey;
+    }
+
+    byte[] getLastKey() {
+        return lastKey;
+    }
+
+    /*
+     * Merging cursor - heads of segments are ordered by key and recency.
+     */
+    private static final class MergeCursor implements ICursor {
+
+        private static final class Head {
+            final ICursor cursor;
+            final int rank;
+
+            Head(final ICursor cursor, final int rank) {
+                this.cursor = cursor;
+                this.rank = rank;
+            }
+        }
+
+        private final List<ICursor> cursors = new ArrayList<>();
+        private final PriorityQueue<Head> heads;
+        private byte[] key;
+        private byte[] value;
+
+        MergeCursor(final List<Segment> segments) throws IOException {
+            heads = new PriorityQueue<>(
+                Math.max(1, segments.size()), new Comparator<Head>() {
+                    @Override
+                    public int compare(final Head a, final Head b) {
+                        final int c = BYTES.compare(
+                                a.cursor.key(), b.cursor.key());
+                        return c != 0 ? c : a.rank - b.rank;
+                    }
+                });
+            try {
+                for (int i = 0; i < segments.size(); ++i) {
+                    final ICursor cursor = segments.get(i).cursor();
+                    cursors.add(cursor);
+                    if (cursor.next()) {
+                        heads.add(new Head(cursor, i));
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            final Head head = heads.poll();
+            if (head == null) {
+                return false;
+            }
+            key = head.cursor.key();
+            value = head.cursor.value();
+            advance(head);
+            // older entries of the same key are skipped
+            while (!heads.isEmpty()
+                && BYTES.compare(heads.peek().cursor.key(), key) == 0
+            ) {
+                advance(heads.poll());
+            }
+            return true;
+        }
+
+        private void advance(final Head head) throws IOException {
+            if (head.cursor.next()) {
+                heads.add(head);
+            }
+        }
+
+        @Override
+        public byte[] key() {
+            return key;
+        }
+
+        @Override
+        public byte[] value() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ICursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+}
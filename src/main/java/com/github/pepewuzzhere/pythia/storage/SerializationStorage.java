@@ -29,20 +29,54 @@ import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of storage using object serialization.
  *
  * Data are written using this routines:
  *  - every keyspace has own folder
- *  - column family is written as serialized object to file
+ *  - column family is written to file in format of {@link BinarySnapshot},
+ *    files of serialized column family written by older versions are read
+ *  - rows changed later are appended to delta file of column family
+ *    (<code>name.delta</code>), every write adds segment of row blocks (see
+ *    {@link BinarySnapshot#appendChanges(File, IColumnFamily)}); delta
+ *    written by older versions - segments of length ({@code int}) and
+ *    changes written by
+ *    {@link IColumnFamily#writeChanges(ObjectOutputStream)} - is still read
+ *    and column family is written whole on next write, which deletes it
+ *  - column family is written again when delta grows bigger than column
+ *    family file and {@link #COMPACTION_SIZE}
+ *
+ * New column family file is written to <code>name.tmp</code> and replaces old
+ * one after delta file is deleted - temporary file left with delta is
+ * incomplete, without delta it is complete and replaces old file on read.
+ * Segment torn by crash during append is cut off on read.
+ *
+ * Column families are read in parallel by bounded pool of threads, or
+ * lazily - each on its first access.
  *
  * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
  * @version %I%, %G%
@@ -50,43 +84,97 @@ import java.util.Map;
  */
 public class SerializationStorage implements IStorage {
 
+    /**
+     * Size of delta file which never causes rewrite of column family.
+     */
+    public static final long COMPACTION_SIZE = 1 << 20;
+
+    private static final String DELTA = ".delta";
+    private static final String TMP = ".tmp";
+
+    private final int threads;
+    private final boolean lazy;
+
+    /**
+     * Creates storage which reads column families in parallel, one thread
+     * per processor.
+     */
+    public SerializationStorage() {
+        this(Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * Creates storage with chosen way of reading column families.
+     *
+     * Lazy storage only finds column families on read - every column family
+     * is read on its first access (see {@link LazyColumnFamily}), so time of
+     * start doesn't depend on size of data.
+     *
+     * @param threads maximal number of column families read in parallel
+     * @param lazy should column families be read on first access
+     * @throws IllegalArgumentException if number of threads is not positive
+     */
+    public SerializationStorage(final int threads, final boolean lazy) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive");
+        }
+        this.threads = threads;
+        this.lazy = lazy;
+    }
+
     @Override
-    public void read(final String root, final IDataModel model)
+    public void read(final String root, final DB db, final IDataModel model)
             throws IOException, PythiaException
     {
-        final File db = new File(root);
-        if (db != null && db.exists()) {
-            for (File f : db.listFiles()) {
-                if (f != null && f.isDirectory()) {
-                    DB.INSTANCE.addKeySpace(model.createKeySpace(f.getName()));
-                    for (File cf : f.listFiles()) {
-                        try (
-                            final ObjectInputStream in = new ObjectInputStream(
-                                new FileInputStream(cf))
-                        ) {
-                            try {
-                                DB.INSTANCE.
-                                    getKeySpace(f.getName()).addColumnFamily(
-                                    cf.getName(), (IColumnFamily)in.readObject()
-
-                                );
-                            } catch (ClassNotFoundException ex) {
-                                PythiaException e =
-                                        new PythiaException(ex.getMessage());
-                                e.initCause(ex);
-                                throw e;
-                            }
-                        }
+        final File path = new File(root);
+        if (path == null || !path.exists()) {
+            return;
+        }
+        final Map<File, IKeySpace> files = new LinkedHashMap<>();
+        for (File f : path.listFiles()) {
+            if (f != null && f.isDirectory()) {
+                db.addKeySpace(model.createKeySpace(f.getName()));
+                for (File tmp : f.listFiles()) {
+                    if (tmp.getName().endsWith(TMP)) {
+                        recover(tmp);
                     }
                 }
+                for (File cf : f.listFiles()) {
+                    if (!cf.getName().endsWith(DELTA)) {
+                        files.put(cf, db.getKeySpace(f.getName()));
+                    }
+                }
+            }
+        }
+        if (lazy) {
+            for (Map.Entry<File, IKeySpace> f : files.entrySet()) {
+                f.getValue().addColumnFamily(f.getKey().getName(),
+                        new LazyColumnFamily(loader(f.getKey(), model)));
             }
+            return;
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threads, files.size())));
+        try {
+            final List<Future<IColumnFamily>> loads = new ArrayList<>();
+            for (File f : files.keySet()) {
+                loads.add(pool.submit(loader(f, model)));
+            }
+            int i = 0;
+            for (Map.Entry<File, IKeySpace> f : files.entrySet()) {
+                f.getValue().addColumnFamily(
+                        f.getKey().getName(), await(loads.get(i++)));
+            }
+        } finally {
+            pool.shutdownNow();
         }
     }
 
     @Override
-    public void write(final String root) throws IOException {
+    public void write(final String root, final DB db) throws IOException {
 
-        final Map<String, IKeySpace> keySpaces = DB.INSTANCE.getKeySpaces();
+        final Map<String, IKeySpace> keySpaces = db.getKeySpaces();
 
         // foreach keyspace
         for (Map.Entry<String, IKeySpace> k :  keySpaces.entrySet()) {
@@ -105,18 +193,10 @@ public class SerializationStorage implements IStorage {
                 final IColumnFamily columnfamily = c.getValue();
                 // save to disc if needed
                 if (columnfamily.isDirty()) {
-                    try (final ObjectOutputStream out =
-                            new ObjectOutputStream(
-                                new FileOutputStream(
-                                    root + "/" + k.getKey() + "/" + c.getKey()
-                                )
-                            )
-                    ) {
-                        out.writeObject(columnfamily);
-                        out.flush();
-                    }
-
-                    columnfamily.setClean();
+                    writeColumnFamily(
+                        new File(root + "/" + k.getKey() + "/" + c.getKey()),
+                        columnfamily
+                    );
                 }
             }
 
@@ -126,7 +206,8 @@ public class SerializationStorage implements IStorage {
             // delete column families
             final File path = new File(root + "/" + k.getKey());
             for (File child : path.listFiles()) {
-                if (!columnFamilies.containsKey(child.getName())
+                if (!columnFamilies.containsKey(
+                        columnFamilyName(child.getName()))
                 ) {
                     doDelete(
                         new File(
@@ -152,6 +233,183 @@ public class SerializationStorage implements IStorage {
 
     }
 
+    private Callable<IColumnFamily> loader(
+        final File file, final IDataModel model
+    ) {
+        return new Callable<IColumnFamily>() {
+            @Override
+            public IColumnFamily call() throws Exception {
+                return readColumnFamily(file, model);
+            }
+        };
+    }
+
+    /*
+     * Gets read column family, exceptions of reading are thrown as they are.
+     */
+    private static IColumnFamily await(final Future<IColumnFamily> load)
+            throws IOException, PythiaException
+    {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            final InterruptedIOException ex = new InterruptedIOException();
+            ex.initCause(e);
+            throw ex;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof PythiaException) {
+                throw (PythiaException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            final PythiaException ex = new PythiaException(cause.getMessage());
+            ex.initCause(cause);
+            throw ex;
+        }
+    }
+
+    /*
+     * Reads column family and applies its delta.
+     */
+    private IColumnFamily readColumnFamily(
+        final File file, final IDataModel model
+    ) throws IOException, PythiaException, ClassNotFoundException {
+        final IColumnFamily columnFamily = BinarySnapshot.read(file, model);
+        final File delta = new File(file.getPath() + DELTA);
+        if (!delta.exists()) {
+            return columnFamily;
+        }
+        final long valid;
+        if (delta.length() == 0 || BinarySnapshot.isBinary(delta)) {
+            valid = BinarySnapshot.readChanges(delta, columnFamily);
+            columnFamily.setClean();
+        } else {
+            valid = readSerializedChanges(delta, columnFamily);
+            // next write replaces delta of older version with snapshot
+            columnFamily.setClean();
+            columnFamily.setDirty();
+        }
+        if (valid < delta.length()) {
+            // segment torn by crash - next segments are appended after
+            // last complete one
+            try (
+                final FileChannel channel =
+                    new RandomAccessFile(delta, "rw").getChannel()
+            ) {
+                channel.truncate(valid);
+            }
+        }
+        return columnFamily;
+    }
+
+    /*
+     * Applies delta written by object serialization - returns length of
+     * complete segments.
+     */
+    private static long readSerializedChanges(
+        final File delta, final IColumnFamily columnFamily
+    ) throws IOException, ClassNotFoundException {
+        long valid = 0;
+        try (
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(delta)))
+        ) {
+            while (true) {
+                final byte[] segment;
+                try {
+                    segment = new byte[in.readInt()];
+                    in.readFully(segment);
+                } catch (EOFException e) {
+                    break;
+                }
+                try (
+                    final ObjectInputStream changes = new ObjectInputStream(
+                        new ByteArrayInputStream(segment))
+                ) {
+                    columnFamily.readChanges(changes);
+                }
+                valid += 4 + segment.length;
+            }
+        }
+        return valid;
+    }
+
+    /*
+     * Appends changed rows to delta file or writes whole column family.
+     */
+    private void writeColumnFamily(
+        final File file, final IColumnFamily columnFamily
+    ) throws IOException {
+        final File delta = new File(file.getPath() + DELTA);
+        try {
+            if (file.exists()
+                && delta.length() <= Math.max(file.length(), COMPACTION_SIZE)
+            ) {
+                if (!BinarySnapshot.appendChanges(delta, columnFamily)) {
+                    writeSnapshot(file, delta, columnFamily);
+                }
+            } else {
+                writeSnapshot(file, delta, columnFamily);
+            }
+        } catch (IOException e) {
+            // changes taken from column family weren't saved
+            columnFamily.setDirty();
+            throw e;
+        }
+    }
+
+    private void writeSnapshot(
+        final File file, final File delta, final IColumnFamily columnFamily
+    ) throws IOException {
+        final File tmp = new File(file.getPath() + TMP);
+
+        // existing delta marks temporary file as incomplete
+        if (!delta.exists() && !delta.createNewFile()) {
+            throw new IOException("Could not create " + delta);
+        }
+
+        // rows changed during writing are set as dirty again
+        columnFamily.setClean();
+        BinarySnapshot.write(tmp, columnFamily);
+        doDelete(delta);
+        Files.move(
+            tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+     * Finishes or rolls back write of column family interrupted by crash.
+     */
+    private void recover(final File tmp) throws IOException {
+        final File file =
+                new File(tmp.getParentFile(), columnFamilyName(tmp.getName()));
+        if (new File(file.getPath() + DELTA).exists()) {
+            doDelete(tmp);
+        } else {
+            Files.move(
+                tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING
+            );
+        }
+    }
+
+    /*
+     * Gets name of column family stored in file.
+     */
+    private static String columnFamilyName(final String fileName) {
+        if (fileName.endsWith(DELTA)) {
+            return fileName.substring(0, fileName.length() - DELTA.length());
+        }
+        if (fileName.endsWith(TMP)) {
+            return fileName.substring(0, fileName.length() - TMP.length());
+        }
+        return fileName;
+    }
+
     private void doDelete(final File path) throws IOException {
         if (path.isDirectory()) {
             for (File child : path.listFiles()) {
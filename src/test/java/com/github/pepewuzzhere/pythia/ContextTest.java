@@ -25,7 +25,10 @@ package com.github.pepewuzzhere.pythia;
 
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.util.Collections;
+import java.util.Iterator;
 import static org.junit.Assert.*;
 import org.junit.*;
 
@@ -77,4 +80,104 @@ public class ContextTest {
 
         assertTrue(wasThrown);
     }
+
+    @Test
+    public void testUseKeySpaceOfOwnDatabase() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        DB db = new DB();
+        IKeySpace keySpace = model.createKeySpace("Own");
+        db.addKeySpace(keySpace);
+
+        Context ctx = new Context(db);
+        assertSame(db, ctx.getDB());
+        assertEquals(keySpace, ctx.setActualKeySpace("Own"));
+        assertNull(DB.INSTANCE.getKeySpace("Own"));
+    }
+
+    @Test
+    public void testCursors() throws Exception {
+        Context ctx = new Context();
+        Iterator<IRow> rows = Collections.<IRow>emptyIterator();
+
+        String token = ctx.openCursor("Test", "Users", rows);
+        assertNotNull(token);
+        assertFalse(token.equals(ctx.openCursor("Test", "Users", rows)));
+        assertSame(rows, ctx.takeCursor(token, "Test", "Users"));
+        // cursor is closed when taken
+        assertNull(ctx.takeCursor(token, "Test", "Users"));
+        assertNull(ctx.takeCursor("unknown", "Test", "Users"));
+    }
+
+    @Test
+    public void testOldestCursorIsClosed() throws Exception {
+        Context ctx = new Context();
+        Iterator<IRow> rows = Collections.<IRow>emptyIterator();
+
+        String first = ctx.openCursor("Test", "Users", rows);
+        String second = ctx.openCursor("Test", "Users", rows);
+        for (int i = 2; i < Context.MAX_CURSORS; ++i) {
+            ctx.openCursor("Test", "Users", rows);
+        }
+        assertNotNull(ctx.takeCursor(first, "Test", "Users"));
+        ctx.openCursor("Test", "Users", rows);
+        ctx.openCursor("Test", "Users", rows);
+        assertNull(ctx.takeCursor(second, "Test", "Users"));
+    }
+
+    @Test
+    public void testCursorExpires() throws Exception {
+        Context ctx = new Context(DB.INSTANCE, 20);
+        Iterator<IRow> rows = Collections.<IRow>emptyIterator();
+
+        String token = ctx.openCursor("Test", "Users", rows);
+        Thread.sleep(40);
+        String next = ctx.openCursor("Test", "Users", rows);
+        assertNull(ctx.takeCursor(token, "Test", "Users"));
+        assertSame(rows, ctx.takeCursor(next, "Test", "Users"));
+
+        token = ctx.openCursor("Test", "Users", rows);
+        Thread.sleep(40);
+        assertNull(ctx.takeCursor(token, "Test", "Users"));
+    }
+
+    @Test
+    public void testCloseCursors() throws Exception {
+        Context ctx = new Context();
+        Iterator<IRow> rows = Collections.<IRow>emptyIterator();
+
+        String first = ctx.openCursor("Test", "Users", rows);
+        String second = ctx.openCursor("Test", "Users", rows);
+        ctx.closeCursors();
+        assertNull(ctx.takeCursor(first, "Test", "Users"));
+        assertNull(ctx.takeCursor(second, "Test", "Users"));
+    }
+
+    @Test
+    public void testCursorOfOtherColumnFamily() throws Exception {
+        Context ctx = new Context();
+        Iterator<IRow> rows = Collections.<IRow>emptyIterator();
+
+        String token = ctx.openCursor("Test", "Users", rows);
+        try {
+            ctx.takeCursor(token, "Test", "Posts");
+            fail("Cursor of other column family was taken");
+        } catch (PythiaException e) {
+            assertEquals(
+                PythiaError.INVALID_ARGUMENS.toString(), e.getMessage());
+        }
+        try {
+            ctx.takeCursor(token, "Other", "Users");
+            fail("Cursor of other keyspace was taken");
+        } catch (PythiaException e) {
+            assertEquals(
+                PythiaError.INVALID_ARGUMENS.toString(), e.getMessage());
+        }
+        // cursor stays open for its scan
+        assertSame(rows, ctx.takeCursor(token, "Test", "Users"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursorTimeout() {
+        new Context(DB.INSTANCE, 0);
+    }
 }
@@ -23,9 +23,15 @@
  */
 package com.github.pepewuzzhere.pythia;
 
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.Assert.*;
 import org.junit.*;
 
@@ -114,4 +120,117 @@ public class DBTest {
         assertTrue(wasThrown);
     }
 
+    @Test
+    public void testMemoryOfKeySpaces() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        IKeySpace keySpace = model.createKeySpace("Test");
+        IColumnFamily columnFamily = model.createColumnFamily();
+        long used = DB.INSTANCE.getMemory().getUsedBytes();
+
+        DB.INSTANCE.addKeySpace(keySpace);
+        keySpace.addColumnFamily("Users", columnFamily);
+        columnFamily.getOrCreateRow(ByteBuffer.wrap("row".getBytes()));
+        assertEquals(
+            used + columnFamily.getMemory().getUsedBytes(),
+            DB.INSTANCE.getMemory().getUsedBytes()
+        );
+
+        DB.INSTANCE.dropKeySpace("Test");
+        assertEquals(used, DB.INSTANCE.getMemory().getUsedBytes());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testAwaitMemoryTimeout() throws PythiaException {
+        MemoryBudget budget = new MemoryBudget(1);
+        budget.allocate(2);
+        DB.INSTANCE.setMemoryTimeout(10);
+        try {
+            DB.INSTANCE.awaitMemory(budget);
+        } finally {
+            DB.INSTANCE.setMemoryTimeout(30000);
+        }
+    }
+
+    @Test
+    public void testIndependentDatabases() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        DB first = new DB();
+        DB second = new DB(1000);
+        IKeySpace keySpace = model.createKeySpace("Test");
+        IColumnFamily columnFamily = model.createColumnFamily();
+        keySpace.addColumnFamily("Users", columnFamily);
+        first.addKeySpace(keySpace);
+        second.addKeySpace(model.createKeySpace("Test"));
+
+        columnFamily.getOrCreateRow(ByteBuffer.wrap("pepe".getBytes()));
+
+        assertSame(keySpace, first.getKeySpace("Test"));
+        assertNotSame(keySpace, second.getKeySpace("Test"));
+        assertNull(DB.INSTANCE.getKeySpace("Test"));
+        assertTrue(first.getMemory().getUsedBytes() > 0);
+        assertEquals(0, second.getMemory().getUsedBytes());
+        assertEquals(1000, second.getMemory().getLimit());
+    }
+
+    @Test
+    public void testKeySpacesSnapshot() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        Map<String, IKeySpace> snapshot = DB.INSTANCE.getKeySpaces();
+
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test2"));
+        DB.INSTANCE.dropKeySpace("Test");
+
+        assertEquals(1, snapshot.size());
+        assertTrue(snapshot.containsKey("Test"));
+        assertEquals(1, DB.INSTANCE.getKeySpaces().size());
+        assertTrue(DB.INSTANCE.getKeySpaces().containsKey("Test2"));
+        try {
+            snapshot.remove("Test");
+            fail("Snapshot should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentAddKeySpace() throws Exception {
+        final IDataModel model = new HashMapDataModel();
+        final AtomicInteger added = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; ++t) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 100; ++i) {
+                            DB.INSTANCE.addKeySpace(
+                                model.createKeySpace("Space" + id + "_" + i));
+                            try {
+                                DB.INSTANCE.addKeySpace(
+                                    model.createKeySpace("Shared" + i));
+                                added.incrementAndGet();
+                            } catch (PythiaException e) {
+                                // other thread was first
+                            }
+                        }
+                    } catch (InterruptedException | PythiaException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(100, added.get());
+        assertEquals(
+            threads.length * 100 + 100, DB.INSTANCE.getKeySpaces().size());
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.benchmark;
+
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import com.github.pepewuzzhere.pythia.pql.command.BatchCommand;
+import com.github.pepewuzzhere.pythia.pql.command.IMutationCommand;
+import com.github.pepewuzzhere.pythia.pql.command.InsertCommand;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares inserts executed one by one with inserts applied in batches.
+ *
+ * Run from test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes \
+ *     com.github.pepewuzzhere.pythia.benchmark.BatchBenchmark \
+ *     [rows] [columns] [batch size]
+ * </pre>
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public final class BatchBenchmark {
+
+    private BatchBenchmark() {
+    }
+
+    public static void main(final String[] args) throws PythiaException {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int columns = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        final int size = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        for (boolean packed : new boolean[] {false, true}) {
+            // first round warms up
+            long single = 0;
+            long batched = 0;
+            for (int round = 0; round < 2; ++round) {
+                single = run(packed, rows, columns, 1);
+                batched = run(packed, rows, columns, size);
+            }
+            System.out.printf(
+                "%s, %d rows x %d columns: single %d ms, batches of %d %d ms "
+                + "(%.2fx)%n",
+                packed ? "packed" : "hashed", rows, columns, single, size,
+                batched, (double)single / batched);
+        }
+    }
+
+    private static long run(
+        final boolean packed, final int rows, final int columns,
+        final int size
+    ) throws PythiaException {
+        final DB db = new DB();
+        final IDataModel model = new HashMapDataModel();
+        db.addKeySpace(model.createKeySpace("Bench"));
+        db.getKeySpace("Bench").addColumnFamily("Users",
+            model.createColumnFamily(
+                new ColumnFamilyOptions().setPacked(packed)));
+
+        final ByteBuffer[] keys = new ByteBuffer[columns];
+        for (int c = 0; c < columns; ++c) {
+            keys[c] = ByteBuffer.wrap(("column" + c).getBytes());
+        }
+        final long start = System.nanoTime();
+        final List<IMutationCommand> commands = new ArrayList<>(size);
+        for (int i = 0; i < rows; ++i) {
+            final ByteBuffer[] values = new ByteBuffer[columns];
+            for (int c = 0; c < columns; ++c) {
+                values[c] = ByteBuffer.wrap(Integer.toString(i + c).getBytes());
+            }
+            final InsertCommand insert = new InsertCommand(
+                "Users", "Bench", ByteBuffer.wrap(("user" + i).getBytes()),
+                keys, values
+            );
+            if (size == 1) {
+                insert.execute(db, model);
+            } else {
+                commands.add(insert);
+                if (commands.size() == size || i == rows - 1) {
+                    new BatchCommand(commands).execute(db, model);
+                    commands.clear();
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.benchmark;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+
+/**
+ * Compares increments of one hot counter made by many threads with
+ * read-modify-write of column value under lock of row.
+ *
+ * Run from test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes \
+ *     com.github.pepewuzzhere.pythia.benchmark.CounterBenchmark \
+ *     [increments per thread] [max threads]
+ * </pre>
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public final class CounterBenchmark {
+
+    private static final ByteBuffer KEY = ByteBuffer.wrap("hot".getBytes());
+    private static final ByteBuffer HITS = ByteBuffer.wrap("hits".getBytes());
+
+    private CounterBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int increments =
+                args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final int max = args.length > 1
+                ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= max; threads *= 2) {
+            // first round warms up
+            long locked = 0;
+            long striped = 0;
+            for (int round = 0; round < 2; ++round) {
+                locked = run(threads, increments, false);
+                striped = run(threads, increments, true);
+            }
+            System.out.printf(
+                "%d threads x %d increments: locked %d ms, striped %d ms "
+                + "(%.2fx)%n",
+                threads, increments, locked, striped,
+                (double)locked / striped);
+        }
+    }
+
+    private static long run(
+        final int threads, final int increments, final boolean striped
+    ) throws Exception {
+        final IColumnFamily table = new HashMapDataModel().createColumnFamily();
+        final IRow row = table.getOrCreateRow(KEY);
+        row.putColumn(HITS, ByteBuffer.wrap(Counters.encode(0)));
+
+        final Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < increments; ++i) {
+                            if (striped) {
+                                table.apply(
+                                    new Batch().increment(KEY, HITS, 1));
+                            } else {
+                                increment(table, row);
+                            }
+                        }
+                    } catch (PythiaException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+        }
+        final long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        final long time = (System.nanoTime() - start) / 1000000;
+
+        final long value = Counters.decode(
+                table.getRow(KEY).getColumn(HITS).getValue().array());
+        if (value != (long)threads * increments) {
+            throw new IllegalStateException("Lost increments: " + value);
+        }
+        return time;
+    }
+
+    private static void increment(final IColumnFamily table, final IRow row)
+            throws PythiaException
+    {
+        synchronized (row) {
+            final long value = Counters.decode(
+                    row.getColumn(HITS).getValue().array());
+            table.apply(new Batch().update(
+                KEY, HITS, ByteBuffer.wrap(Counters.encode(value + 1))));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.benchmark;
+
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+
+/**
+ * Measures heap retained per row by hashed and packed rows.
+ *
+ * Run from test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes \
+ *     com.github.pepewuzzhere.pythia.benchmark.RowFootprintBenchmark \
+ *     [rows] [columns]
+ * </pre>
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public final class RowFootprintBenchmark {
+
+    private static final String[] NAMES = {
+        "name", "email", "ts", "city", "status", "lang", "age", "score",
+        "country", "phone"
+    };
+
+    private RowFootprintBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int columns = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final long hashed = measure(new ColumnFamilyOptions(), rows, columns);
+        final long packed = measure(
+                new ColumnFamilyOptions().setPacked(true), rows, columns);
+
+        System.out.printf(
+            "%d rows x %d columns: hashed %.1f bytes/row, packed %.1f "
+            + "bytes/row (%.2fx)%n",
+            rows, columns, (double)hashed / rows, (double)packed / rows,
+            (double)hashed / packed);
+    }
+
+    private static long measure(
+        final ColumnFamilyOptions options, final int rows, final int columns
+    ) {
+        final IDataModel model = new HashMapDataModel();
+        final long before = usedMemory();
+        final IColumnFamily cf = model.createColumnFamily(options);
+        for (int i = 0; i < rows; ++i) {
+            final IRow row =
+                    cf.getOrCreateRow(ByteBuffer.wrap(("user" + i).getBytes()));
+            for (int c = 0; c < columns; ++c) {
+                row.putColumn(
+                    ByteBuffer.wrap(NAMES[c % NAMES.length].getBytes()),
+                    ByteBuffer.wrap(Integer.toString(i).getBytes())
+                );
+            }
+        }
+        final long used = usedMemory() - before;
+        if (cf.getRow(ByteBuffer.wrap("user0".getBytes())) == null) {
+            throw new IllegalStateException("Row not found");
+        }
+        return used;
+    }
+
+    private static long usedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.benchmark;
+
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import com.github.pepewuzzhere.pythia.pql.command.IDBCommand;
+import com.github.pepewuzzhere.pythia.pql.command.SelectCommand;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Measures bytes allocated per {@link SelectCommand#execute}.
+ *
+ * Run from test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes \
+ *     com.github.pepewuzzhere.pythia.benchmark.SelectCommandBenchmark [rows]
+ * </pre>
+ *
+ * Allocation is read from per-thread counter of HotSpot
+ * ({@code com.sun.management.ThreadMXBean}), so JVM must support it.
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public final class SelectCommandBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    private SelectCommandBenchmark() {
+    }
+
+    public static void main(final String[] args) throws PythiaException {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+        final IDataModel model = new HashMapDataModel();
+        final IKeySpace space = model.createKeySpace("Benchmark");
+        final IColumnFamily cf = model.createColumnFamily();
+        final IDBCommand[] commands = new IDBCommand[rows];
+        for (int i = 0; i < rows; ++i) {
+            final ByteBuffer key = ByteBuffer.wrap(("user" + i).getBytes());
+            final IRow row = model.createRow(key);
+            final IColumn column =
+                    model.createColumn(ByteBuffer.wrap("name".getBytes()));
+            column.setValue(ByteBuffer.wrap(("name" + i).getBytes()));
+            row.addColumn(column);
+            cf.addRow(row);
+            commands[i] = new SelectCommand("Users", "Benchmark", key);
+        }
+        space.addColumnFamily("Users", cf);
+        DB.INSTANCE.addKeySpace(space);
+
+        final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            run(commands, model);
+        }
+
+        long bytes = 0;
+        long nanos = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            final long startBytes = threads.getThreadAllocatedBytes(thread);
+            final long start = System.nanoTime();
+            run(commands, model);
+            nanos += System.nanoTime() - start;
+            bytes += threads.getThreadAllocatedBytes(thread) - startBytes;
+        }
+
+        final long operations = (long)rows * MEASURED_ITERATIONS;
+        System.out.printf(
+            "SelectCommand.execute: %.1f bytes/op, %.1f ns/op (%d ops)%n",
+            (double)bytes / operations, (double)nanos / operations,
+            operations);
+
+        DB.INSTANCE.dropDB();
+    }
+
+    private static void run(final IDBCommand[] commands, final IDataModel model)
+            throws PythiaException {
+        for (IDBCommand command : commands) {
+            if (command.execute(DB.INSTANCE, model) == null) {
+                throw new IllegalStateException("Row not found");
+            }
+        }
+    }
+}
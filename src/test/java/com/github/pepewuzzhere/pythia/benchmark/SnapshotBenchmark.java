@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.benchmark;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import com.github.pepewuzzhere.pythia.storage.BinarySnapshot;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compares save and load of column family written by object serialization
+ * with {@link BinarySnapshot}.
+ *
+ * Run from test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes \
+ *     com.github.pepewuzzhere.pythia.benchmark.SnapshotBenchmark \
+ *     [rows] [columns]
+ * </pre>
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public final class SnapshotBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private SnapshotBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int columns = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        final IDataModel model = new HashMapDataModel();
+        final File file = File.createTempFile("snapshot", ".bench");
+        file.deleteOnExit();
+
+        for (boolean packed : new boolean[] {false, true}) {
+            final IColumnFamily columnFamily = fill(
+                model.createColumnFamily(
+                    new ColumnFamilyOptions().setPacked(packed)),
+                model, rows, columns
+            );
+            // first round warms up, best of next rounds is reported
+            long serialSave = Long.MAX_VALUE;
+            long serialLoad = Long.MAX_VALUE;
+            long binarySave = Long.MAX_VALUE;
+            long binaryLoad = Long.MAX_VALUE;
+            long serialBytes = 0;
+            long binaryBytes = 0;
+            for (int round = 0; round <= ROUNDS; ++round) {
+                long start = System.nanoTime();
+                serialize(file, columnFamily);
+                final long save = System.nanoTime() - start;
+                serialBytes = file.length();
+                start = System.nanoTime();
+                deserialize(file);
+                final long load = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                BinarySnapshot.write(file, columnFamily);
+                final long binSave = System.nanoTime() - start;
+                binaryBytes = file.length();
+                start = System.nanoTime();
+                BinarySnapshot.read(file, model);
+                final long binLoad = System.nanoTime() - start;
+
+                if (round > 0) {
+                    serialSave = Math.min(serialSave, save);
+                    serialLoad = Math.min(serialLoad, load);
+                    binarySave = Math.min(binarySave, binSave);
+                    binaryLoad = Math.min(binaryLoad, binLoad);
+                }
+            }
+            System.out.printf(
+                "%s, %d rows x %d columns:%n"
+                + "  serialization: save %d ms, load %d ms, %d bytes%n"
+                + "  binary:        save %d ms, load %d ms, %d bytes%n"
+                + "  save %.2fx, load %.2fx faster%n",
+                packed ? "packed" : "hashed", rows, columns,
+                serialSave / 1000000, serialLoad / 1000000, serialBytes,
+                binarySave / 1000000, binaryLoad / 1000000, binaryBytes,
+                (double)serialSave / binarySave,
+                (double)serialLoad / binaryLoad);
+        }
+    }
+
+    private static IColumnFamily fill(
+        final IColumnFamily columnFamily, final IDataModel model,
+        final int rows, final int columns
+    ) throws PythiaException {
+        for (int i = 0; i < rows; ++i) {
+            final IRow row =
+                model.createRow(ByteBuffer.wrap(("user" + i).getBytes()));
+            for (int c = 0; c < columns; ++c) {
+                row.putColumn(
+                    ByteBuffer.wrap(("column" + c).getBytes()),
+                    ByteBuffer.wrap(Integer.toString(i + c).getBytes())
+                );
+            }
+            columnFamily.addRow(row);
+        }
+        return columnFamily;
+    }
+
+    private static void serialize(
+        final File file, final IColumnFamily columnFamily
+    ) throws IOException {
+        try (final ObjectOutputStream out =
+                new ObjectOutputStream(new FileOutputStream(file))
+        ) {
+            out.writeObject(columnFamily);
+            out.flush();
+        }
+    }
+
+    private static IColumnFamily deserialize(final File file)
+            throws IOException, ClassNotFoundException
+    {
+        try (final ObjectInputStream in =
+                new ObjectInputStream(new FileInputStream(file))
+        ) {
+            return (IColumnFamily)in.readObject();
+        }
+    }
+}
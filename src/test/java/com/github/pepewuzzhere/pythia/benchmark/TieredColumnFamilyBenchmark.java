@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.benchmark;
+
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes more rows than fits in heap to tiered column family, then reads
+ * skewed (hot) keys mixed with one pass over all keys.
+ *
+ * Run from test classpath with small heap:
+ * <pre>
+ * java -Xmx64m -cp target/classes:target/test-classes \
+ *     com.github.pepewuzzhere.pythia.benchmark.TieredColumnFamilyBenchmark \
+ *     [rows] [value size] [hot rows]
+ * </pre>
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public final class TieredColumnFamilyBenchmark {
+
+    private TieredColumnFamilyBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int size = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        final int hotRows = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        final IDataModel model = new HashMapDataModel();
+        final IColumnFamily cf = model.createColumnFamily(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(hotRows));
+        final ByteBuffer name = ByteBuffer.wrap("data".getBytes());
+        final byte[] value = new byte[size];
+        Arrays.fill(value, (byte)'x');
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; ++i) {
+            cf.getOrCreateRow(key(i)).putColumn(name, ByteBuffer.wrap(value));
+        }
+        final double write = (System.nanoTime() - start) / 1e9;
+
+        // 90% of reads go to 1% of rows, one scan over all rows in between
+        final Random random = new Random(1);
+        final int reads = rows;
+        final int hotKeys = Math.max(1, rows / 100);
+        start = System.nanoTime();
+        for (int i = 0; i < reads; ++i) {
+            final int k = random.nextInt(10) < 9
+                    ? random.nextInt(hotKeys)
+                    : i;
+            if (cf.getRow(key(k)) == null) {
+                throw new IllegalStateException("Row not found: " + k);
+            }
+        }
+        final double read = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(
+            "%d rows x %d bytes (%.0f MB, heap %d MB): write %.0f rows/s, "
+            + "read %.0f rows/s, %d bytes in memory%n",
+            rows, size, (double)rows * size / (1 << 20),
+            Runtime.getRuntime().maxMemory() >> 20,
+            rows / write, reads / read, cf.getMemory().getUsedBytes());
+    }
+
+    private static ByteBuffer key(final int i) {
+        return ByteBuffer.wrap(("user" + i).getBytes());
+    }
+}
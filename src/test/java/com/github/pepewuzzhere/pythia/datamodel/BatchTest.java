@@ -0,0 +1,204 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class BatchTest {
+
+    public BatchTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testGroupByRow() {
+        Batch batch = new Batch()
+            .put(buf("pepe"), buf("name"), buf("Piotr"))
+            .update(buf("john"), buf("name"), buf("John"))
+            .put(buf("pepe"), buf("city"), buf("Cracow"))
+            .expire(buf("pepe"), null, 1000);
+
+        assertEquals(2, batch.size());
+        Iterator<Batch.RowMutation> rows = batch.getRows().iterator();
+        Batch.RowMutation pepe = rows.next();
+        assertEquals(buf("pepe"), pepe.getKey());
+        assertTrue(pepe.isCreated());
+        assertFalse(pepe.isDeleted());
+        assertEquals(2, pepe.getColumns().size());
+        assertEquals(buf("Cracow"), pepe.getColumns().get(buf("city")));
+        assertEquals(Long.valueOf(1000), pepe.getDeadlines().get(null));
+
+        Batch.RowMutation john = rows.next();
+        assertFalse(john.isCreated());
+        assertTrue(john.isModified());
+        assertEquals(buf("John"), john.getColumns().get(buf("name")));
+    }
+
+    @Test
+    public void testLaterMutationWins() {
+        Batch batch = new Batch()
+            .put(buf("pepe"), buf("name"), buf("Piotr"))
+            .delete(buf("pepe"), buf("name"))
+            .put(buf("pepe"), buf("city"), buf("Cracow"))
+            .delete(buf("pepe"), buf("city"))
+            .put(buf("pepe"), buf("city"), buf("Warsaw"));
+
+        Batch.RowMutation row = batch.getRows().iterator().next();
+        assertEquals(1, row.getColumns().size());
+        assertEquals(buf("Warsaw"), row.getColumns().get(buf("city")));
+        assertEquals(1, row.getRemovedColumns().size());
+        assertTrue(row.getRemovedColumns().contains(buf("name")));
+    }
+
+    @Test
+    public void testIncrementsAreSummed() {
+        Batch batch = new Batch()
+            .increment(buf("pepe"), buf("hits"), 2)
+            .increment(buf("pepe"), buf("hits"), -5)
+            .increment(buf("pepe"), buf("views"), 1)
+            .update(buf("pepe"), buf("views"), buf("0"))
+            .increment(buf("pepe"), buf("likes"), 1)
+            .delete(buf("pepe"), buf("likes"));
+
+        Batch.RowMutation row = batch.getRows().iterator().next();
+        assertFalse(row.isCreated());
+        assertTrue(row.isModified());
+        // update and delete of column replace its earlier increments
+        assertEquals(1, row.getIncrements().size());
+        assertEquals(Long.valueOf(-3), row.getIncrements().get(buf("hits")));
+        assertEquals(buf("0"), row.getColumns().get(buf("views")));
+    }
+
+    @Test
+    public void testParseValues() throws Exception {
+        ColumnFamilyOptions options = new ColumnFamilyOptions()
+                .setColumnType("age", ColumnType.INT)
+                .setColumnType("hits", ColumnType.LONG);
+        Batch batch = new Batch()
+            .put(buf("pepe"), buf("age"), buf("29"))
+            .put(buf("pepe"), buf("name"), buf("Piotr"))
+            .increment(buf("pepe"), buf("hits"), 1)
+            .parseValues(options);
+
+        Batch.RowMutation row = batch.getRows().iterator().next();
+        assertEquals(
+            ColumnType.INT.encode(29), row.getColumns().get(buf("age")));
+        assertEquals(buf("Piotr"), row.getColumns().get(buf("name")));
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testParseInvalidValue() throws Exception {
+        new Batch()
+            .put(buf("pepe"), buf("age"), buf("old"))
+            .parseValues(new ColumnFamilyOptions()
+                .setColumnType("age", ColumnType.INT));
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testIncrementNotLongColumn() throws Exception {
+        new Batch()
+            .increment(buf("pepe"), buf("age"), 1)
+            .parseValues(new ColumnFamilyOptions()
+                .setColumnType("age", ColumnType.INT));
+    }
+
+    @Test
+    public void testDeleteDiscardsEarlierMutations() {
+        Batch batch = new Batch()
+            .put(buf("pepe"), buf("name"), buf("Piotr"))
+            .expire(buf("pepe"), null, 1000)
+            .delete(buf("pepe"));
+
+        Batch.RowMutation row = batch.getRows().iterator().next();
+        assertTrue(row.isDeleted());
+        assertFalse(row.isCreated());
+        assertFalse(row.isModified());
+        assertTrue(row.getColumns().isEmpty());
+        assertTrue(row.getDeadlines().isEmpty());
+
+        batch.put(buf("pepe"), buf("name"), buf("Pepe"));
+        assertTrue(row.isDeleted());
+        assertTrue(row.isCreated());
+        assertEquals(buf("Pepe"), row.getColumns().get(buf("name")));
+    }
+
+    @Test
+    public void testCreate() {
+        Batch batch = new Batch().create(buf("pepe"));
+
+        Batch.RowMutation row = batch.getRows().iterator().next();
+        assertTrue(row.isCreated());
+        assertTrue(row.isModified());
+        assertTrue(row.getColumns().isEmpty());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(new Batch().isEmpty());
+        assertFalse(new Batch().delete(buf("pepe")).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyKey() {
+        new Batch().put(buf(""), buf("name"), buf("Piotr"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyColumnKey() {
+        new Batch().update(buf("pepe"), null, buf("Piotr"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTtl() {
+        new Batch().expire(buf("pepe"), null, -1);
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class BlockCodecTest {
+
+    public BlockCodecTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testCompressRepeated() {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte)("pythia".charAt(i % 6));
+        }
+        byte[] block = BlockCodec.compress(data);
+        assertTrue(block.length < 200);
+        assertArrayEquals(data, BlockCodec.decompress(block));
+    }
+
+    @Test
+    public void testCompressText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; ++i) {
+            text.append("{\"user\":").append(i).append(",\"name\":\"user")
+                .append(i * 7).append("\"}");
+        }
+        byte[] data = text.toString().getBytes();
+        byte[] block = BlockCodec.compress(data);
+        assertTrue(block.length < data.length / 2);
+        assertArrayEquals(data, BlockCodec.decompress(block));
+    }
+
+    @Test
+    public void testCompressRandom() {
+        Random random = new Random(17);
+        for (int length : new int[] {0, 1, 4, 15, 16, 300, 70000}) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            byte[] block = BlockCodec.compress(data);
+            assertTrue(block.length <= length + length / 255 + 16);
+            assertArrayEquals(data, BlockCodec.decompress(block));
+        }
+    }
+
+    @Test
+    public void testLongMatchesAndLiterals() {
+        Random random = new Random(5);
+        byte[] data = new byte[100000];
+        random.nextBytes(data);
+        // repeat far and near fragments longer than extended lengths
+        System.arraycopy(data, 0, data, 40000, 20000);
+        Arrays.fill(data, 70000, 71000, (byte)7);
+        assertArrayEquals(data, BlockCodec.decompress(BlockCodec.compress(data)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecompressCorrupted() {
+        byte[] data = "abcabcabcabcabcabcabcabc".getBytes();
+        byte[] block = BlockCodec.compress(data);
+        BlockCodec.decompress(Arrays.copyOf(block, block.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecompressInvalidOffset() {
+        // 1 byte of data, literal "a", match with offset 2
+        BlockCodec.decompress(new byte[] {5, 0x10, 'a', 2, 0});
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ColumnFamilyOptionsTest {
+
+    public ColumnFamilyOptionsTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testDefaults() {
+        assertFalse(new ColumnFamilyOptions().isOrdered());
+        assertFalse(new ColumnFamilyOptions().isPacked());
+        assertFalse(new ColumnFamilyOptions().isTiered());
+        assertEquals(
+            ColumnFamilyOptions.DEFAULT_HOT_ROWS,
+            new ColumnFamilyOptions().getHotRows()
+        );
+    }
+
+    @Test
+    public void testParse() {
+        Map<String, String> options = new HashMap<>();
+        options.put("Ordered", "TRUE");
+        options.put("packed", "true");
+
+        ColumnFamilyOptions parsed = ColumnFamilyOptions.parse(options);
+        assertTrue(parsed.isOrdered());
+        assertTrue(parsed.isPacked());
+        assertEquals(
+            new ColumnFamilyOptions().setOrdered(true).setPacked(true), parsed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownOption() {
+        new ColumnFamilyOptions().set("colour", "blue");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidValue() {
+        new ColumnFamilyOptions().set(ColumnFamilyOptions.ORDERED, "yes");
+    }
+
+    @Test
+    public void testParseTiered() {
+        Map<String, String> options = new HashMap<>();
+        options.put("tiered", "true");
+        options.put("hotrows", "1000");
+
+        ColumnFamilyOptions parsed = ColumnFamilyOptions.parse(options);
+        assertTrue(parsed.isTiered());
+        assertEquals(1000, parsed.getHotRows());
+        assertEquals(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(1000), parsed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHotRows() {
+        new ColumnFamilyOptions().set(ColumnFamilyOptions.HOT_ROWS, "many");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotPositiveHotRows() {
+        new ColumnFamilyOptions().setHotRows(0);
+    }
+
+    @Test
+    public void testParsePartitioned() {
+        Map<String, String> options = new HashMap<>();
+        options.put("partitioned", "true");
+        options.put("partitions", "4");
+
+        ColumnFamilyOptions parsed = ColumnFamilyOptions.parse(options);
+        assertTrue(parsed.isPartitioned());
+        assertEquals(4, parsed.getPartitions());
+        assertEquals(
+            new ColumnFamilyOptions().setPartitioned(true).setPartitions(4),
+            parsed
+        );
+        assertEquals(
+            Runtime.getRuntime().availableProcessors(),
+            new ColumnFamilyOptions().getPartitions()
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotPositivePartitions() {
+        new ColumnFamilyOptions().set(ColumnFamilyOptions.PARTITIONS, "0");
+    }
+
+    @Test
+    public void testParseCompressed() {
+        Map<String, String> options = new HashMap<>();
+        options.put("compressed", "true");
+        options.put("compressthreshold", "64");
+
+        ColumnFamilyOptions parsed = ColumnFamilyOptions.parse(options);
+        assertTrue(parsed.isCompressed());
+        assertEquals(64, parsed.getCompressionThreshold());
+        assertEquals(
+            new ColumnFamilyOptions().setCompressed(true)
+                .setCompressionThreshold(64),
+            parsed
+        );
+        assertFalse(new ColumnFamilyOptions().isCompressed());
+        assertEquals(
+            ColumnFamilyOptions.DEFAULT_COMPRESSION_THRESHOLD,
+            new ColumnFamilyOptions().getCompressionThreshold()
+        );
+    }
+
+    @Test
+    public void testColumnTypes() {
+        ColumnFamilyOptions options = new ColumnFamilyOptions()
+                .setColumnType("age", ColumnType.INT)
+                .setColumnType("born", ColumnType.TIMESTAMP);
+
+        assertEquals(
+            ColumnType.INT,
+            options.getColumnType(ByteBuffer.wrap("age".getBytes()))
+        );
+        assertNull(options.getColumnType(ByteBuffer.wrap("name".getBytes())));
+        assertEquals(
+            Arrays.asList("age", "born"),
+            new ArrayList<>(options.getColumnTypes().keySet())
+        );
+        assertTrue(new ColumnFamilyOptions().getColumnTypes().isEmpty());
+        assertFalse(options.equals(new ColumnFamilyOptions()));
+        assertEquals(
+            new ColumnFamilyOptions()
+                .setColumnType("age", ColumnType.INT)
+                .setColumnType("born", ColumnType.TIMESTAMP),
+            options
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotPositiveCompressionThreshold() {
+        new ColumnFamilyOptions().set(
+                ColumnFamilyOptions.COMPRESSION_THRESHOLD, "-1");
+    }
+}
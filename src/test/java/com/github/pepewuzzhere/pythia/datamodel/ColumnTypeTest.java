@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ColumnTypeTest {
+
+    public ColumnTypeTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testOf() {
+        assertEquals(ColumnType.INT, ColumnType.of("int"));
+        assertEquals(ColumnType.TIMESTAMP, ColumnType.of("TimeStamp"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownType() {
+        ColumnType.of("decimal");
+    }
+
+    @Test
+    public void testParseIntegers() throws PythiaException {
+        ByteBuffer value = ColumnType.INT.parse(text("-42"));
+        assertEquals(4, value.remaining());
+        assertEquals(-42, ColumnType.INT.toLong(value));
+        assertEquals(
+            Long.MIN_VALUE,
+            ColumnType.LONG.toLong(
+                ColumnType.LONG.parse(text("-9223372036854775808")))
+        );
+        assertEquals(
+            Long.MAX_VALUE,
+            ColumnType.TIMESTAMP.toLong(
+                ColumnType.TIMESTAMP.parse(text("+9223372036854775807")))
+        );
+        // the same form as counters
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(7)),
+            ColumnType.LONG.parse(text("7"))
+        );
+    }
+
+    @Test
+    public void testParseInvalidIntegers() {
+        String[][] invalid = {
+            {"INT", "2147483648"}, {"INT", "12a"}, {"LONG", ""},
+            {"LONG", "-"}, {"LONG", "9223372036854775808"}, {"INT", "1.5"}
+        };
+        for (String[] i : invalid) {
+            try {
+                ColumnType.valueOf(i[0]).parse(text(i[1]));
+                fail(i[0] + " " + i[1]);
+            } catch (PythiaException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseDoubles() throws PythiaException {
+        String[] literals = {
+            "0", "-1.5", "3.14159", ".5", "10.", "1e3", "-2.5E-4",
+            "0.1", "123456789012345678901234567890", "4.9e-324",
+            "1.7976931348623157e308", "0.000000000000000000000000001"
+        };
+        for (String literal : literals) {
+            assertEquals(
+                literal,
+                Double.parseDouble(literal),
+                ColumnType.DOUBLE.toDouble(
+                        ColumnType.DOUBLE.parse(text(literal))),
+                0
+            );
+        }
+    }
+
+    @Test
+    public void testParseInvalidDoubles() {
+        for (String literal : new String[] {"", ".", "1e", "1.2.3", "e5", "x"}) {
+            try {
+                ColumnType.DOUBLE.parse(text(literal));
+                fail(literal);
+            } catch (PythiaException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testTextIsStoredAsGiven() throws PythiaException {
+        ByteBuffer value = text("Piotr");
+        assertSame(value, ColumnType.TEXT.parse(value));
+        assertSame(value, ColumnType.BLOB.parse(value));
+        assertNull(ColumnType.INT.parse(null));
+    }
+
+    @Test
+    public void testFormat() throws PythiaException {
+        assertEquals("-42", ColumnType.INT.format(
+                ColumnType.INT.encode(-42), new StringBuilder()).toString());
+        assertEquals("2.5", ColumnType.DOUBLE.format(
+                ColumnType.DOUBLE.encode(2.5), new StringBuilder()).toString());
+        assertEquals("1350000000000", ColumnType.TIMESTAMP.format(
+                ColumnType.TIMESTAMP.encode(1350000000000L),
+                new StringBuilder()).toString());
+        // value of other size is text
+        assertEquals("abc", ColumnType.LONG.format(
+                text("abc"), new StringBuilder()).toString());
+    }
+
+    @Test
+    public void testCompare() throws PythiaException {
+        assertTrue(ColumnType.INT.compare(
+                ColumnType.INT.encode(-1), ColumnType.INT.encode(1)) < 0);
+        assertTrue(ColumnType.DOUBLE.compare(
+                ColumnType.DOUBLE.encode(-0.5),
+                ColumnType.DOUBLE.encode(-1.5)) > 0);
+        assertTrue(ColumnType.TEXT.compare(text("b"), text("ab")) > 0);
+        assertTrue(ColumnType.TEXT.compare(text("a"), text("ab")) < 0);
+        assertEquals(0, ColumnType.BLOB.compare(text("ab"), text("ab")));
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testEncodeIntOutOfRange() throws PythiaException {
+        ColumnType.INT.encode(1L << 40);
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testToLongOfDouble() throws PythiaException {
+        ColumnType.DOUBLE.toLong(ColumnType.DOUBLE.encode(1.0));
+    }
+
+    private static ByteBuffer text(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class CountersTest {
+
+    public CountersTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testEncode() throws PythiaException {
+        long[] values = {0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            byte[] bytes = Counters.encode(value);
+            assertEquals(Counters.SIZE, bytes.length);
+            assertEquals(value, Counters.decode(bytes));
+        }
+        assertArrayEquals(
+            new byte[] {0, 0, 0, 0, 0, 0, 1, 2}, Counters.encode(258));
+    }
+
+    @Test
+    public void testDecodeNull() throws PythiaException {
+        assertEquals(0, Counters.decode(null));
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testDecodeNotCounter() throws PythiaException {
+        Counters.decode("Piotr".getBytes());
+    }
+}
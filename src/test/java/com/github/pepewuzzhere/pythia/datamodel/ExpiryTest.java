@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ExpiryTest {
+
+    public ExpiryTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testSetAndRemoveDeadline() {
+        Expiry expiry = new Expiry();
+        expiry.setDeadline(buf("row"), null, 100);
+        expiry.setDeadline(buf("row"), buf("col"), 200);
+
+        assertEquals(100, expiry.getDeadline(buf("row"), null));
+        assertEquals(200, expiry.getDeadline(buf("row"), buf("col")));
+        assertEquals(Expiry.NEVER, expiry.getDeadline(buf("other"), null));
+        assertEquals(1, expiry.size());
+
+        expiry.setDeadline(buf("row"), null, Expiry.NEVER);
+        assertEquals(Expiry.NEVER, expiry.getDeadline(buf("row"), null));
+        expiry.setDeadline(buf("row"), buf("col"), Expiry.NEVER);
+        assertEquals(0, expiry.size());
+
+        expiry.setDeadline(buf("row"), buf("col"), 200);
+        expiry.remove(buf("row"));
+        assertEquals(0, expiry.size());
+    }
+
+    @Test
+    public void testPurgeColumn() {
+        Expiry expiry = new Expiry();
+        expiry.setDeadline(buf("row"), buf("a"), 100);
+        expiry.setDeadline(buf("row"), buf("b"), 200);
+        Recorder recorder = new Recorder();
+
+        assertFalse(expiry.purge(buf("row"), 99, recorder));
+        assertTrue(recorder.expired.isEmpty());
+
+        assertFalse(expiry.purge(buf("row"), 150, recorder));
+        assertEquals(1, recorder.expired.size());
+        assertEquals("row.a", recorder.expired.get(0));
+        assertEquals(Expiry.NEVER, expiry.getDeadline(buf("row"), buf("a")));
+        assertEquals(200, expiry.getDeadline(buf("row"), buf("b")));
+    }
+
+    @Test
+    public void testPurgeRow() {
+        Expiry expiry = new Expiry();
+        expiry.setDeadline(buf("row"), null, 100);
+        expiry.setDeadline(buf("row"), buf("a"), 200);
+        Recorder recorder = new Recorder();
+
+        assertTrue(expiry.purge(buf("row"), 100, recorder));
+        assertEquals(1, recorder.expired.size());
+        assertEquals("row", recorder.expired.get(0));
+        assertEquals(0, expiry.size());
+    }
+
+    @Test
+    public void testAdvance() {
+        long now = System.currentTimeMillis();
+        Expiry expiry = new Expiry();
+        for (int i = 0; i < 100; ++i) {
+            expiry.setDeadline(buf("row" + i), null, now + i * 1000);
+        }
+        Recorder recorder = new Recorder();
+
+        expiry.advance(now + 49500, recorder);
+        assertEquals(50, recorder.expired.size());
+        assertEquals(50, expiry.size());
+
+        expiry.advance(now + 200000, recorder);
+        assertEquals(100, recorder.expired.size());
+        assertEquals(0, expiry.size());
+        assertEquals(0, expiry.getTimers());
+    }
+
+    @Test
+    public void testChangedDeadlineIgnored() {
+        long now = System.currentTimeMillis();
+        Expiry expiry = new Expiry();
+        expiry.setDeadline(buf("row"), null, now + 1000);
+        expiry.setDeadline(buf("row"), null, now + 100000);
+        expiry.setDeadline(buf("other"), null, now + 1000);
+        expiry.remove(buf("other"));
+        Recorder recorder = new Recorder();
+
+        expiry.advance(now + 2000, recorder);
+        assertTrue(recorder.expired.isEmpty());
+        assertEquals(now + 100000, expiry.getDeadline(buf("row"), null));
+
+        expiry.advance(now + 100200, recorder);
+        assertEquals(1, recorder.expired.size());
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        long now = System.currentTimeMillis();
+        Expiry expiry = new Expiry();
+        expiry.setDeadline(buf("row"), null, now + 1000);
+        expiry.setDeadline(buf("row"), buf("col"), now + 2000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(expiry);
+        }
+        Expiry read;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            read = (Expiry)in.readObject();
+        }
+
+        assertEquals(now + 1000, read.getDeadline(buf("row"), null));
+        assertEquals(now + 2000, read.getDeadline(buf("row"), buf("col")));
+
+        Recorder recorder = new Recorder();
+        read.advance(now + 1200, recorder);
+        assertEquals(1, recorder.expired.size());
+    }
+
+    @Test
+    public void testWriteAndReadDeadlines() throws Exception {
+        long now = System.currentTimeMillis();
+        Expiry expiry = new Expiry();
+        expiry.setDeadline(buf("row"), null, now + 1000);
+        expiry.setDeadline(buf("row"), buf("col"), now + 2000);
+        expiry.setDeadline(buf("other"), null, now + 3000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            expiry.writeDeadlines(buf("row"), out);
+            expiry.writeDeadlines(buf("none"), out);
+        }
+
+        Expiry read = new Expiry();
+        read.setDeadline(buf("row"), buf("old"), now + 500);
+        read.setDeadline(buf("none"), null, now + 500);
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            read.readDeadlines(buf("row"), in);
+            read.readDeadlines(buf("none"), in);
+        }
+
+        assertEquals(now + 1000, read.getDeadline(buf("row"), null));
+        assertEquals(now + 2000, read.getDeadline(buf("row"), buf("col")));
+        assertEquals(Expiry.NEVER, read.getDeadline(buf("row"), buf("old")));
+        assertEquals(Expiry.NEVER, read.getDeadline(buf("none"), null));
+        assertEquals(Expiry.NEVER, read.getDeadline(buf("other"), null));
+        assertEquals(1, read.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyKey() {
+        new Expiry().setDeadline(ByteBuffer.allocate(0), null, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDeadline() {
+        new Expiry().setDeadline(buf("row"), null, -1);
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+    private static class Recorder implements Expiry.Reclaimer {
+
+        private final List<String> expired = new ArrayList<>();
+
+        @Override
+        public void expired(ByteBuffer key, ByteBuffer columnKey) {
+            expired.add(new String(key.array())
+                    + (columnKey != null
+                        ? "." + new String(columnKey.array())
+                        : ""));
+        }
+    }
+
+}
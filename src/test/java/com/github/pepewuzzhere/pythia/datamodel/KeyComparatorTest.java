@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class KeyComparatorTest {
+
+    public KeyComparatorTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testCompareUnsigned() {
+        ByteBuffer a = ByteBuffer.wrap(new byte[] {0x7f});
+        ByteBuffer b = ByteBuffer.wrap(new byte[] {(byte)0x80});
+
+        assertTrue(KeyComparator.INSTANCE.compare(a, b) < 0);
+        assertTrue(KeyComparator.INSTANCE.compare(b, a) > 0);
+        assertEquals(0, KeyComparator.INSTANCE.compare(a, a.duplicate()));
+    }
+
+    @Test
+    public void testComparePrefix() {
+        ByteBuffer a = ByteBuffer.wrap("key".getBytes());
+        ByteBuffer b = ByteBuffer.wrap("key1".getBytes());
+
+        assertTrue(KeyComparator.INSTANCE.compare(a, b) < 0);
+        assertTrue(KeyComparator.compare(
+            "key1".getBytes(), 0, 4, "xkey".getBytes(), 1, 3) > 0);
+        assertEquals(0, a.position());
+    }
+
+    @Test
+    public void testInRange() {
+        ByteBuffer b = ByteBuffer.wrap("b".getBytes());
+        ByteBuffer c = ByteBuffer.wrap("c".getBytes());
+
+        assertTrue(KeyComparator.INSTANCE.inRange(b, b, true, c));
+        assertFalse(KeyComparator.INSTANCE.inRange(b, b, false, c));
+        assertFalse(KeyComparator.INSTANCE.inRange(c, b, true, c));
+        assertTrue(KeyComparator.INSTANCE.inRange(c, null, true, null));
+    }
+}
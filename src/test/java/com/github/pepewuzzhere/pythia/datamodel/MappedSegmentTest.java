@@ -0,0 +1,249 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class MappedSegmentTest {
+
+    private final static File FILE = new File(
+            System.getProperty("java.io.tmpdir") + "pythia-mapped.seg");
+
+    private final IDataModel model = new HashMapDataModel();
+
+    public MappedSegmentTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        FILE.delete();
+    }
+
+    @After
+    public void tearDown() {
+        FILE.delete();
+    }
+
+    @Test
+    public void testGetRow() throws Exception {
+        List<IRow> rows = new ArrayList<>();
+        for (int i = 999; i >= 0; --i) {
+            rows.add(row(String.format("k%04d", i), "name", "v" + i));
+        }
+        MappedSegment.write(FILE, rows);
+        assertFalse(new File(FILE.getPath() + ".tmp").exists());
+
+        MappedSegment segment = MappedSegment.open(FILE);
+        assertEquals(1000, segment.size());
+        for (int i : new int[] {0, 1, 500, 998, 999}) {
+            IRow row = segment.getRow(bytes(String.format("k%04d", i)));
+            assertEquals(bytes(String.format("k%04d", i)), row.getKey());
+            assertEquals(
+                bytes("v" + i), row.getColumn(bytes("name")).getValue());
+        }
+        assertNull(segment.getRow(bytes("a")));
+        assertNull(segment.getRow(bytes("k0500x")));
+        assertNull(segment.getRow(bytes("z")));
+    }
+
+    @Test
+    public void testValuesAreSlicesOfMapping() throws Exception {
+        MappedSegment.write(FILE, list(row("pepe", "name", "Piotr")));
+        MappedSegment segment = MappedSegment.open(FILE);
+        ByteBuffer value =
+            segment.getRow(bytes("pepe")).getColumn(bytes("name")).getValue();
+        assertEquals(bytes("Piotr"), value);
+        assertTrue(value.isDirect());
+        assertTrue(value.isReadOnly());
+        try {
+            value.put(0, (byte)'p');
+            fail();
+        } catch (ReadOnlyBufferException e) {
+            // value is part of read only mapping
+        }
+    }
+
+    @Test
+    public void testColumnsInOrderOfKeys() throws Exception {
+        IRow row = row("pepe", "name", "Piotr");
+        row.addColumn(column("age", "30"));
+        row.addColumn(column("city", null));
+        MappedSegment.write(FILE, list(row));
+
+        IRow mapped = MappedSegment.open(FILE).getRow(bytes("pepe"));
+        Iterator<IColumn> columns = mapped.iterator();
+        assertEquals(bytes("age"), columns.next().getKey());
+        IColumn city = columns.next();
+        assertEquals(bytes("city"), city.getKey());
+        assertNull(city.getValue());
+        assertEquals(bytes("name"), columns.next().getKey());
+        assertFalse(columns.hasNext());
+
+        assertNull(mapped.getColumn(bytes("zip")));
+        assertEquals(
+            "{\"pepe\":{\"age\":\"30\",\"city\":\"\",\"name\":\"Piotr\"}}",
+            mapped.toString()
+        );
+        assertEquals(
+            "{\"pepe\":{\"city\":\"\",\"name\":\"Piotr\"}}",
+            mapped.slice(bytes("b"), null).toString()
+        );
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        MappedSegment.write(
+            FILE, list(row("b", "c", "2"), row("a", "c", "1")));
+        Iterator<IRow> rows = MappedSegment.open(FILE).iterator();
+        assertEquals(bytes("a"), rows.next().getKey());
+        assertEquals(bytes("b"), rows.next().getKey());
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void testIteratorFromKey() throws Exception {
+        MappedSegment.write(FILE, list(
+            row("a", "c", "1"), row("c", "c", "3"), row("e", "c", "5")));
+        MappedSegment segment = MappedSegment.open(FILE);
+
+        Iterator<IRow> rows = segment.iterator(bytes("c"), true);
+        assertEquals(bytes("c"), rows.next().getKey());
+        assertEquals(bytes("e"), rows.next().getKey());
+        assertFalse(rows.hasNext());
+        assertEquals(
+            bytes("e"), segment.iterator(bytes("c"), false).next().getKey());
+        assertEquals(
+            bytes("c"), segment.iterator(bytes("b"), false).next().getKey());
+        assertFalse(segment.iterator(bytes("f"), true).hasNext());
+        assertEquals(bytes("a"), segment.iterator(null, true).next().getKey());
+    }
+
+    @Test
+    public void testWriterWithDeletedRows() throws Exception {
+        try (MappedSegment.Writer out = new MappedSegment.Writer(FILE)) {
+            out.add(row("a", "c", "1"));
+            out.delete(bytes("b"));
+            out.add(row("c", "c", "3"));
+            out.commit();
+        }
+        MappedSegment segment = MappedSegment.open(FILE);
+
+        assertEquals(3, segment.size());
+        assertFalse(MappedSegment.isDeleted(segment.getRow(bytes("a"))));
+        IRow deleted = segment.getRow(bytes("b"));
+        assertTrue(MappedSegment.isDeleted(deleted));
+        assertFalse(deleted.iterator().hasNext());
+        assertEquals(
+            bytes("3"), segment.getRow(bytes("c")).getColumn(bytes("c"))
+                .getValue());
+        assertFalse(MappedSegment.isDeleted(row("a", "c", "1")));
+    }
+
+    @Test
+    public void testWriterRejectsRowsOutOfOrder() throws Exception {
+        try (MappedSegment.Writer out = new MappedSegment.Writer(FILE)) {
+            out.add(row("b", "c", "2"));
+            try {
+                out.add(row("a", "c", "1"));
+                fail("Rows must be sorted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        // uncommitted segment is deleted
+        assertFalse(FILE.exists());
+        assertFalse(new File(FILE.getPath() + ".tmp").exists());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRowIsReadOnly() throws Exception {
+        MappedSegment.write(FILE, list(row("pepe", "name", "Piotr")));
+        MappedSegment.open(FILE).getRow(bytes("pepe"))
+            .putColumn(bytes("name"), bytes("Pepe"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testColumnIsReadOnly() throws Exception {
+        MappedSegment.write(FILE, list(row("pepe", "name", "Piotr")));
+        MappedSegment.open(FILE).getRow(bytes("pepe"))
+            .getColumn(bytes("name")).setValue(bytes("Pepe"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenIncompleteSegment() throws Exception {
+        MappedSegment.write(FILE, list(row("pepe", "name", "Piotr")));
+        try (RandomAccessFile f = new RandomAccessFile(FILE, "rw")) {
+            f.setLength(f.length() - 1);
+        }
+        MappedSegment.open(FILE);
+    }
+
+    private IRow row(String key, String column, String value) {
+        IRow row = model.createRow(bytes(key));
+        row.addColumn(column(column, value));
+        return row;
+    }
+
+    private IColumn column(String key, String value) {
+        IColumn column = model.createColumn(bytes(key));
+        column.setValue(value != null ? bytes(value) : null);
+        return column;
+    }
+
+    private static List<IRow> list(IRow... rows) {
+        List<IRow> list = new ArrayList<>();
+        for (IRow row : rows) {
+            list.add(row);
+        }
+        return list;
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class MemoryBudgetTest {
+
+    public MemoryBudgetTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testAllocateAndRelease() {
+        MemoryBudget budget = new MemoryBudget();
+        budget.allocate(100);
+        budget.release(30);
+
+        assertEquals(70, budget.getUsedBytes());
+        assertEquals(MemoryBudget.UNLIMITED, budget.getLimit());
+        assertFalse(budget.isExceeded());
+    }
+
+    @Test
+    public void testAttachAndDetach() {
+        MemoryBudget parent = new MemoryBudget();
+        MemoryBudget child = new MemoryBudget();
+        child.allocate(10);
+
+        child.attach(parent);
+        assertEquals(10, parent.getUsedBytes());
+
+        child.allocate(5);
+        assertEquals(15, parent.getUsedBytes());
+
+        child.detach();
+        assertEquals(0, parent.getUsedBytes());
+        assertEquals(15, child.getUsedBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAttachTwice() {
+        MemoryBudget child = new MemoryBudget();
+        child.attach(new MemoryBudget());
+        child.attach(new MemoryBudget());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        new MemoryBudget(-1);
+    }
+
+    @Test
+    public void testExceededParent() {
+        MemoryBudget parent = new MemoryBudget(100);
+        MemoryBudget child = new MemoryBudget();
+        child.attach(parent);
+        child.allocate(101);
+
+        assertTrue(child.isExceeded());
+        assertTrue(parent.isExceeded());
+
+        parent.setLimit(MemoryBudget.UNLIMITED);
+        assertFalse(child.isExceeded());
+    }
+
+    @Test
+    public void testAwaitSpaceTimeout() throws Exception {
+        MemoryBudget budget = new MemoryBudget(10);
+        budget.allocate(11);
+
+        assertFalse(budget.awaitSpace(20));
+        assertTrue(new MemoryBudget().awaitSpace(0));
+    }
+
+    @Test
+    public void testAwaitSpaceUntilRelease() throws Exception {
+        final MemoryBudget parent = new MemoryBudget(10);
+        final MemoryBudget child = new MemoryBudget();
+        child.attach(parent);
+        child.allocate(20);
+
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicBoolean space = new AtomicBoolean();
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                waiting.countDown();
+                try {
+                    space.set(child.awaitSpace(10000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        writer.start();
+        waiting.await();
+
+        child.release(15);
+        writer.join(10000);
+
+        assertFalse(writer.isAlive());
+        assertTrue(space.get());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class RowSliceTest {
+
+    public RowSliceTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testSelect() {
+        IRow slice = row().select(buf("c"), buf("x"), buf("a"));
+
+        assertEquals(buf("row"), slice.getKey());
+        assertEquals(buf("A"), slice.getColumn(buf("a")).getValue());
+        assertNull(slice.getColumn(buf("b")));
+        assertNull(slice.getColumn(buf("x")));
+        assertEquals(
+            "{\"row\":{\"c\":\"C\",\"a\":\"A\"}}", slice.toString());
+    }
+
+    @Test
+    public void testSlice() {
+        IRow slice = row().slice(buf("b"), buf("d"));
+
+        List<ByteBuffer> keys = new ArrayList<>();
+        for (IColumn column : slice) {
+            keys.add(column.getKey());
+        }
+        assertEquals(3, keys.size());
+        assertTrue(keys.contains(buf("b")));
+        assertTrue(keys.contains(buf("c")));
+        assertTrue(keys.contains(buf("d")));
+        assertNull(slice.getColumn(buf("a")));
+        assertEquals(buf("D"), slice.getColumn(buf("d")).getValue());
+    }
+
+    @Test
+    public void testUnboundedSlice() {
+        IRow row = row();
+
+        int count = 0;
+        for (IColumn column : row.slice(buf("e"), null)) {
+            ++count;
+        }
+        assertEquals(2, count);
+        count = 0;
+        for (IColumn column : row.slice(null, null)) {
+            ++count;
+        }
+        assertEquals(6, count);
+    }
+
+    @Test
+    public void testSliceIsView() {
+        IRow row = row();
+        IRow slice = RowSlice.of(row, buf("a"), buf("g"));
+        assertEquals("{\"row\":{\"a\":\"A\"}}", slice.toString());
+
+        row.putColumn(buf("g"), buf("G"));
+        assertEquals(
+            "{\"row\":{\"a\":\"A\",\"g\":\"G\"}}", slice.toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        row().select(buf("a")).putColumn(buf("a"), buf("B"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullKey() {
+        row().select(buf("a"), null);
+    }
+
+    private static IRow row() {
+        IRow row = new HashMapDataModel().createRow(buf("row"));
+        for (String name : new String[] {"a", "b", "c", "d", "e", "f"}) {
+            row.putColumn(buf(name), buf(name.toUpperCase()));
+        }
+        return row;
+    }
+
+    private static ByteBuffer buf(final String text) {
+        return ByteBuffer.wrap(text.getBytes());
+    }
+}
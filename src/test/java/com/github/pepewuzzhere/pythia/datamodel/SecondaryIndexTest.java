@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class SecondaryIndexTest {
+
+    public SecondaryIndexTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testPutAndFind() {
+        SecondaryIndex index = new SecondaryIndex(buf("city"));
+        index.put(buf("pepe"), buf("Cracow"));
+        index.put(buf("john"), buf("Berlin"));
+        index.put(buf("adam"), buf("Cracow"));
+
+        List<ByteBuffer> keys = index.find(buf("Cracow"));
+        assertEquals(2, keys.size());
+        assertEquals(buf("adam"), keys.get(0));
+        assertEquals(buf("pepe"), keys.get(1));
+        assertEquals(3, index.size());
+
+        // row moves to other value
+        index.put(buf("pepe"), buf("Berlin"));
+        assertEquals(1, index.find(buf("Cracow")).size());
+        assertEquals(2, index.find(buf("Berlin")).size());
+
+        // row without value is removed
+        index.put(buf("john"), null);
+        assertEquals(1, index.find(buf("Berlin")).size());
+        assertEquals(2, index.size());
+        assertTrue(index.find(buf("Paris")).isEmpty());
+        assertTrue(index.find(null).isEmpty());
+    }
+
+    @Test
+    public void testEmptyValueIsNotIndexed() {
+        SecondaryIndex index = new SecondaryIndex(buf("city"));
+        index.put(buf("pepe"), buf(""));
+        assertEquals(0, index.size());
+        assertTrue(index.find(buf("")).isEmpty());
+
+        index.put(buf("pepe"), buf("Cracow"));
+        index.put(buf("pepe"), buf(""));
+        assertEquals(0, index.size());
+        assertTrue(index.find(buf("Cracow")).isEmpty());
+    }
+
+    @Test
+    public void testKeysAreCopied() {
+        SecondaryIndex index = new SecondaryIndex(buf("city"));
+        byte[] key = "pepe".getBytes();
+        byte[] value = "Cracow".getBytes();
+        index.put(ByteBuffer.wrap(key), ByteBuffer.wrap(value));
+        key[0] = 'x';
+        value[0] = 'x';
+
+        assertEquals(buf("pepe"), index.find(buf("Cracow")).get(0));
+    }
+
+    @Test
+    public void testUpdate() {
+        SecondaryIndex index = new SecondaryIndex(buf("city"));
+        final ByteBuffer[] current = {buf("Cracow")};
+        SecondaryIndex.Lookup lookup = new SecondaryIndex.Lookup() {
+            @Override
+            public ByteBuffer getValue(ByteBuffer key, ByteBuffer columnKey) {
+                assertEquals(buf("city"), columnKey);
+                return current[0];
+            }
+        };
+
+        index.update(buf("pepe"), lookup);
+        assertEquals(1, index.find(buf("Cracow")).size());
+
+        current[0] = null;
+        index.update(buf("pepe"), lookup);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testIsIndexOf() {
+        SecondaryIndex index = new SecondaryIndex(buf("city"));
+        assertTrue(index.isIndexOf(buf("city")));
+        assertFalse(index.isIndexOf(buf("name")));
+        assertFalse(index.isIndexOf(null));
+        assertEquals(buf("city"), index.getColumnKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyColumnKey() {
+        new SecondaryIndex(ByteBuffer.allocate(0));
+    }
+
+    @Test
+    public void testSerializeOnlyColumn() throws Exception {
+        SecondaryIndex index = new SecondaryIndex(buf("city"));
+        index.put(buf("pepe"), buf("Cracow"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(index);
+        }
+        SecondaryIndex copy;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy = (SecondaryIndex)in.readObject();
+        }
+
+        assertTrue(copy.isIndexOf(buf("city")));
+        assertEquals(0, copy.size());
+        copy.put(buf("pepe"), buf("Cracow"));
+        assertEquals(1, copy.find(buf("Cracow")).size());
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class TimerWheelTest {
+
+    public TimerWheelTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testExpireInOrder() {
+        TimerWheel<String> wheel = new TimerWheel<>(0, 1000);
+        wheel.schedule("b", 1020);
+        wheel.schedule("a", 1010);
+        wheel.schedule("c", 1100);
+        assertEquals(3, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1009, expired);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(1010, expired);
+        assertEquals(Arrays.asList("a"), expired);
+
+        wheel.advance(1099, expired);
+        assertEquals(Arrays.asList("a", "b"), expired);
+
+        wheel.advance(1100, expired);
+        assertEquals(Arrays.asList("a", "b", "c"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCascade() {
+        TimerWheel<Long> wheel = new TimerWheel<>(0, 0);
+        // one timer on every level
+        long[] deadlines = {10, 100, 10000, 1000000, 100000000};
+        for (long d : deadlines) {
+            wheel.schedule(d, d);
+        }
+
+        List<Long> expired = new ArrayList<>();
+        for (long d : deadlines) {
+            wheel.advance(d - 1, expired);
+            assertFalse(expired.contains(d));
+            wheel.advance(d, expired);
+            assertTrue(expired.contains(d));
+        }
+        assertEquals(deadlines.length, expired.size());
+    }
+
+    @Test
+    public void testLongJump() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(7, 0);
+        for (int i = 0; i < 1000; ++i) {
+            wheel.schedule(i, i * 997L);
+        }
+
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(1L << 40, expired);
+        assertEquals(1000, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAtMostOneTickLate() {
+        final int tick = 128;
+        TimerWheel<Long> wheel = new TimerWheel<>(7, 5);
+        Random random = new Random(1);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            long d = 5 + random.nextInt(10000000);
+            deadlines.add(d);
+            wheel.schedule(d, d);
+        }
+
+        List<Long> expired = new ArrayList<>();
+        for (long now = 5; now <= 10000005 + tick; now += 61) {
+            expired.clear();
+            wheel.advance(now, expired);
+            for (long d : expired) {
+                assertTrue(d <= now);
+                assertTrue(now - d <= tick + 61);
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(7, 1000);
+        wheel.schedule("past", 10);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1001, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(wheel.nextTick(), expired);
+        assertEquals(Arrays.asList("past"), expired);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTick() {
+        new TimerWheel<String>(-1, 0);
+    }
+
+}
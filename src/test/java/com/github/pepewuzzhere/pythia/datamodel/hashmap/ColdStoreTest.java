@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ColdStoreTest {
+
+    private ColdStore store;
+
+    public ColdStoreTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        // every second row is written as segment
+        store = new ColdStore(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        for (String key : new String[] {"c", "a", "e", "b", "d"}) {
+            store.put(buf(key), row(key, key.toUpperCase()));
+        }
+
+        assertTrue(store.getSegments() > 0);
+        for (String key : new String[] {"a", "b", "c", "d", "e"}) {
+            assertEquals(buf(key.toUpperCase()), value(store.get(buf(key))));
+        }
+        assertNull(store.get(buf("f")));
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        store.put(buf("a"), row("a", "first"));
+        store.put(buf("b"), row("b", "first"));
+        store.put(buf("a"), row("a", "second"));
+
+        // row waiting for segment hides row of segment
+        assertEquals(buf("second"), value(store.get(buf("a"))));
+        store.put(buf("c"), row("c", "first"));
+        assertEquals(buf("second"), value(store.get(buf("a"))));
+        assertEquals(Arrays.asList("a", "b", "c"), keys(store.rows(null, true)));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        store.put(buf("a"), row("a", "first"));
+        store.put(buf("b"), row("b", "first"));
+
+        assertEquals(buf("first"), value(store.remove(buf("a"))));
+        assertNull(store.get(buf("a")));
+        assertNull(store.remove(buf("a")));
+        assertEquals(Arrays.asList("b"), keys(store.rows(null, true)));
+
+        // deleted row is written to segment and still hides older row
+        store.put(buf("c"), row("c", "first"));
+        assertNull(store.get(buf("a")));
+        assertEquals(Arrays.asList("b", "c"), keys(store.rows(null, true)));
+    }
+
+    @Test
+    public void testRowsFromKey() throws Exception {
+        for (String key : new String[] {"e", "a", "d", "b", "c"}) {
+            store.put(buf(key), row(key, key));
+        }
+
+        assertEquals(
+            Arrays.asList("b", "c", "d", "e"),
+            keys(store.rows(buf("b"), true))
+        );
+        assertEquals(
+            Arrays.asList("c", "d", "e"), keys(store.rows(buf("b"), false)));
+        assertEquals(
+            new ArrayList<String>(), keys(store.rows(buf("f"), true)));
+    }
+
+    @Test
+    public void testRowsAreSnapshot() throws Exception {
+        store.put(buf("a"), row("a", "a"));
+        store.put(buf("b"), row("b", "b"));
+        Iterator<IRow> rows = store.rows(null, true);
+
+        // segments are merged meanwhile
+        store.remove(buf("a"));
+        store.put(buf("c"), row("c", "c"));
+        store.put(buf("d"), row("d", "d"));
+
+        assertEquals(Arrays.asList("a", "b"), keys(rows));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        for (int i = 0; i < 64; ++i) {
+            store.put(buf("row" + i), row("row" + i, "value" + i));
+        }
+        // segments of 2, 4, ..., 64 rows are merged to one
+        assertEquals(1, store.getSegments());
+
+        long bytes = store.getFileBytes();
+        for (int i = 0; i < 64; ++i) {
+            store.remove(buf("row" + i));
+        }
+        // deleted rows are dropped by merge with the oldest segment
+        assertEquals(1, store.getSegments());
+        assertTrue(store.getFileBytes() < bytes);
+        assertEquals(new ArrayList<String>(), keys(store.rows(null, true)));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        store.put(buf("a"), row("a", "a"));
+        store.put(buf("b"), row("b", "b"));
+        assertTrue(store.getFileBytes() > 0);
+
+        store.close();
+        assertEquals(0, store.getSegments());
+        assertNull(store.get(buf("a")));
+    }
+
+    private static IRow row(String key, String value) {
+        IRow row = new Row(buf(key));
+        row.putColumn(buf("name"), buf(value));
+        return row;
+    }
+
+    private static ByteBuffer value(IRow row) {
+        return row.getColumn(buf("name")).getValue();
+    }
+
+    private static List<String> keys(Iterator<IRow> rows) {
+        List<String> keys = new ArrayList<>();
+        while (rows.hasNext()) {
+            ByteBuffer key = rows.next().getKey();
+            byte[] bytes = new byte[key.remaining()];
+            key.duplicate().get(bytes);
+            keys.add(new String(bytes));
+        }
+        return keys;
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
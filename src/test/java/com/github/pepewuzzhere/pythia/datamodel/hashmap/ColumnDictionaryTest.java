@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ColumnDictionaryTest {
+
+    public ColumnDictionaryTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testIntern() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        int name = dictionary.intern(ByteBuffer.wrap("name".getBytes()));
+        int email = dictionary.intern(ByteBuffer.wrap("email".getBytes()));
+
+        assertEquals(0, name);
+        assertEquals(1, email);
+        assertEquals(
+            name, dictionary.intern(ByteBuffer.wrap("name".getBytes())));
+        assertEquals(2, dictionary.size());
+        assertArrayEquals("email".getBytes(), dictionary.name(email));
+    }
+
+    @Test
+    public void testId() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        dictionary.intern(ByteBuffer.wrap("name".getBytes()));
+
+        assertEquals(0, dictionary.id(ByteBuffer.wrap("name".getBytes())));
+        assertEquals(
+            ColumnDictionary.NOT_FOUND,
+            dictionary.id(ByteBuffer.wrap("age".getBytes()))
+        );
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void testCanonical() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        ByteBuffer a = dictionary.canonical(ByteBuffer.wrap("name".getBytes()));
+        ByteBuffer b = dictionary.canonical(ByteBuffer.wrap("name".getBytes()));
+
+        assertSame(a.array(), b.array());
+        assertEquals(ByteBuffer.wrap("name".getBytes()), a);
+    }
+
+    @Test
+    public void testGrow() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(
+                i, dictionary.intern(ByteBuffer.wrap(("c" + i).getBytes())));
+        }
+        assertArrayEquals("c999".getBytes(), dictionary.name(999));
+    }
+
+    @Test
+    public void testRowsShareDictionary() {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        PackedRow a = new PackedRow(ByteBuffer.wrap("a".getBytes()), dictionary);
+        PackedRow b = new PackedRow(ByteBuffer.wrap("b".getBytes()), dictionary);
+        a.putColumn(
+            ByteBuffer.wrap("name".getBytes()), ByteBuffer.wrap("x".getBytes()));
+        b.putColumn(
+            ByteBuffer.wrap("name".getBytes()), ByteBuffer.wrap("y".getBytes()));
+
+        assertEquals(1, dictionary.size());
+        assertNull(b.getColumn(ByteBuffer.wrap("age".getBytes())));
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        ColumnDictionary dictionary = new ColumnDictionary();
+        dictionary.intern(ByteBuffer.wrap("name".getBytes()));
+        dictionary.intern(ByteBuffer.wrap("email".getBytes()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(dictionary);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+
+        ColumnDictionary readed = (ColumnDictionary)in.readObject();
+        assertEquals(2, readed.size());
+        assertEquals(1, readed.id(ByteBuffer.wrap("email".getBytes())));
+        assertArrayEquals("name".getBytes(), readed.name(0));
+    }
+
+    @Test
+    public void testLimit() {
+        ColumnDictionary dictionary = new ColumnDictionary(2);
+        dictionary.intern(ByteBuffer.wrap("name".getBytes()));
+        dictionary.intern(ByteBuffer.wrap("email".getBytes()));
+
+        assertEquals(
+            ColumnDictionary.NOT_FOUND,
+            dictionary.intern(ByteBuffer.wrap("age".getBytes()))
+        );
+        assertEquals(2, dictionary.size());
+        assertEquals(
+            1, dictionary.intern(ByteBuffer.wrap("email".getBytes())));
+
+        // name refused by full dictionary is returned as it is
+        ByteBuffer age = ByteBuffer.wrap("age".getBytes());
+        assertSame(age, dictionary.canonical(age));
+    }
+}
@@ -24,12 +24,20 @@
 package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import static org.junit.Assert.*;
+import java.util.Set;
 import org.junit.*;
 
 /**
@@ -218,4 +226,995 @@ public class ColumnFamilyTest {
         File f = new File(tmpFile);
         f.delete();
     }
+
+    @Test
+    public void testGetRowsFromOrderedColumnFamily() throws PythiaException {
+        IColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setOrdered(true));
+        String[] keys = {"b", "a", "d", "c", "e"};
+        for (String k : keys) {
+            table.addRow(new Row(ByteBuffer.wrap(k.getBytes())));
+        }
+
+        List<IRow> rows = table.getRows(null, true, null, 10);
+        assertEquals(5, rows.size());
+        assertEquals(ByteBuffer.wrap("a".getBytes()), rows.get(0).getKey());
+        assertEquals(ByteBuffer.wrap("e".getBytes()), rows.get(4).getKey());
+
+        rows = table.getRows(
+            ByteBuffer.wrap("b".getBytes()), false,
+            ByteBuffer.wrap("e".getBytes()), 10
+        );
+        assertEquals(2, rows.size());
+        assertEquals(ByteBuffer.wrap("c".getBytes()), rows.get(0).getKey());
+        assertEquals(ByteBuffer.wrap("d".getBytes()), rows.get(1).getKey());
+
+        rows = table.getRows(ByteBuffer.wrap("b".getBytes()), true, null, 2);
+        assertEquals(2, rows.size());
+        assertEquals(ByteBuffer.wrap("b".getBytes()), rows.get(0).getKey());
+        assertEquals(ByteBuffer.wrap("c".getBytes()), rows.get(1).getKey());
+    }
+
+    @Test
+    public void testGetRowsComparesUnsignedBytes() throws PythiaException {
+        IColumnFamily ordered = new ColumnFamily(
+                new ColumnFamilyOptions().setOrdered(true));
+        IColumnFamily unordered = new ColumnFamily();
+        byte[][] keys = {{(byte)0x80}, {0x7f}, {0x01, 0x00}, {0x01}};
+        for (byte[] k : keys) {
+            ordered.addRow(new Row(ByteBuffer.wrap(k)));
+            unordered.addRow(new Row(ByteBuffer.wrap(k)));
+        }
+
+        for (IColumnFamily table : new IColumnFamily[] {ordered, unordered}) {
+            List<IRow> rows = table.getRows(null, true, null, 10);
+            assertEquals(4, rows.size());
+            assertEquals(ByteBuffer.wrap(keys[3]), rows.get(0).getKey());
+            assertEquals(ByteBuffer.wrap(keys[2]), rows.get(1).getKey());
+            assertEquals(ByteBuffer.wrap(keys[1]), rows.get(2).getKey());
+            assertEquals(ByteBuffer.wrap(keys[0]), rows.get(3).getKey());
+        }
+    }
+
+    @Test
+    public void testGetRowsFromUnorderedColumnFamily() throws PythiaException {
+        IColumnFamily table = new ColumnFamily();
+        for (int i = 9; i >= 0; --i) {
+            table.addRow(new Row(ByteBuffer.wrap(("key" + i).getBytes())));
+        }
+
+        List<IRow> rows = table.getRows(
+                ByteBuffer.wrap("key3".getBytes()), false, null, 3);
+        assertEquals(3, rows.size());
+        assertEquals(ByteBuffer.wrap("key4".getBytes()), rows.get(0).getKey());
+        assertEquals(ByteBuffer.wrap("key6".getBytes()), rows.get(2).getKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetRowsWithInvalidLimit() {
+        new ColumnFamily().getRows(null, true, null, 0);
+    }
+
+    @Test
+    public void testSerializeOrdered() throws Exception {
+        ColumnFamily col = new ColumnFamily(
+                new ColumnFamilyOptions().setOrdered(true));
+        col.addRow(new Row(ByteBuffer.wrap("b".getBytes())));
+        col.addRow(new Row(ByteBuffer.wrap("a".getBytes())));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(col);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+
+        ColumnFamily readed = (ColumnFamily)in.readObject();
+        assertEquals(col, readed);
+        assertTrue(readed.getOptions().isOrdered());
+        assertEquals(
+            ByteBuffer.wrap("a".getBytes()),
+            readed.getRows(null, true, null, 1).get(0).getKey()
+        );
+    }
+
+    @Test
+    public void testGetOrCreateRow() throws PythiaException {
+        IColumnFamily table = new ColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+
+        IRow created = table.getOrCreateRow(key);
+        assertNotNull(created);
+        assertSame(created, table.getRow(key));
+        assertSame(created, table.getOrCreateRow(key));
+    }
+
+    @Test
+    public void testGetOrCreatePackedRow() {
+        IColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setPacked(true));
+
+        assertTrue(table.getOrCreateRow(
+            ByteBuffer.wrap("Test key".getBytes())) instanceof PackedRow);
+    }
+
+    @Test
+    public void testMemoryAccounting() throws PythiaException {
+        testMemoryAccounting(new ColumnFamilyOptions());
+        testMemoryAccounting(new ColumnFamilyOptions().setPacked(true));
+    }
+
+    private void testMemoryAccounting(final ColumnFamilyOptions options)
+            throws PythiaException
+    {
+        IColumnFamily table = new ColumnFamily(options);
+        ByteBuffer key = ByteBuffer.wrap("row".getBytes());
+        assertEquals(0, table.getMemory().getUsedBytes());
+
+        IRow row = table.getOrCreateRow(key);
+        long empty = table.getMemory().getUsedBytes();
+        assertTrue(empty > 0);
+
+        row.putColumn(
+            ByteBuffer.wrap("name".getBytes()),
+            ByteBuffer.wrap("Piotr".getBytes())
+        );
+        long filled = table.getMemory().getUsedBytes();
+        assertTrue(filled > empty);
+
+        row.getColumn(ByteBuffer.wrap("name".getBytes()))
+           .setValue(ByteBuffer.wrap("Piotr Picheta".getBytes()));
+        assertTrue(table.getMemory().getUsedBytes() > filled);
+
+        row.deleteColumn(ByteBuffer.wrap("name".getBytes()));
+        assertEquals(empty, table.getMemory().getUsedBytes());
+
+        table.deleteRow(key);
+        assertEquals(0, table.getMemory().getUsedBytes());
+    }
+
+    @Test
+    public void testMemoryAccountingAfterSerialization() throws Exception {
+        IColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(ByteBuffer.wrap("row".getBytes())).putColumn(
+            ByteBuffer.wrap("name".getBytes()),
+            ByteBuffer.wrap("Piotr".getBytes())
+        );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+        IColumnFamily readed = (IColumnFamily)in.readObject();
+
+        assertEquals(
+            table.getMemory().getUsedBytes(),
+            readed.getMemory().getUsedBytes()
+        );
+    }
+
+    @Test
+    public void testTieredRowsMovedToDisk() throws PythiaException {
+        ColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(2));
+        for (int i = 0; i < 10; ++i) {
+            table.getOrCreateRow(ByteBuffer.wrap(("row" + i).getBytes()))
+                 .putColumn(
+                     ByteBuffer.wrap("name".getBytes()),
+                     ByteBuffer.wrap(("value" + i).getBytes())
+                 );
+        }
+
+        assertEquals(2, table.getRows().size());
+        for (int i = 0; i < 10; ++i) {
+            IRow row = table.getRow(ByteBuffer.wrap(("row" + i).getBytes()));
+            assertEquals(
+                ByteBuffer.wrap(("value" + i).getBytes()),
+                row.getColumn(ByteBuffer.wrap("name".getBytes())).getValue()
+            );
+        }
+        assertEquals(2, table.getRows().size());
+        assertNull(table.getRow(ByteBuffer.wrap("row10".getBytes())));
+    }
+
+    @Test
+    public void testTieredAddAndDeleteRow() throws PythiaException {
+        ColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(1));
+        table.addRow(new Row(ByteBuffer.wrap("a".getBytes())));
+        table.addRow(new Row(ByteBuffer.wrap("b".getBytes())));
+
+        try {
+            table.addRow(new Row(ByteBuffer.wrap("a".getBytes())));
+            fail("Row on disk should exist");
+        } catch (PythiaException e) {
+            // expected
+        }
+
+        table.deleteRow(ByteBuffer.wrap("b".getBytes()));
+        table.deleteRow(ByteBuffer.wrap("a".getBytes()));
+        assertNull(table.getRow(ByteBuffer.wrap("a".getBytes())));
+        assertEquals(0, table.getMemory().getUsedBytes());
+    }
+
+    @Test
+    public void testTieredRange() {
+        IColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(2));
+        for (String key : new String[] {"d", "a", "c", "e", "b"}) {
+            table.getOrCreateRow(ByteBuffer.wrap(key.getBytes()));
+        }
+
+        List<IRow> rows = table.getRows(
+            ByteBuffer.wrap("b".getBytes()), true,
+            ByteBuffer.wrap("e".getBytes()), 10
+        );
+        assertEquals(3, rows.size());
+        assertEquals(ByteBuffer.wrap("b".getBytes()), rows.get(0).getKey());
+        assertEquals(ByteBuffer.wrap("d".getBytes()), rows.get(2).getKey());
+    }
+
+    @Test
+    public void testTieredMemoryBudget() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setTiered(true));
+        for (int i = 0; i < 100; ++i) {
+            table.getOrCreateRow(ByteBuffer.wrap(("row" + i).getBytes()));
+        }
+        table.getMemory().setLimit(table.getMemory().getUsedBytes() / 2);
+
+        // writer waiting for memory moves rows to disk
+        assertTrue(table.getMemory().awaitSpace(1000));
+        assertTrue(table.getRows().size() <= 50);
+        assertNotNull(table.getRow(ByteBuffer.wrap("row0".getBytes())));
+    }
+
+    @Test
+    public void testTieredSerialize() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(2));
+        for (int i = 0; i < 5; ++i) {
+            table.getOrCreateRow(ByteBuffer.wrap(("row" + i).getBytes()))
+                 .putColumn(
+                     ByteBuffer.wrap("name".getBytes()),
+                     ByteBuffer.wrap(("value" + i).getBytes())
+                 );
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+        ColumnFamily readed = (ColumnFamily)in.readObject();
+
+        assertEquals(2, readed.getRows().size());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(
+                ByteBuffer.wrap(("value" + i).getBytes()),
+                readed.getRow(ByteBuffer.wrap(("row" + i).getBytes()))
+                      .getColumn(ByteBuffer.wrap("name".getBytes()))
+                      .getValue()
+            );
+        }
+    }
+
+    @Test
+    public void testTieredRowsInSegments() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(10));
+        int size = 3 * ColdStore.MAX_PENDING;
+        for (int i = 0; i < size; ++i) {
+            table.getOrCreateRow(buf(String.format("row%05d", i)))
+                 .putColumn(buf("name"), buf("value" + i));
+        }
+        for (int i = 0; i < size; i += 2) {
+            table.deleteRow(buf(String.format("row%05d", i)));
+        }
+
+        List<IRow> page = table.getRows(buf("row00100"), true, null, 5);
+        assertEquals(5, page.size());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(
+                buf(String.format("row%05d", 101 + 2 * i)),
+                page.get(i).getKey()
+            );
+        }
+        assertEquals(
+            0, table.getRows(buf("row00100"), true, buf("row00101"), 5)
+                    .size());
+
+        int count = 0;
+        for (IRow row : table) {
+            ++count;
+        }
+        assertEquals(size / 2, count);
+
+        ColumnFamily readed = serialize(table);
+        for (int i = 0; i < size; ++i) {
+            IRow row = readed.getRow(buf(String.format("row%05d", i)));
+            if (i % 2 == 0) {
+                assertNull(row);
+            } else {
+                assertEquals(
+                    buf("value" + i), row.getColumn(buf("name")).getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testTieredConcurrentChanges() throws Exception {
+        for (boolean packed : new boolean[] {false, true}) {
+            final ColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions()
+                    .setTiered(true).setHotRows(2).setPacked(packed));
+            final int threads = 4;
+            final int increments = 800;
+            final Thread[] writers = new Thread[threads];
+            final List<Throwable> errors = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                writers[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            // rows are moved to disk between changes
+                            for (int i = 0; i < increments; ++i) {
+                                final ByteBuffer key =
+                                    ByteBuffer.wrap(("row" + i % 8).getBytes());
+                                table.apply(new Batch().create(key).increment(
+                                    key, ByteBuffer.wrap("hits".getBytes()), 1
+                                ));
+                            }
+                        } catch (Throwable e) {
+                            synchronized (errors) {
+                                errors.add(e);
+                            }
+                        }
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            assertEquals(new ArrayList<Throwable>(), errors);
+            for (int i = 0; i < 8; ++i) {
+                assertEquals(
+                    ByteBuffer.wrap(
+                        Counters.encode(threads * increments / 8)),
+                    table.getRow(ByteBuffer.wrap(("row" + i).getBytes()))
+                         .getColumn(ByteBuffer.wrap("hits".getBytes()))
+                         .getValue()
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testExpireRow() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("session")).putColumn(buf("user"), buf("pepe"));
+        table.getOrCreateRow(buf("other")).putColumn(buf("user"), buf("ala"));
+        table.expire(buf("session"), null, 50);
+
+        assertNotNull(table.getRow(buf("session")));
+        Thread.sleep(60);
+
+        // expired row is absent even before timer wheel removed it
+        assertNull(table.getRow(buf("session")));
+        assertNotNull(table.getRow(buf("other")));
+        assertEquals(1, table.getRows().size());
+
+        // expired row is not resurrected with old columns
+        IRow created = table.getOrCreateRow(buf("session"));
+        assertNull(created.getColumn(buf("user")));
+    }
+
+    @Test
+    public void testExpireColumn() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        IRow row = table.getOrCreateRow(buf("session"));
+        row.putColumn(buf("user"), buf("pepe"));
+        row.putColumn(buf("token"), buf("secret"));
+        table.expire(buf("session"), buf("token"), 50);
+        Thread.sleep(60);
+
+        IRow readed = table.getRow(buf("session"));
+        assertNotNull(readed);
+        assertNull(readed.getColumn(buf("token")));
+        assertEquals(buf("pepe"), readed.getColumn(buf("user")).getValue());
+    }
+
+    @Test
+    public void testRemoveTtl() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("session")).putColumn(buf("user"), buf("pepe"));
+        table.expire(buf("session"), null, 50);
+        table.expire(buf("session"), null, 0);
+        Thread.sleep(60);
+
+        assertNotNull(table.getRow(buf("session")));
+    }
+
+    @Test
+    public void testExpiredRowsReclaimedByTimerWheel() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        for (int i = 0; i < 100; ++i) {
+            table.getOrCreateRow(buf("row" + i)).putColumn(buf("a"), buf("b"));
+            table.expire(buf("row" + i), null, 1);
+        }
+        table.getOrCreateRow(buf("persistent"));
+        long usedBytes = table.getMemory().getUsedBytes();
+        Thread.sleep(300);
+
+        // any operation advances wheel - other rows are removed without reads
+        table.getRow(buf("persistent"));
+        assertEquals(1, table.getRows().size());
+        assertTrue(table.getMemory().getUsedBytes() < usedBytes);
+    }
+
+    @Test
+    public void testExpiredRowsSkippedInRange() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setOrdered(true));
+        for (int i = 0; i < 10; ++i) {
+            table.getOrCreateRow(buf("row" + i));
+            if (i % 2 == 0) {
+                table.expire(buf("row" + i), null, 20);
+            }
+        }
+        Thread.sleep(30);
+
+        List<IRow> rows = table.getRows(null, true, null, 3);
+        assertEquals(3, rows.size());
+        assertEquals(buf("row1"), rows.get(0).getKey());
+        assertEquals(buf("row3"), rows.get(1).getKey());
+        assertEquals(buf("row5"), rows.get(2).getKey());
+        assertEquals(5, table.getRows(null, true, null, 10).size());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testDeleteExpiredRow() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("session"));
+        table.expire(buf("session"), null, 10);
+        Thread.sleep(20);
+
+        table.deleteRow(buf("session"));
+    }
+
+    @Test
+    public void testSerializeDeadlines() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("session"));
+        table.getOrCreateRow(buf("other"));
+        table.expire(buf("session"), null, 100);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+        ColumnFamily readed = (ColumnFamily)in.readObject();
+        Thread.sleep(110);
+
+        assertNull(readed.getRow(buf("session")));
+        assertNotNull(readed.getRow(buf("other")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTtl() {
+        new ColumnFamily().expire(buf("row"), null, -1);
+    }
+
+    @Test
+    public void testDirtyRows() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        assertTrue(table.isDirty());
+        assertFalse(table.writeChanges(
+            new ObjectOutputStream(new ByteArrayOutputStream())));
+
+        table.setClean();
+        assertFalse(table.isDirty());
+        table.getOrCreateRow(buf("row"));
+        assertTrue(table.isDirty());
+        assertTrue(table.writeChanges(
+            new ObjectOutputStream(new ByteArrayOutputStream())));
+        assertFalse(table.isDirty());
+
+        table.getOrCreateRow(buf("row"));
+        assertFalse(table.isDirty());
+        table.setDirty(buf("row"));
+        assertTrue(table.isDirty());
+    }
+
+    @Test
+    public void testWriteAndReadChanges() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setPacked(true));
+        table.getOrCreateRow(buf("kept")).putColumn(buf("name"), buf("a"));
+        table.getOrCreateRow(buf("deleted")).putColumn(buf("name"), buf("b"));
+        table.getOrCreateRow(buf("changed")).putColumn(buf("name"), buf("c"));
+        ColumnFamily copy = serialize(table);
+        table.setClean();
+
+        table.deleteRow(buf("deleted"));
+        table.getRow(buf("changed")).putColumn(buf("name"), buf("d"));
+        table.setDirty(buf("changed"));
+        table.getOrCreateRow(buf("added")).putColumn(buf("name"), buf("e"));
+        table.setDirty(buf("added"));
+        table.expire(buf("added"), null, 100000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            assertTrue(table.writeChanges(out));
+        }
+        assertFalse(table.isDirty());
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy.readChanges(in);
+        }
+
+        assertEquals(table, copy);
+        assertFalse(copy.isDirty());
+        assertNull(copy.getRow(buf("deleted")));
+        assertEquals(
+            buf("d"), copy.getRow(buf("changed")).getColumn(buf("name"))
+                .getValue()
+        );
+        assertTrue(copy.getRow(buf("added")) instanceof PackedRow);
+        assertEquals(
+            buf("a"), copy.getRow(buf("kept")).getColumn(buf("name"))
+                .getValue()
+        );
+        copy.expire(buf("added"), null, 1);
+        Thread.sleep(5);
+        assertNull(copy.getRow(buf("added")));
+    }
+
+    @Test
+    public void testWriteChangesOfTieredColumnFamily() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setTiered(true).setHotRows(2));
+        table.setClean();
+        for (int i = 0; i < 5; ++i) {
+            table.getOrCreateRow(buf("key" + i))
+                .putColumn(buf("name"), buf("value" + i));
+            table.setDirty(buf("key" + i));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            assertTrue(table.writeChanges(out));
+        }
+        ColumnFamily copy = new ColumnFamily(
+                new ColumnFamilyOptions().setTiered(true).setHotRows(2));
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy.readChanges(in);
+        }
+
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(
+                buf("value" + i),
+                copy.getRow(buf("key" + i)).getColumn(buf("name")).getValue()
+            );
+        }
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        for (boolean packed : new boolean[] {false, true}) {
+            ColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setPacked(packed));
+            ColumnFamily expected = new ColumnFamily(
+                new ColumnFamilyOptions().setPacked(packed));
+            table.getOrCreateRow(buf("old")).putColumn(buf("name"), buf("Old"));
+            table.getOrCreateRow(buf("john")).putColumn(buf("name"), buf("J"));
+            table.getRow(buf("john")).putColumn(buf("city"), buf("Berlin"));
+            table.setClean();
+
+            table.apply(new Batch()
+                .put(buf("pepe"), buf("name"), buf("Piotr"))
+                .put(buf("pepe"), buf("city"), buf("Cracow"))
+                .update(buf("john"), buf("name"), buf("John"))
+                .delete(buf("john"), buf("city"))
+                .delete(buf("old"))
+                .delete(buf("missing"))
+            );
+
+            expected.getOrCreateRow(buf("pepe"))
+                .putColumn(buf("name"), buf("Piotr"));
+            expected.getRow(buf("pepe")).putColumn(buf("city"), buf("Cracow"));
+            expected.getOrCreateRow(buf("john"))
+                .putColumn(buf("name"), buf("John"));
+            assertEquals(expected, table);
+            assertEquals(
+                expected.getMemory().getUsedBytes(),
+                table.getMemory().getUsedBytes()
+            );
+            assertNull(table.getRow(buf("old")));
+            assertTrue(table.isDirty());
+        }
+    }
+
+    @Test
+    public void testApplyBatchToMissingRow() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("pepe"));
+        try {
+            table.apply(new Batch()
+                .put(buf("pepe"), buf("name"), buf("Piotr"))
+                .update(buf("john"), buf("name"), buf("John"))
+            );
+            fail("Updated row doesn't exist");
+        } catch (PythiaException e) {
+            // expected
+        }
+
+        // rows before failed one stay changed
+        assertEquals(
+            buf("Piotr"), table.getRow(buf("pepe")).getColumn(buf("name"))
+                .getValue()
+        );
+        assertNull(table.getRow(buf("john")));
+    }
+
+    @Test
+    public void testApplyBatchRecreatesRow() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("pepe")).putColumn(buf("name"), buf("Piotr"));
+        table.expire(buf("pepe"), null, 100000);
+
+        table.apply(new Batch()
+            .delete(buf("pepe"))
+            .put(buf("pepe"), buf("city"), buf("Cracow"))
+        );
+
+        IRow row = table.getRow(buf("pepe"));
+        assertNull(row.getColumn(buf("name")));
+        assertEquals(buf("Cracow"), row.getColumn(buf("city")).getValue());
+    }
+
+    @Test
+    public void testApplyBatchExpiry() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.apply(new Batch()
+            .put(buf("pepe"), buf("name"), buf("Piotr"))
+            .put(buf("pepe"), buf("session"), buf("1234"))
+            .expire(buf("pepe"), buf("session"), 10)
+        );
+        Thread.sleep(20);
+
+        IRow row = table.getRow(buf("pepe"));
+        assertNotNull(row.getColumn(buf("name")));
+        assertNull(row.getColumn(buf("session")));
+    }
+
+    @Test
+    public void testCreateIndex() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("pepe")).putColumn(buf("city"), buf("Cracow"));
+        table.getOrCreateRow(buf("john")).putColumn(buf("city"), buf("Berlin"));
+        table.getOrCreateRow(buf("adam")).putColumn(buf("city"), buf("Cracow"));
+        table.getOrCreateRow(buf("eve"));
+        table.setClean();
+
+        table.createIndex(buf("city"));
+
+        List<IRow> rows = table.getIndexedRows(buf("city"), buf("Cracow"));
+        assertEquals(2, rows.size());
+        assertEquals(buf("adam"), rows.get(0).getKey());
+        assertEquals(buf("pepe"), rows.get(1).getKey());
+        assertEquals(1, table.getIndexedRows(buf("city"), buf("Berlin")).size());
+        assertTrue(table.getIndexedRows(buf("city"), buf("Paris")).isEmpty());
+        assertTrue(table.isDirty());
+
+        try {
+            table.createIndex(buf("city"));
+            fail("Column is already indexed");
+        } catch (PythiaException e) {
+            // expected
+        }
+        try {
+            table.getIndexedRows(buf("name"), buf("Piotr"));
+            fail("Column is not indexed");
+        } catch (PythiaException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIndexFollowsChanges() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.createIndex(buf("city"));
+
+        IRow row = table.getOrCreateRow(buf("pepe"));
+        row.putColumn(buf("city"), buf("Cracow"));
+        table.setDirty(buf("pepe"));
+        assertEquals(1, table.getIndexedRows(buf("city"), buf("Cracow")).size());
+
+        table.updateRow(buf("pepe"), buf("city"), buf("Berlin"));
+        assertTrue(table.getIndexedRows(buf("city"), buf("Cracow")).isEmpty());
+        assertEquals(1, table.getIndexedRows(buf("city"), buf("Berlin")).size());
+
+        table.apply(new Batch().put(buf("john"), buf("city"), buf("Berlin")));
+        assertEquals(2, table.getIndexedRows(buf("city"), buf("Berlin")).size());
+
+        table.getRow(buf("john")).deleteColumn(buf("city"));
+        table.setDirty(buf("john"));
+        table.deleteRow(buf("pepe"));
+        assertTrue(table.getIndexedRows(buf("city"), buf("Berlin")).isEmpty());
+    }
+
+    @Test
+    public void testIndexFollowsChangesOfRows() throws Exception {
+        for (boolean packed : new boolean[] {false, true}) {
+            ColumnFamily table = new ColumnFamily(
+                    new ColumnFamilyOptions().setPacked(packed));
+            table.createIndex(buf("city"));
+
+            IRow row = table.getOrCreateRow(buf("pepe"));
+            row.putColumn(buf("city"), buf("Cracow"));
+            assertEquals(
+                1, table.getIndexedRows(buf("city"), buf("Cracow")).size());
+
+            row.updateColumn(buf("city"), buf("Berlin"));
+            assertTrue(
+                table.getIndexedRows(buf("city"), buf("Cracow")).isEmpty());
+            assertEquals(
+                1, table.getIndexedRows(buf("city"), buf("Berlin")).size());
+
+            row.deleteColumn(buf("city"));
+            assertTrue(
+                table.getIndexedRows(buf("city"), buf("Berlin")).isEmpty());
+
+            Column column = new Column(buf("city"));
+            column.setValue(buf("Paris"));
+            table.getOrCreateRow(buf("john")).addColumn(column);
+            List<IRow> rows = table.getIndexedRows(buf("city"), buf("Paris"));
+            assertEquals(1, rows.size());
+            assertEquals(buf("john"), rows.get(0).getKey());
+
+            // removed row doesn't report changes
+            table.deleteRow(buf("pepe"));
+            row.putColumn(buf("city"), buf("Paris"));
+            assertEquals(
+                1, table.getIndexedRows(buf("city"), buf("Paris")).size());
+        }
+    }
+
+    @Test
+    public void testIndexOfExpiredColumn() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setPacked(true));
+        table.createIndex(buf("city"));
+        table.apply(new Batch()
+            .put(buf("pepe"), buf("city"), buf("Cracow"))
+            .expire(buf("pepe"), buf("city"), 10)
+            .put(buf("john"), buf("city"), buf("Cracow"))
+        );
+        Thread.sleep(20);
+
+        List<IRow> rows = table.getIndexedRows(buf("city"), buf("Cracow"));
+        assertEquals(1, rows.size());
+        assertEquals(buf("john"), rows.get(0).getKey());
+    }
+
+    @Test
+    public void testIndexRebuiltAfterSerialization() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        table.getOrCreateRow(buf("pepe")).putColumn(buf("city"), buf("Cracow"));
+        table.createIndex(buf("city"));
+
+        ColumnFamily copy = serialize(table);
+        assertEquals(1, copy.getIndexedRows(buf("city"), buf("Cracow")).size());
+
+        // changes are read into existing index
+        table.setClean();
+        table.updateRow(buf("pepe"), buf("city"), buf("Berlin"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            assertTrue(table.writeChanges(out));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy.readChanges(in);
+        }
+        assertTrue(copy.getIndexedRows(buf("city"), buf("Cracow")).isEmpty());
+        assertEquals(1, copy.getIndexedRows(buf("city"), buf("Berlin")).size());
+    }
+
+    @Test
+    public void testIndexOfTieredColumnFamily() throws Exception {
+        ColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setTiered(true).setHotRows(2));
+        for (int i = 0; i < 10; ++i) {
+            table.getOrCreateRow(buf("key" + i))
+                 .putColumn(buf("parity"), buf(i % 2 == 0 ? "even" : "odd"));
+        }
+
+        // rows on disk are indexed too
+        table.createIndex(buf("parity"));
+        List<IRow> rows = table.getIndexedRows(buf("parity"), buf("even"));
+        assertEquals(5, rows.size());
+        assertEquals(buf("key0"), rows.get(0).getKey());
+        assertEquals(buf("key8"), rows.get(4).getKey());
+    }
+
+    @Test
+    public void testApplyBatchIncrements() throws Exception {
+        for (boolean packed : new boolean[] {false, true}) {
+            ColumnFamily table = new ColumnFamily(
+                new ColumnFamilyOptions().setPacked(packed));
+            table.getOrCreateRow(buf("pepe")).putColumn(buf("name"), buf("P"));
+            table.setClean();
+
+            table.apply(new Batch()
+                .increment(buf("pepe"), buf("hits"), 2)
+                .increment(buf("pepe"), buf("hits"), 3)
+            );
+            table.apply(new Batch().increment(buf("pepe"), buf("hits"), -1));
+
+            assertTrue(table.isDirty());
+            assertEquals(
+                ByteBuffer.wrap(Counters.encode(4)),
+                table.getRow(buf("pepe")).getColumn(buf("hits")).getValue()
+            );
+            ColumnFamily expected = new ColumnFamily(
+                new ColumnFamilyOptions().setPacked(packed));
+            expected.getOrCreateRow(buf("pepe"))
+                .putColumn(buf("name"), buf("P"));
+            expected.getRow(buf("pepe"))
+                .putColumn(buf("hits"), ByteBuffer.wrap(Counters.encode(4)));
+            assertEquals(expected, table);
+            assertEquals(
+                expected.getMemory().getUsedBytes(),
+                table.getMemory().getUsedBytes()
+            );
+
+            // counter is persisted as folded value
+            ColumnFamily copy = serialize(table);
+            assertEquals(
+                ByteBuffer.wrap(Counters.encode(4)),
+                copy.getRow(buf("pepe")).getColumn(buf("hits")).getValue()
+            );
+
+            try {
+                table.apply(new Batch().increment(buf("john"), buf("hits"), 1));
+                fail("Incremented row doesn't exist");
+            } catch (PythiaException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedColumnFamily() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            text.append("column family of compressed values ");
+        }
+        ByteBuffer big = buf(text.toString());
+        ColumnFamily compressed = new ColumnFamily(new ColumnFamilyOptions()
+                .setCompressed(true).setCompressionThreshold(128));
+        ColumnFamily plain = new ColumnFamily();
+        for (ColumnFamily table : Arrays.asList(compressed, plain)) {
+            for (int i = 0; i < 10; ++i) {
+                // own arrays - stream would share one array
+                table.getOrCreateRow(buf("row" + i))
+                     .putColumn(buf("text"), buf(text.toString()));
+            }
+        }
+
+        assertEquals(big,
+            compressed.getRow(buf("row3")).getColumn(buf("text")).getValue());
+        assertTrue(compressed.getMemory().getUsedBytes()
+                < plain.getMemory().getUsedBytes() / 4);
+
+        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(compressedBytes)) {
+            out.writeObject(compressed);
+        }
+        ByteArrayOutputStream plainBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(plainBytes)) {
+            out.writeObject(plain);
+        }
+        assertTrue(compressedBytes.size() < plainBytes.size() / 4);
+
+        ColumnFamily copy = serialize(compressed);
+        assertEquals(big,
+            copy.getRow(buf("row3")).getColumn(buf("text")).getValue());
+        assertEquals(
+            compressed.getMemory().getUsedBytes(),
+            copy.getMemory().getUsedBytes()
+        );
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        ColumnFamily table = new ColumnFamily();
+        for (int i = 0; i < 10; ++i) {
+            table.getOrCreateRow(buf("row" + i))
+                 .putColumn(buf("name"), buf("v"));
+        }
+        table.expire(buf("row3"), null, 20);
+        Thread.sleep(30);
+
+        Set<ByteBuffer> keys = new HashSet<>();
+        for (IRow row : table) {
+            assertTrue(keys.add(row.getKey()));
+        }
+        assertEquals(9, keys.size());
+        assertFalse(keys.contains(buf("row3")));
+    }
+
+    @Test
+    public void testIteratorOfOrderedColumnFamily() {
+        ColumnFamily table =
+                new ColumnFamily(new ColumnFamilyOptions().setOrdered(true));
+        for (String key : new String[] {"c", "a", "d", "b"}) {
+            table.getOrCreateRow(buf(key));
+        }
+
+        List<ByteBuffer> keys = new ArrayList<>();
+        for (IRow row : table) {
+            keys.add(row.getKey());
+        }
+        assertEquals(
+            Arrays.asList(buf("a"), buf("b"), buf("c"), buf("d")), keys);
+    }
+
+    @Test
+    public void testIteratorOfTieredColumnFamily() {
+        ColumnFamily table = new ColumnFamily(
+            new ColumnFamilyOptions().setTiered(true).setHotRows(2));
+        for (int i = 0; i < 10; ++i) {
+            table.getOrCreateRow(buf("row" + i))
+                 .putColumn(buf("name"), buf("value" + i));
+        }
+
+        Set<ByteBuffer> keys = new HashSet<>();
+        for (IRow row : table) {
+            String key = new String(row.getKey().array());
+            assertEquals(
+                buf("value" + key.substring(3)),
+                row.getColumn(buf("name")).getValue()
+            );
+            assertTrue(keys.add(row.getKey()));
+        }
+        assertEquals(10, keys.size());
+        // rows on disk are not loaded back to memory
+        assertEquals(2, table.getRows().size());
+    }
+
+    private static ColumnFamily serialize(ColumnFamily table)
+            throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            return (ColumnFamily)in.readObject();
+        }
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
 }
@@ -23,9 +23,14 @@
  */
 package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
 import java.io.*;
 import java.nio.ByteBuffer;
-import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
 import org.junit.*;
 
 /**
@@ -87,6 +92,53 @@ public class ColumnTest {
         assertEquals(oldValue, newValue);
     }
 
+    @Test
+    public void testAdd() throws Exception {
+        MemoryBudget memory = new MemoryBudget();
+        Column column = new Column(ByteBuffer.wrap("hits".getBytes()));
+        column.setMemory(memory);
+        memory.allocate(column.getBytes());
+
+        column.add(3);
+        column.add(4);
+
+        assertEquals(ByteBuffer.wrap(Counters.encode(7)), column.getValue());
+        assertEquals(column.getBytes(), memory.getUsedBytes());
+
+        ByteBuffer old = column.setValue(ByteBuffer.wrap("x".getBytes()));
+        assertEquals(ByteBuffer.wrap(Counters.encode(7)), old);
+        assertEquals(ByteBuffer.wrap("x".getBytes()), column.getValue());
+        assertEquals(column.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testAddNotCounter() throws Exception {
+        Column column = new Column(ByteBuffer.wrap("name".getBytes()));
+        column.setValue(ByteBuffer.wrap("Piotr".getBytes()));
+        column.add(1);
+    }
+
+    @Test
+    public void testSerializeCounter() throws Exception {
+        Column column = new Column(ByteBuffer.wrap("hits".getBytes()));
+        column.add(41);
+        column.add(1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(column);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+
+        Column readed = (Column)in.readObject();
+        assertEquals(ByteBuffer.wrap(Counters.encode(42)), readed.getValue());
+        assertEquals(column, readed);
+        readed.add(1);
+        assertEquals(ByteBuffer.wrap(Counters.encode(43)), readed.getValue());
+    }
+
     @Test
     public void testSerialize() throws Exception {
         ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
@@ -111,4 +163,61 @@ public class ColumnTest {
         File f = new File(tmpFile);
         f.delete();
     }
+
+    @Test
+    public void testCompression() {
+        byte[] big = new byte[1000];
+        Arrays.fill(big, (byte)'p');
+        MemoryBudget memory = new MemoryBudget();
+        Column column = new Column(ByteBuffer.wrap("text".getBytes()));
+        column.setCompression(100);
+        column.setMemory(memory);
+        memory.allocate(column.getBytes());
+
+        column.setValue(ByteBuffer.wrap(big));
+        assertTrue(column.isCompressed());
+        assertEquals(ByteBuffer.wrap(big), column.getValue());
+        assertTrue(column.getBytes() < 200);
+        assertEquals(column.getBytes(), memory.getUsedBytes());
+
+        ByteBuffer old = column.setValue(ByteBuffer.wrap("small".getBytes()));
+        assertEquals(ByteBuffer.wrap(big), old);
+        assertFalse(column.isCompressed());
+        assertEquals(column.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test
+    public void testIncompressibleValue() {
+        byte[] random = new byte[1000];
+        new Random(3).nextBytes(random);
+        Column column = new Column(ByteBuffer.wrap("data".getBytes()));
+        column.setCompression(100);
+        column.setValue(ByteBuffer.wrap(random));
+        assertFalse(column.isCompressed());
+        assertEquals(ByteBuffer.wrap(random), column.getValue());
+    }
+
+    @Test
+    public void testSerializeCompressed() throws Exception {
+        byte[] big = new byte[1000];
+        Arrays.fill(big, (byte)'p');
+        Column column = new Column(ByteBuffer.wrap("text".getBytes()));
+        column.setCompression(100);
+        column.setValue(ByteBuffer.wrap(big));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(column);
+        }
+        // value is written in compressed form
+        assertTrue(bytes.size() < big.length);
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+
+        Column readed = (Column)in.readObject();
+        assertTrue(readed.isCompressed());
+        assertEquals(ByteBuffer.wrap(big), readed.getValue());
+        assertEquals(column, readed);
+    }
 }
@@ -23,6 +23,7 @@
  */
 package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import java.nio.ByteBuffer;
 import static org.junit.Assert.assertTrue;
@@ -65,6 +66,15 @@ public class HashMapDataModelTest {
         IDataModel model = new HashMapDataModel();
 
         assertTrue(model.createColumnFamily() instanceof ColumnFamily);
+        assertTrue(
+            model.createColumnFamily(new ColumnFamilyOptions().setPacked(true))
+                instanceof ColumnFamily
+        );
+        assertTrue(
+            model.createColumnFamily(
+                new ColumnFamilyOptions().setPartitioned(true))
+                instanceof PartitionedColumnFamily
+        );
     }
 
     /**
@@ -26,6 +26,7 @@ package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
+import java.nio.ByteBuffer;
 import static org.junit.Assert.*;
 import org.junit.*;
 
@@ -120,4 +121,22 @@ public class KeySpaceTest {
 
         assertEquals(ks.getName(), "Test");
     }
+
+    @Test
+    public void testMemoryOfColumnFamilies() throws PythiaException {
+        IKeySpace ks      = new KeySpace("Test");
+        IColumnFamily col = new ColumnFamily();
+        col.getOrCreateRow(ByteBuffer.wrap("row".getBytes()));
+
+        ks.addColumnFamily("Users", col);
+        assertEquals(
+            col.getMemory().getUsedBytes(), ks.getMemory().getUsedBytes());
+
+        col.getOrCreateRow(ByteBuffer.wrap("next".getBytes()));
+        assertEquals(
+            col.getMemory().getUsedBytes(), ks.getMemory().getUsedBytes());
+
+        ks.dropColumnFamily("Users");
+        assertEquals(0, ks.getMemory().getUsedBytes());
+    }
 }
@@ -0,0 +1,449 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class PackedRowTest {
+
+    public PackedRowTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testPutAndGetColumns() {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        String[] names = {"name", "email", "ts", "age"};
+        for (String n : names) {
+            assertNull(row.putColumn(
+                ByteBuffer.wrap(n.getBytes()),
+                ByteBuffer.wrap((n + "-value").getBytes())
+            ));
+        }
+
+        for (String n : names) {
+            IColumn column = row.getColumn(ByteBuffer.wrap(n.getBytes()));
+            assertEquals(ByteBuffer.wrap(n.getBytes()), column.getKey());
+            assertEquals(
+                ByteBuffer.wrap((n + "-value").getBytes()), column.getValue());
+        }
+        assertNull(row.getColumn(ByteBuffer.wrap("missing".getBytes())));
+
+        // columns are sorted by id of name - order of first use
+        Map<ByteBuffer, ByteBuffer> columns = row.getColumns();
+        assertEquals(
+            ByteBuffer.wrap("name".getBytes()),
+            columns.keySet().iterator().next()
+        );
+        assertTrue(row.isPacked());
+    }
+
+    @Test
+    public void testReplaceValue() throws PythiaException {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        ByteBuffer a = ByteBuffer.wrap("a".getBytes());
+        ByteBuffer b = ByteBuffer.wrap("b".getBytes());
+        row.putColumn(a, ByteBuffer.wrap("1".getBytes()));
+        row.putColumn(b, ByteBuffer.wrap("2".getBytes()));
+
+        assertEquals(
+            ByteBuffer.wrap("1".getBytes()),
+            row.putColumn(a, ByteBuffer.wrap("longer value".getBytes()))
+        );
+        row.updateColumn(b, ByteBuffer.wrap("".getBytes()));
+        row.getColumn(a).setValue(ByteBuffer.wrap("x".getBytes()));
+
+        assertEquals(
+            ByteBuffer.wrap("x".getBytes()), row.getColumn(a).getValue());
+        assertEquals(
+            ByteBuffer.wrap("".getBytes()), row.getColumn(b).getValue());
+    }
+
+    @Test
+    public void testDeleteColumn() throws PythiaException {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        ByteBuffer a = ByteBuffer.wrap("a".getBytes());
+        ByteBuffer b = ByteBuffer.wrap("b".getBytes());
+        row.putColumn(a, ByteBuffer.wrap("1".getBytes()));
+        row.putColumn(b, ByteBuffer.wrap("2".getBytes()));
+
+        row.deleteColumn(a);
+
+        assertNull(row.getColumn(a));
+        assertEquals(
+            ByteBuffer.wrap("2".getBytes()), row.getColumn(b).getValue());
+        assertEquals(1, row.getColumns().size());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testDeleteColumnIfNotExists() throws PythiaException {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.deleteColumn(ByteBuffer.wrap("a".getBytes()));
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testUpdateColumnIfNotExists() throws PythiaException {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.updateColumn(
+            ByteBuffer.wrap("a".getBytes()), ByteBuffer.wrap("1".getBytes()));
+    }
+
+    @Test
+    public void testSwitchToHashedLayout() {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        for (int i = 0; i <= PackedRow.WIDE_ROW_COLUMNS; ++i) {
+            row.putColumn(
+                ByteBuffer.wrap(("col" + i).getBytes()),
+                ByteBuffer.wrap(("value" + i).getBytes())
+            );
+        }
+
+        assertFalse(row.isPacked());
+        assertEquals(PackedRow.WIDE_ROW_COLUMNS + 1, row.getColumns().size());
+        for (int i = 0; i <= PackedRow.WIDE_ROW_COLUMNS; ++i) {
+            assertEquals(
+                ByteBuffer.wrap(("value" + i).getBytes()),
+                row.getColumn(ByteBuffer.wrap(("col" + i).getBytes()))
+                   .getValue()
+            );
+        }
+    }
+
+    @Test
+    public void testConcurrentPutColumn() throws Exception {
+        final PackedRow row =
+                new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; ++t) {
+            final int id = t;
+            writers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5; ++i) {
+                        row.putColumn(
+                            ByteBuffer.wrap(("c" + id + "-" + i).getBytes()),
+                            ByteBuffer.wrap("v".getBytes())
+                        );
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(20, row.getColumns().size());
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.putColumn(
+            ByteBuffer.wrap("name".getBytes()),
+            ByteBuffer.wrap("Piotr".getBytes())
+        );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(row);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+
+        PackedRow readed = (PackedRow)in.readObject();
+        assertEquals(row, readed);
+        assertEquals(row.toString(), readed.toString());
+    }
+
+    @Test
+    public void testFullDictionary() throws Exception {
+        ColumnDictionary dictionary = new ColumnDictionary(1);
+        PackedRow row =
+                new PackedRow(ByteBuffer.wrap("row".getBytes()), dictionary);
+        row.putColumn(
+            ByteBuffer.wrap("name".getBytes()),
+            ByteBuffer.wrap("Piotr".getBytes())
+        );
+        assertTrue(row.isPacked());
+
+        // name without id is kept by hashed layout
+        row.putColumn(
+            ByteBuffer.wrap("email".getBytes()),
+            ByteBuffer.wrap("pepe@example.com".getBytes())
+        );
+        assertFalse(row.isPacked());
+        assertEquals(1, dictionary.size());
+        assertEquals(
+            ByteBuffer.wrap("pepe@example.com".getBytes()),
+            row.getColumn(ByteBuffer.wrap("email".getBytes())).getValue()
+        );
+        assertEquals(
+            ByteBuffer.wrap("Piotr".getBytes()),
+            row.getColumn(ByteBuffer.wrap("name".getBytes())).getValue()
+        );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(row);
+        }
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+        assertEquals(
+            row.getColumns(), ((PackedRow)in.readObject()).getColumns());
+    }
+
+    @Test
+    public void testApply() throws PythiaException {
+        MemoryBudget memory = new MemoryBudget();
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.setMemory(memory);
+        memory.allocate(row.getBytes());
+        row.putColumn(buf("a"), buf("1"));
+        row.putColumn(buf("b"), buf("2"));
+        row.putColumn(buf("c"), buf("3"));
+
+        Map<ByteBuffer, ByteBuffer> puts = new LinkedHashMap<>();
+        puts.put(buf("d"), buf("4"));
+        puts.put(buf("b"), buf("22"));
+        puts.put(buf("e"), null);
+        row.apply(puts, Arrays.asList(buf("a"), buf("missing")));
+
+        assertTrue(row.isPacked());
+        Map<ByteBuffer, ByteBuffer> columns = row.getColumns();
+        assertEquals(4, columns.size());
+        assertNull(row.getColumn(buf("a")));
+        assertEquals(buf("22"), row.getColumn(buf("b")).getValue());
+        assertEquals(buf("3"), row.getColumn(buf("c")).getValue());
+        assertEquals(buf("4"), row.getColumn(buf("d")).getValue());
+        assertNotNull(row.getColumn(buf("e")));
+        assertNull(row.getColumn(buf("e")).getValue());
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test
+    public void testApplySwitchesWideRow() {
+        MemoryBudget memory = new MemoryBudget();
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.setMemory(memory);
+        memory.allocate(row.getBytes());
+        row.putColumn(buf("first"), buf("0"));
+
+        Map<ByteBuffer, ByteBuffer> puts = new LinkedHashMap<>();
+        for (int i = 0; i <= PackedRow.WIDE_ROW_COLUMNS; ++i) {
+            puts.put(buf("col" + i), buf("value" + i));
+        }
+        row.apply(puts, Arrays.asList(buf("first")));
+
+        assertFalse(row.isPacked());
+        assertEquals(PackedRow.WIDE_ROW_COLUMNS + 1, row.getColumns().size());
+        assertNull(row.getColumn(buf("first")));
+        assertEquals(buf("value7"), row.getColumn(buf("col7")).getValue());
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test
+    public void testIncrement() throws PythiaException {
+        MemoryBudget memory = new MemoryBudget();
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.setMemory(memory);
+        memory.allocate(row.getBytes());
+        row.putColumn(buf("name"), buf("Piotr"));
+
+        row.increment(buf("hits"), 5);
+        row.increment(buf("hits"), -2);
+
+        assertTrue(row.isPacked());
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(3)),
+            row.getColumn(buf("hits")).getValue()
+        );
+        assertEquals(buf("Piotr"), row.getColumn(buf("name")).getValue());
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testIncrementNotCounter() throws PythiaException {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.putColumn(buf("name"), buf("Piotr"));
+        row.increment(buf("name"), 1);
+    }
+
+    @Test
+    public void testIncrementSwitchesWideRow() throws PythiaException {
+        MemoryBudget memory = new MemoryBudget();
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.setMemory(memory);
+        memory.allocate(row.getBytes());
+        for (int i = 0; i < PackedRow.WIDE_ROW_COLUMNS; ++i) {
+            row.putColumn(buf("col" + i), buf("value" + i));
+        }
+
+        row.increment(buf("hits"), 7);
+
+        assertFalse(row.isPacked());
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(7)),
+            row.getColumn(buf("hits")).getValue()
+        );
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        final PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        final int threads = 4;
+        final int increments = 10000;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; ++i) {
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < increments; ++j) {
+                            row.increment(buf("hits"), 1);
+                        }
+                    } catch (PythiaException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(threads * increments)),
+            row.getColumn(buf("hits")).getValue()
+        );
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+    @Test
+    public void testIterator() {
+        PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.putColumn(buf("a"), buf("1"));
+        row.putColumn(buf("b"), buf("2"));
+
+        Map<ByteBuffer, ByteBuffer> columns = new LinkedHashMap<>();
+        for (IColumn column : row) {
+            columns.put(column.getKey(), column.getValue());
+        }
+        assertTrue(row.isPacked());
+        assertEquals(2, columns.size());
+        assertEquals(buf("2"), columns.get(buf("b")));
+
+        for (int i = 0; i <= PackedRow.WIDE_ROW_COLUMNS; ++i) {
+            row.putColumn(buf("col" + i), buf("value" + i));
+        }
+        int count = 0;
+        for (IColumn column : row) {
+            ++count;
+        }
+        assertFalse(row.isPacked());
+        assertEquals(PackedRow.WIDE_ROW_COLUMNS + 3, count);
+    }
+
+    @Test
+    public void testReadersSeeWholeBatches() throws Exception {
+        final PackedRow row = new PackedRow(ByteBuffer.wrap("row".getBytes()));
+        row.apply(batch(0), Arrays.<ByteBuffer>asList());
+        final int batches = 20000;
+        final Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= batches; ++i) {
+                    row.apply(batch(i), Arrays.<ByteBuffer>asList());
+                }
+            }
+        };
+        writer.start();
+        while (writer.isAlive()) {
+            final Map<ByteBuffer, ByteBuffer> read = new LinkedHashMap<>();
+            for (IColumn column : row) {
+                read.put(column.getKey(), column.getValue());
+            }
+            assertEquals(read.get(buf("a")), read.get(buf("b")));
+
+            IRow selected = row.select(buf("a"), buf("b"));
+            assertEquals(
+                selected.getColumn(buf("a")).getValue(),
+                selected.getColumn(buf("b")).getValue()
+            );
+            selected = row.slice(buf("a"), buf("b"));
+            assertEquals(
+                selected.getColumn(buf("a")).getValue(),
+                selected.getColumn(buf("b")).getValue()
+            );
+        }
+        writer.join();
+        assertEquals(buf(Integer.toString(batches)),
+                     row.getColumn(buf("b")).getValue());
+    }
+
+    private static Map<ByteBuffer, ByteBuffer> batch(final int i) {
+        final Map<ByteBuffer, ByteBuffer> puts = new LinkedHashMap<>();
+        puts.put(buf("a"), buf(Integer.toString(i)));
+        puts.put(buf("b"), buf(Integer.toString(i)));
+        return puts;
+    }
+}
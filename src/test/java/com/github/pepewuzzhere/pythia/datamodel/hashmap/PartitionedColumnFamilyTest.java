@@ -0,0 +1,367 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class PartitionedColumnFamilyTest {
+
+    public PartitionedColumnFamilyTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testRowsSpreadAcrossPartitions() throws PythiaException {
+        PartitionedColumnFamily table = partitioned(4);
+        Set<ColumnFamily> used = Collections.newSetFromMap(
+                new IdentityHashMap<ColumnFamily, Boolean>());
+        for (int i = 0; i < 100; ++i) {
+            table.getOrCreateRow(buf("key" + i))
+                .putColumn(buf("name"), buf("value" + i));
+            used.add(table.partition(buf("key" + i)));
+        }
+
+        assertEquals(4, table.getPartitionCount());
+        assertEquals(4, used.size());
+        assertEquals(100, table.getRows().size());
+        for (int i = 0; i < 100; ++i) {
+            IRow row = table.getRow(buf("key" + i));
+            assertEquals(buf("value" + i), row.getColumn(buf("name")).getValue());
+            assertNotNull(table.partition(buf("key" + i)).getRow(buf("key" + i)));
+        }
+    }
+
+    @Test
+    public void testAddUpdateAndDeleteRow() throws PythiaException {
+        PartitionedColumnFamily table = partitioned(4);
+        Row row = new Row(buf("pepe"));
+        row.putColumn(buf("name"), buf("Piotr"));
+        table.addRow(row);
+        table.updateRow(buf("pepe"), buf("name"), buf("Pepe"));
+
+        assertEquals(
+            buf("Pepe"), table.getRow(buf("pepe")).getColumn(buf("name"))
+                .getValue()
+        );
+        try {
+            table.addRow(new Row(buf("pepe")));
+            fail("Row already exists");
+        } catch (PythiaException e) {
+            // expected
+        }
+        table.deleteRow(buf("pepe"));
+        assertNull(table.getRow(buf("pepe")));
+    }
+
+    @Test
+    public void testGetRows() {
+        for (boolean ordered : new boolean[] {false, true}) {
+            PartitionedColumnFamily table = new PartitionedColumnFamily(
+                new ColumnFamilyOptions().setPartitioned(true).setPartitions(3)
+                    .setOrdered(ordered)
+            );
+            for (int i = 9; i >= 0; --i) {
+                table.getOrCreateRow(buf("key" + i));
+            }
+
+            List<IRow> rows = table.getRows(buf("key2"), false, buf("key8"), 3);
+            assertEquals(3, rows.size());
+            assertEquals(buf("key3"), rows.get(0).getKey());
+            assertEquals(buf("key4"), rows.get(1).getKey());
+            assertEquals(buf("key5"), rows.get(2).getKey());
+            assertEquals(10, table.getRows(null, true, null, 100).size());
+        }
+    }
+
+    @Test
+    public void testMemoryAccounting() throws PythiaException {
+        PartitionedColumnFamily table = partitioned(4);
+        Set<ColumnFamily> shards = Collections.newSetFromMap(
+                new IdentityHashMap<ColumnFamily, Boolean>());
+        for (int i = 0; i < 20; ++i) {
+            table.getOrCreateRow(buf("key" + i))
+                .putColumn(buf("name"), buf("value" + i));
+            shards.add(table.partition(buf("key" + i)));
+        }
+        long partitions = 0;
+        for (ColumnFamily partition : shards) {
+            partitions += partition.getMemory().getUsedBytes();
+        }
+
+        long used = table.getMemory().getUsedBytes();
+        assertTrue(used > 0);
+        assertTrue(used >= partitions);
+        for (int i = 0; i < 20; ++i) {
+            table.deleteRow(buf("key" + i));
+        }
+        assertEquals(0, table.getMemory().getUsedBytes());
+    }
+
+    @Test
+    public void testDirtyPartitions() throws Exception {
+        PartitionedColumnFamily table = partitioned(4);
+        assertTrue(table.isDirty());
+        table.setClean();
+        assertFalse(table.isDirty());
+
+        table.getOrCreateRow(buf("pepe"));
+        assertTrue(table.isDirty());
+        assertTrue(table.partition(buf("pepe")).isDirty());
+        int dirty = 0;
+        for (int i = 0; i < 100; ++i) {
+            if (table.partition(buf("key" + i)).isDirty()) {
+                ++dirty;
+            }
+        }
+        assertTrue(dirty < 100);
+
+        table.setDirty();
+        assertFalse(table.writeChanges(
+            new ObjectOutputStream(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    public void testWriteAndReadChanges() throws Exception {
+        PartitionedColumnFamily table = partitioned(4);
+        for (int i = 0; i < 20; ++i) {
+            table.getOrCreateRow(buf("key" + i))
+                .putColumn(buf("name"), buf("value" + i));
+        }
+        PartitionedColumnFamily copy = serialize(table);
+        assertEquals(table, copy);
+        assertEquals(4, copy.getPartitionCount());
+        assertFalse(copy.isDirty());
+        table.setClean();
+
+        table.deleteRow(buf("key0"));
+        table.getRow(buf("key1")).putColumn(buf("name"), buf("changed"));
+        table.setDirty(buf("key1"));
+        table.getOrCreateRow(buf("key20"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            assertTrue(table.writeChanges(out));
+        }
+        assertFalse(table.isDirty());
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy.readChanges(in);
+        }
+
+        assertEquals(table, copy);
+        assertNull(copy.getRow(buf("key0")));
+        assertNotNull(copy.getRow(buf("key20")));
+    }
+
+    @Test
+    public void testTieredPartitions() throws Exception {
+        PartitionedColumnFamily table = new PartitionedColumnFamily(
+            new ColumnFamilyOptions().setPartitioned(true).setPartitions(2)
+                .setTiered(true).setHotRows(10)
+        );
+        for (int i = 0; i < 50; ++i) {
+            table.getOrCreateRow(buf("key" + i))
+                .putColumn(buf("name"), buf("value" + i));
+        }
+
+        assertTrue(table.getRows().size() <= 10);
+        assertEquals(50, table.getRows(null, true, null, 100).size());
+        assertEquals(
+            buf("value7"), table.getRow(buf("key7")).getColumn(buf("name"))
+                .getValue()
+        );
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final IColumnFamily table = partitioned(4);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = 0; i < 1000; ++i) {
+                        table.getOrCreateRow(buf("key" + (i % 500)))
+                            .putColumn(buf("col" + id), buf("v"));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        List<IRow> rows = table.getRows(null, true, null, 1000);
+        assertEquals(500, rows.size());
+        for (IRow row : rows) {
+            for (int t = 0; t < threads.length; ++t) {
+                assertNotNull(row.getColumn(buf("col" + t)));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullKey() {
+        partitioned(2).getRow(null);
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        PartitionedColumnFamily table = partitioned(4);
+        Batch batch = new Batch();
+        for (int i = 0; i < 20; ++i) {
+            batch.put(buf("key" + i), buf("name"), buf("value" + i));
+        }
+        table.apply(batch);
+        table.apply(new Batch()
+            .delete(buf("key0"))
+            .update(buf("key1"), buf("name"), buf("changed"))
+        );
+
+        assertEquals(19, table.getRows(null, true, null, 100).size());
+        assertNull(table.getRow(buf("key0")));
+        assertEquals(
+            buf("changed"), table.getRow(buf("key1")).getColumn(buf("name"))
+                .getValue()
+        );
+        assertEquals(
+            buf("value7"), table.partition(buf("key7")).getRow(buf("key7"))
+                .getColumn(buf("name")).getValue()
+        );
+    }
+
+    @Test
+    public void testIndexedRows() throws Exception {
+        PartitionedColumnFamily table = partitioned(4);
+        Batch batch = new Batch();
+        for (int i = 0; i < 20; ++i) {
+            batch.put(
+                buf("key" + i), buf("parity"), buf(i % 2 == 0 ? "even" : "odd"));
+        }
+        table.apply(batch);
+
+        table.createIndex(buf("parity"));
+        table.apply(new Batch().put(buf("key20"), buf("parity"), buf("even")));
+
+        List<IRow> rows = table.getIndexedRows(buf("parity"), buf("even"));
+        assertEquals(11, rows.size());
+        assertEquals(buf("key0"), rows.get(0).getKey());
+        assertEquals(buf("key20"), rows.get(7).getKey());
+
+        PartitionedColumnFamily copy = serialize(table);
+        assertEquals(
+            10, copy.getIndexedRows(buf("parity"), buf("odd")).size());
+        try {
+            copy.createIndex(buf("parity"));
+            fail("Column is already indexed");
+        } catch (PythiaException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIterator() {
+        PartitionedColumnFamily table = partitioned(4);
+        for (int i = 0; i < 100; ++i) {
+            table.getOrCreateRow(buf("row" + i));
+        }
+
+        Set<ByteBuffer> keys = new HashSet<>();
+        for (IRow row : table) {
+            assertTrue(keys.add(row.getKey()));
+        }
+        assertEquals(100, keys.size());
+        assertFalse(partitioned(2).iterator().hasNext());
+    }
+
+    private static PartitionedColumnFamily partitioned(int partitions) {
+        return new PartitionedColumnFamily(
+            new ColumnFamilyOptions().setPartitioned(true)
+                .setPartitions(partitions)
+        );
+    }
+
+    private static PartitionedColumnFamily serialize(
+            PartitionedColumnFamily table)
+        throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            return (PartitionedColumnFamily)in.readObject();
+        }
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
@@ -24,11 +24,16 @@
 package com.github.pepewuzzhere.pythia.datamodel.hashmap;
 
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
 import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
 import java.io.*;
 import java.nio.ByteBuffer;
 import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.junit.*;
 
 /**
@@ -196,4 +201,222 @@ public class RowTest {
         File f = new File(tmpFile);
         f.delete();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPutColumn() {
+        Row row = new Row(ByteBuffer.wrap("Test row".getBytes()));
+        ByteBuffer key = ByteBuffer.wrap("Test key".getBytes());
+
+        assertNull(row.putColumn(key, ByteBuffer.wrap("value1".getBytes())));
+        assertEquals(
+            ByteBuffer.wrap("value1".getBytes()),
+            row.putColumn(key, ByteBuffer.wrap("value2".getBytes()))
+        );
+        assertEquals(
+            ByteBuffer.wrap("value2".getBytes()),
+            row.getColumn(key).getValue()
+        );
+        assertEquals(1, row.getColumns().size());
+    }
+
+    @Test
+    public void testApply() {
+        MemoryBudget memory = new MemoryBudget();
+        Row row = new Row(ByteBuffer.wrap("Test row".getBytes()));
+        row.setMemory(memory);
+        memory.allocate(row.getBytes());
+        row.putColumn(buf("a"), buf("1"));
+        row.putColumn(buf("b"), buf("2"));
+
+        Map<ByteBuffer, ByteBuffer> puts = new LinkedHashMap<>();
+        puts.put(buf("b"), buf("22"));
+        puts.put(buf("c"), buf("3"));
+        row.apply(puts, Arrays.asList(buf("a"), buf("missing")));
+
+        assertEquals(2, row.getColumns().size());
+        assertNull(row.getColumn(buf("a")));
+        assertEquals(buf("22"), row.getColumn(buf("b")).getValue());
+        assertEquals(buf("3"), row.getColumn(buf("c")).getValue());
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+
+        // columns written by batch count their later changes
+        row.putColumn(buf("c"), buf("333"));
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test
+    public void testIncrement() throws PythiaException {
+        MemoryBudget memory = new MemoryBudget();
+        Row row = new Row(ByteBuffer.wrap("row".getBytes()));
+        row.setMemory(memory);
+        memory.allocate(row.getBytes());
+
+        row.increment(buf("hits"), 5);
+        row.increment(buf("hits"), -2);
+
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(3)),
+            row.getColumn(buf("hits")).getValue()
+        );
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+
+        // value set later replaces counter
+        row.putColumn(buf("hits"), ByteBuffer.wrap(Counters.encode(10)));
+        row.increment(buf("hits"), 1);
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(11)),
+            row.getColumn(buf("hits")).getValue()
+        );
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testIncrementNotCounter() throws PythiaException {
+        Row row = new Row(ByteBuffer.wrap("row".getBytes()));
+        row.putColumn(buf("name"), buf("Piotr"));
+        row.increment(buf("name"), 1);
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        final Row row = new Row(ByteBuffer.wrap("row".getBytes()));
+        final int threads = 8;
+        final int increments = 20000;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; ++i) {
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < increments; ++j) {
+                            row.increment(buf("hits"), 1);
+                        }
+                    } catch (PythiaException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(threads * increments)),
+            row.getColumn(buf("hits")).getValue()
+        );
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+    @Test
+    public void testCompressedColumns() throws Exception {
+        char[] text = new char[2000];
+        Arrays.fill(text, 'x');
+        ByteBuffer big = buf(new String(text));
+        MemoryBudget memory = new MemoryBudget();
+        Row row = new Row(ByteBuffer.wrap("row".getBytes()), null, 100);
+        row.setMemory(memory);
+        memory.allocate(row.getBytes());
+
+        row.putColumn(buf("a"), big);
+        Map<ByteBuffer, ByteBuffer> puts = new LinkedHashMap<>();
+        puts.put(buf("b"), big);
+        row.apply(puts, Arrays.<ByteBuffer>asList());
+        row.addColumn(new Column(buf("c")));
+        row.updateColumn(buf("c"), big);
+        row.putColumn(buf("d"), buf("small"));
+
+        for (String name : new String[] {"a", "b", "c"}) {
+            assertTrue(((Column)row.getColumn(buf(name))).isCompressed());
+            assertEquals(big, row.getColumn(buf(name)).getValue());
+        }
+        assertFalse(((Column)row.getColumn(buf("d"))).isCompressed());
+        assertEquals(row.getBytes(), memory.getUsedBytes());
+        assertTrue(row.getBytes() < 2000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(row);
+        }
+        assertTrue(bytes.size() < 2000);
+        Row readed = (Row)new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        ).readObject();
+        assertEquals(row, readed);
+
+        // compression of row is kept with it
+        readed.putColumn(buf("e"), big);
+        assertTrue(((Column)readed.getColumn(buf("e"))).isCompressed());
+    }
+
+    @Test
+    public void testIterator() {
+        Row row = new Row(ByteBuffer.wrap("row".getBytes()));
+        row.putColumn(
+            ByteBuffer.wrap("a".getBytes()), ByteBuffer.wrap("1".getBytes()));
+        row.putColumn(
+            ByteBuffer.wrap("b".getBytes()), ByteBuffer.wrap("2".getBytes()));
+
+        Map<ByteBuffer, ByteBuffer> columns = new LinkedHashMap<>();
+        for (IColumn column : row) {
+            columns.put(column.getKey(), column.getValue());
+        }
+        assertEquals(2, columns.size());
+        assertEquals(
+            ByteBuffer.wrap("1".getBytes()),
+            columns.get(ByteBuffer.wrap("a".getBytes()))
+        );
+        assertEquals(
+            ByteBuffer.wrap("2".getBytes()),
+            columns.get(ByteBuffer.wrap("b".getBytes()))
+        );
+    }
+
+    @Test
+    public void testReadersSeeWholeBatches() throws Exception {
+        final Row row = new Row(ByteBuffer.wrap("row".getBytes()));
+        row.apply(batch(0), Arrays.<ByteBuffer>asList());
+        final int batches = 20000;
+        final Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= batches; ++i) {
+                    row.apply(batch(i), Arrays.<ByteBuffer>asList());
+                }
+            }
+        };
+        writer.start();
+        while (writer.isAlive()) {
+            final Map<ByteBuffer, ByteBuffer> read = new LinkedHashMap<>();
+            for (IColumn column : row) {
+                read.put(column.getKey(), column.getValue());
+            }
+            assertEquals(read.get(buf("a")), read.get(buf("b")));
+
+            IRow selected = row.select(buf("a"), buf("b"));
+            assertEquals(
+                selected.getColumn(buf("a")).getValue(),
+                selected.getColumn(buf("b")).getValue()
+            );
+            selected = row.slice(buf("a"), buf("b"));
+            assertEquals(
+                selected.getColumn(buf("a")).getValue(),
+                selected.getColumn(buf("b")).getValue()
+            );
+        }
+        writer.join();
+        assertEquals(buf(Integer.toString(batches)),
+                     row.getColumn(buf("b")).getValue());
+    }
+
+    private static Map<ByteBuffer, ByteBuffer> batch(final int i) {
+        final Map<ByteBuffer, ByteBuffer> puts = new LinkedHashMap<>();
+        puts.put(buf("a"), buf(Integer.toString(i)));
+        puts.put(buf("b"), buf(Integer.toString(i)));
+        return puts;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.hashmap;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class SegmentedLruTest {
+
+    public SegmentedLruTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testVictimOrder() {
+        SegmentedLru<String> lru = new SegmentedLru<>(10);
+        lru.add("a");
+        lru.add("b");
+        lru.add("c");
+
+        assertEquals("a", lru.victim());
+        assertEquals("b", lru.victim());
+        assertEquals(1, lru.size());
+    }
+
+    @Test
+    public void testScanResistance() {
+        SegmentedLru<String> lru = new SegmentedLru<>(10);
+        lru.add("hot");
+        lru.touch("hot");
+        for (int i = 0; i < 100; ++i) {
+            lru.add("scan" + i);
+        }
+
+        // rows read once are evicted before row used twice
+        for (int i = 0; i < 100; ++i) {
+            assertEquals("scan" + i, lru.victim());
+        }
+        assertEquals("hot", lru.victim());
+        assertNull(lru.victim());
+    }
+
+    @Test
+    public void testProtectedOverflow() {
+        SegmentedLru<String> lru = new SegmentedLru<>(2);
+        lru.add("a");
+        lru.add("b");
+        lru.touch("a");
+        lru.touch("b");
+
+        // protected segment keeps one key - "a" is demoted
+        assertEquals("a", lru.victim());
+        assertEquals("b", lru.victim());
+    }
+
+    @Test
+    public void testRemove() {
+        SegmentedLru<String> lru = new SegmentedLru<>(10);
+        lru.add("a");
+        lru.add("b");
+        lru.touch("b");
+
+        lru.remove("a");
+        lru.remove("b");
+
+        assertEquals(0, lru.size());
+        assertNull(lru.victim());
+    }
+}
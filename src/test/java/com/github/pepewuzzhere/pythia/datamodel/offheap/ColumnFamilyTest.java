@@ -0,0 +1,529 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Batch;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import static org.junit.Assert.*;
+import java.util.Set;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ColumnFamilyTest {
+
+    public ColumnFamilyTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testAddNewRow() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+        IRow row            = model.createRow(key);
+
+        table.addRow(row);
+
+        assertEquals(table.getRow(key), row);
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testAddRowIfAlreadyExists() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+
+        table.addRow(model.createRow(key));
+        table.addRow(model.createRow(key));
+    }
+
+    @Test
+    public void testAddRowWithColumnsAddedBefore() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+        ByteBuffer key2     = ByteBuffer.wrap("Test key2".getBytes());
+        ByteBuffer value    = ByteBuffer.wrap("Test value".getBytes());
+        IRow row            = model.createRow(key);
+        IColumn column      = model.createColumn(key2);
+
+        column.setValue(value);
+        row.addColumn(column);
+        table.addRow(row);
+
+        assertEquals(value, table.getRow(key).getColumn(key2).getValue());
+
+        // column is bound to stored row now
+        ByteBuffer newValue = ByteBuffer.wrap("New value".getBytes());
+        column.setValue(newValue);
+        assertEquals(newValue, table.getRow(key).getColumn(key2).getValue());
+    }
+
+    @Test
+    public void testUpdateRow() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+        ByteBuffer key2     = ByteBuffer.wrap("Test key2".getBytes());
+        ByteBuffer value    = ByteBuffer.wrap("Test value".getBytes());
+        ByteBuffer newValue = ByteBuffer.wrap("Test value2".getBytes());
+        ByteBuffer sameSize = ByteBuffer.wrap("Test value3".getBytes());
+        IRow row            = model.createRow(key);
+        IColumn column      = model.createColumn(key2);
+
+        column.setValue(value);
+        row.addColumn(column);
+        table.addRow(row);
+
+        table.updateRow(key, key2, newValue);
+        assertEquals(table.getRow(key).getColumn(key2).getValue(), newValue);
+
+        table.updateRow(key, key2, sameSize);
+        assertEquals(table.getRow(key).getColumn(key2).getValue(), sameSize);
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testUpdateRowIfRowNotExists() throws PythiaException {
+        IColumnFamily table = new OffHeapDataModel(4096).createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+
+        table.updateRow(key, key, key);
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testUpdateRowIfColumnNotExists() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+
+        table.addRow(model.createRow(key));
+        table.updateRow(key, key, key);
+    }
+
+    @Test
+    public void testDeleteRow() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+
+        table.addRow(model.createRow(key));
+        table.deleteRow(key);
+
+        assertEquals(table.getRow(key), null);
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testDeleteRowIfNotExists() throws PythiaException {
+        IColumnFamily table = new OffHeapDataModel(4096).createColumnFamily();
+
+        table.deleteRow(ByteBuffer.wrap("Test key".getBytes()));
+    }
+
+    @Test
+    public void testManyRows() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer name     = ByteBuffer.wrap("name".getBytes());
+
+        for (int i = 0; i < 3000; ++i) {
+            IRow row = model.createRow(ByteBuffer.wrap(("row" + i).getBytes()));
+            table.addRow(row);
+            IColumn column = model.createColumn(name);
+            column.setValue(ByteBuffer.wrap(("value" + i).getBytes()));
+            row.addColumn(column);
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            table.deleteRow(ByteBuffer.wrap(("row" + i).getBytes()));
+        }
+        for (int i = 0; i < 3000; ++i) {
+            IRow row = table.getRow(ByteBuffer.wrap(("row" + i).getBytes()));
+            if (i % 3 == 0) {
+                assertNull(row);
+            } else {
+                assertEquals(
+                    ByteBuffer.wrap(("value" + i).getBytes()),
+                    row.getColumn(name).getValue()
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        IDataModel model    = new OffHeapDataModel(4096);
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+        IColumn column      = model.createColumn(key);
+        ByteBuffer newValue = ByteBuffer.wrap("Test value2".getBytes());
+        column.setValue(newValue);
+
+        IRow row = model.createRow(ByteBuffer.wrap("Test row key".getBytes()));
+        row.addColumn(column);
+
+        IColumnFamily col = model.createColumnFamily();
+        col.addRow(row);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(col);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())
+        );
+
+        ColumnFamily readed = (ColumnFamily)in.readObject();
+        assertEquals(col, readed);
+        assertFalse(readed.isDirty());
+    }
+
+    @Test
+    public void testGetRows() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        for (int i = 9; i >= 0; --i) {
+            IRow row = model.createRow(ByteBuffer.wrap(("key" + i).getBytes()));
+            IColumn column = model.createColumn(
+                    ByteBuffer.wrap("name".getBytes()));
+            column.setValue(ByteBuffer.wrap(("value" + i).getBytes()));
+            row.addColumn(column);
+            table.addRow(row);
+        }
+
+        List<IRow> rows = table.getRows(
+            ByteBuffer.wrap("key3".getBytes()), true,
+            ByteBuffer.wrap("key8".getBytes()), 3
+        );
+        assertEquals(3, rows.size());
+        assertEquals(ByteBuffer.wrap("key3".getBytes()), rows.get(0).getKey());
+        assertEquals(ByteBuffer.wrap("key5".getBytes()), rows.get(2).getKey());
+        assertEquals(
+            ByteBuffer.wrap("value4".getBytes()),
+            rows.get(1).getColumn(
+                ByteBuffer.wrap("name".getBytes())).getValue()
+        );
+
+        rows = table.getRows(
+                ByteBuffer.wrap("key7".getBytes()), false, null, 10);
+        assertEquals(2, rows.size());
+        assertEquals(ByteBuffer.wrap("key8".getBytes()), rows.get(0).getKey());
+    }
+
+    @Test
+    public void testGetOrCreateRow() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+        ByteBuffer name     = ByteBuffer.wrap("name".getBytes());
+
+        table.getOrCreateRow(key).putColumn(
+                name, ByteBuffer.wrap("Piotr".getBytes()));
+        IRow row = table.getOrCreateRow(key);
+
+        assertEquals(
+            ByteBuffer.wrap("Piotr".getBytes()),
+            row.getColumn(name).getValue()
+        );
+        assertEquals(
+            ByteBuffer.wrap("Piotr".getBytes()),
+            row.putColumn(name, ByteBuffer.wrap("Pepe".getBytes()))
+        );
+        assertEquals(
+            ByteBuffer.wrap("Pepe".getBytes()),
+            table.getRow(key).getColumn(name).getValue()
+        );
+    }
+
+    @Test
+    public void testMemoryAccounting() throws PythiaException {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("Test key".getBytes());
+        long empty = table.getMemory().getUsedBytes();
+
+        table.getOrCreateRow(key).putColumn(
+            ByteBuffer.wrap("name".getBytes()),
+            ByteBuffer.wrap("Piotr".getBytes())
+        );
+        assertTrue(table.getMemory().getUsedBytes() > empty);
+
+        table.deleteRow(key);
+        assertEquals(empty, table.getMemory().getUsedBytes());
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer key      = ByteBuffer.wrap("session".getBytes());
+        ByteBuffer user     = ByteBuffer.wrap("user".getBytes());
+        ByteBuffer token    = ByteBuffer.wrap("token".getBytes());
+
+        IRow row = table.getOrCreateRow(key);
+        row.putColumn(user, ByteBuffer.wrap("pepe".getBytes()));
+        row.putColumn(token, ByteBuffer.wrap("secret".getBytes()));
+        table.expire(key, token, 20);
+        table.expire(key, null, 60);
+        Thread.sleep(30);
+
+        row = table.getRow(key);
+        assertNull(row.getColumn(token));
+        assertNotNull(row.getColumn(user));
+
+        Thread.sleep(40);
+        assertNull(table.getRow(key));
+        assertTrue(table.getRows(null, true, null, 10).isEmpty());
+    }
+
+    @Test
+    public void testWriteAndReadChanges() throws Exception {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        ByteBuffer name     = ByteBuffer.wrap("name".getBytes());
+        ByteBuffer kept     = ByteBuffer.wrap("kept".getBytes());
+        ByteBuffer deleted  = ByteBuffer.wrap("deleted".getBytes());
+        ByteBuffer changed  = ByteBuffer.wrap("changed".getBytes());
+        table.getOrCreateRow(kept).putColumn(name, kept);
+        table.getOrCreateRow(deleted).putColumn(name, deleted);
+        table.getOrCreateRow(changed).putColumn(name, changed);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            assertFalse(table.writeChanges(out));
+            out.writeObject(table);
+        }
+        table.setClean();
+        ColumnFamily copy;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy = (ColumnFamily)in.readObject();
+        }
+
+        // views write through column family - changes are tracked
+        table.deleteRow(deleted);
+        table.getRow(changed).putColumn(name, kept);
+        assertTrue(table.isDirty());
+
+        bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            assertTrue(table.writeChanges(out));
+        }
+        assertFalse(table.isDirty());
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy.readChanges(in);
+        }
+
+        assertEquals(table, copy);
+        assertFalse(copy.isDirty());
+        assertNull(copy.getRow(deleted));
+        assertEquals(kept, copy.getRow(changed).getColumn(name).getValue());
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        table.getOrCreateRow(buf("old")).putColumn(buf("name"), buf("Old"));
+        table.getOrCreateRow(buf("john")).putColumn(buf("name"), buf("J"));
+        table.getRow(buf("john")).putColumn(buf("city"), buf("Berlin"));
+        table.setClean();
+
+        table.apply(new Batch()
+            .put(buf("pepe"), buf("name"), buf("Piotr"))
+            .put(buf("pepe"), buf("city"), buf("Cracow"))
+            .update(buf("john"), buf("name"), buf("John"))
+            .delete(buf("john"), buf("city"))
+            .delete(buf("old"))
+            .delete(buf("missing"))
+        );
+
+        assertEquals(
+            buf("Piotr"), table.getRow(buf("pepe")).getColumn(buf("name"))
+                .getValue()
+        );
+        assertEquals(
+            buf("Cracow"), table.getRow(buf("pepe")).getColumn(buf("city"))
+                .getValue()
+        );
+        assertEquals(
+            buf("John"), table.getRow(buf("john")).getColumn(buf("name"))
+                .getValue()
+        );
+        assertNull(table.getRow(buf("john")).getColumn(buf("city")));
+        assertNull(table.getRow(buf("old")));
+        assertNull(table.getRow(buf("missing")));
+        assertTrue(table.isDirty());
+        assertEquals(2, table.getRows(null, true, null, 10).size());
+    }
+
+    @Test
+    public void testApplyBatchToMissingRow() throws Exception {
+        IColumnFamily table = new OffHeapDataModel(4096).createColumnFamily();
+        table.setClean();
+        try {
+            table.apply(new Batch().update(buf("pepe"), buf("name"), buf("P")));
+            fail("Updated row doesn't exist");
+        } catch (PythiaException e) {
+            // expected
+        }
+
+        assertNull(table.getRow(buf("pepe")));
+        assertFalse(table.isDirty());
+    }
+
+    @Test
+    public void testApplyBatchIncrements() throws Exception {
+        IColumnFamily table = new OffHeapDataModel(4096).createColumnFamily();
+        table.getOrCreateRow(buf("pepe")).putColumn(buf("name"), buf("Piotr"));
+
+        table.apply(new Batch()
+            .increment(buf("pepe"), buf("hits"), 2)
+            .increment(buf("pepe"), buf("hits"), 3)
+        );
+        table.apply(new Batch().increment(buf("pepe"), buf("hits"), -1));
+
+        IRow row = table.getRow(buf("pepe"));
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(4)),
+            row.getColumn(buf("hits")).getValue()
+        );
+        assertEquals(buf("Piotr"), row.getColumn(buf("name")).getValue());
+
+        try {
+            table.apply(new Batch().increment(buf("pepe"), buf("name"), 1));
+            fail("Column is not counter");
+        } catch (PythiaException e) {
+            // expected
+        }
+        assertEquals(buf("Piotr"), row.getColumn(buf("name")).getValue());
+    }
+
+    @Test
+    public void testIndexFollowsChanges() throws Exception {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        table.getOrCreateRow(buf("pepe")).putColumn(buf("city"), buf("Cracow"));
+        table.createIndex(buf("city"));
+        assertEquals(1, table.getIndexedRows(buf("city"), buf("Cracow")).size());
+
+        // views write through column family - no need to set row as dirty
+        table.getOrCreateRow(buf("john")).putColumn(buf("city"), buf("Cracow"));
+        table.getRow(buf("pepe")).getColumn(buf("city"))
+             .setValue(buf("Berlin"));
+        List<IRow> rows = table.getIndexedRows(buf("city"), buf("Cracow"));
+        assertEquals(1, rows.size());
+        assertEquals(buf("john"), rows.get(0).getKey());
+
+        table.apply(new Batch().delete(buf("john"), buf("city")));
+        table.deleteRow(buf("pepe"));
+        assertTrue(table.getIndexedRows(buf("city"), buf("Cracow")).isEmpty());
+        assertTrue(table.getIndexedRows(buf("city"), buf("Berlin")).isEmpty());
+    }
+
+    @Test
+    public void testIndexRebuiltAfterSerialization() throws Exception {
+        IDataModel model    = new OffHeapDataModel(4096);
+        IColumnFamily table = model.createColumnFamily();
+        table.getOrCreateRow(buf("pepe")).putColumn(buf("city"), buf("Cracow"));
+        table.createIndex(buf("city"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table);
+        }
+        ColumnFamily copy;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))
+        ) {
+            copy = (ColumnFamily)in.readObject();
+        }
+
+        List<IRow> rows = copy.getIndexedRows(buf("city"), buf("Cracow"));
+        assertEquals(1, rows.size());
+        assertEquals(buf("pepe"), rows.get(0).getKey());
+        try {
+            copy.createIndex(buf("city"));
+            fail("Column is already indexed");
+        } catch (PythiaException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        ColumnFamily table = new ColumnFamily(4096);
+        for (int i = 0; i < 100; ++i) {
+            table.getOrCreateRow(buf("row" + i))
+                 .putColumn(buf("name"), buf("value" + i));
+        }
+        table.expire(buf("row7"), null, 20);
+        Thread.sleep(30);
+
+        Set<ByteBuffer> keys = new HashSet<>();
+        for (IRow row : table) {
+            String key = new String(row.getKey().array());
+            assertEquals(
+                buf("value" + key.substring(3)),
+                row.getColumn(buf("name")).getValue()
+            );
+            assertTrue(keys.add(row.getKey()));
+        }
+        assertEquals(99, keys.size());
+        assertFalse(keys.contains(buf("row7")));
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
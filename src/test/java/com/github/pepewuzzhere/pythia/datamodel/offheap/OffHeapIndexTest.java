@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class OffHeapIndexTest {
+
+    public OffHeapIndexTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        SlabAllocator memory = new SlabAllocator(1 << 16);
+        OffHeapIndex index = new OffHeapIndex(memory, 4);
+        long[] addresses = new long[500];
+
+        // more keys than initial capacity - forces resizing
+        for (int i = 0; i < addresses.length; ++i) {
+            byte[] key = ("key" + i).getBytes();
+            addresses[i] = store(memory, key);
+            assertEquals(OffHeapIndex.NOT_FOUND, index.put(key, addresses[i]));
+        }
+        assertEquals(addresses.length, index.size());
+
+        for (int i = 0; i < addresses.length; i += 2) {
+            assertEquals(addresses[i], index.remove(("key" + i).getBytes()));
+        }
+        for (int i = 0; i < addresses.length; ++i) {
+            long expected = i % 2 == 0 ? OffHeapIndex.NOT_FOUND : addresses[i];
+            assertEquals(expected, index.get(("key" + i).getBytes()));
+        }
+        assertEquals(addresses.length / 2, index.size());
+    }
+
+    @Test
+    public void testPutReplacesAddress() {
+        SlabAllocator memory = new SlabAllocator(4096);
+        OffHeapIndex index = new OffHeapIndex(memory, 16);
+        byte[] key = "Test key".getBytes();
+        long first = store(memory, key);
+        long second = store(memory, key);
+
+        index.put(key, first);
+
+        assertEquals(first, index.put(key, second));
+        assertEquals(second, index.get(key));
+        assertEquals(1, index.size());
+    }
+
+    private static long store(SlabAllocator memory, byte[] key) {
+        long address = memory.allocate(8 + key.length);
+        ByteBuffer slab = memory.slab(address).duplicate();
+        slab.position(SlabAllocator.payload(address));
+        slab.putInt(4 + key.length);
+        slab.putInt(key.length);
+        slab.put(key);
+        return address;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class RowTest {
+
+    public RowTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testAddColumnIfKeyAlreadyExists() {
+        ByteBuffer key  = ByteBuffer.wrap("Test key".getBytes());
+        ByteBuffer key2 = ByteBuffer.wrap("Test key2".getBytes());
+        IRow row        = new Row(key);
+        IColumn column  = new Column(key2);
+        IColumn column2 = new Column(key2);
+
+        column2.setValue(key);
+
+        row.addColumn(column);
+        row.addColumn(column2);
+
+        assertEquals(column, row.getColumn(key2));
+        // value should be updated
+        assertEquals(column.getValue(), column2.getValue());
+    }
+
+    @Test
+    public void testStoredRowColumns() throws PythiaException {
+        ByteBuffer key   = ByteBuffer.wrap("Test key".getBytes());
+        ByteBuffer name  = ByteBuffer.wrap("name".getBytes());
+        ByteBuffer email = ByteBuffer.wrap("email".getBytes());
+        IColumnFamily table = new ColumnFamily(4096);
+        IRow row = new Row(key);
+        table.addRow(row);
+
+        IColumn column = new Column(name);
+        column.setValue(ByteBuffer.wrap("Piotr".getBytes()));
+        row.addColumn(column);
+        IColumn column2 = new Column(email);
+        row.addColumn(column2);
+
+        IRow stored = table.getRow(key);
+        assertNull(stored.getColumn(email).getValue());
+        stored.updateColumn(email, ByteBuffer.wrap("pepe@pythia".getBytes()));
+        stored.deleteColumn(name);
+
+        assertNull(row.getColumn(name));
+        assertEquals(
+            ByteBuffer.wrap("pepe@pythia".getBytes()),
+            row.getColumn(email).getValue()
+        );
+        assertEquals("{\"Test key\":{\"email\":\"pepe@pythia\"}}", row.toString());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testUpdateColumnIfNotExists() throws PythiaException {
+        ByteBuffer key = ByteBuffer.wrap("Test key".getBytes());
+        IRow row       = new Row(key);
+
+        row.updateColumn(key, key);
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testDeleteColumnIfNotExists() throws PythiaException {
+        ByteBuffer key = ByteBuffer.wrap("Test key".getBytes());
+        IColumnFamily table = new ColumnFamily(4096);
+        IRow row = new Row(key);
+        table.addRow(row);
+
+        row.deleteColumn(key);
+    }
+
+    @Test
+    public void testPutColumnInDetachedRow() {
+        Row row = new Row(ByteBuffer.wrap("Test row".getBytes()));
+        ByteBuffer key = ByteBuffer.wrap("Test key".getBytes());
+
+        assertNull(row.putColumn(key, ByteBuffer.wrap("value1".getBytes())));
+        assertEquals(
+            ByteBuffer.wrap("value1".getBytes()),
+            row.putColumn(key, ByteBuffer.wrap("value2".getBytes()))
+        );
+        assertEquals(1, row.getColumns().size());
+    }
+
+    @Test
+    public void testIterator() throws PythiaException {
+        ByteBuffer name  = ByteBuffer.wrap("name".getBytes());
+        ByteBuffer email = ByteBuffer.wrap("email".getBytes());
+        IRow row = new Row(ByteBuffer.wrap("Test key".getBytes()));
+        row.addColumn(new Column(name));
+        row.addColumn(new Column(email));
+
+        Set<ByteBuffer> keys = new HashSet<>();
+        for (IColumn column : row) {
+            keys.add(column.getKey());
+        }
+        assertEquals(2, keys.size());
+
+        IColumnFamily table = new ColumnFamily(4096);
+        table.addRow(row);
+        row.updateColumn(email, ByteBuffer.wrap("pepe@pythia".getBytes()));
+
+        keys.clear();
+        for (IColumn column : table.getRow(row.getKey())) {
+            keys.add(column.getKey());
+            if (column.getKey().equals(email)) {
+                assertEquals(
+                    ByteBuffer.wrap("pepe@pythia".getBytes()),
+                    column.getValue()
+                );
+            }
+        }
+        assertTrue(keys.contains(name));
+        assertTrue(keys.contains(email));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.datamodel.offheap;
+
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class SlabAllocatorTest {
+
+    public SlabAllocatorTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testAllocateReusesFreedBlock() {
+        SlabAllocator memory = new SlabAllocator(4096);
+
+        long first = memory.allocate(20);
+        memory.free(first);
+        long second = memory.allocate(24);
+
+        assertEquals(first, second);
+        assertEquals(28, memory.capacity(second));
+    }
+
+    @Test
+    public void testAllocateNewSlab() {
+        SlabAllocator memory = new SlabAllocator(4096);
+
+        for (int i = 0; i < 5; ++i) {
+            memory.allocate(1000);
+        }
+
+        assertEquals(8192, memory.getReservedBytes());
+        assertEquals(5 * 1008, memory.getAllocatedBytes());
+    }
+
+    @Test
+    public void testAllocateOversizedBlock() {
+        SlabAllocator memory = new SlabAllocator(4096);
+
+        long address = memory.allocate(10000);
+        assertTrue(memory.capacity(address) >= 10000);
+        assertEquals(16384, memory.getReservedBytes());
+
+        memory.free(address);
+        assertEquals(0, memory.getReservedBytes());
+        assertEquals(0, memory.getAllocatedBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlabSize() {
+        new SlabAllocator(5000);
+    }
+}
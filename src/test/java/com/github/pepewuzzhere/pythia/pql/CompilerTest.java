@@ -25,10 +25,19 @@ package com.github.pepewuzzhere.pythia.pql;
 
 import com.github.pepewuzzhere.pythia.Context;
 import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
 import com.github.pepewuzzhere.pythia.pql.command.*;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.*;
 
 /**
@@ -81,6 +90,11 @@ public class CompilerTest {
             compiler.compile("CREATE COLUMNFAMILY Test", ctx)
                 instanceof CreateColumnFamilyCommand
         );
+        assertTrue(
+            ((CreateColumnFamilyCommand)compiler.compile(
+                "CREATE COLUMNFAMILY Test WITH ordered=true", ctx))
+                .getOptions().isOrdered()
+        );
         assertTrue(
             compiler.compile("DROP COLUMNFAMILY Test", ctx)
                 instanceof DropColumnFamilyCommand
@@ -101,5 +115,190 @@ public class CompilerTest {
             compiler.compile("SELECT FROM Test WHERE KEY=Pepe", ctx)
                 instanceof SelectCommand
         );
+        assertTrue(
+            compiler.compile("SHOW MEMORY", ctx)
+                instanceof ShowMemoryCommand
+        );
+    }
+
+    @Test
+    public void testCompileTtl() throws Exception {
+        Compiler compiler = new Compiler(new FSALexer(), new LL1Grammar());
+        Context ctx = new Context();
+
+        InsertCommand insert = (InsertCommand)compiler.compile(
+            "INSERT INTO Test (KEY=Pepe,name=Piotr) USING TTL 3600", ctx);
+        assertEquals(3600, insert.getTtl());
+
+        UpdateCommand update = (UpdateCommand)compiler.compile(
+            "UPDATE Test SET KEY=Pepe,name=Piotr using ttl 60", ctx);
+        assertEquals(60, update.getTtl());
+        assertEquals(1, update.getKeys().length);
+
+        update = (UpdateCommand)compiler.compile(
+            "UPDATE Test SET KEY=Pepe,name=Piotr", ctx);
+        assertEquals(UpdateCommand.NO_TTL, update.getTtl());
+    }
+
+    @Test
+    public void testCompileIncrement() throws Exception {
+        Compiler compiler = new Compiler(new FSALexer(), new LL1Grammar());
+        Context ctx = new Context();
+
+        UpdateCommand update = (UpdateCommand)compiler.compile(
+            "UPDATE Test SET KEY=Pepe, hits = hits + 1, name=Piotr,"
+                + " spent=spent+\"-25\" USING TTL 60", ctx);
+        assertEquals(1, update.getKeys().length);
+        assertEquals(ByteBuffer.wrap("name".getBytes()), update.getKeys()[0]);
+        assertArrayEquals(
+            new ByteBuffer[] {
+                ByteBuffer.wrap("hits".getBytes()),
+                ByteBuffer.wrap("spent".getBytes())
+            },
+            update.getCounters()
+        );
+        assertArrayEquals(new long[] {1, -25}, update.getDeltas());
+        assertEquals(60, update.getTtl());
+
+        // counter is increased only by its own value
+        try {
+            compiler.compile("UPDATE Test SET KEY=Pepe,hits=views+1", ctx);
+            fail("Other column can't be added to counter");
+        } catch (PythiaException e) {
+            // expected
+        }
+        try {
+            compiler.compile("UPDATE Test SET KEY=Pepe,hits=hits+one", ctx);
+            fail("Delta must be number");
+        } catch (PythiaException e) {
+            // expected
+        }
+        try {
+            compiler.compile("INSERT INTO Test (KEY=Pepe,hits=hits+1)", ctx);
+            fail("Counters are incremented only by update");
+        } catch (PythiaException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompileIndex() throws Exception {
+        Compiler compiler = new Compiler(new FSALexer(), new LL1Grammar());
+        Context ctx = new Context();
+
+        CreateIndexCommand create = (CreateIndexCommand)compiler.compile(
+            "CREATE INDEX ON Users(city)", ctx);
+        assertEquals("Users", create.getColumnFamily());
+        assertEquals(ByteBuffer.wrap("city".getBytes()), create.getColumnKey());
+
+        SelectCommand select = (SelectCommand)compiler.compile(
+            "SELECT FROM Users WHERE city=Cracow", ctx);
+        assertEquals(ByteBuffer.wrap("city".getBytes()), select.getColumnKey());
+        assertEquals(ByteBuffer.wrap("Cracow".getBytes()), select.getRowKey());
+
+        select = (SelectCommand)compiler.compile(
+            "SELECT FROM Users WHERE KEY=pepe", ctx);
+        assertNull(select.getColumnKey());
+    }
+
+    @Test
+    public void testCompileColumnTypes() throws Exception {
+        Compiler compiler = new Compiler(new FSALexer(), new LL1Grammar());
+
+        CreateColumnFamilyCommand create =
+                (CreateColumnFamilyCommand)compiler.compile(
+            "CREATE COLUMNFAMILY Users (age int, score double) WITH packed=true",
+            new Context()
+        );
+        assertEquals("Users", create.getName());
+        assertEquals(
+            new ColumnFamilyOptions()
+                .setColumnType("age", ColumnType.INT)
+                .setColumnType("score", ColumnType.DOUBLE)
+                .setPacked(true),
+            create.getOptions()
+        );
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testCompileDeleteByColumn() throws Exception {
+        new Compiler(new FSALexer(), new LL1Grammar()).compile(
+            "DELETE FROM Users WHERE city=Cracow", new Context());
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testCompileInvalidTtl() throws Exception {
+        new Compiler(new FSALexer(), new LL1Grammar()).compile(
+            "INSERT INTO Test (KEY=Pepe,name=Piotr) USING TTL soon",
+            new Context()
+        );
+    }
+
+    @Test
+    public void testCompileSelectColumns() throws Exception {
+        Compiler compiler = new Compiler(new FSALexer(), new LL1Grammar());
+        Context ctx = new Context();
+
+        SelectCommand select = (SelectCommand)compiler.compile(
+            "SELECT name, email FROM Users WHERE KEY=pepe", ctx);
+        assertArrayEquals(
+            new ByteBuffer[] {
+                ByteBuffer.wrap("name".getBytes()),
+                ByteBuffer.wrap("email".getBytes())
+            },
+            select.getColumns()
+        );
+        assertFalse(select.isRange());
+
+        select = (SelectCommand)compiler.compile(
+            "SELECT \"a\"..\"f\" FROM Users WHERE city=Cracow", ctx);
+        assertArrayEquals(
+            new ByteBuffer[] {
+                ByteBuffer.wrap("a".getBytes()),
+                ByteBuffer.wrap("f".getBytes())
+            },
+            select.getColumns()
+        );
+        assertTrue(select.isRange());
+        assertEquals(ByteBuffer.wrap("city".getBytes()), select.getColumnKey());
+
+        select = (SelectCommand)compiler.compile(
+            "SELECT FROM Users WHERE KEY=pepe", ctx);
+        assertNull(select.getColumns());
+    }
+
+    @Test
+    public void testCompileScan() throws Exception {
+        Compiler compiler = new Compiler(new FSALexer(), new LL1Grammar());
+        Context ctx = new Context();
+
+        ScanCommand scan = (ScanCommand)compiler.compile(
+            "SELECT FROM Users", ctx);
+        assertEquals("Users", scan.getColumnFamily());
+        assertEquals(0, scan.getLimit());
+        assertNull(scan.getToken());
+
+        scan = (ScanCommand)compiler.compile(
+            "SELECT name FROM Users LIMIT 100", ctx);
+        assertEquals(100, scan.getLimit());
+        assertNull(scan.getToken());
+
+        scan = (ScanCommand)compiler.compile(
+            "SELECT FROM Users LIMIT 100 PAGE 2f", ctx);
+        assertEquals(100, scan.getLimit());
+        assertEquals("2f", scan.getToken());
+    }
+
+    @Test
+    public void testCompileScanWithInvalidLimit() throws PythiaException {
+        Compiler compiler = new Compiler(new FSALexer(), new LL1Grammar());
+
+        boolean wasThrown = false;
+        try {
+            compiler.compile("SELECT FROM Users LIMIT 0", new Context());
+        } catch (PythiaException e) {
+            wasThrown = true;
+        }
+        assertTrue(wasThrown);
     }
 }
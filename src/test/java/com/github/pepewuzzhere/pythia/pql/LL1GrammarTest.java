@@ -75,7 +75,7 @@ public class LL1GrammarTest {
                 with,
                 new ISymbol[] {
                     LL1Grammar.NonTerminal.STMT_DELETE,
-                    LL1Grammar.NonTerminal.STMT_SELECT
+                    LL1Grammar.NonTerminal.SELECT_CONDITION
 
                 }
             )
@@ -174,4 +174,93 @@ public class TableDrivenTokenIteratorTest {
         assertArrayEquals(expecteds, tokens.toArray(new Token[1]));
     }
 
+    @Test
+    public void testNextWithDigits() throws PythiaException {
+        ITokenIterator it = new TableDrivenTokenIterator();
+        it.setSource("UPDATE Test SET KEY=user42 USING TTL 3600");
+
+        ArrayList<Token> tokens = new ArrayList<>();
+        while (it.hasNext()) {
+            tokens.add(it.next());
+        }
+
+        Token[] expecteds = new Token[] {
+            new Token(TokenType.KEYWORD, "UPDATE"),
+            new Token(TokenType.VARIABLE, "Test"),
+            new Token(TokenType.KEYWORD, "SET"),
+            new Token(TokenType.KEYWORD, "KEY"),
+            new Token(TokenType.EQUAL),
+            new Token(TokenType.VARIABLE, "user42"),
+            new Token(TokenType.KEYWORD, "USING"),
+            new Token(TokenType.KEYWORD, "TTL"),
+            new Token(TokenType.VARIABLE, "3600")
+        };
+
+        assertArrayEquals(expecteds, tokens.toArray(new Token[1]));
+    }
+
+    @Test
+    public void testNextWithPlus() throws PythiaException {
+        ITokenIterator it = new TableDrivenTokenIterator();
+        it.setSource("hits=hits+1, spent = spent + \"-5\"");
+
+        ArrayList<Token> tokens = new ArrayList<>();
+        while (it.hasNext()) {
+            tokens.add(it.next());
+        }
+
+        Token[] expecteds = new Token[] {
+            new Token(TokenType.VARIABLE, "hits"),
+            new Token(TokenType.EQUAL),
+            new Token(TokenType.VARIABLE, "hits"),
+            new Token(TokenType.PLUS),
+            new Token(TokenType.VARIABLE, "1"),
+            new Token(TokenType.COMMA),
+            new Token(TokenType.VARIABLE, "spent"),
+            new Token(TokenType.EQUAL),
+            new Token(TokenType.VARIABLE, "spent"),
+            new Token(TokenType.PLUS),
+            new Token(TokenType.VARIABLE, "-5")
+        };
+
+        assertArrayEquals(expecteds, tokens.toArray(new Token[1]));
+    }
+
+    @Test
+    public void testNextWithRange() throws PythiaException {
+        ITokenIterator it = new TableDrivenTokenIterator();
+        it.setSource("SELECT \"a\"..f FROM Test");
+
+        ArrayList<Token> tokens = new ArrayList<>();
+        while (it.hasNext()) {
+            tokens.add(it.next());
+        }
+
+        Token[] expecteds = new Token[] {
+            new Token(TokenType.KEYWORD, "SELECT"),
+            new Token(TokenType.VARIABLE, "a"),
+            new Token(TokenType.RANGE),
+            new Token(TokenType.VARIABLE, "f"),
+            new Token(TokenType.KEYWORD, "FROM"),
+            new Token(TokenType.VARIABLE, "Test")
+        };
+
+        assertArrayEquals(expecteds, tokens.toArray(new Token[1]));
+    }
+
+    @Test
+    public void testNextIfSingleDot() {
+        ITokenIterator it = new TableDrivenTokenIterator();
+        it.setSource("SELECT a.f FROM Test");
+
+        boolean wasThrown = false;
+        try {
+            while (it.hasNext()) {
+                it.next();
+            }
+        } catch (PythiaException e) {
+            wasThrown = true;
+        }
+        assertTrue(wasThrown);
+    }
 }
@@ -70,7 +70,8 @@ public class TopDownParserTest {
         expected = new Terminal[] {
             Terminal.KEY_KEYSPACE, Terminal.KEY_KILL, Terminal.KEY_USE,
             Terminal.KEY_CREATE, Terminal.KEY_DROP, Terminal.KEY_INSERT,
-            Terminal.KEY_UPDATE, Terminal.KEY_SELECT, Terminal.KEY_DELETE
+            Terminal.KEY_UPDATE, Terminal.KEY_SELECT, Terminal.KEY_DELETE,
+            Terminal.KEY_SHOW
         };
         assertArrayEquals(first, expected);
     }
@@ -82,6 +83,18 @@ public class TopDownParserTest {
                 TopDownParser.follow(LL1Grammar.NonTerminal.KEY_VALUES_LIST);
         Terminal[] expected = new Terminal[] {Terminal.SYMBOL_RPAREN};
         assertArrayEquals(expected, follow);
+
+        follow = TopDownParser.follow(LL1Grammar.NonTerminal.SET_LIST);
+        expected = new Terminal[] {Terminal.KEY_USING, Terminal.EPSILON};
+        assertArrayEquals(expected, follow);
+
+        // empty increment is followed by next column or end of list
+        follow = TopDownParser.follow(LL1Grammar.NonTerminal.INCREMENT);
+        expected = new Terminal[] {
+            Terminal.EPSILON, Terminal.SYMBOL_COMMA,
+            Terminal.KEY_USING, Terminal.EPSILON
+        };
+        assertArrayEquals(expected, follow);
     }
 
     @Test
@@ -101,7 +114,7 @@ public class TopDownParserTest {
             new Production(
                 Terminal.KEY_INSERT, Terminal.KEY_INTO, Terminal.VAR,
                 Terminal.SYMBOL_LPAREN, LL1Grammar.NonTerminal.KEY_VALUES_LIST,
-                Terminal.SYMBOL_RPAREN
+                Terminal.SYMBOL_RPAREN, LL1Grammar.NonTerminal.TTL_OPTION
             )
         );
     }
@@ -231,15 +244,25 @@ public class TopDownParserTest {
         );
 
         expected[3] = new ParseTree(LL1Grammar.NonTerminal.STMT_START, null);
+        ParseTree create = new ParseTree(
+            LL1Grammar.NonTerminal.STMT_CREATE, null
+        );
+        ParseTree createPrim = new ParseTree(
+            LL1Grammar.NonTerminal.STMT_CREATE_PRIM, null
+        );
         ParseTree stmt3 = new ParseTree(
             LL1Grammar.NonTerminal.STMT_CREATE_COLUMNFAMILY, null
         );
-        expected[3].add(stmt3);
-        stmt3.add(
+        expected[3].add(create);
+        create.add(
             new ParseTree(
                 Terminal.KEY_CREATE,
                 new Token(TokenType.KEYWORD, "CREATE")
             ),
+            createPrim
+        );
+        createPrim.add(stmt3);
+        stmt3.add(
             new ParseTree(
                 Terminal.KEY_COLUMNFAMILY,
                 new Token(TokenType.KEYWORD, "COLUMNFAMILY")
@@ -247,6 +270,12 @@ public class TopDownParserTest {
             new ParseTree(
                 Terminal.VAR,
                 new Token(TokenType.VARIABLE, "Test")
+            ),
+            new ParseTree(
+                LL1Grammar.NonTerminal.COLUMN_TYPES, null
+            ),
+            new ParseTree(
+                LL1Grammar.NonTerminal.COLUMNFAMILY_OPTIONS, null
             )
         );
 
@@ -333,7 +362,8 @@ public class TopDownParserTest {
             new ParseTree(
                 Terminal.SYMBOL_RPAREN,
                 new Token(TokenType.RPAREN)
-            )
+            ),
+            new ParseTree(LL1Grammar.NonTerminal.TTL_OPTION, null)
         );
 
         expected[6] = new ParseTree(LL1Grammar.NonTerminal.STMT_START, null);
@@ -341,9 +371,9 @@ public class TopDownParserTest {
                 new ParseTree(LL1Grammar.NonTerminal.STMT_UPDATE, null);
         expected[6].add(stmt6);
         ParseTree keyValue2 =
-                new ParseTree(LL1Grammar.NonTerminal.KEY_VALUES_LIST, null);
+                new ParseTree(LL1Grammar.NonTerminal.SET_LIST, null);
         ParseTree nextValue2 = new ParseTree(
-                LL1Grammar.NonTerminal.KEY_VALUES_LIST_PRIM, null);
+                LL1Grammar.NonTerminal.SET_LIST_PRIM, null);
         nextValue2.add(
             new ParseTree(
                 Terminal.SYMBOL_COMMA,
@@ -361,8 +391,9 @@ public class TopDownParserTest {
                 Terminal.VAR,
                 new Token(TokenType.VARIABLE, "Piotr")
             ),
+            new ParseTree(LL1Grammar.NonTerminal.INCREMENT, null),
             new ParseTree(
-                LL1Grammar.NonTerminal.KEY_VALUES_LIST_PRIM, null
+                LL1Grammar.NonTerminal.SET_LIST_PRIM, null
             )
         );
         keyValue2.add(
@@ -393,7 +424,8 @@ public class TopDownParserTest {
                 Terminal.KEY_SET,
                 new Token(TokenType.KEYWORD, "SET")
             ),
-            keyValue2
+            keyValue2,
+            new ParseTree(LL1Grammar.NonTerminal.TTL_OPTION, null)
         );
 
         expected[7] = new ParseTree(LL1Grammar.NonTerminal.STMT_START, null);
@@ -401,15 +433,20 @@ public class TopDownParserTest {
                 new ParseTree(LL1Grammar.NonTerminal.STMT_SELECT, null);
         expected[7].add(stmt7);
         ParseTree where = new ParseTree(LL1Grammar.NonTerminal.WHERE, null);
+        ParseTree whereColumn =
+                new ParseTree(LL1Grammar.NonTerminal.WHERE_COLUMN, null);
+        whereColumn.add(
+            new ParseTree(
+                Terminal.KEY_KEY,
+                new Token(TokenType.KEYWORD, "KEY")
+            )
+        );
         where.add(
             new ParseTree(
                 Terminal.KEY_WHERE,
                 new Token(TokenType.KEYWORD, "WHERE")
             ),
-            new ParseTree(
-                Terminal.KEY_KEY,
-                new Token(TokenType.KEYWORD, "KEY")
-            ),
+            whereColumn,
             new ParseTree(
                 Terminal.SYMBOL_EQUAL,
                 new Token(TokenType.EQUAL)
@@ -419,11 +456,15 @@ public class TopDownParserTest {
                 new Token(TokenType.VARIABLE, "pepe")
             )
         );
+        ParseTree condition =
+                new ParseTree(LL1Grammar.NonTerminal.SELECT_CONDITION, null);
+        condition.add(where);
         stmt7.add(
             new ParseTree(
                 Terminal.KEY_SELECT,
                 new Token(TokenType.KEYWORD, "SELECT")
             ),
+            new ParseTree(LL1Grammar.NonTerminal.SELECT_COLUMNS, null),
             new ParseTree(
                 Terminal.KEY_FROM,
                 new Token(TokenType.KEYWORD, "FROM")
@@ -432,7 +473,7 @@ public class TopDownParserTest {
                 Terminal.VAR,
                 new Token(TokenType.VARIABLE, "Test")
             ),
-            where
+            condition
         );
 
         expected[8] = new ParseTree(LL1Grammar.NonTerminal.STMT_START, null);
@@ -440,15 +481,20 @@ public class TopDownParserTest {
                 new ParseTree(LL1Grammar.NonTerminal.STMT_DELETE, null);
         expected[8].add(stmt8);
         ParseTree where2 = new ParseTree(LL1Grammar.NonTerminal.WHERE, null);
+        ParseTree where2Column =
+                new ParseTree(LL1Grammar.NonTerminal.WHERE_COLUMN, null);
+        where2Column.add(
+            new ParseTree(
+                Terminal.KEY_KEY,
+                new Token(TokenType.KEYWORD, "KEY")
+            )
+        );
         where2.add(
             new ParseTree(
                 Terminal.KEY_WHERE,
                 new Token(TokenType.KEYWORD, "WHERE")
             ),
-            new ParseTree(
-                Terminal.KEY_KEY,
-                new Token(TokenType.KEYWORD, "KEY")
-            ),
+            where2Column,
             new ParseTree(
                 Terminal.SYMBOL_EQUAL,
                 new Token(TokenType.EQUAL)
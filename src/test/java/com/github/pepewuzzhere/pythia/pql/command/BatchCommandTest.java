@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class BatchCommandTest {
+
+    public BatchCommandTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+        DB.INSTANCE.dropDB();
+    }
+
+    @Test
+    public void testExecute() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test")
+                   .addColumnFamily("Users", model.createColumnFamily());
+        DB.INSTANCE.getKeySpace("Test")
+                   .addColumnFamily("Posts", model.createColumnFamily());
+
+        List<IMutationCommand> commands = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            commands.add(new InsertCommand(
+                "Users", "Test", buf("user" + i),
+                new ByteBuffer[] {buf("name"), buf("age")},
+                new ByteBuffer[] {buf("User " + i), buf("" + i)}
+            ));
+        }
+        commands.add(new InsertCommand(
+            "Posts", "Test", buf("post"), new ByteBuffer[] {buf("title")},
+            new ByteBuffer[] {buf("Hello")}
+        ));
+        commands.add(new UpdateCommand(
+            "Users", "Test", buf("user1"), new ByteBuffer[] {buf("name")},
+            new ByteBuffer[] {buf("Pepe")}
+        ));
+        commands.add(new DeleteCommand("Users", "Test", buf("user2")));
+        commands.add(new DeleteCommand("Users", "Test", buf("missing")));
+
+        assertNull(new BatchCommand(commands).execute(DB.INSTANCE, model));
+
+        IColumnFamily users =
+                DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users");
+        assertEquals(99, users.getRows(null, true, null, 1000).size());
+        assertNull(users.getRow(buf("user2")));
+        IRow row = users.getRow(buf("user1"));
+        assertEquals(buf("Pepe"), row.getColumn(buf("name")).getValue());
+        assertEquals(buf("1"), row.getColumn(buf("age")).getValue());
+        assertEquals(
+            buf("Hello"),
+            DB.INSTANCE.getKeySpace("Test").getColumnFamily("Posts")
+                       .getRow(buf("post")).getColumn(buf("title")).getValue()
+        );
+    }
+
+    @Test
+    public void testExecuteIfColumnFamilyNotExists() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test")
+                   .addColumnFamily("Users", model.createColumnFamily());
+
+        IDBCommand command = new BatchCommand(Arrays.<IMutationCommand>asList(
+            new InsertCommand(
+                "Users", "Test", buf("pepe"), new ByteBuffer[] {buf("name")},
+                new ByteBuffer[] {buf("Piotr")}
+            ),
+            new InsertCommand(
+                "Posts", "Test", buf("post"), new ByteBuffer[] {buf("title")},
+                new ByteBuffer[] {buf("Hello")}
+            )
+        ));
+        try {
+            command.execute(DB.INSTANCE, model);
+            fail("Column family doesn't exist");
+        } catch (PythiaException e) {
+            // expected
+        }
+
+        // column families are checked before any of them is changed
+        assertNull(DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users")
+                              .getRow(buf("pepe")));
+    }
+
+    @Test
+    public void testExecuteWithInvalidTypedValue() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily(
+            "Posts", model.createColumnFamily());
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily(
+            "Users",
+            model.createColumnFamily(new ColumnFamilyOptions()
+                .setColumnType("age", ColumnType.INT))
+        );
+
+        List<IMutationCommand> commands = new ArrayList<>();
+        commands.add(new InsertCommand(
+            "Posts", "Test", buf("post"), new ByteBuffer[] {buf("title")},
+            new ByteBuffer[] {buf("Hello")}
+        ));
+        commands.add(new InsertCommand(
+            "Users", "Test", buf("pepe"), new ByteBuffer[] {buf("age")},
+            new ByteBuffer[] {buf("old")}
+        ));
+
+        boolean wasThrown = false;
+        try {
+            new BatchCommand(commands).execute(DB.INSTANCE, model);
+        } catch (PythiaException e) {
+            wasThrown = true;
+        }
+        assertTrue(wasThrown);
+        // values are converted before any column family is changed
+        assertNull(DB.INSTANCE.getKeySpace("Test").getColumnFamily("Posts")
+                              .getRow(buf("post")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullCommands() {
+        new BatchCommand(null);
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
@@ -62,7 +62,7 @@ public class CreateColumnFamilyCommandTest {
 
         boolean wasThrown = false;
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -77,7 +77,7 @@ public class CreateColumnFamilyCommandTest {
 
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -95,7 +95,7 @@ public class CreateColumnFamilyCommandTest {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", model.createColumnFamily());
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
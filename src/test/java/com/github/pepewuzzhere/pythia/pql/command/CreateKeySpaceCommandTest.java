@@ -61,7 +61,7 @@ public class CreateKeySpaceCommandTest {
         IDBCommand command = new CreateKeySpaceCommand("Test");
 
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -77,7 +77,7 @@ public class CreateKeySpaceCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
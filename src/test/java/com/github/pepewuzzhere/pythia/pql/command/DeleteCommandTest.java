@@ -66,7 +66,7 @@ public class DeleteCommandTest {
 
         boolean wasThrown = false;
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -84,7 +84,7 @@ public class DeleteCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -104,7 +104,7 @@ public class DeleteCommandTest {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", model.createColumnFamily());
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -128,7 +128,7 @@ public class DeleteCommandTest {
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", columnFamily);
 
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -62,7 +62,7 @@ public class DropColumnFamilyCommandTest {
 
         boolean wasThrown = false;
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -78,7 +78,7 @@ public class DropColumnFamilyCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -95,7 +95,7 @@ public class DropColumnFamilyCommandTest {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", model.createColumnFamily());
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
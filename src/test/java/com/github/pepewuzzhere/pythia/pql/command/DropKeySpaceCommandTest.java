@@ -63,7 +63,7 @@ public class DropKeySpaceCommandTest {
 
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -77,7 +77,7 @@ public class DropKeySpaceCommandTest {
 
         boolean wasThrown = false;
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
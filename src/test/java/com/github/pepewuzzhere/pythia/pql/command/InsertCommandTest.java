@@ -28,8 +28,11 @@ import com.github.pepewuzzhere.pythia.PythiaException;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.*;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.Assert.*;
 import org.junit.*;
 
@@ -71,7 +74,7 @@ public class InsertCommandTest {
 
         boolean wasThrown = false;
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -95,7 +98,7 @@ public class InsertCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -121,7 +124,7 @@ public class InsertCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -148,7 +151,7 @@ public class InsertCommandTest {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", model.createColumnFamily());
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -206,7 +209,7 @@ public class InsertCommandTest {
                 null
             );
 
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -228,4 +231,146 @@ public class InsertCommandTest {
             values[0]
         );
     }
+
+    @Test
+    public void testConcurrentExecuteOfTheSameKey() throws Exception {
+        final IDataModel model = new HashMapDataModel();
+        final ByteBuffer rowKey = ByteBuffer.wrap("Piotr".getBytes());
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test")
+                   .addColumnFamily("Users", model.createColumnFamily());
+
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        final Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+            final ByteBuffer[] keys = new ByteBuffer[] {
+                ByteBuffer.wrap(("col" + t).getBytes())
+            };
+            final ByteBuffer[] values = new ByteBuffer[] {
+                ByteBuffer.wrap("value".getBytes())
+            };
+            writers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        new InsertCommand(
+                            "Users", "Test", rowKey, keys, values
+                        ).execute(DB.INSTANCE, model);
+                    } catch (PythiaException | InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(0, failures.get());
+        IRow row = DB.INSTANCE.getKeySpace("Test")
+                              .getColumnFamily("Users")
+                              .getRow(rowKey);
+        for (int t = 0; t < threads; ++t) {
+            assertNotNull(
+                row.getColumn(ByteBuffer.wrap(("col" + t).getBytes())));
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final IDataModel model = new HashMapDataModel();
+        final ByteBuffer[] keys = new ByteBuffer[] {
+            ByteBuffer.wrap("Name".getBytes())
+        };
+        final ByteBuffer[] values = new ByteBuffer[] {
+            ByteBuffer.wrap("Piotr".getBytes())
+        };
+        final IColumnFamily columnFamily = model.createColumnFamily();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily("Users", columnFamily);
+        new InsertCommand(
+            "Users", "Test", ByteBuffer.wrap("Pepe".getBytes()), keys, values
+        ).execute(DB.INSTANCE, model);
+
+        // writer waits until limit of keyspace is raised
+        DB.INSTANCE.getKeySpace("Test").getMemory().setLimit(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger errors = new AtomicInteger();
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new InsertCommand(
+                        "Users", "Test", ByteBuffer.wrap("Piotr".getBytes()),
+                        keys, values
+                    ).execute(DB.INSTANCE, model);
+                } catch (PythiaException e) {
+                    errors.incrementAndGet();
+                }
+                done.countDown();
+            }
+        });
+        writer.start();
+
+        Thread.sleep(50);
+        assertEquals(1, done.getCount());
+        assertNull(columnFamily.getRow(ByteBuffer.wrap("Piotr".getBytes())));
+
+        DB.INSTANCE.getKeySpace("Test").getMemory().setLimit(1000000);
+        done.await();
+        assertEquals(0, errors.get());
+        assertNotNull(columnFamily.getRow(ByteBuffer.wrap("Piotr".getBytes())));
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        ByteBuffer[] keys = new ByteBuffer[] {
+            ByteBuffer.wrap("Name".getBytes())
+        };
+        ByteBuffer[] values = new ByteBuffer[] {
+            ByteBuffer.wrap("Piotr".getBytes())
+        };
+        IColumnFamily columnFamily = model.createColumnFamily();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily("Users", columnFamily);
+
+        InsertCommand command = new InsertCommand(
+            "Users", "Test", ByteBuffer.wrap("Session".getBytes()), keys,
+            values, 1
+        );
+        assertEquals(1, command.getTtl());
+        command.execute(DB.INSTANCE, model);
+
+        // insert with time to live 0 makes row persistent
+        new InsertCommand(
+            "Users", "Test", ByteBuffer.wrap("Pepe".getBytes()), keys, values, 1
+        ).execute(DB.INSTANCE, model);
+        new InsertCommand(
+            "Users", "Test", ByteBuffer.wrap("Pepe".getBytes()), keys, values, 0
+        ).execute(DB.INSTANCE, model);
+
+        // insert without TTL clause keeps deadlines
+        new InsertCommand(
+            "Users", "Test", ByteBuffer.wrap("Session".getBytes()), keys,
+            values
+        ).execute(DB.INSTANCE, model);
+        assertEquals(
+            InsertCommand.NO_TTL,
+            new InsertCommand(
+                "Users", "Test", ByteBuffer.wrap("Pepe".getBytes()), keys,
+                values
+            ).getTtl()
+        );
+
+        assertNotNull(columnFamily.getRow(ByteBuffer.wrap("Session".getBytes())));
+        Thread.sleep(1100);
+        assertNull(columnFamily.getRow(ByteBuffer.wrap("Session".getBytes())));
+        assertNotNull(columnFamily.getRow(ByteBuffer.wrap("Pepe".getBytes())));
+    }
 }
@@ -0,0 +1,240 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaError;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ScanCommandTest {
+
+    public ScanCommandTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testExecuteIfColumnFamilyNotExists() {
+        IDataModel model = new HashMapDataModel();
+        boolean wasThrown = false;
+        try {
+            DB.INSTANCE.addKeySpace(model.createKeySpace("ScanMissing"));
+            new ScanCommand(
+                "Users", "ScanMissing", new Context(), 0, null, null, false
+            ).execute(DB.INSTANCE, model);
+        } catch (PythiaException e) {
+            wasThrown = true;
+        }
+        assertTrue(wasThrown);
+    }
+
+    @Test
+    public void testExecuteWithoutLimit() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        users(model, "ScanAll", model.createColumnFamily());
+
+        ScanResult result = (ScanResult)new ScanCommand(
+            "Users", "ScanAll", new Context(), 0, null, null, false
+        ).execute(DB.INSTANCE, model);
+
+        Set<ByteBuffer> keys = new HashSet<>();
+        for (IRow row : result) {
+            assertTrue(keys.add(row.getKey()));
+        }
+        assertEquals(10, keys.size());
+        assertNull(result.getToken());
+    }
+
+    @Test
+    public void testExecutePages() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        users(model, "ScanPages", model.createColumnFamily());
+        Context ctx = new Context();
+
+        Set<ByteBuffer> keys = new HashSet<>();
+        String token = null;
+        int pages = 0;
+        do {
+            ScanResult result = (ScanResult)new ScanCommand(
+                "Users", "ScanPages", ctx, 3, token, null, false
+            ).execute(DB.INSTANCE, model);
+            int count = 0;
+            for (IRow row : result) {
+                assertTrue(keys.add(row.getKey()));
+                ++count;
+            }
+            assertTrue(count <= 3);
+            token = result.getToken();
+            ++pages;
+        } while (token != null);
+
+        assertEquals(4, pages);
+        assertEquals(10, keys.size());
+    }
+
+    @Test
+    public void testExecuteWithClosedToken() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        users(model, "ScanClosed", model.createColumnFamily());
+        Context ctx = new Context();
+
+        ScanResult result = (ScanResult)new ScanCommand(
+            "Users", "ScanClosed", ctx, 5, null, null, false
+        ).execute(DB.INSTANCE, model);
+        for (IRow row : result) {
+            assertNotNull(row);
+        }
+        String token = result.getToken();
+        new ScanCommand("Users", "ScanClosed", ctx, 5, token, null, false)
+                .execute(DB.INSTANCE, model);
+
+        boolean wasThrown = false;
+        try {
+            new ScanCommand("Users", "ScanClosed", ctx, 5, token, null, false)
+                    .execute(DB.INSTANCE, model);
+        } catch (PythiaException e) {
+            wasThrown = true;
+        }
+        assertTrue(wasThrown);
+    }
+
+    @Test
+    public void testExecuteSelectedColumnsOfTypedRows() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        IColumnFamily columnFamily = model.createColumnFamily(
+            new ColumnFamilyOptions().setColumnType("age", ColumnType.INT));
+        DB.INSTANCE.addKeySpace(model.createKeySpace("ScanTyped"));
+        DB.INSTANCE.getKeySpace("ScanTyped")
+                   .addColumnFamily("Users", columnFamily);
+        IRow stored = columnFamily.getOrCreateRow(buf("pepe"));
+        stored.putColumn(buf("age"), ColumnType.INT.encode(29));
+        stored.putColumn(buf("city"), buf("Cracow"));
+
+        ScanResult result = (ScanResult)new ScanCommand(
+            "Users", "ScanTyped", new Context(), 10, null,
+            new ByteBuffer[] {buf("age")}, false
+        ).execute(DB.INSTANCE, model);
+
+        int count = 0;
+        for (IRow row : result) {
+            assertEquals("{\"pepe\":{\"age\":29}}", row.toString());
+            ++count;
+        }
+        assertEquals(1, count);
+        assertNull(result.getToken());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testResultIteratedOnce() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        users(model, "ScanOnce", model.createColumnFamily());
+
+        ScanResult result = (ScanResult)new ScanCommand(
+            "Users", "ScanOnce", new Context(), 0, null, null, false
+        ).execute(DB.INSTANCE, model);
+        result.iterator();
+        result.iterator();
+    }
+
+    @Test
+    public void testExecuteWithTokenOfOtherColumnFamily() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        users(model, "ScanOther", model.createColumnFamily());
+        DB.INSTANCE.getKeySpace("ScanOther")
+                .addColumnFamily("Posts", model.createColumnFamily());
+        Context ctx = new Context();
+
+        ScanResult result = (ScanResult)new ScanCommand(
+            "Users", "ScanOther", ctx, 5, null, null, false
+        ).execute(DB.INSTANCE, model);
+        for (IRow row : result) {
+            assertNotNull(row);
+        }
+        String token = result.getToken();
+
+        try {
+            new ScanCommand("Posts", "ScanOther", ctx, 5, token, null, false)
+                    .execute(DB.INSTANCE, model);
+            fail("Scan of other column family was continued");
+        } catch (PythiaException e) {
+            assertEquals(
+                PythiaError.INVALID_ARGUMENS.toString(), e.getMessage());
+        }
+        assertNotNull(
+            new ScanCommand("Users", "ScanOther", ctx, 5, token, null, false)
+                    .execute(DB.INSTANCE, model));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        new ScanCommand("Users", "Test", new Context(), -1, null, null, false);
+    }
+
+    private static void users(
+        final IDataModel model, final String keySpace,
+        final IColumnFamily columnFamily
+    ) throws PythiaException {
+        for (int i = 0; i < 10; ++i) {
+            columnFamily.getOrCreateRow(buf("user" + i))
+                        .putColumn(buf("name"), buf("name" + i));
+        }
+        DB.INSTANCE.addKeySpace(model.createKeySpace(keySpace));
+        DB.INSTANCE.getKeySpace(keySpace).addColumnFamily("Users", columnFamily);
+    }
+
+    private static ByteBuffer buf(final String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+}
@@ -25,11 +25,15 @@ package com.github.pepewuzzhere.pythia.pql.command;
 
 import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
 import java.nio.ByteBuffer;
+import java.util.List;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -67,7 +71,7 @@ public class SelectCommandTest {
 
         boolean wasThrown = false;
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -85,7 +89,7 @@ public class SelectCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -105,7 +109,7 @@ public class SelectCommandTest {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", model.createColumnFamily());
-            rows = (IRow) command.execute(model);
+            rows = (IRow) command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -128,7 +132,7 @@ public class SelectCommandTest {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", columnFamily);
-            rows = (IRow)command.execute(model);
+            rows = (IRow)command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -136,4 +140,118 @@ public class SelectCommandTest {
         assertEquals(rows.getKey(), rowKey);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testExecuteByIndexedColumn() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        ByteBuffer city = ByteBuffer.wrap("city".getBytes());
+        ByteBuffer cracow = ByteBuffer.wrap("Cracow".getBytes());
+        IColumnFamily columnFamily = model.createColumnFamily();
+        columnFamily.getOrCreateRow(ByteBuffer.wrap("pepe".getBytes()))
+                    .putColumn(city, cracow);
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily("Users", columnFamily);
+
+        IDBCommand command = new SelectCommand("Users", "Test", city, cracow);
+
+        boolean wasThrown = false;
+        try {
+            command.execute(DB.INSTANCE, model);
+        } catch(PythiaException e) {
+            wasThrown = true;
+        }
+        assertTrue(wasThrown);
+
+        columnFamily.createIndex(city);
+        List<IRow> rows = (List<IRow>)command.execute(DB.INSTANCE, model);
+        assertEquals(1, rows.size());
+        assertEquals(ByteBuffer.wrap("pepe".getBytes()), rows.get(0).getKey());
+    }
+
+    @Test
+    public void testExecuteTypedColumnFamily() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        ByteBuffer age = ByteBuffer.wrap("age".getBytes());
+        IColumnFamily columnFamily = model.createColumnFamily(
+            new ColumnFamilyOptions().setColumnType("age", ColumnType.INT));
+        columnFamily.createIndex(age);
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Typed"));
+        DB.INSTANCE.getKeySpace("Typed").addColumnFamily("Users", columnFamily);
+
+        new InsertCommand(
+            "Users", "Typed", ByteBuffer.wrap("pepe".getBytes()),
+            new ByteBuffer[] {age},
+            new ByteBuffer[] {ByteBuffer.wrap("29".getBytes())}
+        ).execute(DB.INSTANCE, model);
+
+        // value is stored in 4 bytes
+        assertEquals(
+            ColumnType.INT.encode(29),
+            columnFamily.getRow(ByteBuffer.wrap("pepe".getBytes()))
+                        .getColumn(age).getValue()
+        );
+
+        IRow row = (IRow)new SelectCommand(
+            "Users", "Typed", ByteBuffer.wrap("pepe".getBytes())
+        ).execute(DB.INSTANCE, model);
+        assertEquals("{\"pepe\":{\"age\":29}}", row.toString());
+
+        List<IRow> rows = (List<IRow>)new SelectCommand(
+            "Users", "Typed", age, ByteBuffer.wrap("29".getBytes())
+        ).execute(DB.INSTANCE, model);
+        assertEquals(1, rows.size());
+        assertEquals(row, rows.get(0));
+    }
+
+    @Test
+    public void testExecuteSelectedColumns() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        ByteBuffer key = ByteBuffer.wrap("pepe".getBytes());
+        IColumnFamily columnFamily = model.createColumnFamily();
+        IRow stored = columnFamily.getOrCreateRow(key);
+        for (String name : new String[] {"a", "b", "c", "d", "e", "f", "g"}) {
+            stored.putColumn(
+                ByteBuffer.wrap(name.getBytes()),
+                ByteBuffer.wrap(name.toUpperCase().getBytes())
+            );
+        }
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Slices"));
+        DB.INSTANCE.getKeySpace("Slices").addColumnFamily("Users", columnFamily);
+
+        IRow row = (IRow)new SelectCommand(
+            "Users", "Slices", null, key,
+            new ByteBuffer[] {
+                ByteBuffer.wrap("c".getBytes()),
+                ByteBuffer.wrap("a".getBytes()),
+                ByteBuffer.wrap("x".getBytes())
+            },
+            false
+        ).execute(DB.INSTANCE, model);
+        assertEquals("{\"pepe\":{\"c\":\"C\",\"a\":\"A\"}}", row.toString());
+
+        row = (IRow)new SelectCommand(
+            "Users", "Slices", null, key,
+            new ByteBuffer[] {
+                ByteBuffer.wrap("b".getBytes()),
+                ByteBuffer.wrap("d".getBytes())
+            },
+            true
+        ).execute(DB.INSTANCE, model);
+        int count = 0;
+        for (IColumn column : row) {
+            assertTrue(column.getKey().equals(ByteBuffer.wrap("b".getBytes()))
+                || column.getKey().equals(ByteBuffer.wrap("c".getBytes()))
+                || column.getKey().equals(ByteBuffer.wrap("d".getBytes())));
+            ++count;
+        }
+        assertEquals(3, count);
+        assertNull(row.getColumn(ByteBuffer.wrap("e".getBytes())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRangeWithoutLastKey() {
+        new SelectCommand(
+            "Users", "Slices", null, ByteBuffer.wrap("pepe".getBytes()),
+            new ByteBuffer[] {ByteBuffer.wrap("b".getBytes())}, true
+        );
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.command;
+
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class ShowMemoryCommandTest {
+
+    public ShowMemoryCommandTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+        DB.INSTANCE.dropDB();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecute() throws PythiaException {
+        IDataModel model = new HashMapDataModel();
+        IColumnFamily columnFamily = model.createColumnFamily();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily("Users", columnFamily);
+        columnFamily.getOrCreateRow(ByteBuffer.wrap("Pepe".getBytes()));
+
+        Map<String, MemoryBudget> budgets =
+                (Map<String, MemoryBudget>)new ShowMemoryCommand().execute(DB.INSTANCE, model);
+
+        assertEquals(3, budgets.size());
+        assertSame(
+            DB.INSTANCE.getMemory(), budgets.get(ShowMemoryCommand.DATABASE));
+        assertSame(
+            DB.INSTANCE.getKeySpace("Test").getMemory(), budgets.get("Test"));
+        assertSame(columnFamily.getMemory(), budgets.get("Test.Users"));
+        assertTrue(budgets.get("Test.Users").getUsedBytes() > 0);
+    }
+}
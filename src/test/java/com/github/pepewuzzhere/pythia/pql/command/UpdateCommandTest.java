@@ -25,9 +25,11 @@ package com.github.pepewuzzhere.pythia.pql.command;
 
 import com.github.pepewuzzhere.pythia.DB;
 import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.datamodel.Counters;
 import com.github.pepewuzzhere.pythia.datamodel.IColumn;
 import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.*;
 import java.nio.ByteBuffer;
 import org.junit.*;
@@ -71,7 +73,7 @@ public class UpdateCommandTest {
 
         boolean wasThrown = false;
         try {
-            command.execute(new HashMapDataModel());
+            command.execute(DB.INSTANCE, new HashMapDataModel());
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -95,7 +97,7 @@ public class UpdateCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -121,7 +123,7 @@ public class UpdateCommandTest {
         boolean wasThrown = false;
         try {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -149,7 +151,7 @@ public class UpdateCommandTest {
             DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
             DB.INSTANCE.getKeySpace("Test")
                        .addColumnFamily("Users", model.createColumnFamily());
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             wasThrown = true;
         }
@@ -193,7 +195,7 @@ public class UpdateCommandTest {
                 null
             );
 
-            command.execute(model);
+            command.execute(DB.INSTANCE, model);
         } catch(PythiaException e) {
             fail(e.getMessage());
         }
@@ -215,4 +217,65 @@ public class UpdateCommandTest {
             values[0]
         );
     }
+
+    @Test
+    public void testTtl() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        IColumnFamily columnFamily = model.createColumnFamily();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily("Users", columnFamily);
+        ByteBuffer rowKey = ByteBuffer.wrap("Pepe".getBytes());
+        columnFamily.getOrCreateRow(rowKey).putColumn(
+            ByteBuffer.wrap("Name".getBytes()),
+            ByteBuffer.wrap("Piotr".getBytes())
+        );
+
+        UpdateCommand command = new UpdateCommand(
+            "Users", "Test", rowKey,
+            new ByteBuffer[] {ByteBuffer.wrap("Token".getBytes())},
+            new ByteBuffer[] {ByteBuffer.wrap("secret".getBytes())},
+            1
+        );
+        assertEquals(1, command.getTtl());
+        command.execute(DB.INSTANCE, model);
+
+        // update without TTL clause keeps deadline of column
+        new UpdateCommand(
+            "Users", "Test", rowKey,
+            new ByteBuffer[] {ByteBuffer.wrap("Token".getBytes())},
+            new ByteBuffer[] {ByteBuffer.wrap("changed".getBytes())}
+        ).execute(DB.INSTANCE, model);
+        Thread.sleep(1100);
+
+        // only updated column expires
+        IRow row = columnFamily.getRow(rowKey);
+        assertNotNull(row);
+        assertNull(row.getColumn(ByteBuffer.wrap("Token".getBytes())));
+        assertNotNull(row.getColumn(ByteBuffer.wrap("Name".getBytes())));
+    }
+
+    @Test
+    public void testIncrement() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        IColumnFamily columnFamily = model.createColumnFamily();
+        DB.INSTANCE.addKeySpace(model.createKeySpace("Test"));
+        DB.INSTANCE.getKeySpace("Test").addColumnFamily("Users", columnFamily);
+        ByteBuffer rowKey = ByteBuffer.wrap("Pepe".getBytes());
+        columnFamily.getOrCreateRow(rowKey);
+        ByteBuffer hits = ByteBuffer.wrap("hits".getBytes());
+
+        UpdateCommand command = new UpdateCommand(
+            "Users", "Test", rowKey,
+            new ByteBuffer[] {ByteBuffer.wrap("Name".getBytes())},
+            new ByteBuffer[] {ByteBuffer.wrap("Piotr".getBytes())},
+            new ByteBuffer[] {hits}, new long[] {2}, 0
+        );
+        command.execute(DB.INSTANCE, model);
+        command.execute(DB.INSTANCE, model);
+
+        assertEquals(
+            ByteBuffer.wrap(Counters.encode(4)),
+            columnFamily.getRow(rowKey).getColumn(hits).getValue()
+        );
+    }
 }
@@ -67,7 +67,7 @@ public class UseKeySpaceCommandTest {
             Context ctx = new Context();
             DB.INSTANCE.addKeySpace(keySpace);
             IDBCommand command = new UseKeySpaceCommand("Test", ctx);
-            command.execute(null);
+            command.execute(DB.INSTANCE, null);
             assertEquals(keySpace, ctx.getActualKeySpace());
         } catch(PythiaException e) {
             fail(e.getMessage());
@@ -25,13 +25,17 @@ package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
 
 import com.github.pepewuzzhere.pythia.Context;
 import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
 import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
 import com.github.pepewuzzhere.pythia.datamodel.IKeySpace;
 import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
 import com.github.pepewuzzhere.pythia.pql.*;
 import com.github.pepewuzzhere.pythia.pql.command.CreateColumnFamilyCommand;
 import com.github.pepewuzzhere.pythia.pql.interpreter.IInterpreter;
+import com.github.pepewuzzhere.pythia.PythiaException;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
 import org.junit.*;
 
 /**
@@ -92,4 +96,137 @@ public class CreateColumnFamilyInterpreterTest {
         assertEquals(cmd.getName(), "Test2");
         assertEquals(cmd.getKeySpace(), "Test");
     }
+
+    @Test
+    public void testInterpretWithOptions() throws Exception {
+        ParseTree options = new ParseTree(
+                LL1Grammar.NonTerminal.COLUMNFAMILY_OPTIONS, null);
+        options.add(
+            new ParseTree(
+                Terminal.KEY_WITH,
+                new Token(TokenType.KEYWORD, "WITH")
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "ordered")
+            ),
+            new ParseTree(
+                Terminal.SYMBOL_EQUAL,
+                new Token(TokenType.EQUAL)
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "true")
+            ),
+            new ParseTree(
+                LL1Grammar.NonTerminal.KEY_VALUES_LIST_PRIM, null
+            )
+        );
+        ParseTree stmt = new ParseTree(
+                LL1Grammar.NonTerminal.STMT_CREATE_COLUMNFAMILY, null);
+        stmt.add(
+            new ParseTree(
+                Terminal.KEY_CREATE,
+                new Token(TokenType.KEYWORD, "CREATE")
+            ),
+            new ParseTree(
+                Terminal.KEY_COLUMNFAMILY,
+                new Token(TokenType.KEYWORD, "COLUMNFAMILY")
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "Test3")
+            ),
+            options
+        );
+
+        IInterpreter interpreter = new CreateColumnFamilyInterpreter();
+        CreateColumnFamilyCommand cmd = (CreateColumnFamilyCommand)
+                interpreter.interpret(stmt, new Context());
+
+        assertEquals(cmd.getName(), "Test3");
+        assertTrue(cmd.getOptions().isOrdered());
+    }
+
+    @Test
+    public void testInterpretWithColumnTypes() throws Exception {
+        IInterpreter interpreter = new CreateColumnFamilyInterpreter();
+        CreateColumnFamilyCommand cmd = (CreateColumnFamilyCommand)
+                interpreter.interpret(typed("long"), new Context());
+
+        assertEquals(
+            ColumnType.LONG,
+            cmd.getOptions().getColumnType(ByteBuffer.wrap("hits".getBytes()))
+        );
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testInterpretWithUnknownType() throws Exception {
+        new CreateColumnFamilyInterpreter().interpret(
+                typed("number"), new Context());
+    }
+
+    private static ParseTree typed(String type) {
+        ParseTree types = new ParseTree(
+                LL1Grammar.NonTerminal.COLUMN_TYPES, null);
+        types.add(
+            new ParseTree(Terminal.SYMBOL_LPAREN, new Token(TokenType.LPAREN)),
+            new ParseTree(
+                Terminal.VAR, new Token(TokenType.VARIABLE, "hits")),
+            new ParseTree(
+                Terminal.VAR, new Token(TokenType.VARIABLE, type)),
+            new ParseTree(LL1Grammar.NonTerminal.COLUMN_TYPES_PRIM, null),
+            new ParseTree(Terminal.SYMBOL_RPAREN, new Token(TokenType.RPAREN))
+        );
+        ParseTree stmt = new ParseTree(
+                LL1Grammar.NonTerminal.STMT_CREATE_COLUMNFAMILY, null);
+        stmt.add(
+            new ParseTree(
+                Terminal.KEY_COLUMNFAMILY,
+                new Token(TokenType.KEYWORD, "COLUMNFAMILY")
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "Counters")
+            ),
+            types,
+            new ParseTree(LL1Grammar.NonTerminal.COLUMNFAMILY_OPTIONS, null)
+        );
+        return stmt;
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testInterpretWithUnknownOption() throws Exception {
+        ParseTree options = new ParseTree(
+                LL1Grammar.NonTerminal.COLUMNFAMILY_OPTIONS, null);
+        options.add(
+            new ParseTree(
+                Terminal.KEY_WITH,
+                new Token(TokenType.KEYWORD, "WITH")
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "unknown")
+            ),
+            new ParseTree(
+                Terminal.SYMBOL_EQUAL,
+                new Token(TokenType.EQUAL)
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "true")
+            )
+        );
+        ParseTree stmt = new ParseTree(
+                LL1Grammar.NonTerminal.STMT_CREATE_COLUMNFAMILY, null);
+        stmt.add(
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "Test3")
+            ),
+            options
+        );
+
+        new CreateColumnFamilyInterpreter().interpret(stmt, new Context());
+    }
 }
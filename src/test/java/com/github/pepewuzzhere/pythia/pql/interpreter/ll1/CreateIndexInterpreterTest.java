@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
+
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import com.github.pepewuzzhere.pythia.pql.*;
+import com.github.pepewuzzhere.pythia.pql.command.CreateIndexCommand;
+import com.github.pepewuzzhere.pythia.pql.interpreter.IInterpreter;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.assertEquals;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class CreateIndexInterpreterTest {
+
+    public CreateIndexInterpreterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        DB.INSTANCE.dropDB();
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testInterpret() throws Exception {
+        ParseTree stmt =
+                new ParseTree(LL1Grammar.NonTerminal.STMT_CREATE_INDEX, null);
+        stmt.add(
+            new ParseTree(
+                Terminal.KEY_INDEX,
+                new Token(TokenType.KEYWORD, "INDEX")
+            ),
+            new ParseTree(
+                Terminal.KEY_ON,
+                new Token(TokenType.KEYWORD, "ON")
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "Users")
+            ),
+            new ParseTree(
+                Terminal.SYMBOL_LPAREN,
+                new Token(TokenType.LPAREN)
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, "city")
+            ),
+            new ParseTree(
+                Terminal.SYMBOL_RPAREN,
+                new Token(TokenType.RPAREN)
+            )
+        );
+
+        DB.INSTANCE.addKeySpace(new HashMapDataModel().createKeySpace("Test"));
+        Context ctx = new Context();
+        ctx.setActualKeySpace("Test");
+
+        IInterpreter interpreter = new CreateIndexInterpreter();
+        CreateIndexCommand cmd =
+                (CreateIndexCommand)interpreter.interpret(stmt, ctx);
+
+        assertEquals("Users", cmd.getColumnFamily());
+        assertEquals("Test", cmd.getKeySpace());
+        assertEquals(ByteBuffer.wrap("city".getBytes()), cmd.getColumnKey());
+    }
+}
@@ -84,6 +84,9 @@ public class SelectInterpreterTest {
                 new Token(TokenType.VARIABLE, "pepe")
             )
         );
+        ParseTree condition =
+                new ParseTree(LL1Grammar.NonTerminal.SELECT_CONDITION, null);
+        condition.add(where);
         stmt.add(
             new ParseTree(
                 Terminal.KEY_SELECT,
@@ -97,7 +100,7 @@ public class SelectInterpreterTest {
                 Terminal.VAR,
                 new Token(TokenType.VARIABLE, "Test2")
             ),
-            where
+            condition
         );
 
         IDataModel model = new HashMapDataModel();
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
+
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.pql.*;
+import com.github.pepewuzzhere.pythia.pql.interpreter.IInterpreter;
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class SetListInterpreterTest {
+
+    public SetListInterpreterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testInterpret() throws Exception {
+        ParseTree list = new ParseTree(LL1Grammar.NonTerminal.SET_LIST, null);
+        ParseTree counter =
+                new ParseTree(LL1Grammar.NonTerminal.SET_LIST_PRIM, null);
+        ParseTree increment =
+                new ParseTree(LL1Grammar.NonTerminal.INCREMENT, null);
+        ParseTree column =
+                new ParseTree(LL1Grammar.NonTerminal.SET_LIST_PRIM, null);
+        increment.add(
+            new ParseTree(Terminal.SYMBOL_PLUS, new Token(TokenType.PLUS)),
+            new ParseTree(Terminal.VAR, new Token(TokenType.VARIABLE, "1"))
+        );
+        column.add(
+            new ParseTree(Terminal.SYMBOL_COMMA, new Token(TokenType.COMMA)),
+            new ParseTree(
+                Terminal.VAR, new Token(TokenType.VARIABLE, "name")),
+            new ParseTree(Terminal.SYMBOL_EQUAL, new Token(TokenType.EQUAL)),
+            new ParseTree(
+                Terminal.VAR, new Token(TokenType.VARIABLE, "Piotr")),
+            new ParseTree(LL1Grammar.NonTerminal.INCREMENT, null),
+            new ParseTree(LL1Grammar.NonTerminal.SET_LIST_PRIM, null)
+        );
+        counter.add(
+            new ParseTree(Terminal.SYMBOL_COMMA, new Token(TokenType.COMMA)),
+            new ParseTree(
+                Terminal.VAR, new Token(TokenType.VARIABLE, "hits")),
+            new ParseTree(Terminal.SYMBOL_EQUAL, new Token(TokenType.EQUAL)),
+            new ParseTree(
+                Terminal.VAR, new Token(TokenType.VARIABLE, "hits")),
+            increment,
+            column
+        );
+        list.add(
+            new ParseTree(
+                Terminal.KEY_KEY, new Token(TokenType.KEYWORD, "KEY")),
+            new ParseTree(Terminal.SYMBOL_EQUAL, new Token(TokenType.EQUAL)),
+            new ParseTree(
+                Terminal.VAR, new Token(TokenType.VARIABLE, "pepe")),
+            counter
+        );
+
+        IInterpreter interpreter = new SetListInterpreter();
+        String[][] expected = new String[][] {
+            {"KEY", "pepe"},
+            {"hits", "hits", "1"},
+            {"name", "Piotr"}
+        };
+        assertArrayEquals(
+            expected, (String[][])interpreter.interpret(list, new Context()));
+    }
+}
@@ -218,9 +218,9 @@ public class StartStmtInterpreterTest {
                 new ParseTree(LL1Grammar.NonTerminal.STMT_UPDATE, null);
         input[6].add(stmt6);
         ParseTree keyValue2 =
-                new ParseTree(LL1Grammar.NonTerminal.KEY_VALUES_LIST, null);
+                new ParseTree(LL1Grammar.NonTerminal.SET_LIST, null);
         ParseTree nextValue2 = new ParseTree(
-                LL1Grammar.NonTerminal.KEY_VALUES_LIST_PRIM, null);
+                LL1Grammar.NonTerminal.SET_LIST_PRIM, null);
         nextValue2.add(
             new ParseTree(
                 Terminal.SYMBOL_COMMA,
@@ -238,7 +238,8 @@ public class StartStmtInterpreterTest {
                 Terminal.VAR,
                 new Token(TokenType.VARIABLE, "Piotr")
            ),
-            new ParseTree(LL1Grammar.NonTerminal.KEY_VALUES_LIST_PRIM, null)
+            new ParseTree(LL1Grammar.NonTerminal.INCREMENT, null),
+            new ParseTree(LL1Grammar.NonTerminal.SET_LIST_PRIM, null)
         );
         keyValue2.add(
             new ParseTree(
@@ -294,6 +295,9 @@ public class StartStmtInterpreterTest {
                 new Token(TokenType.VARIABLE, "pepe")
             )
         );
+        ParseTree condition =
+                new ParseTree(LL1Grammar.NonTerminal.SELECT_CONDITION, null);
+        condition.add(where);
         stmt7.add(
             new ParseTree(
                 Terminal.KEY_SELECT,
@@ -307,7 +311,7 @@ public class StartStmtInterpreterTest {
                 Terminal.VAR,
                 new Token(TokenType.VARIABLE, "Test2")
             ),
-            where
+            condition
         );
 
         input[8] = new ParseTree(LL1Grammar.NonTerminal.STMT_START, null);
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.pql.interpreter.ll1;
+
+import com.github.pepewuzzhere.pythia.PythiaException;
+import com.github.pepewuzzhere.pythia.pql.*;
+import com.github.pepewuzzhere.pythia.pql.command.IMutationCommand;
+import com.github.pepewuzzhere.pythia.pql.interpreter.IInterpreter;
+import static org.junit.Assert.assertEquals;
+import org.junit.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class TtlInterpreterTest {
+
+    public TtlInterpreterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testInterpret() throws Exception {
+        IInterpreter interpreter = new TtlInterpreter();
+
+        assertEquals(3600, interpreter.interpret(ttl("3600"), null));
+        assertEquals(0, interpreter.interpret(ttl("0"), null));
+        assertEquals(
+            IMutationCommand.NO_TTL,
+            interpreter.interpret(
+                new ParseTree(LL1Grammar.NonTerminal.TTL_OPTION, null), null)
+        );
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testInterpretNotNumber() throws Exception {
+        new TtlInterpreter().interpret(ttl("hour"), null);
+    }
+
+    @Test(expected = PythiaException.class)
+    public void testInterpretTooLong() throws Exception {
+        new TtlInterpreter().interpret(ttl("99999999999"), null);
+    }
+
+    private static ParseTree ttl(String value) {
+        ParseTree ttl = new ParseTree(LL1Grammar.NonTerminal.TTL_OPTION, null);
+        ttl.add(
+            new ParseTree(
+                Terminal.KEY_USING,
+                new Token(TokenType.KEYWORD, "USING")
+            ),
+            new ParseTree(
+                Terminal.KEY_TTL,
+                new Token(TokenType.KEYWORD, "TTL")
+            ),
+            new ParseTree(
+                Terminal.VAR,
+                new Token(TokenType.VARIABLE, value)
+            )
+        );
+        return ttl;
+    }
+}
@@ -66,9 +66,9 @@ public class UpdateInterpreterTest {
         ParseTree stmt =
                 new ParseTree(LL1Grammar.NonTerminal.STMT_INSERT, null);
         ParseTree keyValue =
-                new ParseTree(LL1Grammar.NonTerminal.KEY_VALUES_LIST, null);
+                new ParseTree(LL1Grammar.NonTerminal.SET_LIST, null);
         ParseTree nextValue = new ParseTree(
-                LL1Grammar.NonTerminal.KEY_VALUES_LIST_PRIM, null);
+                LL1Grammar.NonTerminal.SET_LIST_PRIM, null);
         nextValue.add(
             new ParseTree(
                 Terminal.SYMBOL_COMMA,
@@ -86,7 +86,8 @@ public class UpdateInterpreterTest {
                 Terminal.VAR,
                 new Token(TokenType.VARIABLE, "Piotr")
            ),
-            new ParseTree(LL1Grammar.NonTerminal.KEY_VALUES_LIST_PRIM, null)
+            new ParseTree(LL1Grammar.NonTerminal.INCREMENT, null),
+            new ParseTree(LL1Grammar.NonTerminal.SET_LIST_PRIM, null)
         );
         keyValue.add(
             new ParseTree(
@@ -0,0 +1,346 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import com.github.pepewuzzhere.pythia.datamodel.ColumnFamilyOptions;
+import com.github.pepewuzzhere.pythia.datamodel.ColumnType;
+import com.github.pepewuzzhere.pythia.datamodel.Expiry;
+import com.github.pepewuzzhere.pythia.datamodel.IColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.ICompressedColumn;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.IRow;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.offheap.OffHeapDataModel;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class BinarySnapshotTest {
+
+    private final static File FILE = new File(
+            System.getProperty("java.io.tmpdir") + "pythia-snapshot");
+
+    private final static File DELTA = new File(FILE.getPath() + ".delta");
+
+    private final IDataModel model = new HashMapDataModel();
+
+    public BinarySnapshotTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        FILE.delete();
+        DELTA.delete();
+    }
+
+    @After
+    public void tearDown() {
+        FILE.delete();
+        DELTA.delete();
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        for (ColumnFamilyOptions options : new ColumnFamilyOptions[] {
+            new ColumnFamilyOptions(),
+            new ColumnFamilyOptions().setOrdered(true),
+            new ColumnFamilyOptions().setPacked(true),
+            new ColumnFamilyOptions().setCompressed(true)
+                .setCompressionThreshold(16),
+            new ColumnFamilyOptions().setPartitioned(true).setPartitions(4)
+        }) {
+            IColumnFamily columnFamily = fill(
+                    model.createColumnFamily(options), model, 1000);
+            BinarySnapshot.write(FILE, columnFamily);
+
+            IColumnFamily read = BinarySnapshot.read(FILE, model);
+            assertEquals(options, read.getOptions());
+            assertEquals(columnFamily, read);
+            assertFalse(read.isDirty());
+        }
+    }
+
+    @Test
+    public void testOffHeap() throws Exception {
+        IDataModel offHeap = new OffHeapDataModel();
+        IColumnFamily columnFamily =
+                fill(offHeap.createColumnFamily(), offHeap, 1000);
+        BinarySnapshot.write(FILE, columnFamily);
+
+        IColumnFamily read = BinarySnapshot.read(FILE, offHeap);
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(
+                columnFamily.getRow(key("k" + i)),
+                read.getRow(key("k" + i))
+            );
+        }
+    }
+
+    @Test
+    public void testNullAndBigValues() throws Exception {
+        IColumnFamily columnFamily = model.createColumnFamily();
+        byte[] big = new byte[BinarySnapshot.BLOCK_SIZE * 3];
+        Arrays.fill(big, (byte)7);
+        IRow row = model.createRow(key("big"));
+        row.putColumn(key("blob"), ByteBuffer.wrap(big));
+        row.putColumn(key("none"), null);
+        columnFamily.addRow(row);
+        BinarySnapshot.write(FILE, columnFamily);
+
+        IRow read = BinarySnapshot.read(FILE, model).getRow(key("big"));
+        assertEquals(
+            ByteBuffer.wrap(big), read.getColumn(key("blob")).getValue());
+        assertNotNull(read.getColumn(key("none")));
+        assertNull(read.getColumn(key("none")).getValue());
+    }
+
+    @Test
+    public void testTypesIndexesAndDeadlines() throws Exception {
+        IColumnFamily columnFamily = model.createColumnFamily(
+            new ColumnFamilyOptions().setColumnType("age", ColumnType.INT));
+        fill(columnFamily, model, 10);
+        columnFamily.createIndex(key("name"));
+        columnFamily.expire(key("k1"), null, 60000);
+        columnFamily.expire(key("k2"), key("name"), 60000);
+        BinarySnapshot.write(FILE, columnFamily);
+
+        IColumnFamily read = BinarySnapshot.read(FILE, model);
+        assertEquals(
+            ColumnType.INT, read.getOptions().getColumnType(key("age")));
+        assertEquals(
+            Arrays.asList(key("name")), read.getIndexedColumns());
+        assertEquals(1, read.getIndexedRows(key("name"), key("v3")).size());
+        assertTrue(read.getDeadline(key("k1"), null) != Expiry.NEVER);
+        assertEquals(
+            columnFamily.getDeadline(key("k1"), null),
+            read.getDeadline(key("k1"), null),
+            1000
+        );
+        assertTrue(read.getDeadline(key("k2"), key("name")) != Expiry.NEVER);
+        assertEquals(Expiry.NEVER, read.getDeadline(key("k3"), null));
+    }
+
+    @Test
+    public void testExpiredAreSkipped() throws Exception {
+        IColumnFamily columnFamily = fill(model.createColumnFamily(), model, 3);
+        columnFamily.expire(key("k1"), null, 1);
+        columnFamily.expire(key("k2"), key("name"), 1);
+        BinarySnapshot.write(FILE, columnFamily);
+        Thread.sleep(5);
+
+        IColumnFamily read = BinarySnapshot.read(FILE, model);
+        assertNotNull(read.getRow(key("k0")));
+        assertNull(read.getRow(key("k1")));
+        assertNotNull(read.getRow(key("k2")));
+        assertNull(read.getRow(key("k2")).getColumn(key("name")));
+    }
+
+    @Test
+    public void testReadSerialized() throws Exception {
+        IColumnFamily columnFamily =
+                fill(model.createColumnFamily(), model, 10);
+        try (ObjectOutputStream out =
+                new ObjectOutputStream(new FileOutputStream(FILE))
+        ) {
+            out.writeObject(columnFamily);
+        }
+        assertEquals(columnFamily, BinarySnapshot.read(FILE, model));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDamagedBlock() throws Exception {
+        BinarySnapshot.write(FILE, fill(model.createColumnFamily(), model, 10));
+        try (RandomAccessFile file = new RandomAccessFile(FILE, "rw")) {
+            file.seek(file.length() - 20);
+            file.write(file.read() ^ 0xff);
+        }
+        BinarySnapshot.read(FILE, model);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws Exception {
+        BinarySnapshot.write(FILE, fill(model.createColumnFamily(), model, 10));
+        try (RandomAccessFile file = new RandomAccessFile(FILE, "rw")) {
+            file.setLength(file.length() - 4);
+        }
+        BinarySnapshot.read(FILE, model);
+    }
+
+    @Test
+    public void testAppendAndReadChanges() throws Exception {
+        IColumnFamily columnFamily =
+                fill(model.createColumnFamily(), model, 10);
+        columnFamily.createIndex(key("name"));
+        BinarySnapshot.write(FILE, columnFamily);
+        columnFamily.setClean();
+        // nothing changed - nothing is written
+        assertTrue(BinarySnapshot.appendChanges(DELTA, columnFamily));
+        assertFalse(DELTA.exists());
+
+        columnFamily.updateRow(key("k1"), key("name"), key("changed"));
+        columnFamily.deleteRow(key("k2"));
+        assertTrue(BinarySnapshot.appendChanges(DELTA, columnFamily));
+        IRow row = model.createRow(key("k10"));
+        row.putColumn(key("name"), key("v10"));
+        columnFamily.addRow(row);
+        columnFamily.deleteRow(key("k3"));
+        columnFamily.expire(key("k4"), null, 60000);
+        assertTrue(BinarySnapshot.appendChanges(DELTA, columnFamily));
+        assertTrue(BinarySnapshot.isBinary(DELTA));
+
+        IColumnFamily read = BinarySnapshot.read(FILE, model);
+        assertEquals(DELTA.length(), BinarySnapshot.readChanges(DELTA, read));
+        assertEquals(columnFamily, read);
+        assertNull(read.getRow(key("k2")));
+        assertTrue(read.getDeadline(key("k4"), null) != Expiry.NEVER);
+        assertEquals(
+            1, read.getIndexedRows(key("name"), key("changed")).size());
+        assertTrue(read.getIndexedRows(key("name"), key("v1")).isEmpty());
+    }
+
+    @Test
+    public void testTornChanges() throws Exception {
+        IColumnFamily columnFamily = fill(model.createColumnFamily(), model, 3);
+        BinarySnapshot.write(FILE, columnFamily);
+        columnFamily.setClean();
+        columnFamily.deleteRow(key("k0"));
+        BinarySnapshot.appendChanges(DELTA, columnFamily);
+        long length = DELTA.length();
+        columnFamily.deleteRow(key("k1"));
+        BinarySnapshot.appendChanges(DELTA, columnFamily);
+        try (RandomAccessFile file = new RandomAccessFile(DELTA, "rw")) {
+            // end of last segment is lost
+            file.setLength(file.length() - 4);
+        }
+
+        IColumnFamily read = BinarySnapshot.read(FILE, model);
+        assertEquals(length, BinarySnapshot.readChanges(DELTA, read));
+        assertNull(read.getRow(key("k0")));
+        assertNotNull(read.getRow(key("k1")));
+    }
+
+    @Test
+    public void testChangesOfDirtyColumnFamily() throws Exception {
+        IColumnFamily columnFamily = fill(model.createColumnFamily(), model, 3);
+        columnFamily.setDirty();
+        assertFalse(BinarySnapshot.appendChanges(DELTA, columnFamily));
+        assertFalse(DELTA.exists());
+    }
+
+    @Test
+    public void testLayoutOfRows() throws Exception {
+        IColumnFamily packed = fill(model.createColumnFamily(
+                new ColumnFamilyOptions().setPacked(true)), model, 10);
+        BinarySnapshot.write(FILE, packed);
+
+        IColumnFamily read = BinarySnapshot.read(FILE, model);
+        assertEquals(packed.getRow(key("k1")).getClass(),
+                read.getRow(key("k1")).getClass());
+    }
+
+    @Test
+    public void testColumnNamesAreShared() throws Exception {
+        BinarySnapshot.write(FILE, fill(model.createColumnFamily(), model, 2));
+
+        IColumnFamily read = BinarySnapshot.read(FILE, model);
+        assertSame(
+            read.getRow(key("k0")).getColumn(key("name")).getKey().array(),
+            read.getRow(key("k1")).getColumn(key("name")).getKey().array()
+        );
+    }
+
+    @Test
+    public void testCompressedValues() throws Exception {
+        IColumnFamily columnFamily = model.createColumnFamily(
+            new ColumnFamilyOptions().setCompressed(true)
+                .setCompressionThreshold(16));
+        byte[] big = new byte[18000];
+        Arrays.fill(big, (byte)7);
+        columnFamily.getOrCreateRow(key("big"))
+                .putColumn(key("blob"), ByteBuffer.wrap(big));
+        BinarySnapshot.write(FILE, columnFamily);
+        assertTrue(FILE.length() < 1000);
+
+        IColumnFamily read = BinarySnapshot.read(FILE, model);
+        IColumn column = read.getRow(key("big")).getColumn(key("blob"));
+        assertEquals(ByteBuffer.wrap(big), column.getValue());
+        assertNotNull(((ICompressedColumn)column).getCompressedValue());
+
+        read.getRow(key("big")).putColumn(key("other"), key("v"));
+        assertTrue(BinarySnapshot.appendChanges(DELTA, read));
+        assertTrue(DELTA.length() < 1000);
+        IColumnFamily changed = BinarySnapshot.read(FILE, model);
+        BinarySnapshot.readChanges(DELTA, changed);
+        assertEquals(read, changed);
+    }
+
+    @Test
+    public void testChangesOfOlderVersion() throws Exception {
+        IColumnFamily columnFamily = fill(model.createColumnFamily(), model, 3);
+        columnFamily.setClean();
+        columnFamily.deleteRow(key("k0"));
+        try (RandomAccessFile file = new RandomAccessFile(DELTA, "rw")) {
+            file.writeInt(0x50595348);
+            file.writeInt(1);
+        }
+        assertFalse(BinarySnapshot.appendChanges(DELTA, columnFamily));
+        assertEquals(8, DELTA.length());
+    }
+
+    private static IColumnFamily fill(
+        final IColumnFamily columnFamily, final IDataModel model,
+        final int rows
+    ) throws Exception {
+        for (int i = 0; i < rows; ++i) {
+            IRow row = columnFamily.getOrCreateRow(key("k" + i));
+            row.putColumn(key("name"), key("v" + i));
+            row.putColumn(key("age"), ByteBuffer.allocate(4).putInt(0, i));
+        }
+        return columnFamily;
+    }
+
+    private static ByteBuffer key(final String key) {
+        return ByteBuffer.wrap(key.getBytes());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class CommitLogTest {
+
+    private final static String ROOT =
+            System.getProperty("java.io.tmpdir") + "pythia-commitlog";
+
+    private static class Collector implements CommitLog.IHandler {
+
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void apply(final String keySpace, final String[] lines) {
+            records.add(keySpace + ":" + Arrays.toString(lines));
+        }
+
+    }
+
+    public CommitLogTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        doDelete(new File(ROOT));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        doDelete(new File(ROOT));
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        for (CommitLog.SyncMode mode : CommitLog.SyncMode.values()) {
+            doDelete(new File(ROOT));
+            CommitLog log = new CommitLog(ROOT, mode, 0);
+            log.commit(log.append("Test", "DELETE FROM Users WHERE KEY = 1"));
+            log.commit(log.append(null, "CREATE KEYSPACE Test"));
+            log.commit(log.append("Test", "INSERT ...", "UPDATE ..."));
+            log.close();
+
+            Collector collector = new Collector();
+            assertEquals(3, new CommitLog(ROOT, mode, 0).replay(collector));
+            assertEquals(
+                Arrays.asList(
+                    "Test:[DELETE FROM Users WHERE KEY = 1]",
+                    "null:[CREATE KEYSPACE Test]",
+                    "Test:[INSERT ..., UPDATE ...]"
+                ),
+                collector.records
+            );
+        }
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        CommitLog log = new CommitLog(ROOT, CommitLog.SyncMode.PERIODIC, 1000);
+        log.commit(log.append("Test", "DROP KEYSPACE Test"));
+        assertEquals(0, new File(ROOT, "commit.0.log").length());
+
+        log.flush();
+        assertTrue(new File(ROOT, "commit.0.log").length() > 0);
+    }
+
+    @Test
+    public void testRotateAndDiscard() throws Exception {
+        CommitLog log = new CommitLog(ROOT, CommitLog.SyncMode.GROUP, 0);
+        log.commit(log.append("Test", "A"));
+        long segment = log.rotate();
+        assertEquals(1, segment);
+        log.commit(log.append("Test", "B"));
+
+        // records of current segment are not replayed
+        Collector collector = new Collector();
+        assertEquals(1, log.replay(collector));
+        assertEquals(Arrays.asList("Test:[A]"), collector.records);
+
+        log.discard(segment);
+        assertFalse(new File(ROOT, "commit.0.log").exists());
+        log.close();
+
+        collector = new Collector();
+        new CommitLog(ROOT, CommitLog.SyncMode.GROUP, 0).replay(collector);
+        assertEquals(Arrays.asList("Test:[B]"), collector.records);
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws Exception {
+        CommitLog log = new CommitLog(ROOT, CommitLog.SyncMode.PER_WRITE, 0);
+        log.append("Test", "A");
+        log.append("Test", "B");
+        log.close();
+
+        File file = new File(ROOT, "commit.0.log");
+        long length = file.length();
+        try (RandomAccessFile torn = new RandomAccessFile(file, "rw")) {
+            torn.setLength(length - 1);
+        }
+
+        Collector collector = new Collector();
+        log = new CommitLog(ROOT, CommitLog.SyncMode.GROUP, 0);
+        assertEquals(1, log.replay(collector));
+        assertEquals(Arrays.asList("Test:[A]"), collector.records);
+        assertEquals(length / 2, file.length());
+    }
+
+    @Test
+    public void testCorruptedRecordIsCutOff() throws Exception {
+        CommitLog log = new CommitLog(ROOT, CommitLog.SyncMode.PER_WRITE, 0);
+        log.append("Test", "A");
+        log.append("Test", "B");
+        log.close();
+
+        File file = new File(ROOT, "commit.0.log");
+        try (RandomAccessFile corrupted = new RandomAccessFile(file, "rw")) {
+            corrupted.seek(file.length() - 1);
+            corrupted.write('C');
+        }
+
+        Collector collector = new Collector();
+        new CommitLog(ROOT, CommitLog.SyncMode.GROUP, 0).replay(collector);
+        assertEquals(Arrays.asList("Test:[A]"), collector.records);
+    }
+
+    @Test
+    public void testGroupCommitOfConcurrentWriters() throws Exception {
+        final CommitLog log = new CommitLog(ROOT, CommitLog.SyncMode.GROUP, 1);
+        final List<Thread> writers = new ArrayList<>();
+        final List<Throwable> errors =
+                Collections.synchronizedList(new ArrayList<Throwable>());
+        for (int i = 0; i < 8; ++i) {
+            final String name = "W" + i;
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; ++j) {
+                            log.commit(log.append(name, String.valueOf(j)));
+                        }
+                    } catch (IOException e) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertTrue(errors.isEmpty());
+        log.rotate();
+
+        Collector collector = new Collector();
+        assertEquals(400, log.replay(collector));
+        for (int i = 0; i < 8; ++i) {
+            int next = 0;
+            for (String record : collector.records) {
+                if (record.startsWith("W" + i + ":")) {
+                    assertEquals("W" + i + ":[" + next++ + "]", record);
+                }
+            }
+            assertEquals(50, next);
+        }
+        log.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeWindow() throws Exception {
+        new CommitLog(ROOT, CommitLog.SyncMode.GROUP, -1);
+    }
+
+    private static void doDelete(File path) throws IOException {
+        if (path.isDirectory()) {
+            for (File child : path.listFiles()) {
+                doDelete(child);
+            }
+        }
+        if (!path.delete() && path.exists()) {
+            throw new IOException("Could not delete " + path);
+        }
+    }
+
+}
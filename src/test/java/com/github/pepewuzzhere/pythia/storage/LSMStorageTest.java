@@ -0,0 +1,308 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import com.github.pepewuzzhere.pythia.Context;
+import com.github.pepewuzzhere.pythia.DB;
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.offheap.OffHeapDataModel;
+import com.github.pepewuzzhere.pythia.pql.command.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class LSMStorageTest {
+
+    private final static String ROOT =
+            System.getProperty("java.io.tmpdir") + "pythia-lsm";
+
+    private final static File USERS = new File(ROOT + "/Test/Users");
+
+    private DB db;
+    private IDataModel model;
+
+    public LSMStorageTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        doDelete(new File(ROOT));
+        new File(ROOT).mkdirs();
+        db = new DB();
+        model = new HashMapDataModel();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        doDelete(new File(ROOT));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        createUsers();
+        insert("pepe", "Piotr");
+        insert("john", "John");
+        LSMStorage storage = new LSMStorage();
+        storage.write(ROOT, db);
+        File base = new File(USERS, "base");
+        long baseSize = base.length();
+        assertTrue(base.exists());
+        assertTrue(storage.segments(USERS).isEmpty());
+
+        insert("anna", "Anna");
+        new UpdateCommand(
+            "Users", "Test", key("pepe"),
+            new ByteBuffer[] { key("name") },
+            new ByteBuffer[] { key("Pepe") }
+        ).execute(db, model);
+        new DeleteCommand("Users", "Test", key("john")).execute(db, model);
+        storage.write(ROOT, db);
+        assertEquals(baseSize, base.length());
+        List<Segment> segments = storage.segments(USERS);
+        assertEquals(1, segments.size());
+        assertEquals(3, segments.get(0).getCount());
+
+        // nothing changed - nothing is written
+        storage.write(ROOT, db);
+        assertEquals(1, storage.segments(USERS).size());
+
+        DB read = new DB();
+        new LSMStorage().read(ROOT, read, model);
+        IColumnFamily written = db.getKeySpace("Test").getColumnFamily("Users");
+        IColumnFamily users = read.getKeySpace("Test").getColumnFamily("Users");
+        assertEquals(written, users);
+        assertFalse(users.isDirty());
+        assertNull(users.getRow(key("john")));
+        assertEquals(
+            key("Pepe"),
+            users.getRow(key("pepe")).getColumn(key("name")).getValue()
+        );
+    }
+
+    @Test
+    public void testWriteAndReadOffHeap() throws Exception {
+        model = new OffHeapDataModel();
+        createUsers();
+        insert("pepe", "Piotr");
+        LSMStorage storage = new LSMStorage();
+        storage.write(ROOT, db);
+        insert("john", "John");
+        new DeleteCommand("Users", "Test", key("pepe")).execute(db, model);
+        storage.write(ROOT, db);
+        assertEquals(1, storage.segments(USERS).size());
+
+        DB read = new DB();
+        new LSMStorage().read(ROOT, read, model);
+        IColumnFamily users = read.getKeySpace("Test").getColumnFamily("Users");
+        assertNull(users.getRow(key("pepe")));
+        assertEquals(
+            key("John"),
+            users.getRow(key("john")).getColumn(key("name")).getValue()
+        );
+    }
+
+    @Test
+    public void testSizeTieredCompaction() throws Exception {
+        createUsers();
+        LSMStorage storage = new LSMStorage(LSMStorage.Compaction.SIZE_TIERED);
+        storage.write(ROOT, db);
+        for (int i = 0; i < LSMStorage.MIN_THRESHOLD; ++i) {
+            insert("user" + i, "Name" + i);
+            insert("pepe", "Piotr" + i);
+            storage.write(ROOT, db);
+        }
+        storage.awaitCompactions();
+
+        List<Segment> segments = storage.segments(USERS);
+        assertEquals(1, segments.size());
+        assertEquals(LSMStorage.MIN_THRESHOLD + 1, segments.get(0).getCount());
+        // merged segment replaces newest one
+        assertEquals(LSMStorage.MIN_THRESHOLD, segments.get(0).getSequence());
+        assertEquals(1, USERS.list(segmentFiles()).length);
+
+        assertRead();
+    }
+
+    @Test
+    public void testLeveledCompaction() throws Exception {
+        createUsers();
+        LSMStorage storage =
+                new LSMStorage(LSMStorage.Compaction.LEVELED, 512);
+        storage.write(ROOT, db);
+        for (int i = 0; i < 40; ++i) {
+            for (int j = 0; j < 10; ++j) {
+                insert("user" + (i * 7 + j * 13) % 100, "Name" + i);
+            }
+            storage.write(ROOT, db);
+        }
+        storage.awaitCompactions();
+
+        List<Segment> segments = storage.segments(USERS);
+        int level0 = 0;
+        for (Segment s : segments) {
+            if (s.getLevel() == 0) {
+                ++level0;
+                continue;
+            }
+            // segments of level have disjoint keys
+            for (Segment other : segments) {
+                if (other != s && other.getLevel() == s.getLevel()) {
+                    assertFalse(
+                        other.overlaps(s.getFirstKey(), s.getLastKey()));
+                }
+            }
+        }
+        assertTrue(level0 < LSMStorage.LEVEL0_SEGMENTS);
+        assertTrue(segments.size() > 1);
+
+        assertRead();
+    }
+
+    @Test
+    public void testReadCompleteNewBase() throws Exception {
+        createUsers();
+        insert("pepe", "Piotr");
+        LSMStorage storage = new LSMStorage();
+        storage.write(ROOT, db);
+        insert("john", "John");
+        storage.write(ROOT, db);
+
+        // crash after new base was written, before old segments were deleted
+        IColumnFamily current = model.createColumnFamily();
+        current.addRow(model.createRow(key("new")));
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new FileOutputStream(new File(USERS, "base.new")))
+        ) {
+            out.writeObject(current);
+        }
+        new File(USERS, "base.tmp").createNewFile();
+
+        DB read = new DB();
+        LSMStorage recovered = new LSMStorage();
+        recovered.read(ROOT, read, model);
+        assertEquals(
+            current, read.getKeySpace("Test").getColumnFamily("Users"));
+        assertTrue(recovered.segments(USERS).isEmpty());
+        assertEquals(1, USERS.list().length);
+    }
+
+    @Test
+    public void testRewriteBaseDeletesSegments() throws Exception {
+        createUsers();
+        insert("pepe", "Piotr");
+        LSMStorage storage = new LSMStorage();
+        storage.write(ROOT, db);
+        insert("john", "John");
+        storage.write(ROOT, db);
+        assertEquals(1, storage.segments(USERS).size());
+
+        db.getKeySpace("Test").getColumnFamily("Users").setDirty();
+        storage.write(ROOT, db);
+        assertTrue(storage.segments(USERS).isEmpty());
+        assertEquals(1, USERS.list().length);
+
+        assertRead();
+    }
+
+    @Test
+    public void testDropColumnFamily() throws Exception {
+        createUsers();
+        LSMStorage storage = new LSMStorage();
+        storage.write(ROOT, db);
+        assertTrue(USERS.exists());
+
+        new DropColumnFamilyCommand("Users", "Test").execute(db, model);
+        storage.write(ROOT, db);
+        assertFalse(USERS.exists());
+        assertTrue(new File(ROOT + "/Test").exists());
+    }
+
+    private void assertRead() throws Exception {
+        DB read = new DB();
+        new LSMStorage().read(ROOT, read, model);
+        assertEquals(
+            db.getKeySpace("Test").getColumnFamily("Users"),
+            read.getKeySpace("Test").getColumnFamily("Users")
+        );
+    }
+
+    private void createUsers() throws Exception {
+        Context ctx = new Context(db);
+        new CreateKeySpaceCommand("Test").execute(db, model);
+        new UseKeySpaceCommand("Test", ctx).execute(db, model);
+        new CreateColumnFamilyCommand("Users", "Test").execute(db, model);
+    }
+
+    private void insert(String key, String name) throws Exception {
+        new InsertCommand(
+            "Users",
+            "Test",
+            key(key),
+            new ByteBuffer[] { key("name") },
+            new ByteBuffer[] { key(name) }
+        ).execute(db, model);
+    }
+
+    private static ByteBuffer key(String key) {
+        return ByteBuffer.wrap(key.getBytes());
+    }
+
+    private static FilenameFilter segmentFiles() {
+        return new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return Segment.isSegment(name);
+            }
+        };
+    }
+
+    private static void doDelete(File path) throws IOException {
+        if (path.isDirectory()) {
+            for (File child : path.listFiles()) {
+                doDelete(child);
+            }
+        }
+        if (!path.delete() && path.exists()) {
+            throw new IOException("Could not delete " + path);
+        }
+    }
+
+}
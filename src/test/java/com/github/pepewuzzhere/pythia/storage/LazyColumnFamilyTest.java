@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import com.github.pepewuzzhere.pythia.datamodel.IColumnFamily;
+import com.github.pepewuzzhere.pythia.datamodel.IDataModel;
+import com.github.pepewuzzhere.pythia.datamodel.MemoryBudget;
+import com.github.pepewuzzhere.pythia.datamodel.hashmap.HashMapDataModel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class LazyColumnFamilyTest {
+
+    private static final ByteBuffer KEY = ByteBuffer.wrap("pepe".getBytes());
+
+    private final IDataModel model = new HashMapDataModel();
+
+    public LazyColumnFamilyTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testLoadOnFirstAccess() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final LazyColumnFamily columnFamily = new LazyColumnFamily(
+            new Callable<IColumnFamily>() {
+                @Override
+                public IColumnFamily call() throws Exception {
+                    loads.incrementAndGet();
+                    start.await();
+                    IColumnFamily read = model.createColumnFamily();
+                    read.addRow(model.createRow(KEY));
+                    read.setClean();
+                    return read;
+                }
+            }
+        );
+        assertFalse(columnFamily.isLoaded());
+        assertFalse(columnFamily.isDirty());
+        assertEquals(0, loads.get());
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> reads = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            reads.add(pool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return columnFamily.getRow(KEY) != null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> read : reads) {
+            assertTrue(read.get());
+        }
+        pool.shutdown();
+        assertEquals(1, loads.get());
+        assertTrue(columnFamily.isLoaded());
+
+        columnFamily.deleteRow(KEY);
+        assertTrue(columnFamily.isDirty());
+    }
+
+    @Test
+    public void testMemory() throws Exception {
+        LazyColumnFamily columnFamily = new LazyColumnFamily(
+            new Callable<IColumnFamily>() {
+                @Override
+                public IColumnFamily call() {
+                    return model.createColumnFamily();
+                }
+            }
+        );
+        MemoryBudget keySpace = new MemoryBudget();
+        columnFamily.getMemory().attach(keySpace);
+        assertEquals(0, keySpace.getUsedBytes());
+
+        IColumnFamily read = columnFamily.load();
+        read.addRow(model.createRow(KEY));
+        assertTrue(read.getMemory().getUsedBytes() > 0);
+        assertEquals(read.getMemory().getUsedBytes(), keySpace.getUsedBytes());
+    }
+
+    @Test
+    public void testFailedLoad() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        LazyColumnFamily columnFamily = new LazyColumnFamily(
+            new Callable<IColumnFamily>() {
+                @Override
+                public IColumnFamily call() throws IOException {
+                    loads.incrementAndGet();
+                    throw new IOException("Damaged");
+                }
+            }
+        );
+        for (int i = 0; i < 2; ++i) {
+            try {
+                columnFamily.getRow(KEY);
+                fail("Failure of reading expected");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(1, loads.get());
+        assertTrue(columnFamily.isLoaded());
+        assertFalse(columnFamily.isDirty());
+        columnFamily.setDirty();
+    }
+}
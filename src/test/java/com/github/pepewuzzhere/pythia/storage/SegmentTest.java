@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2012 Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.pepewuzzhere.pythia.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Piotr 'pepe' Picheta <piotr.pepe.picheta@gmail.com>
+ */
+public class SegmentTest {
+
+    private final static File ROOT = new File(
+            System.getProperty("java.io.tmpdir") + "pythia-segment");
+
+    public SegmentTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        doDelete(ROOT);
+        ROOT.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        doDelete(ROOT);
+    }
+
+    @Test
+    public void testWriteAndGet() throws Exception {
+        Segment segment = write(0, 1, 1000, "v");
+        assertEquals(new File(ROOT, "0-1.seg"), segment.getFile());
+        assertEquals(0, segment.getLevel());
+        assertEquals(1, segment.getSequence());
+        assertEquals(1000, segment.getCount());
+        assertArrayEquals(key(0), segment.getFirstKey());
+        assertArrayEquals(key(999), segment.getLastKey());
+        assertFalse(new File(ROOT, "0-1.seg.tmp").exists());
+
+        // keys at, between and after keys of sparse index
+        for (int i : new int[] {0, 1, 63, 64, 65, 500, 999}) {
+            assertArrayEquals(value("v", i), segment.get(key(i)));
+        }
+        assertNull(segment.get("a".getBytes()));
+        assertNull(segment.get("k0500x".getBytes()));
+        assertNull(segment.get("z".getBytes()));
+
+        Segment opened = Segment.open(segment.getFile());
+        assertArrayEquals(value("v", 700), opened.get(key(700)));
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        Segment segment = write(0, 1, 100, "v");
+        try (Segment.ICursor cursor = segment.cursor()) {
+            for (int i = 0; i < 100; ++i) {
+                assertTrue(cursor.next());
+                assertArrayEquals(key(i), cursor.key());
+                assertArrayEquals(value("v", i), cursor.value());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void testMergeTakesNewestEntry() throws Exception {
+        Segment old = write(1, 1, 10, "old");
+        Segment newer = write(0, 2, 5, "new");
+        try (Segment.Writer out = new Segment.Writer(ROOT, 0, 3)) {
+            out.add(key(3), "newest".getBytes());
+            out.add("x".getBytes(), "x".getBytes());
+            out.commit();
+        }
+        Segment newest = Segment.open(new File(ROOT, "0-3.seg"));
+
+        try (Segment.ICursor cursor =
+                Segment.merge(Arrays.asList(newest, newer, old))
+        ) {
+            for (int i = 0; i < 10; ++i) {
+                assertTrue(cursor.next());
+                assertArrayEquals(key(i), cursor.key());
+                byte[] expected = i == 3
+                        ? "newest".getBytes()
+                        : value(i < 5 ? "new" : "old", i);
+                assertArrayEquals(expected, cursor.value());
+            }
+            assertTrue(cursor.next());
+            assertArrayEquals("x".getBytes(), cursor.key());
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void testRecencyAndOverlaps() throws Exception {
+        Segment a = write(0, 2, 10, "v");
+        Segment b = write(0, 3, 10, "v");
+        Segment c = write(1, 4, 10, "v");
+        assertTrue(Segment.RECENCY.compare(b, a) < 0);
+        assertTrue(Segment.RECENCY.compare(a, c) < 0);
+
+        assertTrue(a.overlaps(key(5), key(20)));
+        assertTrue(a.overlaps("a".getBytes(), key(0)));
+        assertFalse(a.overlaps(key(10), key(20)));
+    }
+
+    @Test
+    public void testIsSegment() {
+        assertTrue(Segment.isSegment("0-12.seg"));
+        assertFalse(Segment.isSegment("0-12.seg.tmp"));
+        assertFalse(Segment.isSegment("base"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenIncompleteSegment() throws Exception {
+        try (Segment.Writer out = new Segment.Writer(ROOT, 0, 1)) {
+            out.add(key(1), value("v", 1));
+            out.finish();
+        }
+        File file = new File(ROOT, "0-1.seg");
+        file.createNewFile();
+        Segment.open(file);
+    }
+
+    private static Segment write(int level, long sequence, int count,
+            String prefix) throws IOException
+    {
+        try (Segment.Writer out = new Segment.Writer(ROOT, level, sequence)) {
+            for (int i = 0; i < count; ++i) {
+                out.add(key(i), value(prefix, i));
+            }
+            return out.commit();
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("k%04d", i).getBytes();
+    }
+
+    private static byte[] value(String prefix, int i) {
+        return (prefix + i).getBytes();
+    }
+
+    private static void doDelete(File path) throws IOException {
+        if (path.isDirectory()) {
+            for (File child : path.listFiles()) {
+                doDelete(child);
+            }
+        }
+        if (!path.delete() && path.exists()) {
+            throw new IOException("Could not delete " + path);
+        }
+    }
+
+}
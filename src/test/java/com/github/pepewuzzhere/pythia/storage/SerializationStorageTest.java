@@ -127,7 +127,7 @@ public class SerializationStorageTest {
 
         // read data from storage
         IStorage storage = new SerializationStorage();
-        storage.read(ROOT, new HashMapDataModel());
+        storage.read(ROOT, DB.INSTANCE, new HashMapDataModel());
 
         assertNotNull(DB.INSTANCE.getKeySpace("Test"));
         assertNotNull(DB.INSTANCE.getKeySpace("Test2"));
@@ -204,12 +204,12 @@ public class SerializationStorageTest {
 
         IDataModel model = new HashMapDataModel();
         for (int i = 0; i < commands.length; ++i) {
-            commands[i].execute(model);
+            commands[i].execute(DB.INSTANCE, model);
         }
 
         // write data to storage
         IStorage storage = new SerializationStorage();
-        storage.write(ROOT);
+        storage.write(ROOT, DB.INSTANCE);
 
         // test keyspaces
         File path = new File(ROOT);
@@ -235,19 +235,14 @@ public class SerializationStorageTest {
             keyspace1List
         );
 
-        ObjectInputStream in = new ObjectInputStream(
-                new FileInputStream(ROOT + "/Test/Comments"));
         assertEquals(
             DB.INSTANCE.getKeySpace("Test").getColumnFamily("Comments"),
-            (IColumnFamily)in.readObject()
+            BinarySnapshot.read(new File(ROOT + "/Test/Comments"), model)
         );
-        in.close();
 
-        in = new ObjectInputStream(
-                new FileInputStream(ROOT + "/Test/Users"));
         assertEquals(
             DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users"),
-            (IColumnFamily)in.readObject()
+            BinarySnapshot.read(new File(ROOT + "/Test/Users"), model)
         );
 
         File keyspace2 = new File(ROOT + "/Test2");
@@ -261,22 +256,14 @@ public class SerializationStorageTest {
             keyspace2List
         );
 
-        in.close();
-
-        in = new ObjectInputStream(
-                new FileInputStream(ROOT + "/Test2/Posts"));
         assertEquals(
             DB.INSTANCE.getKeySpace("Test2").getColumnFamily("Posts"),
-            (IColumnFamily)in.readObject()
+            BinarySnapshot.read(new File(ROOT + "/Test2/Posts"), model)
         );
 
-        in.close();
-
-        in = new ObjectInputStream(
-                new FileInputStream(ROOT + "/Test2/Topics"));
         assertEquals(
             DB.INSTANCE.getKeySpace("Test2").getColumnFamily("Topics"),
-            (IColumnFamily)in.readObject()
+            BinarySnapshot.read(new File(ROOT + "/Test2/Topics"), model)
         );
 
         // test updating column family
@@ -291,36 +278,322 @@ public class SerializationStorageTest {
                 ByteBuffer.wrap("blablabla".getBytes()),
             }
         );
-        insertNew.execute(model);
-        storage.write(ROOT);
-
-        in.close();
-
-        in = new ObjectInputStream(
-                new FileInputStream(ROOT + "/Test2/Posts"));
-        assertEquals(
-            DB.INSTANCE.getKeySpace("Test2").getColumnFamily("Posts"),
-            (IColumnFamily)in.readObject()
-        );
+        insertNew.execute(DB.INSTANCE, model);
+        storage.write(ROOT, DB.INSTANCE);
 
-        in.close();
+        // only changed row is appended to delta
+        assertTrue(new File(ROOT + "/Test2/Posts.delta").exists());
 
         // test deleting column family
         IDBCommand delete = new DropColumnFamilyCommand("Users", "Test");
-        delete.execute(model);
-        storage.write(ROOT);
+        delete.execute(DB.INSTANCE, model);
+        storage.write(ROOT, DB.INSTANCE);
         File deleted = new File(ROOT + "/Test/Users");
         assertFalse(deleted.exists());
 
         // test deleting keyspace
         IDBCommand drop = new DropKeySpaceCommand("Test2");
-        drop.execute(model);
-        storage.write(ROOT);
+        drop.execute(DB.INSTANCE, model);
+        storage.write(ROOT, DB.INSTANCE);
         File droped = new File(ROOT + "/Test2");
         assertFalse(droped.exists());
 
     }
 
+    @Test
+    public void testWriteChanges() throws Exception {
+        Context ctx = new Context();
+        IDBCommand[] commands = new IDBCommand[] {
+            new CreateKeySpaceCommand("Test"),
+            new UseKeySpaceCommand("Test", ctx),
+            new CreateColumnFamilyCommand("Users", "Test"),
+            insert("pepe", "Piotr"),
+            insert("john", "John")
+        };
+        IDataModel model = new HashMapDataModel();
+        for (int i = 0; i < commands.length; ++i) {
+            commands[i].execute(DB.INSTANCE, model);
+        }
+        IStorage storage = new SerializationStorage();
+        storage.write(ROOT, DB.INSTANCE);
+        File snapshot = new File(ROOT + "/Test/Users");
+        File delta = new File(ROOT + "/Test/Users.delta");
+        long snapshotSize = snapshot.length();
+        assertFalse(delta.exists());
+
+        commands = new IDBCommand[] {
+            insert("anna", "Anna"),
+            new UpdateCommand(
+                "Users", "Test", ByteBuffer.wrap("pepe".getBytes()),
+                new ByteBuffer[] { ByteBuffer.wrap("name".getBytes()) },
+                new ByteBuffer[] { ByteBuffer.wrap("Pepe".getBytes()) }
+            ),
+            new DeleteCommand(
+                "Users", "Test", ByteBuffer.wrap("john".getBytes()))
+        };
+        for (int i = 0; i < commands.length; ++i) {
+            commands[i].execute(DB.INSTANCE, model);
+        }
+        storage.write(ROOT, DB.INSTANCE);
+        assertEquals(snapshotSize, snapshot.length());
+        assertTrue(delta.exists());
+        long deltaSize = delta.length();
+
+        // nothing changed - nothing is written
+        storage.write(ROOT, DB.INSTANCE);
+        assertEquals(deltaSize, delta.length());
+
+        insert("eve", "Eve").execute(DB.INSTANCE, model);
+        storage.write(ROOT, DB.INSTANCE);
+        assertTrue(delta.length() > deltaSize);
+
+        IColumnFamily written =
+                DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users");
+        DB.INSTANCE.dropDB();
+        storage.read(ROOT, DB.INSTANCE, model);
+        IColumnFamily read =
+                DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users");
+        assertEquals(written, read);
+        assertFalse(read.isDirty());
+        assertNull(read.getRow(ByteBuffer.wrap("john".getBytes())));
+    }
+
+    @Test
+    public void testReadTornDelta() throws Exception {
+        Context ctx = new Context();
+        IDBCommand[] commands = new IDBCommand[] {
+            new CreateKeySpaceCommand("Test"),
+            new UseKeySpaceCommand("Test", ctx),
+            new CreateColumnFamilyCommand("Users", "Test"),
+            insert("pepe", "Piotr")
+        };
+        IDataModel model = new HashMapDataModel();
+        for (int i = 0; i < commands.length; ++i) {
+            commands[i].execute(DB.INSTANCE, model);
+        }
+        IStorage storage = new SerializationStorage();
+        storage.write(ROOT, DB.INSTANCE);
+        insert("john", "John").execute(DB.INSTANCE, model);
+        storage.write(ROOT, DB.INSTANCE);
+
+        File delta = new File(ROOT + "/Test/Users.delta");
+        long deltaSize = delta.length();
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(delta, true))
+        ) {
+            out.writeInt(1000);
+            out.write(new byte[] { 1, 2, 3 });
+        }
+
+        IColumnFamily written =
+                DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users");
+        DB.INSTANCE.dropDB();
+        storage.read(ROOT, DB.INSTANCE, model);
+        assertEquals(
+            written, DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users"));
+        assertEquals(deltaSize, delta.length());
+    }
+
+    @Test
+    public void testReadSerializedDelta() throws Exception {
+        Context ctx = new Context();
+        IDBCommand[] commands = new IDBCommand[] {
+            new CreateKeySpaceCommand("Test"),
+            new UseKeySpaceCommand("Test", ctx),
+            new CreateColumnFamilyCommand("Users", "Test"),
+            insert("pepe", "Piotr")
+        };
+        IDataModel model = new HashMapDataModel();
+        for (int i = 0; i < commands.length; ++i) {
+            commands[i].execute(DB.INSTANCE, model);
+        }
+        IStorage storage = new SerializationStorage();
+        storage.write(ROOT, DB.INSTANCE);
+
+        // delta written by older version
+        insert("john", "John").execute(DB.INSTANCE, model);
+        IColumnFamily written =
+                DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users");
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(segment)) {
+            assertTrue(written.writeChanges(out));
+        }
+        File delta = new File(ROOT + "/Test/Users.delta");
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(delta))
+        ) {
+            out.writeInt(segment.size());
+            segment.writeTo(out);
+        }
+
+        DB.INSTANCE.dropDB();
+        storage.read(ROOT, DB.INSTANCE, model);
+        IColumnFamily read =
+                DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users");
+        assertEquals(written, read);
+        // column family is written whole and old delta is removed
+        assertTrue(read.isDirty());
+        storage.write(ROOT, DB.INSTANCE);
+        assertFalse(delta.exists());
+
+        insert("anna", "Anna").execute(DB.INSTANCE, model);
+        storage.write(ROOT, DB.INSTANCE);
+        assertTrue(BinarySnapshot.isBinary(delta));
+        DB.INSTANCE.dropDB();
+        storage.read(ROOT, DB.INSTANCE, model);
+        assertEquals(
+            read, DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users"));
+    }
+
+    @Test
+    public void testReadInterruptedSnapshot() throws Exception {
+        IDataModel model = new HashMapDataModel();
+        File db = new File(ROOT + "/Test");
+        db.mkdirs();
+
+        IColumnFamily old = model.createColumnFamily();
+        old.addRow(model.createRow(ByteBuffer.wrap("old".getBytes())));
+        IColumnFamily current = model.createColumnFamily();
+        current.addRow(model.createRow(ByteBuffer.wrap("new".getBytes())));
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new FileOutputStream(ROOT + "/Test/Users"))
+        ) {
+            out.writeObject(old);
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new FileOutputStream(ROOT + "/Test/Users.tmp"))
+        ) {
+            out.writeObject(current);
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new FileOutputStream(ROOT + "/Test/Comments.tmp"))
+        ) {
+            out.writeObject(current);
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new FileOutputStream(ROOT + "/Test/Comments"))
+        ) {
+            out.writeObject(old);
+        }
+        new File(ROOT + "/Test/Comments.delta").createNewFile();
+
+        // complete snapshot without delta replaces old one, snapshot with
+        // delta is incomplete
+        new SerializationStorage().read(ROOT, DB.INSTANCE, model);
+        assertEquals(
+            current, DB.INSTANCE.getKeySpace("Test").getColumnFamily("Users"));
+        assertEquals(
+            old, DB.INSTANCE.getKeySpace("Test").getColumnFamily("Comments"));
+        assertFalse(new File(ROOT + "/Test/Users.tmp").exists());
+        assertFalse(new File(ROOT + "/Test/Comments.tmp").exists());
+    }
+
+    @Test
+    public void testWriteAndReadOwnDatabase() throws Exception {
+        DB db = new DB();
+        Context ctx = new Context(db);
+        IDBCommand[] commands = new IDBCommand[] {
+            new CreateKeySpaceCommand("Test"),
+            new UseKeySpaceCommand("Test", ctx),
+            new CreateColumnFamilyCommand("Users", "Test"),
+            insert("pepe", "Piotr")
+        };
+        IDataModel model = new HashMapDataModel();
+        for (int i = 0; i < commands.length; ++i) {
+            commands[i].execute(db, model);
+        }
+        IStorage storage = new SerializationStorage();
+        storage.write(ROOT, db);
+        assertNull(DB.INSTANCE.getKeySpace("Test"));
+
+        DB read = new DB();
+        storage.read(ROOT, read, model);
+        assertEquals(
+            db.getKeySpace("Test").getColumnFamily("Users"),
+            read.getKeySpace("Test").getColumnFamily("Users")
+        );
+        assertNull(DB.INSTANCE.getKeySpace("Test"));
+    }
+
+    @Test
+    public void testReadParallel() throws Exception {
+        DB db = new DB();
+        IDataModel model = new HashMapDataModel();
+        for (int k = 0; k < 3; ++k) {
+            db.addKeySpace(model.createKeySpace("Test" + k));
+            for (int c = 0; c < 5; ++c) {
+                IColumnFamily columnFamily = model.createColumnFamily();
+                columnFamily.addRow(model.createRow(
+                    ByteBuffer.wrap(("row" + k + c).getBytes())));
+                db.getKeySpace("Test" + k).addColumnFamily(
+                    "Users" + c, columnFamily);
+            }
+        }
+        new SerializationStorage().write(ROOT, db);
+
+        DB read = new DB();
+        new SerializationStorage(4, false).read(ROOT, read, model);
+        for (int k = 0; k < 3; ++k) {
+            for (int c = 0; c < 5; ++c) {
+                assertEquals(
+                    db.getKeySpace("Test" + k).getColumnFamily("Users" + c),
+                    read.getKeySpace("Test" + k).getColumnFamily("Users" + c)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testReadLazy() throws Exception {
+        DB db = new DB();
+        Context ctx = new Context(db);
+        IDataModel model = new HashMapDataModel();
+        new CreateKeySpaceCommand("Test").execute(db, model);
+        new UseKeySpaceCommand("Test", ctx).execute(db, model);
+        new CreateColumnFamilyCommand("Users", "Test").execute(db, model);
+        insert("pepe", "Piotr").execute(db, model);
+        IStorage storage = new SerializationStorage(1, true);
+        storage.write(ROOT, db);
+
+        DB read = new DB();
+        storage.read(ROOT, read, model);
+        LazyColumnFamily users = (LazyColumnFamily)
+                read.getKeySpace("Test").getColumnFamily("Users");
+        assertFalse(users.isLoaded());
+
+        // column family which wasn't read is not written
+        storage.write(ROOT, read);
+        assertFalse(users.isLoaded());
+
+        assertEquals(
+            db.getKeySpace("Test").getColumnFamily("Users")
+                .getRow(ByteBuffer.wrap("pepe".getBytes())),
+            users.getRow(ByteBuffer.wrap("pepe".getBytes()))
+        );
+        assertTrue(users.isLoaded());
+
+        insert("john", "John").execute(read, model);
+        storage.write(ROOT, read);
+        DB again = new DB();
+        storage.read(ROOT, again, model);
+        assertNotNull(again.getKeySpace("Test").getColumnFamily("Users")
+                .getRow(ByteBuffer.wrap("john".getBytes())));
+    }
+
+    private static IDBCommand insert(String key, String name) {
+        return new InsertCommand(
+            "Users",
+            "Test",
+            ByteBuffer.wrap(key.getBytes()),
+            new ByteBuffer[] {
+                ByteBuffer.wrap("name".getBytes()),
+            },
+            new ByteBuffer[] {
+                ByteBuffer.wrap(name.getBytes()),
+            }
+        );
+    }
+
     private static void doDelete(File path) throws IOException {
         if (path.isDirectory()) {
             for (File child : path.listFiles()) {